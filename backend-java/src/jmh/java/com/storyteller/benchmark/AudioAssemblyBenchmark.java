@@ -0,0 +1,164 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.audio.AudioAssemblyService;
+import com.storyteller.audio.WavFile;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 音频拼接与编码基准测试
+ * 把一章分段合成的音频拼接、归一化并编码为配置的输出变体
+ * 
+ * 结果中的计数器按每秒速率报告：
+ * - audioSeconds：每秒处理的音频秒数，即实时倍率
+ * - realtimePerCore：实时倍率除以参与的核心数（拼接线程加编码线程，不超过CPU核心数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AudioAssemblyBenchmark {
+    
+    /** 输入采样率 */
+    private static final int SAMPLE_RATE = 24000;
+    
+    /** 分段数 */
+    @Param({"20"})
+    public int segments;
+    
+    /** 每段时长（秒） */
+    @Param({"15"})
+    public int segmentSeconds;
+    
+    /** 输出变体，以分号分隔 */
+    @Param({"pcm-24000", "pcm-24000;pcm-16000;mulaw-8000"})
+    public String variants;
+    
+    private Path directory;
+    
+    private List<Path> inputs;
+    
+    private ExecutorService executor;
+    
+    private AudioAssemblyService service;
+    
+    private double audioSeconds;
+    
+    private int cores;
+    
+    /**
+     * 实时倍率计数器
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double audioSeconds;
+        public double realtimePerCore;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            audioSeconds = 0;
+            realtimePerCore = 0;
+        }
+    }
+    
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audio-bench");
+        inputs = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < segments; i++) {
+            inputs.add(writeSegment(directory.resolve("segment-" + i + ".wav"), random));
+        }
+        
+        List<String> names = Arrays.asList(variants.split(";"));
+        cores = Math.min(Runtime.getRuntime().availableProcessors(), names.size() + 1);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        
+        service = new AudioAssemblyService();
+        ReflectionTestUtils.setField(service, "audioEncodeExecutor", executor);
+        ReflectionTestUtils.setField(service, "storageDir", directory.resolve("out").toString());
+        ReflectionTestUtils.setField(service, "variants", names);
+        ReflectionTestUtils.setField(service, "crossfadeMillis", 30);
+        ReflectionTestUtils.setField(service, "targetRmsDbfs", -20.0);
+        ReflectionTestUtils.setField(service, "maxGainDb", 20.0);
+        ReflectionTestUtils.setField(service, "blockBytes", 65536);
+        ReflectionTestUtils.setField(service, "maxBlocks", 64);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        
+        audioSeconds = (double) segments * segmentSeconds;
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+    
+    @Benchmark
+    public Map<String, Path> assembleChapter(Counters counters) throws IOException {
+        Map<String, Path> outputs = service.assemble("chapter", inputs);
+        counters.audioSeconds += audioSeconds;
+        counters.realtimePerCore += audioSeconds / cores;
+        return outputs;
+    }
+    
+    /**
+     * 生成一段近似语音的测试音频：音高缓慢变化的谐波加噪声，按音节起伏的包络
+     * 
+     * @param path 输出文件
+     * @param random 随机数生成器
+     * @return 输出文件
+     * @throws IOException 写入失败
+     */
+    private Path writeSegment(Path path, Random random) throws IOException {
+        int frames = SAMPLE_RATE * segmentSeconds;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        double pitch = 120 + random.nextInt(80);
+        double phase = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(WavFile.header(WavFile.FORMAT_PCM, SAMPLE_RATE, 1, 16, frames * 2L));
+            for (int i = 0; i < frames; i++) {
+                double t = (double) i / SAMPLE_RATE;
+                phase += 2 * Math.PI * pitch * (1 + 0.1 * Math.sin(2 * Math.PI * 0.5 * t)) / SAMPLE_RATE;
+                double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t);
+                double value = envelope * (Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.25 * Math.sin(3 * phase))
+                        + 0.02 * random.nextGaussian();
+                buffer.putShort((short) (value * 4000));
+                if (!buffer.hasRemaining()) {
+                    channel.write(buffer.flip());
+                    buffer.clear();
+                }
+            }
+            channel.write(buffer.flip());
+        }
+        return path;
+    }
+}
\ No newline at end of file
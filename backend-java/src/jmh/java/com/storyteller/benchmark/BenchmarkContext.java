@@ -0,0 +1,79 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.StorytellerApplication;
+import com.storyteller.service.TTSService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 基准测试用的应用上下文
+ * 使用内存H2数据库和立即返回的TTS桩启动完整的应用
+ * 
+ * 配置通过命令行参数传入，优先级高于application.yml，
+ * 因此不需要本地PostgreSQL，也不会产生模拟的合成耗时。
+ * 默认关闭常驻JFR录制，各基准的结果不受录制开销影响
+ */
+final class BenchmarkContext {
+    
+    private BenchmarkContext() {
+    }
+    
+    /**
+     * 启动应用上下文
+     * 
+     * @param database 内存数据库名，不同的基准使用不同的库互不干扰
+     * @return 已启动的应用上下文，由调用方负责关闭
+     */
+    static ConfigurableApplicationContext start(String database) {
+        return start(database, false);
+    }
+    
+    /**
+     * 启动应用上下文
+     * 
+     * @param database 内存数据库名，不同的基准使用不同的库互不干扰
+     * @param continuousProfiling 是否开始常驻JFR录制
+     * @return 已启动的应用上下文，由调用方负责关闭
+     */
+    static ConfigurableApplicationContext start(String database, boolean continuousProfiling) {
+        return new SpringApplicationBuilder(StorytellerApplication.class, StubTtsConfiguration.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.storyteller=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                        "--storyteller.prefetch.enabled=false",
+                        "--storyteller.synthesis.simulated-delay-ms=0",
+                        "--storyteller.synthesis.simulated-model-load-ms=0",
+                        "--storyteller.profiling.continuous=" + continuousProfiling);
+    }
+    
+    /**
+     * 用立即返回的桩替换TTS服务，只保留本地的分段和调度开销
+     */
+    @Configuration
+    static class StubTtsConfiguration {
+        
+        @Bean
+        @Primary
+        TTSService stubTtsService() {
+            return new TTSService() {
+                @Override
+                public String synthesizeSpeech(String text, String voiceModelId) {
+                    return "stub://audio/" + voiceModelId + "/" + text.length();
+                }
+            };
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.service.ChapterSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 章节全文检索基准测试
+ * 在十万章节规模的索引上测量查询延迟和单章节重新索引的开销
+ * 
+ * 章节正文由按近似Zipf分布抽取的常用汉字组成，
+ * 使常见词和罕见词的倒排表长度接近真实书库
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ChapterSearchBenchmark {
+    
+    /** 候选汉字数量 */
+    private static final int VOCABULARY = 2500;
+    
+    /** 章节数量 */
+    @Param({"100000"})
+    public int chapters;
+    
+    /** 每个章节的正文长度（字符数） */
+    @Param({"400"})
+    public int textLength;
+    
+    private ChapterSearchService index;
+    
+    private String commonQuery;
+    
+    private String rareQuery;
+    
+    private String multiTermQuery;
+    
+    private String updatedText;
+    
+    private long nextUpdate;
+    
+    @Setup
+    public void setUp() {
+        index = new ChapterSearchService();
+        Random random = new Random(42);
+        for (long id = 1; id <= chapters; id++) {
+            index.index(id, id, "第" + id + "回", randomText(random, textLength));
+        }
+        
+        // 最常见的两个字组成的二元组几乎出现在每个章节中
+        commonQuery = new String(new char[]{charAt(0), charAt(1)});
+        rareQuery = randomText(random, 4);
+        multiTermQuery = commonQuery + " " + new String(new char[]{charAt(5), charAt(9)}) + " 第";
+        updatedText = randomText(random, textLength);
+    }
+    
+    @Benchmark
+    public ChapterSearchService.SearchHits searchCommonBigram() {
+        return index.searchChapterIds(commonQuery, 0, 20);
+    }
+    
+    @Benchmark
+    public ChapterSearchService.SearchHits searchRarePhrase() {
+        return index.searchChapterIds(rareQuery, 0, 20);
+    }
+    
+    @Benchmark
+    public ChapterSearchService.SearchHits searchMultiTerm() {
+        return index.searchChapterIds(multiTermQuery, 0, 20);
+    }
+    
+    @Benchmark
+    public ChapterSearchService.SearchHits searchDeepPage() {
+        return index.searchChapterIds(commonQuery, 50_000, 20);
+    }
+    
+    @Benchmark
+    public void reindexChapter() {
+        long id = 1 + (nextUpdate++ % chapters);
+        index.index(id, id, "第" + id + "回", updatedText + id);
+    }
+    
+    /**
+     * 生成按近似Zipf分布抽取汉字的随机文本
+     * 
+     * @param random 随机数生成器
+     * @param length 文本长度
+     * @return 随机文本
+     */
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            double u = random.nextDouble();
+            chars[i] = charAt((int) (VOCABULARY * u * u * u));
+        }
+        return new String(chars);
+    }
+    
+    private static char charAt(int rank) {
+        return (char) ('一' + rank);
+    }
+}
\ No newline at end of file
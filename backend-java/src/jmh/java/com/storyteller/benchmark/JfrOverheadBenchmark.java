@@ -0,0 +1,126 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.profiling.ModelLoadEvent;
+import com.storyteller.profiling.QueueWaitEvent;
+import com.storyteller.profiling.SynthesisTaskEvent;
+import com.storyteller.profiling.TaskSaveEvent;
+import com.storyteller.profiling.TtsEvent;
+import com.storyteller.profiling.WebSocketSendEvent;
+import com.storyteller.repository.SynthesisTaskRepository;
+import com.storyteller.service.SynthesisService;
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JFR录制开销基准测试
+ * 比较不录制、只录制合成阶段事件和常驻录制（default配置加合成阶段事件）三种情况下的合成耗时
+ * 
+ * 功能：
+ * - synthesizeBatch：提交一批合成任务并等待全部完成，测量端到端耗时
+ * - stageEvent：单个阶段事件从开始到写入的耗时
+ * 
+ * TTS服务被替换为立即返回的桩，合成耗时只剩保存、调度和推送，是录制开销占比最高的情况。
+ * 目标是continuous与off的synthesizeBatch相差不超过1%，比较时应同时看误差范围
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 2)
+public class JfrOverheadBenchmark {
+    
+    /** 每批提交的任务数 */
+    private static final int BATCH = 200;
+    
+    private static final String TEXT = "话说天下大势，分久必合，合久必分。周末七国分争，并入于秦。";
+    
+    /**
+     * off：不录制；stage-events：只录制合成阶段事件；continuous：应用的常驻录制
+     */
+    @Param({"off", "stage-events", "continuous"})
+    private String mode;
+    
+    private ConfigurableApplicationContext context;
+    
+    private SynthesisService synthesisService;
+    
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    private ThreadPoolExecutor synthesisExecutor;
+    
+    private Recording recording;
+    
+    private SynthesisTask task;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("jfr_" + mode.replace('-', '_'), "continuous".equals(mode));
+        synthesisService = context.getBean(SynthesisService.class);
+        synthesisTaskRepository = context.getBean(SynthesisTaskRepository.class);
+        synthesisExecutor = context.getBean("synthesisExecutor", ThreadPoolExecutor.class);
+        
+        if ("stage-events".equals(mode)) {
+            recording = new Recording();
+            recording.setToDisk(true);
+            recording.setMaxSize(64L * 1024 * 1024);
+            recording.enable(SynthesisTaskEvent.class);
+            recording.enable(QueueWaitEvent.class);
+            recording.enable(TaskSaveEvent.class);
+            recording.enable(ModelLoadEvent.class);
+            recording.enable(TtsEvent.class);
+            recording.enable(WebSocketSendEvent.class);
+            recording.start();
+        }
+        
+        task = new SynthesisTask();
+        task.setTaskId("task_bench");
+        task.setVoiceModelId("voice_bench");
+    }
+    
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        synthesisTaskRepository.deleteAllInBatch();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+        context.close();
+    }
+    
+    @Benchmark
+    public void synthesizeBatch() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            synthesisService.createSynthesisTask(1L + i % 16, 1L, "voice_bench_" + i % 4, TEXT);
+        }
+        while (!synthesisExecutor.getQueue().isEmpty() || synthesisExecutor.getActiveCount() > 0) {
+            Thread.sleep(1);
+        }
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public TtsEvent stageEvent() {
+        TtsEvent event = new TtsEvent("synthesize");
+        event.setCharacters(TEXT.length());
+        event.begin();
+        event.finish(task);
+        return event;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.service.WebSocketService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket消息基准测试
+ * 测量进度、完成和错误消息从构造、JSON序列化到交给消息通道的开销
+ * 
+ * 消息通道只记录最后一条消息，不经过代理，因此结果不包含网络和订阅分发
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProgressMessageBenchmark {
+    
+    private WebSocketService webSocketService;
+    
+    private Message<?> lastMessage;
+    
+    private int progress;
+    
+    @Setup
+    public void setUp() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            lastMessage = message;
+            return true;
+        });
+        // 与应用中代理使用的转换器一致，负载序列化为JSON字节
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        
+        webSocketService = new WebSocketService();
+        ReflectionTestUtils.setField(webSocketService, "messagingTemplate", template);
+    }
+    
+    @Benchmark
+    public Message<?> sendProgress() {
+        progress = (progress + 1) % 100;
+        webSocketService.sendProgress(42L, "task_1700000000000", progress);
+        return lastMessage;
+    }
+    
+    @Benchmark
+    public Message<?> sendCompletion() {
+        webSocketService.sendCompletion(42L, "task_1700000000000", "https://example.com/audio/1700000000000.mp3");
+        return lastMessage;
+    }
+    
+    @Benchmark
+    public Message<?> sendError() {
+        webSocketService.sendError(42L, "task_1700000000000", "合成被中断");
+        return lastMessage;
+    }
+}
\ No newline at end of file
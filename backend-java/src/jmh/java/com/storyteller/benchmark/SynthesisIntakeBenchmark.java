@@ -0,0 +1,75 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.repository.SynthesisTaskRepository;
+import com.storyteller.service.SynthesisService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合成请求受理基准测试
+ * 测量createSynthesisTask的同步部分：保存任务、登记并提交到合成执行器
+ * 
+ * TTS服务被替换为立即返回的桩，后台处理很快结束；
+ * 每轮迭代结束后等待执行器清空并删除任务，避免队列和表无限增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2)
+public class SynthesisIntakeBenchmark {
+    
+    private static final String TEXT = "话说天下大势，分久必合，合久必分。周末七国分争，并入于秦。";
+    
+    private ConfigurableApplicationContext context;
+    
+    private SynthesisService synthesisService;
+    
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    private ThreadPoolExecutor synthesisExecutor;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("intake");
+        synthesisService = context.getBean(SynthesisService.class);
+        synthesisTaskRepository = context.getBean(SynthesisTaskRepository.class);
+        synthesisExecutor = context.getBean("synthesisExecutor", ThreadPoolExecutor.class);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        while (!synthesisExecutor.getQueue().isEmpty() || synthesisExecutor.getActiveCount() > 0) {
+            Thread.sleep(10);
+        }
+        synthesisTaskRepository.deleteAllInBatch();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public String createSynthesisTask() {
+        return synthesisService.createSynthesisTask(1L, 1L, "voice_bench", TEXT);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public String createSynthesisTaskConcurrent() {
+        return synthesisService.createSynthesisTask(1L, 1L, "voice_bench", TEXT);
+    }
+}
\ No newline at end of file
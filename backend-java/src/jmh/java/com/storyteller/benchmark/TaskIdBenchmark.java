@@ -0,0 +1,30 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.entity.SynthesisTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务ID生成基准测试
+ * 测量单线程和多线程竞争下生成不重复任务ID的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TaskIdBenchmark {
+    
+    @Benchmark
+    public String generateTaskId() {
+        return SynthesisTask.generateTaskId();
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public String generateTaskIdContended() {
+        return SynthesisTask.generateTaskId();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.entity.Chapter;
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据仓库保存路径基准测试
+ * 在内存H2数据库上测量合成任务的插入、按任务ID查询和状态更新，
+ * 以及带长正文的章节插入（包含检索索引监听器的开销）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+public class TaskRepositoryBenchmark {
+    
+    /** 章节正文长度（字符数） */
+    private static final int CHAPTER_LENGTH = 20_000;
+    
+    private ConfigurableApplicationContext context;
+    
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    private ChapterRepository chapterRepository;
+    
+    private String chapterText;
+    
+    private String existingTaskId;
+    
+    private long nextChapterId;
+    
+    private int nextStatus;
+    
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("repository");
+        synthesisTaskRepository = context.getBean(SynthesisTaskRepository.class);
+        chapterRepository = context.getBean(ChapterRepository.class);
+        chapterText = "話說天下大勢，分久必合，合久必分。".repeat(CHAPTER_LENGTH / 17 + 1).substring(0, CHAPTER_LENGTH);
+    }
+    
+    @Setup(Level.Iteration)
+    public void createExistingTask() {
+        existingTaskId = synthesisTaskRepository.save(newTask()).getTaskId();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        synthesisTaskRepository.deleteAllInBatch();
+        // 逐个删除以触发监听器，同时清理检索索引
+        chapterRepository.deleteAll();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public SynthesisTask insertTask() {
+        return synthesisTaskRepository.save(newTask());
+    }
+    
+    @Benchmark
+    public SynthesisTask findByTaskId() {
+        return synthesisTaskRepository.findByTaskId(existingTaskId);
+    }
+    
+    @Benchmark
+    public SynthesisTask updateTaskStatus() {
+        SynthesisTask task = synthesisTaskRepository.findByTaskId(existingTaskId);
+        task.setStatus((nextStatus++ & 1) == 0 ? "PROCESSING" : "PENDING");
+        return synthesisTaskRepository.save(task);
+    }
+    
+    @Benchmark
+    public Chapter insertChapter() {
+        Chapter chapter = new Chapter();
+        chapter.setChapterId(++nextChapterId);
+        chapter.setTitle("第" + nextChapterId + "回");
+        chapter.setText(chapterText);
+        return chapterRepository.save(chapter);
+    }
+    
+    private static SynthesisTask newTask() {
+        SynthesisTask task = new SynthesisTask();
+        task.setUserId(1L);
+        task.setChapterId(1L);
+        task.setVoiceModelId("voice_bench");
+        task.setStatus("PENDING");
+        return task;
+    }
+}
\ No newline at end of file
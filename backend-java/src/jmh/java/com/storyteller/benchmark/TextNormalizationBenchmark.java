@@ -0,0 +1,96 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.service.TextNormalizationService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本规范化基准测试
+ * 测量长篇小说规模输入下的规范化吞吐量
+ * 
+ * 结果中的bytes计数器为每秒处理的UTF-8输入字节数，除以1,000,000即为MB/s
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TextNormalizationBenchmark {
+    
+    /** 用于拼接测试文本的句子，覆盖数字、全角字符、重复标点和对话 */
+    private static final String[] SENTENCES = {
+            "话说天下大势，分久必合，合久必分。",
+            "周末七国分争，并入于秦。",
+            "他从怀中取出１２０两银子，放在桌上!!",
+            "「你说什么？」",
+            "公元1368年，朱元璋在应天称帝，国号大明。",
+            "这一仗，双方共投入兵力约3.5万人，伤亡超过30%……",
+            "次日清晨6:30，众人在城门口集合。",
+            "且听下回分解。",
+            "掌柜的，来两斤牛肉，一壶好酒！",
+            "他叹了口气，说道：“罢了，罢了。”"
+    };
+    
+    /** 输入文本长度（字符数） */
+    @Param({"100000", "1000000"})
+    public int length;
+    
+    /** 短句缓存条目上限，0表示关闭缓存 */
+    @Param({"0", "4096"})
+    public int memoSize;
+    
+    private TextNormalizationService service;
+    
+    private String text;
+    
+    private long textBytes;
+    
+    /**
+     * 处理字节计数器
+     * JMH按每秒速率报告，即输入吞吐量（字节/秒）
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+    
+    @Setup
+    public void setUp() {
+        service = new TextNormalizationService();
+        ReflectionTestUtils.setField(service, "memoSize", memoSize);
+        
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(length + 64);
+        while (builder.length() < length) {
+            builder.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+            if (random.nextInt(8) == 0) {
+                builder.append('\n');
+            }
+        }
+        text = builder.toString();
+        textBytes = text.getBytes(StandardCharsets.UTF_8).length;
+    }
+    
+    @Benchmark
+    public String normalize(Counters counters) {
+        counters.bytes += textBytes;
+        return service.normalize(text);
+    }
+}
\ No newline at end of file
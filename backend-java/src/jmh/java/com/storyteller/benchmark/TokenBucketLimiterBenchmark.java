@@ -0,0 +1,53 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.quota.TokenBucketLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器基准测试
+ * 测量多线程下对大量用户取令牌的吞吐量，以及单个热点用户被限流时的开销
+ * 
+ * 预先插入全部用户，测量的是稳态下的CAS更新而不是表扩容
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenBucketLimiterBenchmark {
+    
+    /** 跟踪的用户数 */
+    @Param({"1000000"})
+    public int users;
+    
+    private TokenBucketLimiter limiter;
+    
+    @Setup
+    public void setUp() {
+        limiter = new TokenBucketLimiter(Runtime.getRuntime().availableProcessors() * 4, users * 2);
+        for (long userId = 1; userId <= users; userId++) {
+            limiter.tryAcquire(userId, 10, 0.1);
+        }
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public long acquireManyUsers() {
+        return limiter.tryAcquire(1 + ThreadLocalRandom.current().nextInt(users), 10, 0.1);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public long acquireHotUser() {
+        return limiter.tryAcquire(1, 10, 0.1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.storyteller.benchmark;
+
+import com.storyteller.audio.TrainingAudio;
+import com.storyteller.audio.TrainingAudioPreprocessor;
+import com.storyteller.audio.WavFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 训练音频预处理基准测试
+ * 测量典型上传（44.1kHz立体声、说话与停顿交替）的预处理耗时，
+ * 比较帧分析单线程和多线程的差异
+ * 
+ * 各阶段的耗时见TrainingAudio.getStageNanos()，预处理日志中同样会输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrainingPreprocessBenchmark {
+    
+    private static final int SAMPLE_RATE = 44100;
+    
+    /** 录音时长（秒） */
+    @Param({"120"})
+    public int seconds;
+    
+    /** 帧分析并行度，0表示CPU核心数 */
+    @Param({"1", "0"})
+    public int parallelism;
+    
+    private TrainingAudioPreprocessor preprocessor;
+    
+    private byte[] upload;
+    
+    @Setup
+    public void setUp() {
+        preprocessor = new TrainingAudioPreprocessor();
+        ReflectionTestUtils.setField(preprocessor, "sampleRate", 16000);
+        ReflectionTestUtils.setField(preprocessor, "minSeconds", 10.0);
+        ReflectionTestUtils.setField(preprocessor, "maxSeconds", 600.0);
+        ReflectionTestUtils.setField(preprocessor, "minSpeechSeconds", 5.0);
+        ReflectionTestUtils.setField(preprocessor, "minSnrDb", 15.0);
+        ReflectionTestUtils.setField(preprocessor, "maxClippingRatio", 0.01);
+        ReflectionTestUtils.setField(preprocessor, "minPauseMillis", 300);
+        ReflectionTestUtils.setField(preprocessor, "maxUtteranceSeconds", 15.0);
+        ReflectionTestUtils.setField(preprocessor, "minUtteranceMillis", 500);
+        ReflectionTestUtils.setField(preprocessor, "parallelism", parallelism);
+        ReflectionTestUtils.invokeMethod(preprocessor, "init");
+        upload = recording(new Random(42));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(preprocessor, "shutdown");
+    }
+    
+    @Benchmark
+    public TrainingAudio preprocess() throws IOException {
+        return preprocessor.preprocess(new ByteArrayInputStream(upload), upload.length);
+    }
+    
+    /**
+     * 生成立体声测试录音：每4秒中说话2.6秒、停顿1.4秒，带轻微底噪
+     * 
+     * @param random 随机数生成器
+     * @return WAV文件内容
+     */
+    private byte[] recording(Random random) {
+        int frames = SAMPLE_RATE * seconds;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(WavFile.header(WavFile.FORMAT_PCM, SAMPLE_RATE, 2, 16, frames * 4L));
+        double phase = 0;
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            phase += 2 * Math.PI * (140 + 20 * Math.sin(2 * Math.PI * 0.3 * t)) / SAMPLE_RATE;
+            double voice = t % 4.0 < 2.6
+                    ? 6000 * (0.6 + 0.4 * Math.sin(2 * Math.PI * 4 * t)) * (Math.sin(phase) + 0.5 * Math.sin(2 * phase))
+                    : 0;
+            short sample = (short) (voice + 30 * random.nextGaussian());
+            buffer.putShort(sample).putShort(sample);
+        }
+        return buffer.array();
+    }
+}
\ No newline at end of file
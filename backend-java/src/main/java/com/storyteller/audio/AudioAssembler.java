@@ -0,0 +1,318 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 音频拼接器
+ * 把分段合成的WAV音频拼接为一条连续的PCM流，交给PcmSink编码输出
+ * 
+ * 功能：
+ * - 第一遍流式读取各段，检查格式一致并统计整体响度（RMS）和峰值
+ * - 第二遍流式读取各段，相邻两段重叠部分按等功率曲线交叉淡化
+ * - 按目标响度统一增益，增益受峰值限制，不产生削波
+ * - 数据只经过堆外缓冲区，内存占用与音频长度无关
+ * 
+ * 实例不保存拼接状态，可以在多个线程中同时使用
+ */
+public class AudioAssembler {
+    
+    /** 读取音频段使用的缓冲区大小 */
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    
+    /** 归一化后峰值不超过满幅的比例 */
+    private static final double PEAK_CEILING = 0.98;
+    
+    private final PcmBlockPool pool;
+    
+    private final int crossfadeMillis;
+    
+    private final double targetRmsDbfs;
+    
+    private final double maxGainDb;
+    
+    /**
+     * 创建拼接器
+     * 
+     * @param pool 输出数据块的缓冲池
+     * @param crossfadeMillis 相邻段交叉淡化的时长（毫秒），0表示直接拼接
+     * @param targetRmsDbfs 目标响度（相对满幅的dB，如-20）
+     * @param maxGainDb 最大提升增益（dB），避免把静音段的底噪放大
+     */
+    public AudioAssembler(PcmBlockPool pool, int crossfadeMillis, double targetRmsDbfs, double maxGainDb) {
+        this.pool = pool;
+        this.crossfadeMillis = Math.max(0, crossfadeMillis);
+        this.targetRmsDbfs = targetRmsDbfs;
+        this.maxGainDb = maxGainDb;
+    }
+    
+    /**
+     * 拼接音频段
+     * 
+     * @param segments 各段WAV文件，按播放顺序排列，格式必须一致
+     * @param sink 拼接结果的接收方
+     * @return 拼接结果的格式、时长和增益
+     * @throws IOException 读取音频段或写入接收方失败
+     */
+    public Result assemble(List<Path> segments, PcmSink sink) throws IOException {
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("没有可拼接的音频段");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        
+        // 第一遍：格式、长度和响度
+        List<WavFile> wavs = new ArrayList<>(segments.size());
+        PcmFormat format = null;
+        double sumSquares = 0;
+        long samples = 0;
+        int peak = 0;
+        for (Path segment : segments) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                WavFile wav = WavFile.read(channel);
+                if (format == null) {
+                    format = wav.getFormat();
+                } else if (!format.equals(wav.getFormat())) {
+                    throw new IOException("音频段格式不一致: " + segment + " " + wav.getFormat() + "，应为" + format);
+                }
+                wavs.add(wav);
+                
+                SampleReader reader = new SampleReader(channel, wav, format, buffer);
+                int count;
+                while ((count = reader.next()) > 0) {
+                    for (int i = 0; i < count; i++) {
+                        int value = buffer.getShort();
+                        sumSquares += (double) value * value;
+                        peak = Math.max(peak, Math.abs(value));
+                    }
+                    samples += count;
+                }
+            }
+        }
+        double gain = gain(sumSquares, samples, peak);
+        
+        // 相邻两段的重叠帧数，不超过任一段长度的一半
+        int channels = format.getChannels();
+        int fadeFrames = (int) ((long) crossfadeMillis * format.getSampleRate() / 1000);
+        int[] overlaps = new int[segments.size()];
+        int maxOverlap = 0;
+        for (int i = 0; i + 1 < wavs.size(); i++) {
+            long previous = frames(wavs.get(i));
+            long next = frames(wavs.get(i + 1));
+            overlaps[i] = (int) Math.min(fadeFrames, Math.min(previous / 2, next / 2));
+            maxOverlap = Math.max(maxOverlap, overlaps[i]);
+        }
+        
+        // 第二遍：交叉淡化并按增益输出
+        sink.start(format);
+        BlockWriter writer = new BlockWriter(sink, format.frameBytes(), gain);
+        short[] tail = new short[maxOverlap * channels];
+        long totalFrames = 0;
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                WavFile wav = wavs.get(i);
+                long length = frames(wav) * channels;
+                int fadeIn = i > 0 ? overlaps[i - 1] * channels : 0;
+                long tailStart = length - overlaps[i] * channels;
+                totalFrames += frames(wav) - overlaps[i];
+                
+                try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                    SampleReader reader = new SampleReader(channel, wav, format, buffer);
+                    long position = 0;
+                    int count;
+                    while ((count = reader.next()) > 0) {
+                        for (int k = 0; k < count; k++, position++) {
+                            short value = buffer.getShort();
+                            if (position < fadeIn) {
+                                // 等功率淡化：前一段按cos衰减，本段按sin增强
+                                double t = (position / channels + 0.5) / (fadeIn / channels) * (Math.PI / 2);
+                                writer.put(tail[(int) position] * Math.cos(t) + value * Math.sin(t));
+                            } else if (position >= tailStart) {
+                                // 段尾留给下一段淡入时混合
+                                tail[(int) (position - tailStart)] = value;
+                            } else {
+                                writer.put(value);
+                            }
+                        }
+                    }
+                }
+            }
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            writer.discard();
+            throw e;
+        }
+        sink.finish();
+        return new Result(format, totalFrames, gain);
+    }
+    
+    /**
+     * 计算归一化增益
+     * 
+     * @param sumSquares 所有样本的平方和
+     * @param samples 样本数
+     * @param peak 峰值
+     * @return 线性增益
+     */
+    private double gain(double sumSquares, long samples, int peak) {
+        if (samples == 0 || peak == 0) {
+            return 1.0;
+        }
+        double rms = Math.sqrt(sumSquares / samples);
+        double gain = 32768 * Math.pow(10, targetRmsDbfs / 20) / rms;
+        gain = Math.min(gain, Math.pow(10, maxGainDb / 20));
+        return Math.min(gain, PEAK_CEILING * Short.MAX_VALUE / peak);
+    }
+    
+    /**
+     * 音频段的完整帧数
+     * 
+     * @param wav 音频段
+     * @return 帧数
+     */
+    private static long frames(WavFile wav) {
+        return wav.getDataLength() / wav.getFormat().frameBytes();
+    }
+    
+    /**
+     * 拼接结果
+     */
+    public static final class Result {
+        
+        private final PcmFormat format;
+        
+        private final long frames;
+        
+        private final double gain;
+        
+        Result(PcmFormat format, long frames, double gain) {
+            this.format = format;
+            this.frames = frames;
+            this.gain = gain;
+        }
+        
+        public PcmFormat getFormat() {
+            return format;
+        }
+        
+        public long getFrames() {
+            return frames;
+        }
+        
+        /**
+         * 拼接后的时长
+         * 
+         * @return 时长（秒）
+         */
+        public double getSeconds() {
+            return (double) frames / format.getSampleRate();
+        }
+        
+        public double getGain() {
+            return gain;
+        }
+    }
+    
+    /**
+     * 从音频段的数据区流式读取完整帧
+     */
+    private static final class SampleReader {
+        
+        private final FileChannel channel;
+        
+        private final ByteBuffer buffer;
+        
+        private final int frameBytes;
+        
+        private long remaining;
+        
+        /** 上次读取时界限之后不足一帧的字节数 */
+        private int excess;
+        
+        SampleReader(FileChannel channel, WavFile wav, PcmFormat format, ByteBuffer buffer) throws IOException {
+            this.channel = channel.position(wav.getDataOffset());
+            this.buffer = buffer;
+            this.frameBytes = format.frameBytes();
+            this.remaining = wav.getDataLength() / frameBytes * frameBytes;
+            buffer.clear().limit(0);
+        }
+        
+        /**
+         * 读取下一批数据
+         * 
+         * @return 缓冲区中可读的样本数，均为完整帧；数据结束时返回0
+         * @throws IOException 读取失败
+         */
+        int next() throws IOException {
+            buffer.limit(buffer.limit() + excess).compact();
+            while (remaining > 0 && buffer.hasRemaining()) {
+                int limit = (int) Math.min(buffer.capacity(), buffer.position() + remaining);
+                int read = channel.read(buffer.limit(limit));
+                if (read < 0) {
+                    // 文件比文件头记录的短
+                    remaining = 0;
+                    break;
+                }
+                remaining -= read;
+            }
+            buffer.flip();
+            excess = buffer.remaining() % frameBytes;
+            buffer.limit(buffer.limit() - excess);
+            return buffer.remaining() / PcmFormat.BYTES_PER_SAMPLE;
+        }
+    }
+    
+    /**
+     * 按增益写入样本，写满一个数据块后交给接收方
+     */
+    private final class BlockWriter {
+        
+        private final PcmSink sink;
+        
+        private final double gain;
+        
+        /** 数据块中可用的字节数，按帧对齐 */
+        private final int usableBytes;
+        
+        private PcmBlock block;
+        
+        BlockWriter(PcmSink sink, int frameBytes, double gain) {
+            this.sink = sink;
+            this.gain = gain;
+            this.usableBytes = pool.getBlockBytes() / frameBytes * frameBytes;
+        }
+        
+        void put(double value) throws IOException {
+            if (block == null) {
+                block = pool.acquire();
+                block.buffer().limit(usableBytes);
+            }
+            long scaled = Math.round(value * gain);
+            block.buffer().putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled)));
+            if (!block.buffer().hasRemaining()) {
+                flush();
+            }
+        }
+        
+        void flush() throws IOException {
+            if (block != null) {
+                PcmBlock full = block;
+                block = null;
+                full.buffer().flip();
+                sink.accept(full);
+            }
+        }
+        
+        void discard() {
+            if (block != null) {
+                block.release();
+                block = null;
+            }
+        }
+    }
+}
\ No newline at end of file
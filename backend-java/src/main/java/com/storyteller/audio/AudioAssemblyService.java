@@ -0,0 +1,178 @@
+package com.storyteller.audio;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 音频拼接服务
+ * 把分段合成的音频拼接、归一化后编码为多个输出变体并写入存储目录
+ * 
+ * 功能：
+ * - 按配置的变体列表选择编码器，内置PCM和μ律WAV，其他编码器通过AudioEncoder Bean扩展
+ * - 拼接与各变体的编码在多个核心上并行进行
+ * - 数据经堆外缓冲池直接写入文件通道，内存占用与章节长度无关
+ * - 先写临时文件，全部变体成功后再移动到最终位置，失败时不留下不完整的文件
+ */
+@Service
+public class AudioAssemblyService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AudioAssemblyService.class);
+    
+    @Autowired
+    @Qualifier("audioEncodeExecutor")
+    private ExecutorService audioEncodeExecutor;
+    
+    /** 以Bean形式注册的扩展编码器 */
+    @Autowired(required = false)
+    private List<AudioEncoder> pluggableEncoders = List.of();
+    
+    /** 输出文件的存储目录 */
+    @Value("${storyteller.audio.storage-dir:audio}")
+    private String storageDir;
+    
+    /** 输出变体，按顺序输出，第一个为主变体 */
+    @Value("${storyteller.audio.variants:pcm-24000,pcm-16000,mulaw-8000}")
+    private List<String> variants;
+    
+    /** 相邻段交叉淡化的时长（毫秒） */
+    @Value("${storyteller.audio.crossfade-ms:30}")
+    private int crossfadeMillis;
+    
+    /** 归一化的目标响度（dBFS） */
+    @Value("${storyteller.audio.target-rms-dbfs:-20}")
+    private double targetRmsDbfs;
+    
+    /** 归一化的最大提升增益（dB） */
+    @Value("${storyteller.audio.max-gain-db:20}")
+    private double maxGainDb;
+    
+    /** 堆外数据块大小（字节） */
+    @Value("${storyteller.audio.block-bytes:65536}")
+    private int blockBytes;
+    
+    /** 堆外数据块数量上限，所有拼接共享 */
+    @Value("${storyteller.audio.max-blocks:64}")
+    private int maxBlocks;
+    
+    private List<AudioEncoder> encoders;
+    
+    private AudioAssembler assembler;
+    
+    @PostConstruct
+    void init() {
+        encoders = new ArrayList<>();
+        for (String variant : variants) {
+            encoders.add(resolve(variant.trim()));
+        }
+        if (encoders.isEmpty()) {
+            throw new IllegalStateException("storyteller.audio.variants不能为空");
+        }
+        assembler = new AudioAssembler(new PcmBlockPool(blockBytes, maxBlocks), crossfadeMillis, targetRmsDbfs, maxGainDb);
+    }
+    
+    /**
+     * 拼接音频段并编码为所有输出变体
+     * 
+     * @param name 输出文件名（不含变体和扩展名）
+     * @param segments 各段WAV文件，按播放顺序排列
+     * @return 变体名称到输出文件的映射，按配置顺序排列
+     * @throws IOException 读取音频段或写入输出失败
+     */
+    public Map<String, Path> assemble(String name, List<Path> segments) throws IOException {
+        Path directory = Paths.get(storageDir);
+        Files.createDirectories(directory);
+        
+        List<Path> temporaries = new ArrayList<>();
+        List<FileChannel> outputs = new ArrayList<>();
+        boolean success = false;
+        try {
+            for (AudioEncoder encoder : encoders) {
+                Path temporary = Files.createTempFile(directory, name + "." + encoder.name() + ".", ".part");
+                temporaries.add(temporary);
+                outputs.add(FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+            }
+            
+            long started = System.nanoTime();
+            ParallelEncodingSink sink = new ParallelEncodingSink(encoders, outputs, audioEncodeExecutor);
+            AudioAssembler.Result result;
+            try {
+                result = assembler.assemble(segments, sink);
+            } catch (IOException | RuntimeException e) {
+                sink.drain();
+                throw e;
+            }
+            for (FileChannel output : outputs) {
+                output.close();
+            }
+            
+            Map<String, Path> files = new LinkedHashMap<>();
+            for (int i = 0; i < encoders.size(); i++) {
+                AudioEncoder encoder = encoders.get(i);
+                Path target = directory.resolve(name + "." + encoder.name() + "." + encoder.extension());
+                files.put(encoder.name(), Files.move(temporaries.get(i), target,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE));
+            }
+            success = true;
+            
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            log.debug("音频{}拼接完成: {}段, 时长{}秒, 增益{}, 耗时{}秒",
+                    name, segments.size(), String.format("%.1f", result.getSeconds()),
+                    String.format("%.2f", result.getGain()), String.format("%.2f", elapsed));
+            return files;
+        } finally {
+            if (!success) {
+                for (FileChannel output : outputs) {
+                    closeQuietly(output);
+                }
+                for (Path temporary : temporaries) {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 按名称查找编码器，扩展编码器优先
+     * 
+     * @param variant 变体名称
+     * @return 编码器
+     */
+    private AudioEncoder resolve(String variant) {
+        for (AudioEncoder encoder : pluggableEncoders) {
+            if (encoder.name().equals(variant)) {
+                return encoder;
+            }
+        }
+        AudioEncoder builtin = WavEncoder.forVariant(variant);
+        if (builtin == null) {
+            throw new IllegalStateException("未知的音频输出变体: " + variant);
+        }
+        return builtin;
+    }
+    
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭音频输出失败", e);
+        }
+    }
+}
\ No newline at end of file
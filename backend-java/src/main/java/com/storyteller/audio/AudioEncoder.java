@@ -0,0 +1,62 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 音频编码器
+ * 把拼接好的PCM流编码为一种输出变体（格式、采样率、码率的组合）
+ * 
+ * 内置WavEncoder；其他编码（如Opus、MP3）实现本接口并注册为Spring Bean，
+ * 即可在storyteller.audio.variants中按名称启用
+ */
+public interface AudioEncoder {
+    
+    /**
+     * 输出变体名称，在配置和输出文件名中使用
+     * 
+     * @return 变体名称，如"pcm-16000"
+     */
+    String name();
+    
+    /**
+     * 输出文件扩展名
+     * 
+     * @return 不含点的扩展名
+     */
+    String extension();
+    
+    /**
+     * 开始编码一个音频
+     * 
+     * @param input 输入的PCM格式
+     * @param output 输出文件通道，位置为0
+     * @return 编码会话
+     * @throws IOException 写入失败
+     */
+    Session open(PcmFormat input, FileChannel output) throws IOException;
+    
+    /**
+     * 编码会话
+     * 
+     * 同一会话的方法按顺序调用，但可能来自不同线程
+     */
+    interface Session {
+        
+        /**
+         * 编码一段PCM数据
+         * 
+         * @param pcm 按帧对齐的只读小端序数据，调用返回后不得继续引用
+         * @throws IOException 写入失败
+         */
+        void encode(ByteBuffer pcm) throws IOException;
+        
+        /**
+         * 结束编码，写出剩余数据和文件头
+         * 
+         * @throws IOException 写入失败
+         */
+        void finish() throws IOException;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.storyteller.audio;
+
+/**
+ * 单声道线性插值重采样器
+ * 逐个输入样本流式处理，不需要缓存整段音频
+ * 
+ * 降采样时先经过一阶低通滤波（截止频率为输出奈奎斯特频率的90%）抑制混叠，
+ * 对语音足够，不追求高保真
+ */
+final class LinearResampler {
+    
+    /** 相邻输出样本在输入中的间隔（样本） */
+    private final double step;
+    
+    /** 低通滤波系数，不降采样时为1（不滤波） */
+    private final double smoothing;
+    
+    /** 上一个和当前输入样本（滤波后） */
+    private double previous;
+    
+    private double current;
+    
+    /** 当前输入样本的序号 */
+    private long inputIndex;
+    
+    /** 下一个输出样本在输入中的位置 */
+    private double nextPosition;
+    
+    /**
+     * 创建重采样器
+     * 
+     * @param inputRate 输入采样率
+     * @param outputRate 输出采样率
+     */
+    LinearResampler(int inputRate, int outputRate) {
+        this.step = (double) inputRate / outputRate;
+        this.smoothing = outputRate < inputRate
+                ? 1 - Math.exp(-2 * Math.PI * 0.45 * outputRate / inputRate)
+                : 1.0;
+    }
+    
+    /**
+     * 单个输入样本最多产生的输出样本数
+     * 
+     * @return 输出缓冲区所需的长度
+     */
+    int maxOutputs() {
+        return (int) Math.ceil(1 / step) + 1;
+    }
+    
+    /**
+     * 处理一个输入样本
+     * 
+     * @param sample 输入样本
+     * @param output 输出样本写入的数组，长度不小于maxOutputs()
+     * @return 本次产生的输出样本数
+     */
+    int process(double sample, double[] output) {
+        current += smoothing * (sample - current);
+        int count = 0;
+        // 输出位于上一个和当前输入样本之间的样本
+        while (nextPosition <= inputIndex) {
+            output[count++] = previous + (current - previous) * (nextPosition - (inputIndex - 1));
+            nextPosition += step;
+        }
+        previous = current;
+        inputIndex++;
+        return count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 并行编码接收方
+ * 把每个数据块同时交给多个编码器，各编码器在执行器中并行运行
+ * 
+ * 每个编码器的任务串成一条链，保证同一输出按顺序编码；
+ * 不同输出之间、以及编码与拼接之间并行进行。编码任务从不等待其他任务，
+ * 多个音频同时拼接时共享执行器也不会互相阻塞
+ */
+class ParallelEncodingSink implements PcmSink {
+    
+    private final List<AudioEncoder> encoders;
+    
+    private final List<FileChannel> outputs;
+    
+    private final Executor executor;
+    
+    private final List<AudioEncoder.Session> sessions = new ArrayList<>();
+    
+    /** 每个编码器最后提交的任务 */
+    private final List<CompletableFuture<Void>> chains = new ArrayList<>();
+    
+    /**
+     * 创建并行编码接收方
+     * 
+     * @param encoders 编码器
+     * @param outputs 与编码器一一对应的输出文件通道
+     * @param executor 运行编码任务的执行器
+     */
+    ParallelEncodingSink(List<AudioEncoder> encoders, List<FileChannel> outputs, Executor executor) {
+        this.encoders = encoders;
+        this.outputs = outputs;
+        this.executor = executor;
+    }
+    
+    @Override
+    public void start(PcmFormat format) throws IOException {
+        for (int i = 0; i < encoders.size(); i++) {
+            sessions.add(encoders.get(i).open(format, outputs.get(i)));
+            chains.add(CompletableFuture.completedFuture(null));
+        }
+    }
+    
+    @Override
+    public void accept(PcmBlock block) throws IOException {
+        // 某个编码器已经失败时不再继续拼接
+        if (chains.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+            block.release();
+            await();
+        }
+        
+        block.retain(sessions.size() - 1);
+        for (int i = 0; i < sessions.size(); i++) {
+            AudioEncoder.Session session = sessions.get(i);
+            chains.set(i, chains.get(i)
+                    .thenRunAsync(() -> encode(session, block), executor)
+                    .whenComplete((result, error) -> block.release()));
+        }
+    }
+    
+    @Override
+    public void finish() throws IOException {
+        for (int i = 0; i < sessions.size(); i++) {
+            AudioEncoder.Session session = sessions.get(i);
+            chains.set(i, chains.get(i).thenRunAsync(() -> {
+                try {
+                    session.finish();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        await();
+    }
+    
+    /**
+     * 等待已提交的编码任务全部结束，出错中止时调用以确保数据块都已释放
+     */
+    void drain() {
+        for (CompletableFuture<Void> chain : chains) {
+            chain.exceptionally(error -> null).join();
+        }
+    }
+    
+    /**
+     * 等待所有编码任务完成
+     * 
+     * @throws IOException 任一编码器失败
+     */
+    private void await() throws IOException {
+        try {
+            CompletableFuture.allOf(chains.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("音频编码失败", cause);
+        }
+    }
+    
+    /**
+     * 编码一个数据块
+     * 
+     * @param session 编码会话
+     * @param block 数据块
+     */
+    private static void encode(AudioEncoder.Session session, PcmBlock block) {
+        try {
+            session.encode(block.view());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.storyteller.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PCM数据块
+ * 从PcmBlockPool借出的堆外缓冲区，按帧对齐存放拼接后的PCM数据
+ * 
+ * 一个数据块同时交给多个编码器时按引用计数管理，
+ * 最后一个使用者释放后归还到缓冲池
+ */
+public final class PcmBlock {
+    
+    private final PcmBlockPool pool;
+    
+    private final ByteBuffer buffer;
+    
+    private final AtomicInteger references = new AtomicInteger();
+    
+    PcmBlock(PcmBlockPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+    
+    /**
+     * 写入用的缓冲区，只在交给使用者之前由拼接线程访问
+     * 
+     * @return 小端序的堆外缓冲区
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+    
+    /**
+     * 获取只读视图
+     * 
+     * 每个使用者取得独立的位置和界限，互不影响；视图仍是堆外缓冲区，可直接写入通道
+     * 
+     * @return 从头到数据末尾的只读视图
+     */
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    /**
+     * 数据字节数
+     * 
+     * @return 字节数
+     */
+    public int length() {
+        return buffer.limit();
+    }
+    
+    /**
+     * 增加引用
+     * 
+     * @param count 增加的引用数
+     */
+    public void retain(int count) {
+        references.addAndGet(count);
+    }
+    
+    /**
+     * 释放一个引用，最后一个引用释放后归还到缓冲池
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("PCM数据块重复释放");
+        }
+    }
+    
+    /**
+     * 从缓冲池借出时重置
+     */
+    void reset() {
+        buffer.clear();
+        references.set(1);
+    }
+}
\ No newline at end of file
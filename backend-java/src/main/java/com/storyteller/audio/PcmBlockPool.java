@@ -0,0 +1,81 @@
+package com.storyteller.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PCM数据块缓冲池
+ * 复用固定大小的堆外缓冲区，音频数据不经过堆上的大数组
+ * 
+ * 功能：
+ * - 按需分配堆外缓冲区，总数不超过上限，堆外内存占用有界
+ * - 数据块用完后归还复用，避免反复分配堆外内存
+ * - 所有数据块都在使用中时借出方等待，对拼接线程形成背压
+ */
+public class PcmBlockPool {
+    
+    private final int blockBytes;
+    
+    private final int maxBlocks;
+    
+    private final BlockingQueue<PcmBlock> free;
+    
+    private final AtomicInteger allocated = new AtomicInteger();
+    
+    /**
+     * 创建缓冲池
+     * 
+     * @param blockBytes 每个数据块的字节数
+     * @param maxBlocks 数据块数量上限
+     */
+    public PcmBlockPool(int blockBytes, int maxBlocks) {
+        if (blockBytes < 64 || maxBlocks < 2) {
+            throw new IllegalArgumentException("缓冲池参数无效: blockBytes=" + blockBytes + ", maxBlocks=" + maxBlocks);
+        }
+        this.blockBytes = blockBytes;
+        this.maxBlocks = maxBlocks;
+        this.free = new ArrayBlockingQueue<>(maxBlocks);
+    }
+    
+    /**
+     * 借出一个数据块，持有一个引用
+     * 
+     * @return 已清空的数据块
+     * @throws CancellationException 等待期间线程被中断
+     */
+    public PcmBlock acquire() {
+        PcmBlock block = free.poll();
+        if (block == null) {
+            if (allocated.incrementAndGet() <= maxBlocks) {
+                block = new PcmBlock(this, ByteBuffer.allocateDirect(blockBytes).order(ByteOrder.LITTLE_ENDIAN));
+            } else {
+                allocated.decrementAndGet();
+                try {
+                    block = free.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("等待音频缓冲区时被中断");
+                }
+            }
+        }
+        block.reset();
+        return block;
+    }
+    
+    /**
+     * 归还数据块
+     * 
+     * @param block 引用已全部释放的数据块
+     */
+    void recycle(PcmBlock block) {
+        free.offer(block);
+    }
+    
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.storyteller.audio;
+
+import lombok.Value;
+
+/**
+ * PCM音频格式
+ * 音频拼接和编码阶段统一使用16位有符号小端序PCM，多声道按帧交错存放
+ */
+@Value
+public class PcmFormat {
+    
+    /** 每个样本的字节数 */
+    public static final int BYTES_PER_SAMPLE = 2;
+    
+    /** 采样率（Hz） */
+    int sampleRate;
+    
+    /** 声道数 */
+    int channels;
+    
+    /**
+     * 每帧（所有声道各一个样本）的字节数
+     * 
+     * @return 帧字节数
+     */
+    public int frameBytes() {
+        return channels * BYTES_PER_SAMPLE;
+    }
+    
+    /**
+     * 计算指定字节数的PCM数据对应的时长
+     * 
+     * @param bytes PCM数据字节数
+     * @return 时长（秒）
+     */
+    public double seconds(long bytes) {
+        return (double) bytes / frameBytes() / sampleRate;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+
+/**
+ * PCM数据接收方
+ * AudioAssembler按顺序把拼接好的数据块交给接收方
+ */
+public interface PcmSink {
+    
+    /**
+     * 开始接收，在第一个数据块之前调用一次
+     * 
+     * @param format 数据格式
+     * @throws IOException 打开输出失败
+     */
+    void start(PcmFormat format) throws IOException;
+    
+    /**
+     * 接收一个按帧对齐的数据块
+     * 
+     * 调用方转交自己持有的一个引用，接收方用完后负责释放
+     * 
+     * @param block 数据块，位置为0，界限为数据末尾
+     * @throws IOException 写入失败
+     */
+    void accept(PcmBlock block) throws IOException;
+    
+    /**
+     * 所有数据块都已交付
+     * 
+     * @throws IOException 完成输出失败
+     */
+    void finish() throws IOException;
+}
\ No newline at end of file
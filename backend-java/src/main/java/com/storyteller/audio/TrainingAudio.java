@@ -0,0 +1,157 @@
+package com.storyteller.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预处理后的训练音频
+ * TrainingAudioPreprocessor的输出：重采样到训练采样率的单声道语音，按停顿切分为语句，静音已去除
+ * 
+ * 训练请求只发送各语句的音频，不再发送原始上传文件
+ */
+public class TrainingAudio {
+    
+    private final int sampleRate;
+    
+    /** 重采样后的完整音频，语句引用其中的区间 */
+    private final short[] samples;
+    
+    private final List<Utterance> utterances;
+    
+    /** 原始上传文件的字节数 */
+    private final long sourceBytes;
+    
+    /** 原始音频时长（秒） */
+    private final double sourceSeconds;
+    
+    /** 估计的信噪比（dB） */
+    private final double snrDb;
+    
+    /** 各阶段耗时（纳秒），按执行顺序排列 */
+    private final Map<String, Long> stageNanos;
+    
+    TrainingAudio(int sampleRate, short[] samples, List<Utterance> utterances, long sourceBytes,
+                  double sourceSeconds, double snrDb, Map<String, Long> stageNanos) {
+        this.sampleRate = sampleRate;
+        this.samples = samples;
+        this.utterances = Collections.unmodifiableList(utterances);
+        this.sourceBytes = sourceBytes;
+        this.sourceSeconds = sourceSeconds;
+        this.snrDb = snrDb;
+        this.stageNanos = Collections.unmodifiableMap(stageNanos);
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    public List<Utterance> getUtterances() {
+        return utterances;
+    }
+    
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
+    
+    public double getSourceSeconds() {
+        return sourceSeconds;
+    }
+    
+    public double getSnrDb() {
+        return snrDb;
+    }
+    
+    public Map<String, Long> getStageNanos() {
+        return stageNanos;
+    }
+    
+    /**
+     * 保留的语音总时长
+     * 
+     * @return 时长（秒）
+     */
+    public double getSpeechSeconds() {
+        long total = 0;
+        for (Utterance utterance : utterances) {
+            total += utterance.length;
+        }
+        return (double) total / sampleRate;
+    }
+    
+    /**
+     * 所有语句编码为WAV后的总字节数
+     * 
+     * @return 字节数
+     */
+    public long getEncodedBytes() {
+        long total = 0;
+        for (Utterance utterance : utterances) {
+            total += WavFile.headerSize(WavFile.FORMAT_PCM) + utterance.length * 2L;
+        }
+        return total;
+    }
+    
+    /**
+     * 把一个语句写为16位单声道WAV
+     * 
+     * @param index 语句序号
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeUtterance(int index, OutputStream out) throws IOException {
+        Utterance utterance = utterances.get(index);
+        ByteBuffer header = WavFile.header(WavFile.FORMAT_PCM, sampleRate, 1, 16, utterance.length * 2L);
+        out.write(header.array(), 0, header.limit());
+        
+        ByteBuffer pcm = ByteBuffer.allocate(utterance.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(samples, utterance.offset, utterance.length);
+        out.write(pcm.array());
+    }
+    
+    /**
+     * 获取一个语句的WAV内容
+     * 
+     * @param index 语句序号
+     * @return WAV文件内容
+     */
+    public byte[] utteranceWav(int index) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(utterances.get(index).length * 2 + 64);
+        try {
+            writeUtterance(index, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * 一个语句在音频中的区间
+     */
+    public static final class Utterance {
+        
+        private final int offset;
+        
+        private final int length;
+        
+        Utterance(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+        
+        /** 起始样本位置 */
+        public int getOffset() {
+            return offset;
+        }
+        
+        /** 样本数 */
+        public int getLength() {
+            return length;
+        }
+    }
+}
\ No newline at end of file
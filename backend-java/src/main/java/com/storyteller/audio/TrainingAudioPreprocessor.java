@@ -0,0 +1,408 @@
+package com.storyteller.audio;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 训练音频预处理
+ * 在调用训练接口之前解码、重采样、去除静音并切分语句，只把有效语音发送给训练服务
+ * 
+ * 功能：
+ * - 解码WAV/AIFF/AU等格式，混合为单声道并流式重采样到训练采样率
+ * - 用Fork/Join并行计算每个20毫秒帧的能量
+ * - 按自适应噪声基底检测语音活动，去除首尾和句间的静音
+ * - 按停顿把语音切分为语句，过长的语句在最安静处切开
+ * - 时长、采样率、削波、音量和信噪比不合格时尽早拒绝，抛出IllegalArgumentException
+ * - 记录各阶段耗时
+ */
+@Service
+public class TrainingAudioPreprocessor {
+    
+    private static final Logger log = LoggerFactory.getLogger(TrainingAudioPreprocessor.class);
+    
+    /** 分析帧长度（毫秒） */
+    private static final int FRAME_MILLIS = 20;
+    
+    /** 视为削波的样本绝对值 */
+    private static final int CLIP_LEVEL = 32700;
+    
+    /** 语音电平（95百分位帧能量）的下限（dBFS） */
+    private static final double MIN_SPEECH_DBFS = -45;
+    
+    /** 短于该帧数的孤立语音段视为噪声（爆音、敲击） */
+    private static final int MIN_VOICED_FRAMES = 3;
+    
+    /** 语句首尾保留的静音帧数 */
+    private static final int PAD_FRAMES = 5;
+    
+    /** 训练服务使用的采样率 */
+    @Value("${storyteller.training.sample-rate:16000}")
+    private int sampleRate;
+    
+    /** 原始音频的最短时长（秒） */
+    @Value("${storyteller.training.min-seconds:10}")
+    private double minSeconds;
+    
+    /** 原始音频的最长时长（秒） */
+    @Value("${storyteller.training.max-seconds:600}")
+    private double maxSeconds;
+    
+    /** 去除静音后的最短语音时长（秒） */
+    @Value("${storyteller.training.min-speech-seconds:5}")
+    private double minSpeechSeconds;
+    
+    /** 最低信噪比（dB） */
+    @Value("${storyteller.training.min-snr-db:15}")
+    private double minSnrDb;
+    
+    /** 削波帧的最大占比 */
+    @Value("${storyteller.training.max-clipping-ratio:0.01}")
+    private double maxClippingRatio;
+    
+    /** 切分语句的最短停顿（毫秒） */
+    @Value("${storyteller.training.min-pause-ms:300}")
+    private int minPauseMillis;
+    
+    /** 单个语句的最长时长（秒） */
+    @Value("${storyteller.training.max-utterance-seconds:15}")
+    private double maxUtteranceSeconds;
+    
+    /** 单个语句的最短时长（毫秒），更短的语句被丢弃 */
+    @Value("${storyteller.training.min-utterance-ms:500}")
+    private int minUtteranceMillis;
+    
+    /** 帧分析的并行度，0表示CPU核心数 */
+    @Value("${storyteller.training.parallelism:0}")
+    private int parallelism;
+    
+    private ForkJoinPool pool;
+    
+    @PostConstruct
+    void init() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+    
+    /**
+     * 预处理训练音频
+     * 
+     * @param input 上传的音频内容，由调用方关闭
+     * @param sourceBytes 上传文件的字节数，用于统计
+     * @return 切分好的训练音频
+     * @throws IOException 读取失败
+     * @throws IllegalArgumentException 格式不支持或音频质量不合格
+     */
+    public TrainingAudio preprocess(InputStream input, long sourceBytes) throws IOException {
+        Map<String, Long> stageNanos = new LinkedHashMap<>();
+        long started = System.nanoTime();
+        
+        Decoded decoded = decode(input);
+        long decodedAt = System.nanoTime();
+        stageNanos.put("decode", decodedAt - started);
+        
+        int frameSamples = sampleRate * FRAME_MILLIS / 1000;
+        double[] energy = new double[decoded.length / frameSamples];
+        pool.invoke(new FrameAnalysis(decoded.samples, frameSamples, energy, 0, energy.length));
+        long analyzedAt = System.nanoTime();
+        stageNanos.put("analyze", analyzedAt - decodedAt);
+        
+        double[] sorted = energy.clone();
+        Arrays.sort(sorted);
+        double noiseDb = percentile(sorted, 0.10);
+        double speechDb = percentile(sorted, 0.95);
+        if (speechDb < MIN_SPEECH_DBFS) {
+            throw new IllegalArgumentException(String.format("录音音量过低：语音电平约%.0fdBFS", speechDb));
+        }
+        double snrDb = speechDb - noiseDb;
+        if (snrDb < minSnrDb) {
+            throw new IllegalArgumentException(String.format("背景噪声过大：信噪比约%.0fdB，至少需要%.0fdB", snrDb, minSnrDb));
+        }
+        
+        List<TrainingAudio.Utterance> utterances = detectUtterances(energy, noiseDb, speechDb, frameSamples, decoded.length);
+        long detectedAt = System.nanoTime();
+        stageNanos.put("detect", detectedAt - analyzedAt);
+        stageNanos.put("total", detectedAt - started);
+        
+        short[] samples = decoded.length == decoded.samples.length ? decoded.samples : Arrays.copyOf(decoded.samples, decoded.length);
+        TrainingAudio audio = new TrainingAudio(sampleRate, samples, utterances, sourceBytes, decoded.sourceSeconds, snrDb, stageNanos);
+        if (audio.getSpeechSeconds() < minSpeechSeconds) {
+            throw new IllegalArgumentException(String.format("有效语音过短：%.1f秒，至少需要%.0f秒", audio.getSpeechSeconds(), minSpeechSeconds));
+        }
+        
+        log.info("训练音频预处理完成: {}秒/{}字节 -> {}条语句/{}秒/{}字节, 信噪比{}dB, 解码{}ms, 分析{}ms, 切分{}ms",
+                String.format("%.1f", decoded.sourceSeconds), sourceBytes, utterances.size(),
+                String.format("%.1f", audio.getSpeechSeconds()), audio.getEncodedBytes(), String.format("%.0f", snrDb),
+                stageNanos.get("decode") / 1_000_000, stageNanos.get("analyze") / 1_000_000, stageNanos.get("detect") / 1_000_000);
+        return audio;
+    }
+    
+    /**
+     * 解码、混合为单声道并重采样
+     * 
+     * 文件头带有时长时先检查时长，不合格的文件不必解码
+     * 
+     * @param input 音频内容
+     * @return 重采样后的音频
+     * @throws IOException 读取失败
+     */
+    private Decoded decode(InputStream input) throws IOException {
+        AudioInputStream source;
+        try {
+            source = AudioSystem.getAudioInputStream(input.markSupported() ? input : new BufferedInputStream(input));
+        } catch (UnsupportedAudioFileException e) {
+            throw new IllegalArgumentException("不支持的音频格式，请上传WAV、AIFF或AU文件");
+        }
+        
+        try (source) {
+            AudioFormat format = source.getFormat();
+            int inputRate = Math.round(format.getSampleRate());
+            int channels = format.getChannels();
+            if (inputRate < sampleRate) {
+                throw new IllegalArgumentException("采样率过低：" + inputRate + "Hz，至少需要" + sampleRate + "Hz");
+            }
+            if (source.getFrameLength() != AudioSystem.NOT_SPECIFIED) {
+                checkDuration(source.getFrameLength() / (double) format.getFrameRate());
+            }
+            
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, inputRate, 16, channels, channels * 2, inputRate, false);
+            AudioInputStream stream;
+            try {
+                stream = format.matches(pcm) ? source : AudioSystem.getAudioInputStream(pcm, source);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的音频编码: " + format.getEncoding());
+            }
+            
+            LinearResampler resampler = new LinearResampler(inputRate, sampleRate);
+            double[] resampled = new double[resampler.maxOutputs()];
+            long maxFrames = (long) (maxSeconds * inputRate);
+            short[] samples = new short[(int) Math.min(maxSeconds * sampleRate, sampleRate * 60.0) + resampled.length];
+            int length = 0;
+            long frames = 0;
+            long clipped = 0;
+            
+            int frameBytes = channels * 2;
+            byte[] bytes = new byte[frameBytes * 4096];
+            int leftover = 0;
+            int read;
+            while ((read = stream.read(bytes, leftover, bytes.length - leftover)) >= 0) {
+                int available = leftover + read;
+                int whole = available / frameBytes * frameBytes;
+                for (int position = 0; position < whole; position += frameBytes) {
+                    int sum = 0;
+                    boolean clip = false;
+                    for (int c = 0; c < channels; c++) {
+                        int value = (short) ((bytes[position + 2 * c] & 0xFF) | bytes[position + 2 * c + 1] << 8);
+                        sum += value;
+                        clip |= value >= CLIP_LEVEL || value <= -CLIP_LEVEL;
+                    }
+                    if (clip) {
+                        clipped++;
+                    }
+                    
+                    int count = resampler.process((double) sum / channels, resampled);
+                    if (length + count > samples.length) {
+                        samples = Arrays.copyOf(samples, samples.length + samples.length / 2 + count);
+                    }
+                    for (int k = 0; k < count; k++) {
+                        samples[length++] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(resampled[k])));
+                    }
+                }
+                frames += whole / frameBytes;
+                if (frames > maxFrames) {
+                    checkDuration(frames / (double) inputRate);
+                }
+                leftover = available - whole;
+                System.arraycopy(bytes, whole, bytes, 0, leftover);
+            }
+            
+            double sourceSeconds = frames / (double) inputRate;
+            checkDuration(sourceSeconds);
+            if (clipped > frames * maxClippingRatio) {
+                throw new IllegalArgumentException(String.format("录音削波严重：%.1f%%的样本达到满幅，请降低录音音量", 100.0 * clipped / frames));
+            }
+            return new Decoded(samples, length, sourceSeconds);
+        }
+    }
+    
+    /**
+     * 检查原始音频时长
+     * 
+     * @param seconds 时长（秒）
+     */
+    private void checkDuration(double seconds) {
+        if (seconds < minSeconds) {
+            throw new IllegalArgumentException(String.format("录音过短：%.1f秒，至少需要%.0f秒", seconds, minSeconds));
+        }
+        if (seconds > maxSeconds) {
+            throw new IllegalArgumentException(String.format("录音过长：超过%.0f秒", maxSeconds));
+        }
+    }
+    
+    /**
+     * 检测语音并切分语句
+     * 
+     * 能量高于噪声基底一定比例的帧视为语音；过短的孤立语音段丢弃，
+     * 间隔短于最短停顿的语音段合并为一个语句，首尾各保留少量静音
+     * 
+     * @param energy 每帧能量（dBFS）
+     * @param noiseDb 噪声基底
+     * @param speechDb 语音电平
+     * @param frameSamples 每帧样本数
+     * @param length 音频样本数
+     * @return 语句列表
+     */
+    private List<TrainingAudio.Utterance> detectUtterances(double[] energy, double noiseDb, double speechDb,
+                                                           int frameSamples, int length) {
+        double threshold = noiseDb + Math.max(6, (speechDb - noiseDb) * 0.35);
+        int minPauseFrames = Math.max(1, minPauseMillis / FRAME_MILLIS);
+        int maxFrames = (int) (maxUtteranceSeconds * 1000 / FRAME_MILLIS);
+        int minFrames = Math.max(1, minUtteranceMillis / FRAME_MILLIS);
+        
+        // 连续的语音帧，合并停顿过短的间隔
+        List<int[]> regions = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= energy.length; i++) {
+            boolean voiced = i < energy.length && energy[i] > threshold;
+            if (voiced && start < 0) {
+                start = i;
+            } else if (!voiced && start >= 0) {
+                if (i - start >= MIN_VOICED_FRAMES) {
+                    int[] last = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+                    if (last != null && start - last[1] < minPauseFrames) {
+                        last[1] = i;
+                    } else {
+                        regions.add(new int[]{start, i});
+                    }
+                }
+                start = -1;
+            }
+        }
+        
+        List<TrainingAudio.Utterance> utterances = new ArrayList<>();
+        int previousEnd = 0;
+        for (int r = 0; r < regions.size(); r++) {
+            int from = Math.max(previousEnd, regions.get(r)[0] - PAD_FRAMES);
+            int to = Math.min(r + 1 < regions.size() ? regions.get(r + 1)[0] : energy.length, regions.get(r)[1] + PAD_FRAMES);
+            previousEnd = to;
+            
+            // 过长的语句在最后三分之一范围内最安静的帧处切开
+            while (to - from > maxFrames) {
+                int cut = from + maxFrames;
+                for (int i = from + maxFrames * 2 / 3; i < from + maxFrames; i++) {
+                    if (energy[i] < energy[cut]) {
+                        cut = i;
+                    }
+                }
+                addUtterance(utterances, from, cut, minFrames, frameSamples, length);
+                from = cut;
+            }
+            addUtterance(utterances, from, to, minFrames, frameSamples, length);
+        }
+        return utterances;
+    }
+    
+    private static void addUtterance(List<TrainingAudio.Utterance> utterances, int fromFrame, int toFrame,
+                                     int minFrames, int frameSamples, int length) {
+        if (toFrame - fromFrame >= minFrames) {
+            int offset = fromFrame * frameSamples;
+            utterances.add(new TrainingAudio.Utterance(offset, Math.min(length, toFrame * frameSamples) - offset));
+        }
+    }
+    
+    private static double percentile(double[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return -100;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))];
+    }
+    
+    /**
+     * 解码结果
+     */
+    private static final class Decoded {
+        
+        private final short[] samples;
+        
+        private final int length;
+        
+        private final double sourceSeconds;
+        
+        Decoded(short[] samples, int length, double sourceSeconds) {
+            this.samples = samples;
+            this.length = length;
+            this.sourceSeconds = sourceSeconds;
+        }
+    }
+    
+    /**
+     * 并行计算各帧能量（去除直流分量后的均方值，dBFS）
+     */
+    private static final class FrameAnalysis extends RecursiveAction {
+        
+        /** 不再拆分的帧数 */
+        private static final int THRESHOLD = 512;
+        
+        private final short[] samples;
+        
+        private final int frameSamples;
+        
+        private final double[] energy;
+        
+        private final int from;
+        
+        private final int to;
+        
+        FrameAnalysis(short[] samples, int frameSamples, double[] energy, int from, int to) {
+            this.samples = samples;
+            this.frameSamples = frameSamples;
+            this.energy = energy;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FrameAnalysis(samples, frameSamples, energy, from, middle),
+                        new FrameAnalysis(samples, frameSamples, energy, middle, to));
+                return;
+            }
+            for (int frame = from; frame < to; frame++) {
+                int offset = frame * frameSamples;
+                double sum = 0;
+                double sumSquares = 0;
+                for (int i = offset; i < offset + frameSamples; i++) {
+                    sum += samples[i];
+                    sumSquares += (double) samples[i] * samples[i];
+                }
+                double mean = sum / frameSamples;
+                double variance = Math.max(0, sumSquares / frameSamples - mean * mean);
+                energy[frame] = 10 * Math.log10(variance / (32768.0 * 32768.0) + 1e-10);
+            }
+        }
+    }
+}
\ No newline at end of file
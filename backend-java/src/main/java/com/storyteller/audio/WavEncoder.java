@@ -0,0 +1,220 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * WAV编码器
+ * 把PCM流重采样后写为16位PCM或8位G.711 μ律的WAV文件
+ * 
+ * 功能：
+ * - 输出采样率与输入相同的16位PCM时，数据块直接写入文件通道，不做复制
+ * - 采样率不同时用LinearResampler重采样
+ * - μ律编码每个样本8位，8kHz单声道码率为64kbps，用作低码率变体
+ * - 文件头在结束时按实际长度回填
+ * 
+ * 变体名称为"pcm-采样率"或"mulaw-采样率"
+ */
+public class WavEncoder implements AudioEncoder {
+    
+    /** 编码输出缓冲区大小 */
+    private static final int OUTPUT_BUFFER_BYTES = 32 * 1024;
+    
+    /**
+     * 样本编码方式
+     */
+    public enum Codec {
+        PCM("pcm", WavFile.FORMAT_PCM, 16),
+        MULAW("mulaw", WavFile.FORMAT_MULAW, 8);
+        
+        private final String prefix;
+        
+        private final int formatTag;
+        
+        private final int bitsPerSample;
+        
+        Codec(String prefix, int formatTag, int bitsPerSample) {
+            this.prefix = prefix;
+            this.formatTag = formatTag;
+            this.bitsPerSample = bitsPerSample;
+        }
+    }
+    
+    private final Codec codec;
+    
+    private final int sampleRate;
+    
+    /**
+     * 创建编码器
+     * 
+     * @param codec 样本编码方式
+     * @param sampleRate 输出采样率
+     */
+    public WavEncoder(Codec codec, int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("无效的采样率: " + sampleRate);
+        }
+        this.codec = codec;
+        this.sampleRate = sampleRate;
+    }
+    
+    /**
+     * 按变体名称创建编码器
+     * 
+     * @param variant 变体名称，如"pcm-16000"、"mulaw-8000"
+     * @return 编码器，名称不是内置变体时返回null
+     */
+    public static WavEncoder forVariant(String variant) {
+        int dash = variant.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        for (Codec codec : Codec.values()) {
+            if (codec.prefix.equals(variant.substring(0, dash))) {
+                try {
+                    return new WavEncoder(codec, Integer.parseInt(variant.substring(dash + 1)));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public String name() {
+        return codec.prefix + "-" + sampleRate;
+    }
+    
+    @Override
+    public String extension() {
+        return "wav";
+    }
+    
+    @Override
+    public Session open(PcmFormat input, FileChannel output) throws IOException {
+        return new WavSession(input, output);
+    }
+    
+    /**
+     * 16位线性PCM转换为G.711 μ律
+     * 
+     * @param pcm 线性样本
+     * @return μ律编码
+     */
+    static byte toMulaw(int pcm) {
+        int sign = pcm < 0 ? 0x80 : 0;
+        int magnitude = Math.min(Math.abs(pcm), 32635) + 0x84;
+        int exponent = 31 - Integer.numberOfLeadingZeros(magnitude >> 7);
+        int mantissa = (magnitude >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | exponent << 4 | mantissa);
+    }
+    
+    /**
+     * 一个文件的编码会话
+     */
+    private final class WavSession implements Session {
+        
+        private final FileChannel output;
+        
+        private final int channels;
+        
+        /** 是否可以直接写入输入数据 */
+        private final boolean passthrough;
+        
+        /** 每个声道的重采样器，直接写入时不使用 */
+        private final LinearResampler[] resamplers;
+        
+        /** 每个声道本次产生的输出样本 */
+        private final double[][] resampled;
+        
+        /** 编码输出缓冲区，直接写入时不使用 */
+        private final ByteBuffer buffer;
+        
+        private long dataBytes;
+        
+        WavSession(PcmFormat input, FileChannel output) throws IOException {
+            this.output = output;
+            this.channels = input.getChannels();
+            this.passthrough = codec == Codec.PCM && sampleRate == input.getSampleRate();
+            this.resamplers = new LinearResampler[channels];
+            this.resampled = new double[channels][];
+            for (int c = 0; c < channels; c++) {
+                resamplers[c] = new LinearResampler(input.getSampleRate(), sampleRate);
+                resampled[c] = new double[resamplers[c].maxOutputs()];
+            }
+            this.buffer = passthrough ? null : ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            output.position(WavFile.headerSize(codec.formatTag));
+        }
+        
+        @Override
+        public void encode(ByteBuffer pcm) throws IOException {
+            if (passthrough) {
+                dataBytes += pcm.remaining();
+                while (pcm.hasRemaining()) {
+                    output.write(pcm);
+                }
+                return;
+            }
+            
+            while (pcm.hasRemaining()) {
+                // 各声道的重采样器状态同步推进，每帧产生的输出样本数相同
+                int count = 0;
+                for (int c = 0; c < channels; c++) {
+                    count = resamplers[c].process(pcm.getShort(), resampled[c]);
+                }
+                for (int k = 0; k < count; k++) {
+                    for (int c = 0; c < channels; c++) {
+                        write(resampled[c][k]);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * 写入一个输出样本
+         * 
+         * @param value 样本值
+         * @throws IOException 写入失败
+         */
+        private void write(double value) throws IOException {
+            if (buffer.remaining() < 2) {
+                drain();
+            }
+            int sample = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+            if (codec == Codec.PCM) {
+                buffer.putShort((short) sample);
+            } else {
+                buffer.put(toMulaw(sample));
+            }
+        }
+        
+        /**
+         * 把输出缓冲区写入文件
+         * 
+         * @throws IOException 写入失败
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            dataBytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        @Override
+        public void finish() throws IOException {
+            if (buffer != null) {
+                drain();
+            }
+            ByteBuffer header = WavFile.header(codec.formatTag, sampleRate, channels, codec.bitsPerSample, dataBytes);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += output.write(header, position);
+            }
+        }
+    }
+}
\ No newline at end of file
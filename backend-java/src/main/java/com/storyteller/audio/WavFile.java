@@ -0,0 +1,165 @@
+package com.storyteller.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * WAV文件头
+ * 解析RIFF/WAVE文件中的格式和数据区位置，以及生成编码输出的文件头
+ * 
+ * 只读取文件头和区块头，数据区由调用方通过通道流式读取
+ */
+public final class WavFile {
+    
+    /** fmt区块中的PCM格式标记 */
+    public static final int FORMAT_PCM = 1;
+    
+    /** fmt区块中的G.711 μ律格式标记 */
+    public static final int FORMAT_MULAW = 7;
+    
+    private final PcmFormat format;
+    
+    /** 数据区在文件中的起始位置 */
+    private final long dataOffset;
+    
+    /** 数据区字节数 */
+    private final long dataLength;
+    
+    private WavFile(PcmFormat format, long dataOffset, long dataLength) {
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+    
+    /**
+     * 解析16位PCM的WAV文件头
+     * 
+     * 数据区长度为0或超出文件末尾（流式写入未回填长度）时以文件实际长度为准
+     * 
+     * @param channel 文件通道
+     * @return 文件头信息
+     * @throws IOException 读取失败，或不是16位PCM的WAV文件
+     */
+    public static WavFile read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+        readFully(channel, header.limit(12), 0);
+        if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("不是WAV文件");
+        }
+        
+        PcmFormat format = null;
+        long position = 12;
+        while (position + 8 <= size) {
+            readFully(channel, header.clear().limit(8), position);
+            int id = header.getInt(0);
+            long chunkSize = Integer.toUnsignedLong(header.getInt(4));
+            long body = position + 8;
+            
+            if (id == fourCC("fmt ")) {
+                readFully(channel, header.clear().limit(16), body);
+                int formatTag = header.getShort(0) & 0xFFFF;
+                int channels = header.getShort(2) & 0xFFFF;
+                int sampleRate = header.getInt(4);
+                int bits = header.getShort(14) & 0xFFFF;
+                if (formatTag != FORMAT_PCM || bits != 16 || channels < 1 || sampleRate <= 0) {
+                    throw new IOException("只支持16位PCM的WAV文件: format=" + formatTag + ", bits=" + bits);
+                }
+                format = new PcmFormat(sampleRate, channels);
+            } else if (id == fourCC("data")) {
+                if (format == null) {
+                    throw new IOException("WAV文件缺少fmt区块");
+                }
+                long available = size - body;
+                long length = chunkSize == 0 || chunkSize > available ? available : chunkSize;
+                return new WavFile(format, body, length);
+            }
+            // 区块按偶数字节对齐
+            position = body + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("WAV文件缺少data区块");
+    }
+    
+    /**
+     * 文件头长度
+     * 
+     * @param formatTag 格式标记
+     * @return 数据区之前的字节数
+     */
+    public static int headerSize(int formatTag) {
+        // 非PCM格式的fmt区块带cbSize字段，并需要fact区块
+        return formatTag == FORMAT_PCM ? 44 : 58;
+    }
+    
+    /**
+     * 生成文件头
+     * 
+     * @param formatTag 格式标记
+     * @param sampleRate 采样率
+     * @param channels 声道数
+     * @param bitsPerSample 每个样本的位数
+     * @param dataBytes 数据区字节数
+     * @return 位置为0的文件头
+     */
+    public static ByteBuffer header(int formatTag, int sampleRate, int channels, int bitsPerSample, long dataBytes) {
+        int headerSize = headerSize(formatTag);
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(fourCC("RIFF")).putInt((int) Math.min(0xFFFFFFFFL, headerSize - 8 + dataBytes)).putInt(fourCC("WAVE"));
+        header.putInt(fourCC("fmt ")).putInt(formatTag == FORMAT_PCM ? 16 : 18)
+                .putShort((short) formatTag)
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) bitsPerSample);
+        if (formatTag != FORMAT_PCM) {
+            header.putShort((short) 0);
+            header.putInt(fourCC("fact")).putInt(4).putInt((int) (dataBytes / blockAlign));
+        }
+        header.putInt(fourCC("data")).putInt((int) Math.min(0xFFFFFFFFL, dataBytes));
+        return header.flip();
+    }
+    
+    public PcmFormat getFormat() {
+        return format;
+    }
+    
+    public long getDataOffset() {
+        return dataOffset;
+    }
+    
+    public long getDataLength() {
+        return dataLength;
+    }
+    
+    /**
+     * 从指定位置读满缓冲区
+     * 
+     * @param channel 文件通道
+     * @param buffer 缓冲区
+     * @param position 文件位置
+     * @throws IOException 文件提前结束
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("WAV文件头不完整");
+            }
+            position += read;
+        }
+    }
+    
+    /**
+     * 四字符区块标识按小端序读取时的整数值
+     * 
+     * @param id 区块标识
+     * @return 整数值
+     */
+    private static int fourCC(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+/**
+ * 线程池配置类
+ * 为后台任务提供独立的执行器
+ * 
+ * 功能：
+ * - 配置处理合成任务的执行器，支持取消时移除排队任务，排队任务按用户加权公平调度
+ * - 配置低优先级的预取执行器，避免与用户请求争抢CPU
+ * - 配置音频编码执行器，多个输出变体在多个核心上并行编码
+ * - 配置低优先级的检索索引执行器，启动后在后台重建全文索引
+ * - 应用关闭时中断仍在运行的任务
+ * - 启用定时任务（配额状态清理）
+ */
+package com.storyteller.config;
+
+import com.storyteller.quota.AffinityPolicy;
+import com.storyteller.quota.FairShareQueue;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@EnableScheduling
+public class ExecutorConfig {
+    
+    /**
+     * 配置合成执行器
+     * 
+     * 使用ThreadPoolExecutor而不是公共ForkJoinPool，
+     * 被取消的任务可以通过purge()从队列中清除。
+     * 工作队列按用户公平调度，只接受FairShareTask；
+     * 存在亲和策略（声音模型预热池）时优先把任务交给已加载对应模型的线程
+     * 
+     * @param threads 合成线程数
+     * @param maxSkip 亲和选择最多越过的虚拟时间
+     * @param affinity 亲和策略，响应式配置下不存在
+     * @return 合成执行器
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor synthesisExecutor(@Value("${storyteller.synthesis.threads:4}") int threads,
+            @Value("${storyteller.affinity.max-skip:4}") double maxSkip,
+            ObjectProvider<AffinityPolicy> affinity) {
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new FairShareQueue(affinity.getIfAvailable(), maxSkip),
+                namedThreadFactory("synthesis-", Thread.NORM_PRIORITY));
+    }
+    
+    /**
+     * 配置预取执行器
+     * 
+     * 线程使用最低优先级并设为守护线程，
+     * 推测性合成只在节点空闲时推进
+     * 
+     * @param threads 预取线程数
+     * @return 预取执行器
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService prefetchExecutor(@Value("${storyteller.prefetch.threads:2}") int threads) {
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("prefetch-", Thread.MIN_PRIORITY));
+    }
+    
+    /**
+     * 配置音频编码执行器
+     * 
+     * 编码任务都是短小的纯计算和文件写入，不会互相等待，
+     * 线程数默认与CPU核心数相同
+     * 
+     * @param threads 编码线程数，0表示CPU核心数
+     * @return 音频编码执行器
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService audioEncodeExecutor(@Value("${storyteller.audio.encode-threads:0}") int threads) {
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(count, count, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("audio-encode-", Thread.NORM_PRIORITY));
+    }
+    
+    /**
+     * 配置检索索引执行器
+     * 
+     * 只用一个最低优先级的线程，重建完成后线程空闲超时退出
+     * 
+     * @return 检索索引执行器
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService searchIndexExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("search-index-", Thread.MIN_PRIORITY));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * 创建带名称前缀的线程工厂
+     * 
+     * @param prefix 线程名前缀
+     * @param priority 线程优先级
+     * @return 线程工厂
+     */
+    static ThreadFactory namedThreadFactory(String prefix, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
\ No newline at end of file
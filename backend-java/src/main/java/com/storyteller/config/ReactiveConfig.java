@@ -0,0 +1,33 @@
+/**
+ * 响应式配置类
+ * 启用reactive配置文件时生效，应用以WebFlux运行
+ * 
+ * 功能：
+ * - 使用Reactor Netty作为服务器（类路径上同时存在Tomcat时默认会选择Tomcat）
+ * 
+ * 合成和声音接口由Reactive*Controller提供，任务和声音模型通过R2DBC访问；
+ * 表结构仍由JPA维护，章节列表和检索仍通过JPA查询，由ReactiveChapterController放到boundedElastic线程执行
+ */
+package com.storyteller.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+    
+    /**
+     * 配置Netty服务器
+     * 
+     * 端口等通用设置仍由server.*配置项决定
+     * 
+     * @return Netty服务器工厂
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
\ No newline at end of file
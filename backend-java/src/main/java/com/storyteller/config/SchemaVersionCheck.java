@@ -0,0 +1,150 @@
+/**
+ * 表结构版本检查
+ * 版本未变化时跳过Hibernate的表结构更新，缩短桌面版的冷启动时间
+ * 
+ * 功能：
+ * - 启动前比较标记文件中记录的版本指纹与当前指纹（构建版本、构建时间和数据库地址）
+ * - 指纹一致时把spring.jpa.hibernate.ddl-auto从update改为none，启动时不再读取和比较表结构
+ * - 指纹不同时照常更新表结构，应用启动完成后写入新的指纹
+ * 
+ * 只在配置了storyteller.desktop.schema-marker（桌面配置）时生效。
+ * 没有构建信息（例如在IDE中运行）时无法判断版本，总是更新表结构。
+ * 通过META-INF/spring.factories同时注册为环境后处理器和应用监听器
+ */
+package com.storyteller.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+
+public class SchemaVersionCheck implements EnvironmentPostProcessor, ApplicationListener<ApplicationReadyEvent>, Ordered {
+    
+    private static final Logger log = LoggerFactory.getLogger(SchemaVersionCheck.class);
+    
+    /** 标记文件路径的配置项 */
+    static final String MARKER_PROPERTY = "storyteller.desktop.schema-marker";
+    
+    /** 表结构已是当前版本时由后处理器设置 */
+    static final String CURRENT_PROPERTY = "storyteller.desktop.schema-current";
+    
+    private static final String DDL_AUTO_PROPERTY = "spring.jpa.hibernate.ddl-auto";
+    
+    /** 由Spring Boot插件的bootBuildInfo任务生成 */
+    private static final String BUILD_INFO = "META-INF/build-info.properties";
+    
+    /**
+     * 在配置文件加载之后执行，才能读到各个配置中的设置
+     * 
+     * @return 最低优先级
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+    
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String marker = environment.getProperty(MARKER_PROPERTY);
+        String ddlAuto = environment.getProperty(DDL_AUTO_PROPERTY, "update");
+        if (marker == null || marker.isBlank() || !"update".equals(ddlAuto)) {
+            return;
+        }
+        String fingerprint = fingerprint(environment);
+        if (fingerprint != null && fingerprint.equals(readMarker(Paths.get(marker)))) {
+            environment.getPropertySources().addFirst(new MapPropertySource("schemaVersionCheck",
+                    Map.of(DDL_AUTO_PROPERTY, "none", CURRENT_PROPERTY, "true")));
+        }
+    }
+    
+    /**
+     * 应用启动完成后记录当前指纹
+     * 
+     * 启动成功说明表结构已按当前版本更新完毕
+     * 
+     * @param event 应用就绪事件
+     */
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        String marker = environment.getProperty(MARKER_PROPERTY);
+        if (marker == null || marker.isBlank()) {
+            return;
+        }
+        if (environment.getProperty(CURRENT_PROPERTY, Boolean.class, false)) {
+            log.debug("表结构版本未变化，已跳过表结构更新");
+            return;
+        }
+        if (!"update".equals(environment.getProperty(DDL_AUTO_PROPERTY, "update"))) {
+            return;
+        }
+        String fingerprint = fingerprint(environment);
+        if (fingerprint == null) {
+            return;
+        }
+        try {
+            Path path = Paths.get(marker);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, fingerprint, StandardCharsets.UTF_8);
+            log.info("表结构已更新，记录版本指纹到{}", path);
+        } catch (IOException e) {
+            // 写入失败只影响下次启动的速度
+            log.warn("写入表结构版本标记失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 计算当前的版本指纹
+     * 
+     * 构建时间随每次构建变化，同一版本号下修改了实体类也会重新更新表结构
+     * 
+     * @param environment 应用环境
+     * @return 版本指纹，没有构建信息时返回null
+     */
+    private static String fingerprint(Environment environment) {
+        ClassPathResource resource = new ClassPathResource(BUILD_INFO);
+        if (!resource.exists()) {
+            return null;
+        }
+        Properties build = new Properties();
+        try (InputStream in = resource.getInputStream()) {
+            build.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return build.getProperty("build.version") + "|" + build.getProperty("build.time")
+                + "|" + environment.getProperty("spring.datasource.url");
+    }
+    
+    /**
+     * 读取标记文件中记录的指纹
+     * 
+     * @param path 标记文件路径
+     * @return 记录的指纹，文件不存在或无法读取时返回null
+     */
+    private static String readMarker(Path path) {
+        try {
+            return Files.isRegularFile(path) ? Files.readString(path, StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
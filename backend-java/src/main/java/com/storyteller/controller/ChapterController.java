@@ -0,0 +1,90 @@
+package com.storyteller.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.service.ChapterSearchService;
+
+/**
+ * 章节控制器
+ * 处理章节列表和检索相关的HTTP请求
+ * 
+ * 功能：
+ * - 分页列出章节，可按标题过滤
+ * - 按标题和正文全文检索章节
+ * - 分页返回检索结果
+ * 
+ * 列表和检索结果只包含章节摘要，不读取章节正文。
+ * 查询是阻塞的JPA调用，响应式配置下由ReactiveChapterController代替
+ */
+@RestController
+@RequestMapping("/chapters")
+@Profile("!reactive")
+public class ChapterController {
+    
+    /** 每页最大章节数 */
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    @Autowired
+    private ChapterRepository chapterRepository;
+    
+    @Autowired
+    private ChapterSearchService chapterSearchService;
+    
+    /**
+     * 列出章节
+     * 
+     * @param title 标题关键词，省略时列出全部章节
+     * @param page 页码，从0开始
+     * @param size 每页章节数
+     * @return 按章节ID升序排列的章节摘要
+     */
+    @GetMapping
+    public ResponseEntity<Page<ChapterSummary>> list(
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        
+        if (page < 0 || size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        PageRequest pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE), Sort.by("chapterId"));
+        Page<ChapterSummary> chapters = title == null || title.isEmpty()
+                ? chapterRepository.findSummariesBy(pageable)
+                : chapterRepository.findSummaryByTitleContaining(title, pageable);
+        return ResponseEntity.ok(chapters);
+    }
+    
+    /**
+     * 检索章节
+     * 
+     * 查询文本中的所有词同时出现在标题或正文中的章节会被返回
+     * 
+     * @param q 查询文本
+     * @param page 页码，从0开始
+     * @param size 每页章节数
+     * @return 按章节ID升序排列的匹配章节摘要
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Page<ChapterSummary>> search(
+            @RequestParam("q") String q,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        
+        if (page < 0 || size < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        PageRequest pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(chapterSearchService.search(q, pageable));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.storyteller.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.storyteller.profiling.ProfilingService;
+
+/**
+ * 性能剖析控制器
+ * 管理JFR录制的HTTP接口
+ * 
+ * 功能：
+ * - 开始有时长和大小上限的录制
+ * - 停止录制
+ * - 查询常驻录制和按需录制的状态
+ * - 导出录制为.jfr文件，可用JDK Mission Control或jfr命令查看
+ * 
+ * 接口没有鉴权，storyteller.profiling.admin-enabled为false时所有请求返回404
+ */
+@RestController
+@RequestMapping("/admin/profiling")
+@Profile("!reactive")
+public class ProfilingController {
+    
+    @Autowired
+    private ProfilingService profilingService;
+    
+    @Value("${storyteller.profiling.admin-enabled:false}")
+    private boolean adminEnabled;
+    
+    /**
+     * 开始录制
+     * 
+     * @param seconds 录制时长（秒），到时自动停止
+     * @param maxSizeMb 数据上限（MB），不指定时使用配置的上限
+     * @return 录制状态；参数超出范围时返回400，已有录制进行中时返回409
+     */
+    @PostMapping("/start")
+    public ResponseEntity<?> start(@RequestParam(defaultValue = "60") long seconds,
+                                   @RequestParam(required = false) Long maxSizeMb) {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(profilingService.start(Duration.ofSeconds(seconds), maxSizeMb));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("开始录制失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 停止录制
+     * 
+     * @return 录制状态；没有进行中的录制时返回409
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<?> stop() {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(profilingService.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询录制状态
+     * 
+     * @return 常驻录制和按需录制的状态
+     */
+    @GetMapping
+    public ResponseEntity<ProfilingService.Status> status() {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(profilingService.status());
+    }
+    
+    /**
+     * 导出录制
+     * 
+     * 有按需录制时导出按需录制，否则导出常驻录制的最近数据。
+     * 临时文件在响应写完后删除
+     * 
+     * @return .jfr文件；没有可导出的录制时返回409
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<?> dump() {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file;
+        try {
+            file = profilingService.dump();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("导出录制失败: " + e.getMessage());
+        }
+        
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(body);
+    }
+}
\ No newline at end of file
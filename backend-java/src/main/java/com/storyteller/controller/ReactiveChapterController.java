@@ -0,0 +1,94 @@
+package com.storyteller.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.service.ChapterSearchService;
+
+/**
+ * 响应式章节控制器
+ * 响应式配置下代替ChapterController，接口路径和响应格式保持一致
+ * 
+ * 功能：
+ * - 分页列出章节，可按标题过滤
+ * - 按标题和正文全文检索章节
+ * 
+ * 章节表仍通过JPA访问，查询在boundedElastic线程上执行，不阻塞Netty事件循环线程
+ */
+@RestController
+@RequestMapping("/chapters")
+@Profile("reactive")
+public class ReactiveChapterController {
+    
+    /** 每页最大章节数 */
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    @Autowired
+    private ChapterRepository chapterRepository;
+    
+    @Autowired
+    private ChapterSearchService chapterSearchService;
+    
+    /**
+     * 列出章节
+     * 
+     * @param title 标题关键词，省略时列出全部章节
+     * @param page 页码，从0开始
+     * @param size 每页章节数
+     * @return 按章节ID升序排列的章节摘要
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Page<ChapterSummary>>> list(
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        
+        if (page < 0 || size < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        PageRequest pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE), Sort.by("chapterId"));
+        return Mono.fromCallable(() -> title == null || title.isEmpty()
+                        ? chapterRepository.findSummariesBy(pageable)
+                        : chapterRepository.findSummaryByTitleContaining(title, pageable))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+    
+    /**
+     * 检索章节
+     * 
+     * 查询文本中的所有词同时出现在标题或正文中的章节会被返回
+     * 
+     * @param q 查询文本
+     * @param page 页码，从0开始
+     * @param size 每页章节数
+     * @return 按章节ID升序排列的匹配章节摘要
+     */
+    @GetMapping("/search")
+    public Mono<ResponseEntity<Page<ChapterSummary>>> search(
+            @RequestParam("q") String q,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        
+        if (page < 0 || size < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        PageRequest pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE));
+        // 检索结果需要按章节ID回表读取摘要，同样是阻塞的JPA查询
+        return Mono.fromCallable(() -> chapterSearchService.search(q, pageable))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+}
\ No newline at end of file
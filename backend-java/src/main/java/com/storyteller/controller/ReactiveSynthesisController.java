@@ -0,0 +1,110 @@
+package com.storyteller.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.storyteller.controller.SynthesisController.SynthesisRequest;
+import com.storyteller.entity.reactive.SynthesisTaskRecord;
+import com.storyteller.quota.QuotaExceededException;
+import com.storyteller.quota.QuotaService;
+import com.storyteller.service.ReactiveSynthesisService;
+import com.storyteller.service.WebSocketService.ProgressMessage;
+
+/**
+ * 响应式语音合成控制器
+ * 响应式配置下代替SynthesisController，接口路径和响应格式保持一致
+ * 
+ * 功能：
+ * - 创建语音合成任务，超出用户配额时返回429和Retry-After
+ * - 查询合成任务状态
+ * - 取消合成任务
+ * - 以Server-Sent Events推送任务进度（代替WebSocket）
+ */
+@RestController
+@RequestMapping("/synthesis")
+@Profile("reactive")
+public class ReactiveSynthesisController {
+    
+    @Autowired
+    private ReactiveSynthesisService synthesisService;
+    
+    @Autowired
+    private QuotaService quotaService;
+    
+    /**
+     * 请求语音合成
+     * 
+     * @param request 合成请求，包含用户ID、章节ID、声音模型ID和文本内容
+     * @return 合成任务ID，或错误信息；超出配额时返回429
+     */
+    @PostMapping("/request")
+    public Mono<ResponseEntity<String>> requestSynthesis(@RequestBody SynthesisRequest request) {
+        return Mono.fromRunnable(() -> quotaService.checkSynthesis(request.getUserId()))
+                .then(Mono.defer(() -> synthesisService.createSynthesisTask(
+                        request.getUserId(),
+                        request.getChapterId(),
+                        request.getVoiceModelId(),
+                        request.getText())))
+                .map(ResponseEntity::ok)
+                .onErrorResume(QuotaExceededException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .body(e.getMessage())))
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body("创建合成任务失败: " + e.getMessage())));
+    }
+    
+    /**
+     * 获取任务状态
+     * 
+     * @param taskId 合成任务ID
+     * @return 合成任务信息，或404未找到
+     */
+    @GetMapping("/task/{taskId}")
+    public Mono<ResponseEntity<SynthesisTaskRecord>> getTaskStatus(@PathVariable String taskId) {
+        return synthesisService.getTaskStatus(taskId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 订阅任务进度
+     * 
+     * 消息内容与WebSocket推送的进度消息相同，任务结束后事件流关闭
+     * 
+     * @param taskId 合成任务ID
+     * @return 进度事件流
+     */
+    @GetMapping(value = "/task/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ProgressMessage>> streamProgress(@PathVariable String taskId) {
+        return synthesisService.streamProgress(taskId)
+                .map(message -> ServerSentEvent.builder(message).event(message.getStatus()).build());
+    }
+    
+    /**
+     * 取消合成任务
+     * 
+     * @param taskId 合成任务ID
+     * @return 取消后的任务信息；任务已结束时返回409，不存在时返回404
+     */
+    @DeleteMapping("/task/{taskId}")
+    public Mono<ResponseEntity<SynthesisTaskRecord>> cancelTask(@PathVariable String taskId) {
+        return synthesisService.cancelTask(taskId)
+                .map(task -> "CANCELLED".equals(task.getStatus())
+                        ? ResponseEntity.ok(task)
+                        : ResponseEntity.status(HttpStatus.CONFLICT).body(task))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.storyteller.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.storyteller.entity.reactive.VoiceModelRecord;
+import com.storyteller.quota.QuotaExceededException;
+import com.storyteller.quota.QuotaService;
+import com.storyteller.service.ReactiveVoiceService;
+
+/**
+ * 响应式声音控制器
+ * 响应式配置下代替VoiceController，接口路径和响应格式保持一致
+ * 
+ * 功能：
+ * - 训练粤语声音模型，超出用户配额时返回429和Retry-After
+ * - 获取用户的声音模型列表
+ */
+@RestController
+@RequestMapping("/voice")
+@Profile("reactive")
+public class ReactiveVoiceController {
+    
+    @Autowired
+    private ReactiveVoiceService voiceService;
+    
+    @Autowired
+    private QuotaService quotaService;
+    
+    /**
+     * 训练声音模型
+     * 
+     * @param userId 用户ID
+     * @param dialect 方言类型（如"cantonese"）
+     * @param audioFile 音频文件（支持WAV、AIFF、AU格式）
+     * @return 训练完成的声音模型ID，或错误信息；超出配额时返回429
+     */
+    @PostMapping("/train")
+    public Mono<ResponseEntity<String>> trainVoiceModel(
+            @RequestPart("userId") String userId,
+            @RequestPart("dialect") String dialect,
+            @RequestPart("audio") FilePart audioFile) {
+        
+        // 表单字段以字符串接收，用户ID格式错误时同样返回400
+        return Mono.fromCallable(() -> Long.valueOf(userId))
+                .doOnNext(quotaService::checkTraining)
+                .flatMap(id -> voiceService.trainVoiceModel(id, dialect, audioFile))
+                .map(ResponseEntity::ok)
+                .onErrorResume(QuotaExceededException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .body(e.getMessage())))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().body("处理音频文件失败: " + e.getMessage())))
+                .onErrorResume(e -> Mono.just(ResponseEntity.internalServerError().body("训练失败: " + e.getMessage())));
+    }
+    
+    /**
+     * 获取用户的声音模型列表
+     * 
+     * @param userId 用户ID
+     * @return 用户的声音模型列表
+     */
+    @GetMapping("/models/{userId}")
+    public Flux<VoiceModelRecord> getUserVoiceModels(@PathVariable Long userId) {
+        return voiceService.getUserVoiceModels(userId);
+    }
+}
\ No newline at end of file
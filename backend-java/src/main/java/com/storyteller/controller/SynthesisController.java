@@ -1,44 +1,75 @@
 package com.storyteller.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.TimeUnit;
 
 import com.storyteller.entity.SynthesisTask;
+import com.storyteller.quota.QuotaExceededException;
+import com.storyteller.quota.QuotaService;
+import com.storyteller.service.PrefetchService;
 import com.storyteller.service.SynthesisService;
+import com.storyteller.service.VoiceModelPool;
 
 /**
  * 语音合成控制器
  * 处理文本到语音合成的HTTP请求
  * 
  * 功能：
- * - 创建语音合成任务
- * - 查询合成任务状态
+ * - 创建语音合成任务，超出用户配额时返回429和Retry-After
+ * - 查询合成任务状态，支持ETag条件请求和长轮询
+ * - 取消合成任务
  * - 处理粤语章节文本合成
+ * - 停止收听时取消后续章节的预取
+ * - 查询声音模型预热和亲和调度的统计信息
+ * 
+ * 响应式配置（reactive）下由ReactiveSynthesisController代替
  */
 @RestController
 @RequestMapping("/synthesis")
+@Profile("!reactive")
 public class SynthesisController {
     
+    /** 长轮询的最长等待时间（秒） */
+    private static final long MAX_WAIT_SECONDS = 60;
+    
     @Autowired
     private SynthesisService synthesisService;
     
+    @Autowired
+    private PrefetchService prefetchService;
+    
+    @Autowired
+    private QuotaService quotaService;
+    
     /**
      * 请求语音合成
      * 
      * 接收用户的合成请求，创建新的语音合成任务
      * 
      * @param request 合成请求，包含用户ID、章节ID、声音模型ID和文本内容
-     * @return 合成任务ID，或错误信息
+     * @return 合成任务ID，或错误信息；超出配额时返回429
      */
     @PostMapping("/request")
     public ResponseEntity<String> requestSynthesis(@RequestBody SynthesisRequest request) {
         try {
+            quotaService.checkSynthesis(request.getUserId());
+            
             // 调用合成服务创建新的合成任务
             String taskId = synthesisService.createSynthesisTask(
                 request.getUserId(),
@@ -47,6 +78,10 @@ public class SynthesisController {
                 request.getText()
             );
             return ResponseEntity.ok(taskId);
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("创建合成任务失败: " + e.getMessage());
         }
@@ -55,7 +90,8 @@ public class SynthesisController {
     /**
      * 获取任务状态
      * 
-     * 查询指定合成任务的当前状态和结果
+     * 查询指定合成任务的当前状态和结果。
+     * 响应带有基于任务版本号的ETag，请求的If-None-Match与之一致时返回304
      * 
      * @param taskId 合成任务ID
      * @return 合成任务信息，或404未找到
@@ -64,11 +100,149 @@ public class SynthesisController {
     public ResponseEntity<SynthesisTask> getTaskStatus(@PathVariable String taskId) {
         SynthesisTask task = synthesisService.getTaskStatus(taskId);
         if (task != null) {
-            return ResponseEntity.ok(task);
+            return statusResponse(task);
         }
         return ResponseEntity.notFound().build();
     }
     
+    /**
+     * 长轮询任务状态
+     * 
+     * 请求的If-None-Match与当前版本一致且任务未结束时，请求被挂起（不占用线程），
+     * 直到任务状态变化或等待超时；超时后返回304。其他情况立即返回，与普通查询相同
+     * 
+     * @param taskId 合成任务ID
+     * @param waitSeconds 最长等待时间（秒），上限60秒
+     * @param ifNoneMatch 上次响应的ETag
+     * @return 合成任务信息，状态未变化时为304，不存在时为404
+     */
+    @GetMapping(value = "/task/{taskId}", params = "wait")
+    public DeferredResult<ResponseEntity<SynthesisTask>> waitTaskStatus(
+            @PathVariable String taskId,
+            @RequestParam("wait") long waitSeconds,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Math.min(waitSeconds, MAX_WAIT_SECONDS)));
+        DeferredResult<ResponseEntity<SynthesisTask>> result = new DeferredResult<>(timeoutMillis);
+        
+        SynthesisTask task = synthesisService.getTaskStatus(taskId);
+        if (task == null) {
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        Long knownVersion = parseVersion(ifNoneMatch);
+        if (knownVersion == null || !knownVersion.equals(task.getVersion()) || isFinished(task)) {
+            result.setResult(statusResponse(task));
+            return result;
+        }
+        
+        // 超时时ETag未变化，条件请求处理会把响应转换为304
+        result.onTimeout(() -> result.setResult(statusResponse(synthesisService.getTaskStatus(taskId))));
+        Runnable cancelWait = synthesisService.awaitStatusChange(taskId, knownVersion,
+                changed -> result.setResult(statusResponse(changed)));
+        if (cancelWait == null) {
+            result.setResult(statusResponse(synthesisService.getTaskStatus(taskId)));
+        } else {
+            result.onCompletion(cancelWait);
+        }
+        return result;
+    }
+    
+    /**
+     * 构造带ETag的任务状态响应
+     * 
+     * @param task 合成任务
+     * @return 任务状态响应
+     */
+    private static ResponseEntity<SynthesisTask> statusResponse(SynthesisTask task) {
+        return ResponseEntity.ok()
+                .eTag("\"" + task.getVersion() + "\"")
+                .cacheControl(CacheControl.noCache())
+                .body(task);
+    }
+    
+    /**
+     * 从If-None-Match中解析任务版本号
+     * 
+     * @param ifNoneMatch If-None-Match请求头，可能包含多个ETag，只取第一个
+     * @return 版本号，格式不符时返回null
+     */
+    private static Long parseVersion(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        String tag = ifNoneMatch.split(",")[0].trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 判断任务是否已结束，结束的任务状态不会再变化
+     * 
+     * @param task 合成任务
+     * @return 已完成、失败或已取消时返回true
+     */
+    private static boolean isFinished(SynthesisTask task) {
+        return "COMPLETED".equals(task.getStatus())
+                || "FAILED".equals(task.getStatus())
+                || "CANCELLED".equals(task.getStatus());
+    }
+    
+    /**
+     * 取消合成任务
+     * 
+     * 中断进行中的合成并释放执行器资源，任务状态设为CANCELLED
+     * 
+     * @param taskId 合成任务ID
+     * @return 取消后的任务信息；任务已结束时返回409，不存在时返回404
+     */
+    @DeleteMapping("/task/{taskId}")
+    public ResponseEntity<SynthesisTask> cancelTask(@PathVariable String taskId) {
+        SynthesisTask task = synthesisService.cancelTask(taskId);
+        if (task == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!"CANCELLED".equals(task.getStatus())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(task);
+        }
+        return ResponseEntity.ok(task);
+    }
+    
+    /**
+     * 停止预取
+     * 
+     * 用户停止收听时调用，取消该用户所有进行中的后续章节预取
+     * 
+     * @param userId 用户ID
+     * @return 204无内容
+     */
+    @DeleteMapping("/prefetch/{userId}")
+    public ResponseEntity<Void> stopPrefetch(@PathVariable Long userId) {
+        prefetchService.cancel(userId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    /**
+     * 查询亲和调度统计
+     * 
+     * 包括模型加载次数、命中率、按亲和选出的任务数以及各合成线程已加载的模型
+     * 
+     * @return 统计信息
+     */
+    @GetMapping("/affinity")
+    public ResponseEntity<VoiceModelPool.Stats> getAffinityStats() {
+        return ResponseEntity.ok(synthesisService.getAffinityStats());
+    }
+    
     /**
      * 合成请求内部类
      * 用于接收HTTP请求体的JSON数据
@@ -81,7 +255,7 @@ public class SynthesisController {
         private Long chapterId;
         /** 声音模型ID */
         private String voiceModelId;
-        /** 要合成的文本内容 */
+        /** 要合成的文本内容，省略时合成数据库中的章节正文 */
         private String text;
         
         // Getters and setters
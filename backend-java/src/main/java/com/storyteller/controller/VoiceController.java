@@ -3,6 +3,9 @@ package com.storyteller.controller;
 import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,6 +15,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.storyteller.quota.QuotaExceededException;
+import com.storyteller.quota.QuotaService;
 import com.storyteller.service.VoiceService;
 
 /**
@@ -19,17 +24,23 @@ import com.storyteller.service.VoiceService;
  * 处理与声音模型相关的HTTP请求
  * 
  * 功能：
- * - 训练粤语声音模型
+ * - 训练粤语声音模型，超出用户配额时返回429和Retry-After
  * - 获取用户的声音模型列表
  * - 处理音频文件上传
+ * 
+ * 响应式配置（reactive）下由ReactiveVoiceController代替
  */
 @RestController
 @RequestMapping("/voice")
+@Profile("!reactive")
 public class VoiceController {
     
     @Autowired
     private VoiceService voiceService;
     
+    @Autowired
+    private QuotaService quotaService;
+    
     /**
      * 训练声音模型
      * 
@@ -37,8 +48,8 @@ public class VoiceController {
      * 
      * @param userId 用户ID
      * @param dialect 方言类型（如"cantonese"）
-     * @param audioFile 音频文件（支持WAV格式）
-     * @return 训练完成的声音模型ID，或错误信息
+     * @param audioFile 音频文件（支持WAV、AIFF、AU格式）
+     * @return 训练完成的声音模型ID，或错误信息；超出配额时返回429
      */
     @PostMapping("/train")
     public ResponseEntity<String> trainVoiceModel(
@@ -47,10 +58,16 @@ public class VoiceController {
             @RequestParam("audio") MultipartFile audioFile) {
         
         try {
+            quotaService.checkTraining(userId);
+            
             // 调用声音服务进行模型训练
             String modelId = voiceService.trainVoiceModel(userId, dialect, audioFile);
             return ResponseEntity.ok(modelId);
-        } catch (IOException e) {
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        } catch (IOException | IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("处理音频文件失败: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("训练失败: " + e.getMessage());
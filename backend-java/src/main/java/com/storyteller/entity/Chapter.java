@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 /**
@@ -14,9 +16,12 @@ import java.time.LocalDateTime;
  * - 存储章节内容和标题
  * - 跟踪音频合成状态
  * - 记录创建和更新时间
+ * - 变更时同步全文检索索引
+ * - 正文延迟加载，列表查询请使用ChapterSummary投影
  */
 @Entity
 @Table(name = "chapters")
+@EntityListeners(ChapterIndexListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,8 +40,16 @@ public class Chapter {
     @Column(name = "title", nullable = false)
     private String title;
     
-    /** 章节文本内容（长文本） */
+    /**
+     * 章节文本内容（长文本）
+     * 
+     * 延迟加载（依赖Hibernate字节码增强），首次访问时才读取；
+     * 不参与toString和equals，避免打印日志或比较时意外加载整章正文
+     */
+    @Basic(fetch = FetchType.LAZY)
     @Column(name = "text", nullable = false, columnDefinition = "TEXT")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private String text;
     
     /** 合成音频的URL地址（如果有的话） */
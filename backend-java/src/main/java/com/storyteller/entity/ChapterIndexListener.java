@@ -0,0 +1,86 @@
+package com.storyteller.entity;
+
+import com.storyteller.repository.ChapterTextRepository;
+import com.storyteller.service.ChapterSearchService;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 章节索引监听器
+ * 在章节持久化、更新和删除后同步全文检索索引
+ * 
+ * 功能：
+ * - 章节新增或更新后重新索引标题和正文，正文未加载时提交后再从数据库读取
+ * - 章节删除后从索引中移除
+ * - 处于事务中时推迟到事务提交后执行，回滚的修改不会进入索引
+ * 
+ * 由Hibernate通过Spring的Bean容器创建，检索服务延迟注入以避免
+ * 与EntityManagerFactory之间的循环依赖
+ */
+public class ChapterIndexListener {
+    
+    @Autowired
+    @Lazy
+    private ChapterSearchService chapterSearchService;
+    
+    @Autowired
+    @Lazy
+    private ChapterTextRepository chapterTextRepository;
+    
+    /**
+     * 章节新增或更新后重新索引
+     * 
+     * @param chapter 章节实体
+     */
+    @PostPersist
+    @PostUpdate
+    public void onSave(Chapter chapter) {
+        // 在会话仍打开时读取字段，提交后实体可能已脱管
+        Long chapterKey = chapter.getId();
+        Long chapterId = chapter.getChapterId();
+        String title = chapter.getTitle();
+        // 正文是延迟加载的，只修改了标题时不在刷新过程中触发加载
+        String text = Persistence.getPersistenceUtil().isLoaded(chapter, "text") ? chapter.getText() : null;
+        afterCommit(() -> {
+            String indexedText = text != null ? text : chapterTextRepository.readText(chapterId);
+            if (indexedText != null) {
+                chapterSearchService.index(chapterKey, chapterId, title, indexedText);
+            }
+        });
+    }
+    
+    /**
+     * 章节删除后从索引中移除
+     * 
+     * @param chapter 章节实体
+     */
+    @PostRemove
+    public void onRemove(Chapter chapter) {
+        Long chapterKey = chapter.getId();
+        afterCommit(() -> chapterSearchService.remove(chapterKey));
+    }
+    
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * 
+     * @param action 要执行的操作
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 语音合成任务实体类
@@ -12,9 +13,10 @@ import java.time.LocalDateTime;
  * 
  * 功能：
  * - 管理语音合成任务的生命周期
- * - 跟踪任务状态（待处理、进行中、完成、失败）
+ * - 跟踪任务状态（待处理、进行中、完成、失败、已取消）
  * - 存储合成结果或错误信息
  * - 记录任务创建和完成时间
+ * - 每次保存递增版本号，用于乐观锁和HTTP条件请求（ETag）
  */
 @Entity
 @Table(name = "synthesis_tasks")
@@ -23,6 +25,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class SynthesisTask {
     
+    /** 最近一次分配的任务序号，用于生成不重复的任务ID */
+    private static final AtomicLong LAST_SEQUENCE = new AtomicLong();
+    
     /** 主键ID，自动生成 */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -64,6 +69,11 @@ public class SynthesisTask {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
     
+    /** 版本号，每次保存递增；已有记录升级后从0开始 */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
+    
     /**
      * 实体持久化前的回调方法
      * 自动生成任务ID和创建时间
@@ -71,6 +81,19 @@ public class SynthesisTask {
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
-        taskId = "task_" + System.currentTimeMillis();
+        taskId = generateTaskId();
+    }
+    
+    /**
+     * 生成任务ID
+     * 
+     * 序号取当前毫秒时间戳，同一毫秒内的多个任务依次加一，
+     * 保证同一进程内并发创建的任务ID不会重复（task_id列有唯一约束）
+     * 
+     * @return 新的任务ID
+     */
+    public static String generateTaskId() {
+        long now = System.currentTimeMillis();
+        return "task_" + LAST_SEQUENCE.accumulateAndGet(now, (last, current) -> Math.max(last + 1, current));
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.storyteller.entity.reactive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * 语音合成任务记录（响应式）
+ * 与SynthesisTask映射同一张表，供响应式配置下的R2DBC仓库使用
+ * 
+ * 功能：
+ * - 以非阻塞方式读写合成任务
+ * - 字段和JSON结构与SynthesisTask保持一致
+ * 
+ * 表结构仍由JPA实体维护；R2DBC没有持久化回调，
+ * 任务ID和创建时间由调用方在保存前设置
+ */
+@Table("synthesis_tasks")
+@Data
+@NoArgsConstructor
+public class SynthesisTaskRecord {
+    
+    /** 主键ID，自动生成 */
+    @Id
+    private Long id;
+    
+    /** 任务ID，业务逻辑中的唯一标识符 */
+    @Column("task_id")
+    private String taskId;
+    
+    /** 用户ID，关联到用户 */
+    @Column("user_id")
+    private Long userId;
+    
+    /** 章节ID，要合成的章节 */
+    @Column("chapter_id")
+    private Long chapterId;
+    
+    /** 声音模型ID，用于合成的个性化声音 */
+    @Column("voice_model_id")
+    private String voiceModelId;
+    
+    /** 任务状态 */
+    @Column("status")
+    private String status = "PENDING";
+    
+    /** 合成音频的URL地址（任务成功时） */
+    @Column("audio_url")
+    private String audioUrl;
+    
+    /** 错误信息（任务失败时） */
+    @Column("error_message")
+    private String errorMessage;
+    
+    /** 任务创建时间 */
+    @Column("created_at")
+    private LocalDateTime createdAt;
+    
+    /** 任务完成时间 */
+    @Column("completed_at")
+    private LocalDateTime completedAt;
+    
+    /** 版本号，与SynthesisTask共用同一列，保存时递增 */
+    @Version
+    @Column("version")
+    private Long version;
+}
\ No newline at end of file
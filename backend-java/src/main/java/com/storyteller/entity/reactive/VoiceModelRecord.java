@@ -0,0 +1,47 @@
+package com.storyteller.entity.reactive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * 声音模型记录（响应式）
+ * 与VoiceModel映射同一张表，供响应式配置下的R2DBC仓库使用
+ * 
+ * 功能：
+ * - 以非阻塞方式读写声音模型
+ * - 字段和JSON结构与VoiceModel保持一致
+ */
+@Table("voice_models")
+@Data
+@NoArgsConstructor
+public class VoiceModelRecord {
+    
+    /** 主键ID，自动生成 */
+    @Id
+    private Long id;
+    
+    /** 用户ID，关联到用户表 */
+    @Column("user_id")
+    private Long userId;
+    
+    /** 声音模型唯一标识符 */
+    @Column("model_id")
+    private String modelId;
+    
+    /** 方言类型，默认为"cantonese"（粤语） */
+    @Column("dialect")
+    private String dialect = "cantonese";
+    
+    /** 模型训练完成时间 */
+    @Column("trained_at")
+    private LocalDateTime trainedAt;
+    
+    /** 模型状态，默认为"active"（活跃） */
+    @Column("status")
+    private String status = "active";
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 声音模型准备事件
+ * 合成前确保模型已加载到当前线程的耗时，loaded为true时表示实际加载了模型
+ */
+@Name("com.storyteller.synthesis.ModelLoad")
+@Label("Voice Model Load")
+@Description("Making the voice model warm on the synthesis worker")
+public class ModelLoadEvent extends SynthesisStageEvent {
+    
+    @Label("Loaded")
+    boolean loaded;
+    
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+}
\ No newline at end of file
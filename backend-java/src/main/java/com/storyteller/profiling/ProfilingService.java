@@ -0,0 +1,284 @@
+package com.storyteller.profiling;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 性能剖析服务
+ * 管理Java Flight Recorder录制，记录合成各阶段的自定义事件
+ * 
+ * 功能：
+ * - 可选的常驻录制：启动时开始，只保留最近一段时间和固定大小的数据
+ * - 按需开始有时长和大小上限的录制，到时自动停止
+ * - 把录制导出为.jfr文件，优先导出按需录制，没有时导出常驻录制
+ * - 所有录制都启用合成阶段事件，不记录调用栈，不记录环境变量和系统属性
+ */
+@Service
+public class ProfilingService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ProfilingService.class);
+    
+    /** 合成各阶段的自定义事件 */
+    private static final List<Class<? extends Event>> STAGE_EVENTS = List.of(
+            SynthesisTaskEvent.class, QueueWaitEvent.class, TaskSaveEvent.class,
+            ModelLoadEvent.class, TtsEvent.class, WebSocketSendEvent.class);
+    
+    /** 可能包含密码等敏感信息的内置事件，导出的录制中不应出现 */
+    private static final List<String> SENSITIVE_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty");
+    
+    /** 是否启用常驻录制 */
+    @Value("${storyteller.profiling.continuous:true}")
+    private boolean continuous;
+    
+    /** 内置事件使用的JFR配置，default的开销约1%，profile更详细但开销更高 */
+    @Value("${storyteller.profiling.settings:default}")
+    private String settings;
+    
+    /** 常驻录制保留的时长 */
+    @Value("${storyteller.profiling.max-age:10m}")
+    private Duration maxAge;
+    
+    /** 每个录制保留的数据上限（MB） */
+    @Value("${storyteller.profiling.max-size-mb:64}")
+    private long maxSizeMb;
+    
+    /** 按需录制的最长时长 */
+    @Value("${storyteller.profiling.max-duration:30m}")
+    private Duration maxDuration;
+    
+    /** 短于该时长的阶段事件不写入录制 */
+    @Value("${storyteller.profiling.stage-threshold:0ms}")
+    private Duration stageThreshold;
+    
+    private Recording continuousRecording;
+    
+    /** 最近一次按需录制，停止后保留到下次开始，供导出 */
+    private Recording manualRecording;
+    
+    /**
+     * 按配置开始常驻录制
+     * 
+     * 开始失败（例如JVM不支持JFR）只记录警告，不影响应用启动
+     */
+    @PostConstruct
+    public synchronized void init() {
+        if (!continuous) {
+            return;
+        }
+        try {
+            continuousRecording = newRecording("storyteller-continuous");
+            continuousRecording.setMaxAge(maxAge);
+            continuousRecording.setMaxSize(maxSizeMb * 1024 * 1024);
+            continuousRecording.start();
+            log.info("常驻JFR录制已开始，配置{}，保留{}或{}MB", settings, maxAge, maxSizeMb);
+        } catch (IOException | ParseException | RuntimeException e) {
+            log.warn("无法开始常驻JFR录制: {}", e.getMessage());
+            continuousRecording = null;
+        }
+    }
+    
+    /**
+     * 开始按需录制
+     * 
+     * @param duration 录制时长，到时自动停止
+     * @param maxSizeMb 数据上限（MB），为null时使用配置的上限
+     * @return 录制状态
+     * @throws IllegalArgumentException 时长或大小超出范围
+     * @throws IllegalStateException 已有按需录制正在进行
+     */
+    public synchronized Status start(Duration duration, Long maxSizeMb) throws IOException {
+        if (duration == null || duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0) {
+            throw new IllegalArgumentException("录制时长必须大于0且不超过" + maxDuration);
+        }
+        long sizeMb = maxSizeMb != null ? maxSizeMb : this.maxSizeMb;
+        if (sizeMb <= 0 || sizeMb > this.maxSizeMb) {
+            throw new IllegalArgumentException("录制大小上限必须大于0且不超过" + this.maxSizeMb + "MB");
+        }
+        if (manualRecording != null && manualRecording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("已有录制正在进行: " + manualRecording.getName());
+        }
+        
+        Recording recording;
+        try {
+            recording = newRecording("storyteller-" + Instant.now().getEpochSecond());
+        } catch (ParseException e) {
+            throw new IOException("无法读取JFR配置: " + settings, e);
+        }
+        recording.setDuration(duration);
+        recording.setMaxSize(sizeMb * 1024 * 1024);
+        recording.start();
+        if (manualRecording != null) {
+            manualRecording.close();
+        }
+        manualRecording = recording;
+        log.info("JFR录制{}已开始，时长{}，上限{}MB", recording.getName(), duration, sizeMb);
+        return status();
+    }
+    
+    /**
+     * 停止按需录制，录制的数据保留到下次开始，仍可导出
+     * 
+     * @return 录制状态
+     * @throws IllegalStateException 没有正在进行的按需录制
+     */
+    public synchronized Status stop() {
+        if (manualRecording == null || manualRecording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("没有正在进行的录制");
+        }
+        manualRecording.stop();
+        log.info("JFR录制{}已停止", manualRecording.getName());
+        return status();
+    }
+    
+    /**
+     * 把录制导出到临时文件
+     * 
+     * 有按需录制（进行中或已停止）时导出按需录制，否则导出常驻录制。
+     * 文件由调用方在使用后删除
+     * 
+     * @return 临时文件路径
+     * @throws IllegalStateException 没有可导出的录制
+     */
+    public synchronized Path dump() throws IOException {
+        Recording recording = hasData(manualRecording) ? manualRecording
+                : hasData(continuousRecording) ? continuousRecording : null;
+        if (recording == null) {
+            throw new IllegalStateException("没有可导出的录制");
+        }
+        Path file = Files.createTempFile(recording.getName() + "-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+    
+    /**
+     * 获取录制状态
+     * 
+     * @return 常驻录制和按需录制的状态
+     */
+    public synchronized Status status() {
+        return new Status(RecordingInfo.of(continuousRecording), RecordingInfo.of(manualRecording));
+    }
+    
+    @PreDestroy
+    public synchronized void close() {
+        if (manualRecording != null) {
+            manualRecording.close();
+            manualRecording = null;
+        }
+        if (continuousRecording != null) {
+            continuousRecording.close();
+            continuousRecording = null;
+        }
+    }
+    
+    /**
+     * 按配置创建录制并启用合成阶段事件
+     * 
+     * @param name 录制名称
+     * @return 尚未开始的录制
+     */
+    private Recording newRecording(String name) throws IOException, ParseException {
+        Recording recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName(name);
+        recording.setToDisk(true);
+        for (Class<? extends Event> event : STAGE_EVENTS) {
+            recording.enable(event).withThreshold(stageThreshold).withoutStackTrace();
+        }
+        for (String event : SENSITIVE_EVENTS) {
+            recording.disable(event);
+        }
+        return recording;
+    }
+    
+    private static boolean hasData(Recording recording) {
+        return recording != null
+                && (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.STOPPED);
+    }
+    
+    /**
+     * 录制状态
+     */
+    public static class Status {
+        
+        /** 常驻录制，未启用时为null */
+        private final RecordingInfo continuous;
+        
+        /** 最近一次按需录制，没有时为null */
+        private final RecordingInfo manual;
+        
+        Status(RecordingInfo continuous, RecordingInfo manual) {
+            this.continuous = continuous;
+            this.manual = manual;
+        }
+        
+        public RecordingInfo getContinuous() { return continuous; }
+        
+        public RecordingInfo getManual() { return manual; }
+    }
+    
+    /**
+     * 单个录制的状态
+     */
+    public static class RecordingInfo {
+        
+        private final String name;
+        
+        /** NEW、RUNNING、STOPPED或CLOSED */
+        private final String state;
+        
+        private final Instant startTime;
+        
+        private final Instant stopTime;
+        
+        /** 已写入磁盘的数据量（字节） */
+        private final long size;
+        
+        RecordingInfo(String name, String state, Instant startTime, Instant stopTime, long size) {
+            this.name = name;
+            this.state = state;
+            this.startTime = startTime;
+            this.stopTime = stopTime;
+            this.size = size;
+        }
+        
+        static RecordingInfo of(Recording recording) {
+            if (recording == null) {
+                return null;
+            }
+            return new RecordingInfo(recording.getName(), recording.getState().name(),
+                    recording.getStartTime(), recording.getStopTime(), recording.getSize());
+        }
+        
+        public String getName() { return name; }
+        
+        public String getState() { return state; }
+        
+        public Instant getStartTime() { return startTime; }
+        
+        public Instant getStopTime() { return stopTime; }
+        
+        public long getSize() { return size; }
+    }
+}
\ No newline at end of file
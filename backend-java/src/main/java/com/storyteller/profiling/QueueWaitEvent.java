@@ -0,0 +1,22 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 排队等待事件
+ * 从提交到合成执行器到开始处理的时间，在提交线程开始、在处理线程结束
+ */
+@Name("com.storyteller.synthesis.QueueWait")
+@Label("Synthesis Queue Wait")
+@Description("Time a synthesis task spent in the fair-share queue")
+public class QueueWaitEvent extends SynthesisStageEvent {
+    
+    @Label("Weight")
+    int weight;
+    
+    public QueueWaitEvent(int weight) {
+        this.weight = weight;
+    }
+}
\ No newline at end of file
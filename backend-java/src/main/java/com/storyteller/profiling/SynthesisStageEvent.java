@@ -0,0 +1,39 @@
+package com.storyteller.profiling;
+
+import com.storyteller.entity.SynthesisTask;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 合成阶段事件的基类
+ * 记录所属任务的ID和声音模型ID，用于把延迟归因到具体的任务和模型
+ * 
+ * 用法：创建事件后调用begin()，阶段结束时调用finish(task)。
+ * 没有进行中的录制时finish只做一次判断，不填充字段也不写入
+ */
+@Category({"Storyteller", "Synthesis"})
+@StackTrace(false)
+public abstract class SynthesisStageEvent extends Event {
+    
+    @Label("Task ID")
+    String taskId;
+    
+    @Label("Voice Model ID")
+    String voiceModelId;
+    
+    /**
+     * 结束阶段并在需要时写入事件
+     * 
+     * @param task 所属的合成任务
+     */
+    public void finish(SynthesisTask task) {
+        end();
+        if (shouldCommit()) {
+            taskId = task.getTaskId();
+            voiceModelId = task.getVoiceModelId();
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 合成任务事件
+ * 处理线程执行一个合成任务的总耗时，不含排队时间
+ */
+@Name("com.storyteller.synthesis.Task")
+@Label("Synthesis Task")
+@Description("Processing of one synthesis task on a worker thread")
+public class SynthesisTaskEvent extends SynthesisStageEvent {
+    
+    @Label("Outcome")
+    String outcome = "CANCELLED";
+    
+    @Label("Prefetched")
+    boolean prefetched;
+    
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+    
+    public void setPrefetched(boolean prefetched) {
+        this.prefetched = prefetched;
+    }
+}
\ No newline at end of file
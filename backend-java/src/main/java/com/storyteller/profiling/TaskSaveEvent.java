@@ -0,0 +1,22 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 任务保存事件
+ * 保存合成任务（创建、状态变更、完成、失败、取消）的数据库耗时
+ */
+@Name("com.storyteller.synthesis.TaskSave")
+@Label("Synthesis Task Save")
+@Description("Database save of a synthesis task")
+public class TaskSaveEvent extends SynthesisStageEvent {
+    
+    @Label("Status")
+    String status;
+    
+    public TaskSaveEvent(String status) {
+        this.status = status;
+    }
+}
\ No newline at end of file
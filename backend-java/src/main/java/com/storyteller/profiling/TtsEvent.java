@@ -0,0 +1,29 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * TTS事件
+ * 调用TTS服务的耗时，phase区分模拟的处理耗时（processing）和分段合成与拼接（synthesize）
+ */
+@Name("com.storyteller.synthesis.Tts")
+@Label("Synthesis TTS")
+@Description("Text-to-speech work for a synthesis task")
+public class TtsEvent extends SynthesisStageEvent {
+    
+    @Label("Phase")
+    String phase;
+    
+    @Label("Characters")
+    long characters;
+    
+    public TtsEvent(String phase) {
+        this.phase = phase;
+    }
+    
+    public void setCharacters(long characters) {
+        this.characters = characters;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.storyteller.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * WebSocket推送事件
+ * 向用户推送进度、完成、失败或取消消息的耗时
+ */
+@Name("com.storyteller.synthesis.WebSocketSend")
+@Label("Synthesis WebSocket Send")
+@Description("STOMP message sent to the user about a synthesis task")
+public class WebSocketSendEvent extends SynthesisStageEvent {
+    
+    @Label("Message")
+    String message;
+    
+    @Label("Progress")
+    int progress;
+    
+    public WebSocketSendEvent(String message, int progress) {
+        this.message = message;
+        this.progress = progress;
+    }
+}
\ No newline at end of file
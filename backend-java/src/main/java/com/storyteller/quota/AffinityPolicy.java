@@ -0,0 +1,34 @@
+package com.storyteller.quota;
+
+import java.util.Collection;
+
+/**
+ * 亲和调度策略
+ * FairShareQueue出队时据此优先把任务交给已具备所需状态（如已加载的声音模型）的工作线程
+ */
+public interface AffinityPolicy {
+    
+    /**
+     * 当前线程已具备的亲和键，在出队的工作线程上调用
+     * 
+     * @return 亲和键，越靠前越优先
+     */
+    Collection<String> preferredKeys();
+    
+    /**
+     * 判断指定的工作线程是否已具备该亲和键
+     * 
+     * @param worker 工作线程
+     * @param key 亲和键
+     * @return 已具备时返回true
+     */
+    boolean prefers(Thread worker, String key);
+    
+    /**
+     * 任务出队时回调
+     * 
+     * @param task 出队的任务
+     * @param affinityHit 任务是否按亲和键选出
+     */
+    void onDispatch(FairShareTask<?> task, boolean affinityHit);
+}
\ No newline at end of file
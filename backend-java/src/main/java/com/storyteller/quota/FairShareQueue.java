@@ -0,0 +1,419 @@
+package com.storyteller.quota;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 加权公平调度队列
+ * 作为合成执行器的工作队列，使一个用户的大量排队任务不会独占所有线程
+ * 
+ * 功能：
+ * - 采用开始时间公平排队（SFQ）：每个用户的任务依次占用1/权重的虚拟时间，按虚拟开始时间出队
+ * - 新用户的任务从当前虚拟时间开始排队，插在大批量提交的用户剩余任务之前
+ * - 权重高的用户在竞争时按权重比例获得更多的执行机会，空闲时不受限制
+ * - 排队中被取消的任务退回占用的虚拟时间
+ * - 配置了亲和策略时按亲和键分组，工作线程优先取出自己已具备亲和键的任务，
+ *   新任务优先唤醒已具备其亲和键的空闲线程
+ * 
+ * 亲和选择只能越过开始时间在队首之后maxSkip以内的任务，公平性的偏差有上界。
+ * 只接受FairShareTask，提交其他任务会抛出IllegalArgumentException
+ */
+public class FairShareQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    
+    /** 清理过期用户标签的阈值 */
+    private static final int CLEANUP_THRESHOLD = 1024;
+    
+    private static final Comparator<FairShareTask<?>> ORDER = Comparator
+            .comparingDouble((FairShareTask<?> task) -> task.getStartTag())
+            .thenComparingLong(FairShareTask::getSequence);
+    
+    /** 保护队列内容、虚拟时间和用户标签 */
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    /** 按虚拟开始时间排序的排队任务 */
+    private final TreeSet<FairShareTask<?>> tasks = new TreeSet<>(ORDER);
+    
+    /** 按亲和键分组的排队任务，只在配置了亲和策略时维护 */
+    private final Map<String, TreeSet<FairShareTask<?>>> groups = new HashMap<>();
+    
+    /** 等待任务的工作线程，按开始等待的先后排列 */
+    private final Map<Thread, Condition> waiters = new LinkedHashMap<>();
+    
+    /** 亲和策略，可以为null */
+    private final AffinityPolicy affinity;
+    
+    /** 亲和选择最多越过的虚拟时间 */
+    private final double maxSkip;
+    
+    /** 当前虚拟时间，即最近出队时队首任务的开始时间 */
+    private double virtualTime;
+    
+    private long nextSequence;
+    
+    /** 每个用户最后入队任务的虚拟结束时间 */
+    private final Map<Long, Double> lastFinish = new HashMap<>();
+    
+    public FairShareQueue() {
+        this(null, 0);
+    }
+    
+    /**
+     * 创建带亲和调度的队列
+     * 
+     * @param affinity 亲和策略，为null时只按公平顺序出队
+     * @param maxSkip 亲和选择最多越过的虚拟时间，约等于权重为1的用户的任务数
+     */
+    public FairShareQueue(AffinityPolicy affinity, double maxSkip) {
+        this.affinity = affinity;
+        this.maxSkip = Math.max(0, maxSkip);
+    }
+    
+    @Override
+    public boolean offer(Runnable runnable) {
+        if (!(runnable instanceof FairShareTask<?> task)) {
+            throw new IllegalArgumentException("公平调度队列只接受FairShareTask");
+        }
+        lock.lock();
+        try {
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(task.getUserId(), 0.0));
+            double finish = start + 1.0 / task.getWeight();
+            lastFinish.put(task.getUserId(), finish);
+            task.assign(this, start, finish, nextSequence++);
+            
+            tasks.add(task);
+            if (affinity != null && task.getAffinityKey() != null) {
+                groups.computeIfAbsent(task.getAffinityKey(), key -> new TreeSet<>(ORDER)).add(task);
+            }
+            signalWaiter(task.getAffinityKey());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void put(Runnable runnable) {
+        offer(runnable);
+    }
+    
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) {
+        return offer(runnable);
+    }
+    
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                Runnable runnable = dequeue();
+                if (runnable != null || nanos <= 0) {
+                    return runnable;
+                }
+                Condition condition = lock.newCondition();
+                waiters.put(Thread.currentThread(), condition);
+                try {
+                    nanos = condition.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    passSignal(condition);
+                    throw e;
+                } finally {
+                    waiters.remove(Thread.currentThread(), condition);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                Runnable runnable = dequeue();
+                if (runnable != null) {
+                    return runnable;
+                }
+                Condition condition = lock.newCondition();
+                waiters.put(Thread.currentThread(), condition);
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    passSignal(condition);
+                    throw e;
+                } finally {
+                    waiters.remove(Thread.currentThread(), condition);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 取出下一个任务，调用方必须持有锁
+     * 
+     * 配置了亲和策略时，在当前线程已具备的亲和键对应的分组中选择开始时间最早的任务，
+     * 开始时间不晚于队首maxSkip时优先于队首出队
+     * 
+     * @return 出队的任务，队列为空时返回null
+     */
+    private FairShareTask<?> dequeue() {
+        if (tasks.isEmpty()) {
+            return null;
+        }
+        FairShareTask<?> head = tasks.first();
+        FairShareTask<?> chosen = head;
+        boolean hit = false;
+        if (affinity != null && !groups.isEmpty()) {
+            for (String key : affinity.preferredKeys()) {
+                TreeSet<FairShareTask<?>> group = groups.get(key);
+                if (group == null) {
+                    continue;
+                }
+                FairShareTask<?> candidate = group.first();
+                if (candidate.getStartTag() <= head.getStartTag() + maxSkip
+                        && (!hit || ORDER.compare(candidate, chosen) < 0)) {
+                    chosen = candidate;
+                    hit = true;
+                }
+            }
+        }
+        unlink(chosen);
+        
+        // 虚拟时间按公平顺序推进，被亲和选择越过的任务不会因此排到新任务之后
+        virtualTime = Math.max(virtualTime, head.getStartTag());
+        // 结束时间不晚于虚拟时间的用户再次提交时从虚拟时间开始，无需保留
+        if (lastFinish.size() > CLEANUP_THRESHOLD) {
+            lastFinish.values().removeIf(finish -> finish <= virtualTime);
+        }
+        if (affinity != null) {
+            affinity.onDispatch(chosen, hit);
+        }
+        return chosen;
+    }
+    
+    /**
+     * 从排序集合和亲和分组中移除任务，调用方必须持有锁
+     * 
+     * @param task 排队中的任务
+     * @return 任务在队列中时返回true
+     */
+    private boolean unlink(FairShareTask<?> task) {
+        if (!tasks.remove(task)) {
+            return false;
+        }
+        String key = task.getAffinityKey();
+        TreeSet<FairShareTask<?>> group = key != null ? groups.get(key) : null;
+        if (group != null && group.remove(task) && group.isEmpty()) {
+            groups.remove(key);
+        }
+        return true;
+    }
+    
+    /**
+     * 唤醒一个等待中的工作线程，调用方必须持有锁
+     * 
+     * 优先唤醒已具备该亲和键的线程，否则唤醒等待最久的线程。
+     * 被唤醒的线程立即移出等待列表，紧接着入队的任务会唤醒其他线程
+     * 
+     * @param key 新任务的亲和键，可以为null
+     */
+    private void signalWaiter(String key) {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        Map.Entry<Thread, Condition> target = null;
+        if (affinity != null && key != null) {
+            for (Map.Entry<Thread, Condition> waiter : waiters.entrySet()) {
+                if (affinity.prefers(waiter.getKey(), key)) {
+                    target = waiter;
+                    break;
+                }
+            }
+        }
+        if (target == null) {
+            target = waiters.entrySet().iterator().next();
+        }
+        waiters.remove(target.getKey());
+        target.getValue().signal();
+    }
+    
+    /**
+     * 等待中的线程被中断时，把可能已收到的唤醒转交给其他线程，调用方必须持有锁
+     * 
+     * @param condition 被中断线程等待的条件
+     */
+    private void passSignal(Condition condition) {
+        boolean signalled = waiters.get(Thread.currentThread()) != condition;
+        if (signalled && !tasks.isEmpty()) {
+            signalWaiter(tasks.first().getAffinityKey());
+        }
+    }
+    
+    /**
+     * 退回排队中被取消的任务占用的虚拟时间
+     * 
+     * @param task 被取消的任务
+     */
+    void refund(FairShareTask<?> task) {
+        double cost = task.getFinishTag() - task.getStartTag();
+        lock.lock();
+        try {
+            lastFinish.computeIfPresent(task.getUserId(), (userId, finish) -> Math.max(virtualTime, finish - cost));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return tasks.isEmpty() ? null : tasks.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof FairShareTask<?> task)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return unlink(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof FairShareTask<?> task)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return tasks.contains(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return tasks.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+    
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            tasks.clear();
+            groups.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !tasks.isEmpty()) {
+                FairShareTask<?> task = tasks.first();
+                unlink(task);
+                c.add(task);
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 返回按公平顺序排列的快照迭代器，支持remove
+     * 
+     * @return 迭代器
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(tasks);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> delegate = snapshot.iterator();
+        return new Iterator<>() {
+            private Runnable last;
+            
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+            
+            @Override
+            public Runnable next() {
+                last = delegate.next();
+                return last;
+            }
+            
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                FairShareQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.storyteller.quota;
+
+import java.util.concurrent.FutureTask;
+
+/**
+ * 按用户公平调度的任务
+ * 提交到使用FairShareQueue的执行器，携带用户ID、权重和可选的亲和键
+ * 
+ * 排队标签由FairShareQueue在入队时写入；
+ * 任务在开始执行前被取消时退回占用的虚拟时间，不影响该用户后续的任务
+ * 
+ * @param <V> 结果类型
+ */
+public class FairShareTask<V> extends FutureTask<V> {
+    
+    private final long userId;
+    
+    private final int weight;
+    
+    /** 亲和键（如声音模型ID），相同键的任务优先交给已具备该状态的工作线程 */
+    private final String affinityKey;
+    
+    /** 虚拟开始时间，排队顺序按此升序 */
+    private double startTag;
+    
+    /** 虚拟结束时间 */
+    private double finishTag;
+    
+    /** 入队序号，开始时间相同时先入队的优先 */
+    private long sequence;
+    
+    /** 所在的队列，入队后写入 */
+    private volatile FairShareQueue queue;
+    
+    /** 是否已开始执行 */
+    private volatile boolean started;
+    
+    /**
+     * 创建任务
+     * 
+     * @param userId 用户ID
+     * @param weight 用户权重，至少为1
+     * @param runnable 要执行的操作
+     * @param result 完成时返回的结果
+     */
+    public FairShareTask(long userId, int weight, Runnable runnable, V result) {
+        this(userId, weight, null, runnable, result);
+    }
+    
+    /**
+     * 创建带亲和键的任务
+     * 
+     * @param userId 用户ID
+     * @param weight 用户权重，至少为1
+     * @param affinityKey 亲和键，可以为null
+     * @param runnable 要执行的操作
+     * @param result 完成时返回的结果
+     */
+    public FairShareTask(long userId, int weight, String affinityKey, Runnable runnable, V result) {
+        super(runnable, result);
+        this.userId = userId;
+        this.weight = Math.max(1, weight);
+        this.affinityKey = affinityKey;
+    }
+    
+    @Override
+    public void run() {
+        started = true;
+        super.run();
+    }
+    
+    @Override
+    protected void done() {
+        FairShareQueue current = queue;
+        if (isCancelled() && !started && current != null) {
+            current.refund(this);
+        }
+    }
+    
+    public long getUserId() {
+        return userId;
+    }
+    
+    public int getWeight() {
+        return weight;
+    }
+    
+    public String getAffinityKey() {
+        return affinityKey;
+    }
+    
+    double getStartTag() {
+        return startTag;
+    }
+    
+    double getFinishTag() {
+        return finishTag;
+    }
+    
+    long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * 写入排队标签，由FairShareQueue在入队时调用
+     * 
+     * @param queue 所在的队列
+     * @param startTag 虚拟开始时间
+     * @param finishTag 虚拟结束时间
+     * @param sequence 入队序号
+     */
+    void assign(FairShareQueue queue, double startTag, double finishTag, long sequence) {
+        this.startTag = startTag;
+        this.finishTag = finishTag;
+        this.sequence = sequence;
+        this.queue = queue;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.storyteller.quota;
+
+/**
+ * 配额超限异常
+ * 用户的请求速率超过所属等级的配额时抛出，控制器转换为429响应
+ */
+public class QuotaExceededException extends RuntimeException {
+    
+    /** 建议的重试等待时间（秒） */
+    private final long retryAfterSeconds;
+    
+    /**
+     * 创建配额超限异常
+     * 
+     * @param message 错误信息
+     * @param retryAfterSeconds 建议的重试等待时间（秒）
+     */
+    public QuotaExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    /**
+     * 获取建议的重试等待时间，用作Retry-After响应头
+     * 
+     * @return 等待时间（秒），至少为1
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
\ No newline at end of file
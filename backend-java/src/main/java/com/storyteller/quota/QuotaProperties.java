@@ -0,0 +1,65 @@
+package com.storyteller.quota;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 配额配置
+ * 对应application.yml中的storyteller.quota
+ * 
+ * 功能：
+ * - 定义用户等级及各等级的合成、训练速率和执行器权重
+ * - 指定用户所属的等级，未指定的用户使用默认等级
+ * - 限制跟踪的用户数和空闲条目的保留时间
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "storyteller.quota")
+public class QuotaProperties {
+    
+    /** 是否启用配额检查 */
+    private boolean enabled = true;
+    
+    /** 未指定等级的用户使用的等级 */
+    private String defaultTier = "free";
+    
+    /** 每类操作最多跟踪的用户数，超出后新用户不受限，直到空闲条目被清理 */
+    private int maxUsers = 2_000_000;
+    
+    /** 超过该时长未请求的用户的限流状态被清理 */
+    private Duration idleEvictAfter = Duration.ofHours(1);
+    
+    /** 等级定义，键为等级名称 */
+    private Map<String, Tier> tiers = new LinkedHashMap<>();
+    
+    /** 用户所属的等级，键为用户ID */
+    private Map<Long, String> users = new HashMap<>();
+    
+    /**
+     * 用户等级
+     */
+    @Data
+    public static class Tier {
+        
+        /** 每分钟补充的合成请求数 */
+        private double synthesisPerMinute = 6;
+        
+        /** 允许连续提交的合成请求数 */
+        private int synthesisBurst = 10;
+        
+        /** 每小时补充的训练请求数 */
+        private double trainingPerHour = 3;
+        
+        /** 允许连续提交的训练请求数 */
+        private int trainingBurst = 3;
+        
+        /** 排队时在合成执行器中所占的份额权重 */
+        private int weight = 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.storyteller.quota;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配额服务
+ * 在接口入口按用户限制合成和训练请求的速率
+ * 
+ * 功能：
+ * - 按用户等级分别对合成请求和声音训练请求做令牌桶限流
+ * - 超限时抛出QuotaExceededException，携带建议的重试等待时间
+ * - 提供用户在合成执行器中的公平调度权重
+ * - 定时清理长时间未请求的用户的限流状态
+ */
+@Service
+public class QuotaService {
+    
+    private static final Logger log = LoggerFactory.getLogger(QuotaService.class);
+    
+    /** 未配置任何等级时使用的默认等级 */
+    private static final QuotaProperties.Tier DEFAULT_TIER = new QuotaProperties.Tier();
+    
+    @Autowired
+    private QuotaProperties properties;
+    
+    private TokenBucketLimiter synthesisLimiter;
+    
+    private TokenBucketLimiter trainingLimiter;
+    
+    /** 实际的空闲清理时长，不短于任何等级的桶从空到满的时间 */
+    private long idleMillis;
+    
+    @PostConstruct
+    void init() {
+        int stripes = Runtime.getRuntime().availableProcessors() * 4;
+        synthesisLimiter = new TokenBucketLimiter(stripes, properties.getMaxUsers());
+        trainingLimiter = new TokenBucketLimiter(stripes, properties.getMaxUsers());
+        
+        // 未补满的桶被清理后会重新获得满额令牌，清理时长必须覆盖最慢的补满时间
+        idleMillis = properties.getIdleEvictAfter().toMillis();
+        for (QuotaProperties.Tier tier : properties.getTiers().values()) {
+            idleMillis = Math.max(idleMillis, (long) Math.ceil(tier.getSynthesisBurst() * 60_000.0 / tier.getSynthesisPerMinute()));
+            idleMillis = Math.max(idleMillis, (long) Math.ceil(tier.getTrainingBurst() * 3_600_000.0 / tier.getTrainingPerHour()));
+        }
+        if (!properties.getTiers().containsKey(properties.getDefaultTier())) {
+            log.warn("默认等级{}未定义，未指定等级的用户使用内置配额", properties.getDefaultTier());
+        }
+    }
+    
+    /**
+     * 检查合成请求配额
+     * 
+     * @param userId 用户ID，为null时不检查
+     * @throws QuotaExceededException 用户的合成请求过于频繁
+     */
+    public void checkSynthesis(Long userId) {
+        if (!properties.isEnabled() || userId == null) {
+            return;
+        }
+        QuotaProperties.Tier tier = tierOf(userId);
+        long waitMillis = synthesisLimiter.tryAcquire(userId, tier.getSynthesisBurst(), tier.getSynthesisPerMinute() / 60.0);
+        if (waitMillis > 0) {
+            throw exceeded("合成请求过于频繁", waitMillis);
+        }
+    }
+    
+    /**
+     * 检查声音训练请求配额
+     * 
+     * @param userId 用户ID，为null时不检查
+     * @throws QuotaExceededException 用户的训练请求过于频繁
+     */
+    public void checkTraining(Long userId) {
+        if (!properties.isEnabled() || userId == null) {
+            return;
+        }
+        QuotaProperties.Tier tier = tierOf(userId);
+        long waitMillis = trainingLimiter.tryAcquire(userId, tier.getTrainingBurst(), tier.getTrainingPerHour() / 3600.0);
+        if (waitMillis > 0) {
+            throw exceeded("训练请求过于频繁", waitMillis);
+        }
+    }
+    
+    /**
+     * 获取用户在合成执行器中的公平调度权重
+     * 
+     * @param userId 用户ID
+     * @return 权重，至少为1
+     */
+    public int weight(Long userId) {
+        return userId == null ? 1 : Math.max(1, tierOf(userId).getWeight());
+    }
+    
+    /**
+     * 定时清理空闲用户的限流状态
+     */
+    @Scheduled(fixedDelayString = "${storyteller.quota.evict-interval-ms:60000}")
+    public void evictIdle() {
+        int evicted = synthesisLimiter.evictIdle(idleMillis) + trainingLimiter.evictIdle(idleMillis);
+        if (evicted > 0) {
+            log.debug("清理空闲限流状态{}条，当前跟踪合成{}条、训练{}条",
+                    evicted, synthesisLimiter.size(), trainingLimiter.size());
+        }
+    }
+    
+    /**
+     * 查找用户所属的等级
+     * 
+     * @param userId 用户ID
+     * @return 等级配置
+     */
+    private QuotaProperties.Tier tierOf(Long userId) {
+        String name = properties.getUsers().getOrDefault(userId, properties.getDefaultTier());
+        QuotaProperties.Tier tier = properties.getTiers().get(name);
+        return tier != null ? tier : DEFAULT_TIER;
+    }
+    
+    /**
+     * 创建配额超限异常，等待时间向上取整到秒
+     * 
+     * @param message 错误信息
+     * @param waitMillis 预计等待时间（毫秒）
+     * @return 配额超限异常
+     */
+    private static QuotaExceededException exceeded(String message, long waitMillis) {
+        long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999));
+        return new QuotaExceededException(message + "，请" + seconds + "秒后重试", seconds);
+    }
+}
\ No newline at end of file
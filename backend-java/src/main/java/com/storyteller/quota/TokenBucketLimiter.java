@@ -0,0 +1,344 @@
+package com.storyteller.quota;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 令牌桶限流器
+ * 按long键（用户ID）维护令牌桶，QuotaService为每类操作各使用一个实例
+ * 
+ * 功能：
+ * - 桶状态（剩余令牌和上次补充时间）压缩在一个long中，取令牌用CAS无锁完成
+ * - 键和状态存放在按哈希分段的开放寻址表中，每个用户16字节，不创建对象
+ * - 表扩容和清理空闲条目时在段内复制重建，正在更新的线程发现条目已迁移后到新表重试
+ * - 条目数达到上限时放行新用户，内存占用有界
+ * 
+ * 桶的容量和补充速率由调用方每次传入（取决于用户等级），表中只保存状态。
+ * 长时间未使用的桶早已补满，删除后重新创建与保留等价，因此可以安全清理
+ */
+public class TokenBucketLimiter {
+    
+    /** 空槽的键 */
+    private static final long EMPTY = Long.MIN_VALUE;
+    
+    /** 已迁移到新表的槽的键 */
+    private static final long MOVED_KEY = Long.MIN_VALUE + 1;
+    
+    /** 已迁移到新表的状态 */
+    private static final long MOVED = -1L;
+    
+    /** 状态中令牌数占用的低位数，其余高位为上次补充时间（毫秒） */
+    private static final int TOKEN_BITS = 24;
+    
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    
+    /** 令牌的定点精度，状态中以千分之一令牌为单位 */
+    private static final long TOKEN_SCALE = 1000;
+    
+    /** 单个桶的最大容量 */
+    public static final int MAX_CAPACITY = (int) (TOKEN_MASK / TOKEN_SCALE);
+    
+    /** 每段的最小表长 */
+    private static final int MIN_TABLE_SIZE = 64;
+    
+    /** findOrInsert的返回值：表已满，需要重建 */
+    private static final int FULL = -1;
+    
+    /** findOrInsert的返回值：表正在迁移，需要重新读取 */
+    private static final int RETRY = -2;
+    
+    private final AtomicReferenceArray<Table> tables;
+    
+    /** 每段的重建锁，只在扩容和清理时使用 */
+    private final Object[] rebuildLocks;
+    
+    private final int stripeMask;
+    
+    private final int maxEntriesPerStripe;
+    
+    /** 时间原点，状态中的时间相对于它计算，保证非零 */
+    private final long originMillis = System.nanoTime() / 1_000_000 - 1;
+    
+    /**
+     * 创建限流器
+     * 
+     * @param stripes 分段数，取整为2的幂
+     * @param maxEntries 最多跟踪的键数
+     */
+    public TokenBucketLimiter(int stripes, int maxEntries) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.tables = new AtomicReferenceArray<>(stripeCount);
+        this.rebuildLocks = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            rebuildLocks[i] = new Object();
+        }
+        this.stripeMask = stripeCount - 1;
+        this.maxEntriesPerStripe = Math.max(MIN_TABLE_SIZE / 2, maxEntries / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            tables.set(i, new Table(MIN_TABLE_SIZE, maxEntriesPerStripe));
+        }
+    }
+    
+    /**
+     * 尝试取得一个令牌
+     * 
+     * @param key 键（用户ID）
+     * @param capacity 桶容量，即允许的突发请求数
+     * @param tokensPerSecond 每秒补充的令牌数
+     * @return 0表示取得成功；否则为预计还需等待的毫秒数
+     */
+    public long tryAcquire(long key, int capacity, double tokensPerSecond) {
+        if (key == EMPTY || key == MOVED_KEY) {
+            throw new IllegalArgumentException("不支持的键: " + key);
+        }
+        if (capacity < 1 || capacity > MAX_CAPACITY || !(tokensPerSecond > 0)) {
+            throw new IllegalArgumentException("无效的令牌桶参数: capacity=" + capacity + ", rate=" + tokensPerSecond);
+        }
+        
+        long hash = mix(key);
+        int stripe = (int) (hash >>> 32) & stripeMask;
+        long full = capacity * TOKEN_SCALE;
+        double unitsPerMilli = tokensPerSecond * TOKEN_SCALE / 1000.0;
+        
+        while (true) {
+            Table table = tables.get(stripe);
+            int slot = table.findOrInsert(key, (int) hash);
+            if (slot == FULL) {
+                if (table.size.get() >= maxEntriesPerStripe) {
+                    // 达到条目上限时放行新用户，等待定时清理腾出空间
+                    return 0;
+                }
+                rebuild(stripe, table, Long.MIN_VALUE);
+                continue;
+            }
+            if (slot == RETRY) {
+                continue;
+            }
+            
+            long now = now();
+            long state = table.states.get(slot);
+            if (state == MOVED) {
+                continue;
+            }
+            
+            long tokens;
+            long last;
+            if (state == 0) {
+                tokens = full;
+                last = now;
+            } else {
+                tokens = Math.min(state & TOKEN_MASK, full);
+                last = state >>> TOKEN_BITS;
+                // 不足一个单位的补充不更新时间，避免高频请求时补充被截断为0
+                long added = (long) (Math.max(0, now - last) * unitsPerMilli);
+                if (added > 0) {
+                    tokens = Math.min(full, tokens + added);
+                    last = now;
+                }
+            }
+            
+            if (tokens < TOKEN_SCALE) {
+                return Math.max(1, (long) Math.ceil((TOKEN_SCALE - tokens) / unitsPerMilli));
+            }
+            if (table.states.compareAndSet(slot, state, (last << TOKEN_BITS) | (tokens - TOKEN_SCALE))) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * 清理空闲条目
+     * 
+     * 只重建空闲条目超过四分之一的段
+     * 
+     * @param idleMillis 超过该时长未使用的条目被删除，应不短于最大的桶从空到满的时间
+     * @return 删除的条目数
+     */
+    public int evictIdle(long idleMillis) {
+        int evicted = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            Table table = tables.get(stripe);
+            long cutoff = now() - idleMillis;
+            int idle = table.countIdle(cutoff);
+            if (idle > 0 && idle * 4 >= table.size.get()) {
+                int before = table.size.get();
+                rebuild(stripe, table, cutoff);
+                evicted += Math.max(0, before - tables.get(stripe).size.get());
+            }
+        }
+        return evicted;
+    }
+    
+    /**
+     * 当前跟踪的键数
+     * 
+     * @return 键数（近似值）
+     */
+    public int size() {
+        int size = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            size += tables.get(stripe).size.get();
+        }
+        return size;
+    }
+    
+    /**
+     * 重建一个段的表
+     * 
+     * 逐个把旧表的键和状态替换为迁移标记，同时取出原值复制到新表，
+     * 之后旧表上的CAS都会失败，更新线程重新读取后转到新表
+     * 
+     * @param stripe 段号
+     * @param expected 调用方看到的表，已被其他线程替换时直接返回
+     * @param idleCutoff 上次补充时间早于该时刻的条目被删除
+     */
+    private void rebuild(int stripe, Table expected, long idleCutoff) {
+        synchronized (rebuildLocks[stripe]) {
+            Table old = tables.get(stripe);
+            if (old != expected) {
+                return;
+            }
+            
+            int length = old.keys.length();
+            long[] liveKeys = new long[length];
+            long[] liveStates = new long[length];
+            int live = 0;
+            for (int i = 0; i < length; i++) {
+                long key = old.keys.getAndSet(i, MOVED_KEY);
+                long state = old.states.getAndSet(i, MOVED);
+                // 尚未写入状态的新条目直接丢弃，写入线程会在新表上重新插入
+                if (key == EMPTY || state == 0 || (state >>> TOKEN_BITS) < idleCutoff) {
+                    continue;
+                }
+                liveKeys[live] = key;
+                liveStates[live] = state;
+                live++;
+            }
+            
+            // 重建后负载不超过一半，但不超过条目上限所需的长度
+            int target = Math.min(Math.max(live, 1) * 2, maxEntriesPerStripe * 2);
+            Table fresh = new Table(Math.max(MIN_TABLE_SIZE, Integer.highestOneBit(target - 1) << 1), maxEntriesPerStripe);
+            for (int i = 0; i < live; i++) {
+                fresh.put(liveKeys[i], (int) mix(liveKeys[i]), liveStates[i]);
+            }
+            tables.set(stripe, fresh);
+        }
+    }
+    
+    /**
+     * 当前相对时间（毫秒），始终大于0
+     * 
+     * @return 相对时间
+     */
+    private long now() {
+        return System.nanoTime() / 1_000_000 - originMillis;
+    }
+    
+    /**
+     * 打散键的位分布（MurmurHash3的fmix64）
+     * 
+     * @param key 键
+     * @return 哈希值
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * 一个段的开放寻址表
+     * 只插入不删除，删除通过重建完成，因此线性探测遇到空槽即可判定键不存在
+     */
+    private static final class Table {
+        /** 键，空槽为EMPTY */
+        private final AtomicLongArray keys;
+        /** 桶状态，0表示尚未写入 */
+        private final AtomicLongArray states;
+        /** 已插入的键数 */
+        private final AtomicInteger size = new AtomicInteger();
+        private final int mask;
+        /** 达到该键数时需要重建，不超过段的条目上限 */
+        private final int threshold;
+        
+        Table(int length, int maxEntries) {
+            keys = new AtomicLongArray(length);
+            states = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++) {
+                keys.lazySet(i, EMPTY);
+            }
+            mask = length - 1;
+            threshold = Math.min(length / 4 * 3, maxEntries);
+        }
+        
+        /**
+         * 查找键所在的槽，不存在时插入
+         * 
+         * @param key 键
+         * @param hash 键的哈希
+         * @return 槽位置，或FULL、RETRY
+         */
+        int findOrInsert(long key, int hash) {
+            int index = hash & mask;
+            for (int probe = 0; probe <= mask; probe++, index = (index + 1) & mask) {
+                long current = keys.get(index);
+                if (current == EMPTY) {
+                    if (size.get() >= threshold) {
+                        return FULL;
+                    }
+                    if (keys.compareAndSet(index, EMPTY, key)) {
+                        size.incrementAndGet();
+                        return index;
+                    }
+                    current = keys.get(index);
+                }
+                if (current == key) {
+                    return index;
+                }
+                if (current == MOVED_KEY) {
+                    return RETRY;
+                }
+            }
+            return FULL;
+        }
+        
+        /**
+         * 重建时插入条目，只在新表发布前单线程调用
+         * 
+         * @param key 键
+         * @param hash 键的哈希
+         * @param state 桶状态
+         */
+        void put(long key, int hash, long state) {
+            int index = hash & mask;
+            while (keys.get(index) != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            keys.set(index, key);
+            states.set(index, state);
+            size.incrementAndGet();
+        }
+        
+        /**
+         * 统计空闲条目数
+         * 
+         * @param idleCutoff 上次补充时间早于该时刻的条目视为空闲
+         * @return 空闲条目数
+         */
+        int countIdle(long idleCutoff) {
+            int idle = 0;
+            for (int i = 0; i <= mask; i++) {
+                long state = states.get(i);
+                if (state > 0 && (state >>> TOKEN_BITS) < idleCutoff) {
+                    idle++;
+                }
+            }
+            return idle;
+        }
+    }
+}
\ No newline at end of file
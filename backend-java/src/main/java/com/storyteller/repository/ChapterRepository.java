@@ -3,16 +3,22 @@
  * 提供对Chapter实体的数据库操作
  * 
  * 功能：
- * - 按章节ID查询章节
- * - 按标题模糊查询章节
+ * - 按章节ID查询章节及章节摘要
+ * - 按标题模糊查询章节（全文检索请使用ChapterSearchService）
+ * - 按章节ID批量查询章节摘要
+ * - 按章节顺序查询后续章节摘要
+ * - 分页列出章节摘要
  * - 继承JpaRepository提供标准CRUD操作
  */
 package com.storyteller.repository;
 
 import com.storyteller.entity.Chapter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -25,11 +31,56 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
      */
     Chapter findByChapterId(Long chapterId);
     
+    /**
+     * 按章节ID查询章节摘要
+     * 
+     * @param chapterId 章节ID
+     * @return 对应的章节摘要，不存在时返回null
+     */
+    ChapterSummary findSummaryByChapterId(Long chapterId);
+    
+    /**
+     * 按章节ID批量查询章节摘要
+     * 
+     * @param chapterIds 章节ID集合
+     * @return 对应的章节摘要，顺序不保证
+     */
+    List<ChapterSummary> findSummaryByChapterIdIn(Collection<Long> chapterIds);
+    
     /**
      * 按标题模糊查询章节
      * 
+     * 会编译为LIKE '%x%'，无法使用索引，只适合小规模数据；
+     * 大规模检索请使用ChapterSearchService
+     * 
      * @param title 标题关键词（支持模糊匹配）
      * @return 匹配的章节列表
      */
     List<Chapter> findByTitleContaining(String title);
+    
+    /**
+     * 按标题模糊查询章节摘要
+     * 
+     * @param title 标题关键词（支持模糊匹配）
+     * @param pageable 分页和排序参数
+     * @return 匹配的章节摘要
+     */
+    Page<ChapterSummary> findSummaryByTitleContaining(String title, Pageable pageable);
+    
+    /**
+     * 分页列出章节摘要
+     * 
+     * @param pageable 分页和排序参数
+     * @return 章节摘要
+     */
+    Page<ChapterSummary> findSummariesBy(Pageable pageable);
+    
+    /**
+     * 按章节顺序查询指定章节之后的章节摘要
+     * 
+     * @param chapterId 当前章节ID
+     * @param pageable 分页参数，用于限制返回的章节数量
+     * @return 按章节ID升序排列的后续章节摘要
+     */
+    List<ChapterSummary> findSummaryByChapterIdGreaterThanOrderByChapterIdAsc(Long chapterId, Pageable pageable);
 }
\ No newline at end of file
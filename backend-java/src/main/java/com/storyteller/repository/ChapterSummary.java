@@ -0,0 +1,29 @@
+/**
+ * 章节摘要投影
+ * 只包含列表展示所需的字段，查询时不读取章节正文
+ * 
+ * 功能：
+ * - 用于章节列表、检索结果和预取等不需要正文的场景
+ * - 返回此类型的派生查询只会选择下列列
+ */
+package com.storyteller.repository;
+
+import java.time.LocalDateTime;
+
+public interface ChapterSummary {
+    
+    /** 主键ID */
+    Long getId();
+    
+    /** 章节ID */
+    Long getChapterId();
+    
+    /** 章节标题 */
+    String getTitle();
+    
+    /** 合成音频的URL地址（如果有的话） */
+    String getAudioUrl();
+    
+    /** 记录最后更新时间 */
+    LocalDateTime getUpdatedAt();
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+/**
+ * 章节正文数据仓库
+ * 绕过实体直接用JDBC读取章节正文，避免把整章文本一次性读入堆内存
+ * 
+ * 功能：
+ * - 查询章节正文长度
+ * - 按固定窗口分段读取正文，以Reader的形式提供给分段合成
+ * - 逐行游标遍历所有章节，用于重建检索索引
+ * - PostgreSQL上把正文列设为不压缩的行外存储，按窗口读取时不必每次从头解压
+ */
+package com.storyteller.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+@Repository
+public class ChapterTextRepository {
+    
+    private static final Logger log = LoggerFactory.getLogger(ChapterTextRepository.class);
+    
+    /** 每次查询读取的正文字符数 */
+    private static final int WINDOW_CHARS = 16 * 1024;
+    
+    /** 遍历章节时每次从游标取回的行数 */
+    private static final int SCAN_FETCH_SIZE = 100;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 查询章节正文长度
+     * 
+     * @param chapterId 章节ID
+     * @return 正文字符数，章节不存在时返回-1
+     */
+    public long textLength(Long chapterId) {
+        List<Long> lengths = jdbcTemplate.queryForList(
+                "select char_length(text) from chapters where chapter_id = ?", Long.class, chapterId);
+        return lengths.isEmpty() ? -1 : lengths.get(0);
+    }
+    
+    /**
+     * 读取完整的章节正文
+     * 
+     * 只用于确实需要整章文本的场景（如重新索引），合成请使用openReader
+     * 
+     * @param chapterId 章节ID
+     * @return 章节正文，章节不存在时返回null
+     */
+    public String readText(Long chapterId) {
+        List<String> texts = jdbcTemplate.queryForList(
+                "select text from chapters where chapter_id = ?", String.class, chapterId);
+        return texts.isEmpty() ? null : texts.get(0);
+    }
+    
+    /**
+     * 打开章节正文的读取器
+     * 
+     * 每读完一个窗口再查询下一个窗口，内存中最多保留一个窗口的文本。
+     * 各窗口是独立的查询，读取期间章节被修改时可能读到新旧混合的内容，
+     * 需要一致性的调用方应比较读取前后的文本指纹
+     * 
+     * @param chapterId 章节ID
+     * @return 正文读取器，章节不存在时首次读取抛出IOException
+     */
+    public Reader openReader(Long chapterId) {
+        return new WindowReader(chapterId);
+    }
+    
+    /**
+     * 应用启动完成后把PostgreSQL中正文列的存储方式改为EXTERNAL
+     * 
+     * 长正文默认压缩后行外存储（TOAST），对压缩的值每次substring都要从头解压到窗口位置，
+     * 按窗口读完一章的开销随章节长度平方增长。不压缩时只需取回窗口之前的存储分块，不再解压；
+     * UTF-8等多字节编码下仍要从第一个分块取起，但按块读取的开销远小于解压。
+     * 只影响之后写入的正文，已有正文在章节下次更新时转换，
+     * 也可以手动执行 update chapters set text = text || '' 立即转换。
+     * 其他数据库不需要处理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void useExternalStorage() {
+        try {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equals(product)) {
+                return;
+            }
+            List<String> storage = jdbcTemplate.queryForList(
+                    "select attstorage from pg_attribute where attrelid = 'chapters'::regclass and attname = 'text'",
+                    String.class);
+            if (storage.isEmpty() || "e".equals(storage.get(0))) {
+                return;
+            }
+            jdbcTemplate.execute("alter table chapters alter column text set storage external");
+            log.info("章节正文列已改为不压缩的行外存储，已有正文在章节下次更新时转换");
+        } catch (DataAccessException e) {
+            // 例如数据库用户不是表的所有者，窗口读取仍然正确，只是长章节较慢
+            log.warn("无法修改章节正文列的存储方式", e);
+        }
+    }
+    
+    /**
+     * 逐个遍历所有章节的标题和正文
+     * 
+     * 在只读事务中使用游标分批取回，结果集不会整体加载到内存
+     * 
+     * @param handler 章节处理器
+     */
+    @Transactional(readOnly = true)
+    public void forEachChapter(ChapterTextHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "select id, chapter_id, title, text from chapters",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.handle(
+                rs.getLong("id"), rs.getLong("chapter_id"), rs.getString("title"), rs.getString("text")));
+    }
+    
+    /**
+     * 章节处理器
+     */
+    @FunctionalInterface
+    public interface ChapterTextHandler {
+        /**
+         * 处理一个章节
+         * 
+         * @param chapterKey 章节主键
+         * @param chapterId 章节ID
+         * @param title 章节标题
+         * @param text 章节正文
+         */
+        void handle(Long chapterKey, Long chapterId, String title, String text);
+    }
+    
+    /**
+     * 按窗口分段查询正文的读取器
+     */
+    private class WindowReader extends Reader {
+        /** 章节ID */
+        private final Long chapterId;
+        /** 下一个窗口的起始位置（SQL中从1开始，按数据库的字符计数） */
+        private int position = 1;
+        /** 当前窗口的文本 */
+        private String window = "";
+        /** 当前窗口中已读取的字符数 */
+        private int offset;
+        /** 是否已读完 */
+        private boolean eof;
+        
+        WindowReader(Long chapterId) {
+            this.chapterId = chapterId;
+        }
+        
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (offset == window.length()) {
+                if (eof || !fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, window.length() - offset);
+            window.getChars(offset, offset + n, cbuf, off);
+            offset += n;
+            return n;
+        }
+        
+        /**
+         * 查询下一个窗口
+         * 
+         * substring的位置按数据库的字符计数：PostgreSQL按码点，H2按UTF-16单元，
+         * 增补平面的字符在两者中占的长度不同，因此窗口长度也由数据库用char_length计算，
+         * 不能用Java字符串的length()推进位置。
+         * PostgreSQL上正文列需为EXTERNAL存储，否则每个窗口都要从头解压，见useExternalStorage
+         * 
+         * @return 读到了新的文本时返回true
+         * @throws IOException 章节不存在
+         */
+        private boolean fill() throws IOException {
+            int[] windowChars = {-1};
+            jdbcTemplate.query(
+                    "select w, char_length(w) from "
+                            + "(select substring(text from ? for ?) as w from chapters where chapter_id = ?) t",
+                    (RowCallbackHandler) rs -> {
+                        String text = rs.getString(1);
+                        window = text == null ? "" : text;
+                        windowChars[0] = rs.getInt(2);
+                    },
+                    position, WINDOW_CHARS, chapterId);
+            if (windowChars[0] < 0) {
+                throw new IOException("章节不存在: " + chapterId);
+            }
+            offset = 0;
+            position += windowChars[0];
+            eof = windowChars[0] < WINDOW_CHARS;
+            return !window.isEmpty();
+        }
+        
+        @Override
+        public void close() {
+            eof = true;
+            window = "";
+            offset = 0;
+        }
+    }
+}
\ No newline at end of file
@@ -6,6 +6,7 @@
  * - 按任务ID查询合成任务
  * - 按用户ID查询合成任务列表
  * - 按状态查询合成任务列表
+ * - 查询用户最近的合成历史
  * - 继承JpaRepository提供标准CRUD操作
  */
 package com.storyteller.repository;
@@ -37,8 +38,16 @@ public interface SynthesisTaskRepository extends JpaRepository<SynthesisTask, Lo
     /**
      * 按状态查询合成任务列表
      * 
-     * @param status 任务状态（如"PENDING", "PROCESSING", "COMPLETED", "FAILED"）
+     * @param status 任务状态（如"PENDING", "PROCESSING", "COMPLETED", "FAILED", "CANCELLED"）
      * @return 对应状态的合成任务列表
      */
     List<SynthesisTask> findByStatus(String status);
+    
+    /**
+     * 查询用户最近的合成任务
+     * 
+     * @param userId 用户ID
+     * @return 该用户最近的10个合成任务，按创建时间倒序
+     */
+    List<SynthesisTask> findTop10ByUserIdOrderByCreatedAtDesc(Long userId);
 }
\ No newline at end of file
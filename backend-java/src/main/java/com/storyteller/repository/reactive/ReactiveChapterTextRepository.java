@@ -0,0 +1,95 @@
+/**
+ * 章节正文响应式数据仓库
+ * 响应式配置下按窗口分段读取章节正文，与ChapterTextRepository对应
+ * 
+ * 功能：
+ * - 查询章节正文长度
+ * - 以Flux的形式逐个窗口读取正文，下游请求时才查询下一个窗口
+ */
+package com.storyteller.repository.reactive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public class ReactiveChapterTextRepository {
+    
+    /** 每次查询读取的正文字符数 */
+    private static final int WINDOW_CHARS = 16 * 1024;
+    
+    @Autowired
+    private DatabaseClient databaseClient;
+    
+    /**
+     * 查询章节正文长度
+     * 
+     * @param chapterId 章节ID
+     * @return 正文字符数，章节不存在时为空
+     */
+    public Mono<Long> textLength(Long chapterId) {
+        return databaseClient.sql("select cast(char_length(text) as bigint) as length from chapters where chapter_id = :chapterId")
+                .bind("chapterId", chapterId)
+                .map(row -> row.get("length", Long.class))
+                .one();
+    }
+    
+    /**
+     * 按窗口读取章节正文
+     * 
+     * @param chapterId 章节ID
+     * @return 依次排列的正文窗口，章节不存在时以IllegalArgumentException结束
+     */
+    public Flux<String> readWindows(Long chapterId) {
+        return readWindow(chapterId, 1)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("章节不存在: " + chapterId)))
+                .expand(window -> window.chars < WINDOW_CHARS
+                        ? Mono.empty()
+                        : readWindow(chapterId, window.position + window.chars))
+                .map(window -> window.text)
+                .filter(text -> !text.isEmpty());
+    }
+    
+    /**
+     * 查询一个窗口
+     * 
+     * substring的位置按码点计数，与Java字符串的length()在增补平面的字符上不一致，
+     * 因此窗口长度同样由数据库用char_length计算。
+     * 正文列的EXTERNAL存储由ChapterTextRepository在启动时设置，窗口查询不必从头解压
+     * 
+     * @param chapterId 章节ID
+     * @param position 起始位置（从1开始）
+     * @return 窗口文本，章节不存在时为空
+     */
+    private Mono<Window> readWindow(Long chapterId, int position) {
+        return databaseClient.sql("select part, char_length(part) as chars from "
+                        + "(select substring(text from :position for :length) as part from chapters where chapter_id = :chapterId) t")
+                .bind("position", position)
+                .bind("length", WINDOW_CHARS)
+                .bind("chapterId", chapterId)
+                .map(row -> new Window(position, row.get("part", String.class), row.get("chars", Integer.class)))
+                .one();
+    }
+    
+    /**
+     * 正文窗口
+     */
+    private static class Window {
+        /** 起始位置（从1开始） */
+        private final int position;
+        /** 窗口文本 */
+        private final String text;
+        /** 窗口长度，按数据库的字符计数 */
+        private final int chars;
+        
+        Window(int position, String text, Integer chars) {
+            this.position = position;
+            this.text = text == null ? "" : text;
+            this.chars = chars == null ? 0 : chars;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/**
+ * 语音合成任务响应式数据仓库
+ * 响应式配置下以非阻塞方式访问synthesis_tasks表
+ * 
+ * 功能：
+ * - 按任务ID查询合成任务
+ * - 按用户ID查询合成任务
+ * - 继承R2dbcRepository提供标准CRUD操作
+ */
+package com.storyteller.repository.reactive;
+
+import com.storyteller.entity.reactive.SynthesisTaskRecord;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveSynthesisTaskRepository extends R2dbcRepository<SynthesisTaskRecord, Long> {
+    /**
+     * 按任务ID查询合成任务
+     * 
+     * @param taskId 任务ID
+     * @return 对应的合成任务，不存在时为空
+     */
+    Mono<SynthesisTaskRecord> findByTaskId(String taskId);
+    
+    /**
+     * 按用户ID查询合成任务
+     * 
+     * @param userId 用户ID
+     * @return 该用户的所有合成任务
+     */
+    Flux<SynthesisTaskRecord> findByUserId(Long userId);
+}
\ No newline at end of file
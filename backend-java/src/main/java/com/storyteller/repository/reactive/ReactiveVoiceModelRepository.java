@@ -0,0 +1,35 @@
+/**
+ * 声音模型响应式数据仓库
+ * 响应式配置下以非阻塞方式访问voice_models表
+ * 
+ * 功能：
+ * - 按用户ID查询声音模型
+ * - 按模型ID查询声音模型
+ * - 继承R2dbcRepository提供标准CRUD操作
+ */
+package com.storyteller.repository.reactive;
+
+import com.storyteller.entity.reactive.VoiceModelRecord;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveVoiceModelRepository extends R2dbcRepository<VoiceModelRecord, Long> {
+    /**
+     * 按用户ID查询声音模型列表
+     * 
+     * @param userId 用户ID
+     * @return 该用户的所有声音模型
+     */
+    Flux<VoiceModelRecord> findByUserId(Long userId);
+    
+    /**
+     * 按模型ID查询声音模型
+     * 
+     * @param modelId 模型ID
+     * @return 对应的声音模型，不存在时为空
+     */
+    Mono<VoiceModelRecord> findByModelId(String modelId);
+}
\ No newline at end of file
@@ -0,0 +1,733 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.Chapter;
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.repository.ChapterTextRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 章节全文检索服务
+ * 维护章节标题和正文的进程内倒排索引
+ * 
+ * 功能：
+ * - 中日韩文字按二元组（bigram）切分，每个字另外索引单字，单字查询也能命中连续文字中的字
+ * - 字母数字按单词切分并转为小写，全角和简繁差异在索引前折叠
+ * - 章节保存、更新、删除时同步更新索引，启动后在后台线程从数据库重建
+ * - 多词查询按倒排表求交集，结果按章节顺序分页返回
+ * - 索引未就绪、已关闭或章节数超出上限时，检索退化为数据库的标题模糊匹配
+ * 
+ * 查询语义为所有词元同时出现，不校验词元之间的相邻关系。
+ * 索引只存在于当前进程的堆内，只能感知本进程提交的章节修改；
+ * 多个节点共用数据库时，其他节点的修改要到本节点重启重建后才能检索到。
+ * search()会阻塞地查询数据库，响应式配置下调用方需放到boundedElastic线程执行
+ */
+@Service
+public class ChapterSearchService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ChapterSearchService.class);
+    
+    /** 触发压缩的最少失效文档数 */
+    private static final int COMPACT_MIN_DELETED = 1024;
+    
+    @Autowired
+    private ChapterRepository chapterRepository;
+    
+    @Autowired
+    private ChapterTextRepository chapterTextRepository;
+    
+    @Autowired
+    @Qualifier("searchIndexExecutor")
+    private ExecutorService searchIndexExecutor;
+    
+    /** 是否维护全文索引 */
+    @Value("${storyteller.search.enabled:true}")
+    private boolean enabled = true;
+    
+    /** 索引的最多章节数，超出时放弃索引以限制堆内存占用 */
+    @Value("${storyteller.search.max-chapters:200000}")
+    private int maxChapters = 200000;
+    
+    /** 索引已覆盖数据库中的全部章节，可以用于检索 */
+    private volatile boolean ready;
+    
+    /** 是否接受索引更新，超出章节数上限后置为false（受写锁保护） */
+    private boolean indexing = true;
+    
+    /** 是否正在重建（受写锁保护） */
+    private boolean rebuilding;
+    
+    /** 重建期间被更新或删除的章节主键，重建扫描读到的旧内容不能覆盖它们（受写锁保护） */
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    
+    /** 保护索引结构的读写锁，查询并发执行，更新互斥 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    /** 中日韩二元组和单字的倒排表，键为两个字符拼成的int */
+    private final GramTable grams = new GramTable();
+    
+    /** 单词的倒排表 */
+    private final Map<String, Postings> words = new HashMap<>();
+    
+    /** 章节主键到文档编号的映射 */
+    private final Map<Long, Integer> docByChapterKey = new HashMap<>();
+    
+    /** 文档编号对应的章节ID（业务ID），用于排序和取回章节 */
+    private long[] chapterIdByDoc = new long[1024];
+    
+    /** 文档编号对应的标题和正文哈希，内容未变化时跳过重新索引 */
+    private int[] contentHashByDoc = new int[1024];
+    
+    /** 已被删除或被新版本替换的文档 */
+    private final BitSet deleted = new BitSet();
+    
+    /** 已分配的文档数量 */
+    private int docCount;
+    
+    /**
+     * 应用启动完成后在后台线程重建索引
+     * 
+     * 重建需要读取全部章节正文，不阻塞启动，重建完成前检索按标题匹配
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRebuild() {
+        if (!enabled) {
+            log.info("章节全文索引已关闭，检索按标题匹配");
+            return;
+        }
+        searchIndexExecutor.execute(this::rebuild);
+    }
+    
+    /**
+     * 从数据库重建索引
+     * 
+     * 章节正文是延迟加载的，逐个实体读取会对每个章节多发一次查询，
+     * 因此直接用游标遍历章节表。
+     * 重建期间章节仍可能被修改，已由增量更新处理过的章节不再用扫描读到的内容覆盖
+     */
+    public void rebuild() {
+        long total = chapterRepository.count();
+        if (total > maxChapters) {
+            log.warn("章节数{}超出全文索引上限{}，检索按标题匹配", total, maxChapters);
+            lock.writeLock().lock();
+            try {
+                abandon();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long start = System.currentTimeMillis();
+        long[] count = {0};
+        boolean completed = false;
+        try {
+            chapterTextRepository.forEachChapter((chapterKey, chapterId, title, text) -> {
+                index(chapterKey, chapterId, title, text, true);
+                count[0]++;
+            });
+            completed = true;
+        } catch (RuntimeException e) {
+            log.warn("章节索引重建失败，检索按标题匹配", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                touchedDuringRebuild.clear();
+                ready = completed && indexing;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (ready) {
+            log.info("章节索引重建完成: {}个章节, 耗时{}ms", count[0], System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * 索引是否可以用于检索
+     * 
+     * @return 重建已完成且未超出章节数上限时返回true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * 索引或重新索引章节
+     * 
+     * @param chapter 章节实体
+     */
+    public void index(Chapter chapter) {
+        index(chapter.getId(), chapter.getChapterId(), chapter.getTitle(), chapter.getText());
+    }
+    
+    /**
+     * 索引或重新索引章节
+     * 
+     * 已有的旧版本标记为删除，新版本分配新的文档编号，
+     * 因此倒排表始终按文档编号递增追加
+     * 
+     * @param chapterKey 章节主键
+     * @param chapterId 章节ID
+     * @param title 章节标题
+     * @param text 章节正文
+     */
+    public void index(Long chapterKey, Long chapterId, CharSequence title, CharSequence text) {
+        index(chapterKey, chapterId, title, text, false);
+    }
+    
+    /**
+     * 索引或重新索引章节
+     * 
+     * @param chapterKey 章节主键
+     * @param chapterId 章节ID
+     * @param title 章节标题
+     * @param text 章节正文
+     * @param scanned 是否为重建扫描读到的内容
+     */
+    private void index(Long chapterKey, Long chapterId, CharSequence title, CharSequence text, boolean scanned) {
+        if (!enabled) {
+            return;
+        }
+        int contentHash = 31 * String.valueOf(title).hashCode() + String.valueOf(text).hashCode();
+        lock.writeLock().lock();
+        try {
+            if (!indexing) {
+                return;
+            }
+            if (scanned) {
+                if (touchedDuringRebuild.contains(chapterKey)) {
+                    return;
+                }
+            } else if (rebuilding) {
+                touchedDuringRebuild.add(chapterKey);
+            }
+            Integer previous = docByChapterKey.get(chapterKey);
+            if (previous != null) {
+                if (contentHashByDoc[previous] == contentHash && chapterIdByDoc[previous] == chapterId) {
+                    return;
+                }
+                deleted.set(previous);
+            } else if (docByChapterKey.size() >= maxChapters) {
+                log.warn("索引章节数达到上限{}，放弃全文索引，检索按标题匹配", maxChapters);
+                abandon();
+                return;
+            }
+            int doc = docCount++;
+            if (doc == chapterIdByDoc.length) {
+                chapterIdByDoc = Arrays.copyOf(chapterIdByDoc, doc * 2);
+                contentHashByDoc = Arrays.copyOf(contentHashByDoc, doc * 2);
+            }
+            chapterIdByDoc[doc] = chapterId;
+            contentHashByDoc[doc] = contentHash;
+            docByChapterKey.put(chapterKey, doc);
+            
+            TokenSink sink = new TokenSink() {
+                @Override
+                public void gram(int key) {
+                    grams.getOrCreate(key).add(doc);
+                }
+                
+                @Override
+                public void word(String word) {
+                    words.computeIfAbsent(word, k -> new Postings()).add(doc);
+                }
+            };
+            tokenize(title, true, sink);
+            tokenize(text, true, sink);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 从索引中移除章节
+     * 
+     * @param chapterKey 章节主键
+     */
+    public void remove(Long chapterKey) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                touchedDuringRebuild.add(chapterKey);
+            }
+            Integer doc = docByChapterKey.remove(chapterKey);
+            if (doc != null) {
+                deleted.set(doc);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 放弃全文索引并释放索引占用的内存
+     * 
+     * 之后的更新都被忽略，直到进程重启。
+     * 调用方必须持有写锁
+     */
+    private void abandon() {
+        indexing = false;
+        ready = false;
+        grams.clear();
+        words.clear();
+        docByChapterKey.clear();
+        chapterIdByDoc = new long[1024];
+        contentHashByDoc = new int[1024];
+        deleted.clear();
+        docCount = 0;
+    }
+    
+    /**
+     * 失效文档超过一半时压缩索引
+     * 
+     * 重新连续编号存活的文档，并从倒排表中剔除失效文档。
+     * 调用方必须持有写锁
+     */
+    private void compactIfNeeded() {
+        int dead = deleted.cardinality();
+        if (dead < COMPACT_MIN_DELETED || dead * 2 < docCount) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                remap[doc] = -1;
+            } else {
+                remap[doc] = live;
+                chapterIdByDoc[live] = chapterIdByDoc[doc];
+                contentHashByDoc[live] = contentHashByDoc[doc];
+                live++;
+            }
+        }
+        grams.remap(remap);
+        words.values().removeIf(postings -> postings.remap(remap));
+        docByChapterKey.replaceAll((key, doc) -> remap[doc]);
+        deleted.clear();
+        docCount = live;
+    }
+    
+    /**
+     * 检索章节并分页返回
+     * 
+     * 索引未就绪时退化为标题模糊匹配，排序按分页参数
+     * 
+     * @param query 查询文本
+     * @param pageable 分页参数
+     * @return 按章节ID升序排列的匹配章节摘要
+     */
+    public Page<ChapterSummary> search(String query, Pageable pageable) {
+        if (!ready) {
+            return chapterRepository.findSummaryByTitleContaining(query.trim(), pageable);
+        }
+        SearchHits hits = searchChapterIds(query, (int) pageable.getOffset(), pageable.getPageSize());
+        if (hits.getChapterIds().length == 0) {
+            return new PageImpl<>(List.of(), pageable, hits.getTotal());
+        }
+        
+        List<Long> chapterIds = Arrays.stream(hits.getChapterIds()).boxed().collect(Collectors.toList());
+        Map<Long, ChapterSummary> byId = chapterRepository.findSummaryByChapterIdIn(chapterIds).stream()
+                .collect(Collectors.toMap(ChapterSummary::getChapterId, Function.identity()));
+        List<ChapterSummary> content = new ArrayList<>(chapterIds.size());
+        for (Long chapterId : chapterIds) {
+            ChapterSummary chapter = byId.get(chapterId);
+            if (chapter != null) {
+                content.add(chapter);
+            }
+        }
+        return new PageImpl<>(content, pageable, hits.getTotal());
+    }
+    
+    /**
+     * 检索匹配的章节ID
+     * 
+     * @param query 查询文本
+     * @param offset 结果偏移量
+     * @param limit 返回的最大数量
+     * @return 本页的章节ID和匹配总数
+     */
+    public SearchHits searchChapterIds(String query, int offset, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            boolean[] missing = {false};
+            tokenize(query, false, new TokenSink() {
+                @Override
+                public void gram(int key) {
+                    collect(grams.get(key));
+                }
+                
+                @Override
+                public void word(String word) {
+                    collect(words.get(word));
+                }
+                
+                private void collect(Postings postings) {
+                    if (postings == null) {
+                        missing[0] = true;
+                    } else {
+                        lists.add(postings);
+                    }
+                }
+            });
+            if (missing[0] || lists.isEmpty()) {
+                return new SearchHits(new long[0], 0);
+            }
+            
+            // 从最短的倒排表开始求交集
+            lists.sort(Comparator.comparingInt(p -> p.size));
+            int[] matched = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+            int count = matched.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = intersect(matched, count, lists.get(i));
+            }
+            
+            long[] chapterIds = new long[count];
+            int live = 0;
+            for (int i = 0; i < count; i++) {
+                if (!deleted.get(matched[i])) {
+                    chapterIds[live++] = chapterIdByDoc[matched[i]];
+                }
+            }
+            Arrays.sort(chapterIds, 0, live);
+            
+            int from = Math.min(offset, live);
+            int to = Math.min(live, from + limit);
+            return new SearchHits(Arrays.copyOfRange(chapterIds, from, to), live);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 将候选文档与倒排表求交集，结果写回候选数组
+     * 
+     * @param candidates 升序排列的候选文档
+     * @param count 候选数量
+     * @param postings 倒排表
+     * @return 交集数量
+     */
+    private static int intersect(int[] candidates, int count, Postings postings) {
+        int[] docs = postings.docs;
+        int size = postings.size;
+        int out = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < size; i++) {
+            int doc = candidates[i];
+            while (j < size && docs[j] < doc) {
+                j++;
+            }
+            if (j < size && docs[j] == doc) {
+                candidates[out++] = doc;
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * 将文本切分为词元
+     * 
+     * 连续的中日韩文字输出相邻二元组；建立索引时每个字另外输出单字，
+     * 查询时只有一个字的文字才输出单字，多字查询只用二元组求交集。
+     * 连续的字母数字输出为一个单词
+     * 
+     * @param text 文本
+     * @param indexing 是否为建立索引切分
+     * @param sink 词元接收器
+     */
+    static void tokenize(CharSequence text, boolean indexing, TokenSink sink) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = TextNormalizationService.foldForSearch(text.charAt(i));
+            if (isCjk(c)) {
+                int runStart = i;
+                char previous = c;
+                if (indexing) {
+                    sink.gram(unigram(c));
+                }
+                i++;
+                while (i < length) {
+                    char next = TextNormalizationService.foldForSearch(text.charAt(i));
+                    if (!isCjk(next)) {
+                        break;
+                    }
+                    sink.gram(previous << 16 | next);
+                    if (indexing) {
+                        sink.gram(unigram(next));
+                    }
+                    previous = next;
+                    i++;
+                }
+                if (!indexing && i - runStart == 1) {
+                    sink.gram(unigram(c));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                StringBuilder word = new StringBuilder();
+                while (i < length) {
+                    char next = TextNormalizationService.foldForSearch(text.charAt(i));
+                    if (!Character.isLetterOrDigit(next) || isCjk(next)) {
+                        break;
+                    }
+                    word.append(next);
+                    i++;
+                }
+                sink.word(word.toString());
+            } else {
+                i++;
+            }
+        }
+    }
+    
+    /**
+     * 单字的键，低16位为0xFFFF（非字符），不会与二元组冲突
+     * 
+     * @param c 字符
+     * @return 单字的键
+     */
+    static int unigram(char c) {
+        return c << 16 | 0xFFFF;
+    }
+    
+    /**
+     * 判断是否为按二元组切分的中日韩文字
+     * 
+     * @param c 字符
+     * @return 中日韩文字返回true
+     */
+    private static boolean isCjk(char c) {
+        if (c >= '\u4E00' && c <= '\u9FFF') {
+            return true;
+        }
+        if (c < '\u2E80') {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+    
+    /**
+     * 词元接收器
+     */
+    interface TokenSink {
+        /**
+         * 接收中日韩二元组或单字
+         * 
+         * @param key 两个字符拼成的键，单字的低16位为0xFFFF
+         */
+        void gram(int key);
+        
+        /**
+         * 接收单词
+         * 
+         * @param word 小写单词
+         */
+        void word(String word);
+    }
+    
+    /**
+     * 倒排表
+     * 按文档编号升序保存包含某个词元的文档
+     */
+    private static class Postings {
+        private int[] docs = new int[4];
+        private int size;
+        
+        /**
+         * 追加文档，同一文档重复出现时只记录一次
+         * 
+         * @param doc 文档编号，不小于已有的最大编号
+         */
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+        
+        /**
+         * 按新的编号重写倒排表，丢弃失效文档
+         * 
+         * @param remap 旧编号到新编号的映射，-1表示失效
+         * @return 倒排表变为空时返回true
+         */
+        boolean remap(int[] remap) {
+            int out = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[out++] = doc;
+                }
+            }
+            size = out;
+            return size == 0;
+        }
+    }
+    
+    /**
+     * 以int为键的开放寻址哈希表
+     * 二元组数量可达数百万，避免HashMap的装箱和节点开销
+     */
+    private static class GramTable {
+        private int[] keys = new int[1 << 12];
+        private Postings[] values = new Postings[1 << 12];
+        private int size;
+        
+        /**
+         * 查找倒排表
+         * 
+         * @param key 二元组键
+         * @return 倒排表，不存在时返回null
+         */
+        Postings get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * 查找倒排表，不存在时创建
+         * 
+         * @param key 二元组键
+         * @return 倒排表
+         */
+        Postings getOrCreate(int key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            Postings postings = new Postings();
+            keys[slot] = key;
+            values[slot] = postings;
+            if (++size * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            return postings;
+        }
+        
+        /**
+         * 重写所有倒排表并丢弃变为空的条目
+         * 
+         * @param remap 旧文档编号到新编号的映射
+         */
+        void remap(int[] remap) {
+            int[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new int[oldKeys.length];
+            values = new Postings[oldValues.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null && !oldValues[i].remap(remap)) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        /**
+         * 清空所有倒排表并恢复初始容量
+         */
+        void clear() {
+            keys = new int[1 << 12];
+            values = new Postings[1 << 12];
+            size = 0;
+        }
+        
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new int[capacity];
+            values = new Postings[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private void put(int key, Postings postings) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = postings;
+            size++;
+        }
+        
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+    
+    /**
+     * 检索结果
+     * 包含当前页的章节ID和匹配总数
+     */
+    public static class SearchHits {
+        /** 当前页的章节ID，按升序排列 */
+        private final long[] chapterIds;
+        /** 匹配的章节总数 */
+        private final long total;
+        
+        public SearchHits(long[] chapterIds, long total) {
+            this.chapterIds = chapterIds;
+            this.total = total;
+        }
+        
+        public long[] getChapterIds() { return chapterIds; }
+        public long getTotal() { return total; }
+    }
+}
\ No newline at end of file
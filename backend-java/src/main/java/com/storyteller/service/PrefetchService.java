@@ -0,0 +1,437 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.repository.ChapterTextRepository;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预取服务
+ * 在用户收听当前章节时，推测性地预先合成后续章节
+ * 
+ * 功能：
+ * - 根据章节顺序和用户的合成历史决定预取深度
+ * - 使用相同的声音模型在低优先级线程上合成后续章节，正文从数据库分段读取
+ * - 按用户和节点限制同时进行的预取数量
+ * - 用户更换声音模型或停止收听时取消预取
+ */
+@Service
+@Profile("!reactive")
+public class PrefetchService {
+    
+    private static final Logger log = LoggerFactory.getLogger(PrefetchService.class);
+    
+    /** 进度推送的目的地前缀，用于识别正在收听的用户 */
+    private static final String PROGRESS_DESTINATION_PREFIX = "/topic/progress/";
+    
+    @Autowired
+    private ChapterRepository chapterRepository;
+    
+    @Autowired
+    private ChapterTextRepository chapterTextRepository;
+    
+    @Autowired
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    @Autowired
+    private TTSService ttsService;
+    
+    @Autowired
+    @Qualifier("prefetchExecutor")
+    private ExecutorService prefetchExecutor;
+    
+    /** 是否启用预取 */
+    @Value("${storyteller.prefetch.enabled:true}")
+    private boolean enabled;
+    
+    /** 最多向后预取的章节数 */
+    @Value("${storyteller.prefetch.max-lookahead:2}")
+    private int maxLookahead;
+    
+    /** 每个用户同时进行的预取上限 */
+    @Value("${storyteller.prefetch.max-per-user:2}")
+    private int maxPerUser;
+    
+    /** 本节点同时进行的预取上限 */
+    @Value("${storyteller.prefetch.max-per-node:8}")
+    private int maxPerNode;
+    
+    /** 缓存的预取结果上限 */
+    @Value("${storyteller.prefetch.max-cached:256}")
+    private int maxCached;
+    
+    /** 用户ID到预取会话的映射 */
+    private final Map<Long, PrefetchSession> sessions = new ConcurrentHashMap<>();
+    
+    /** WebSocket会话ID到用户ID的映射，用于判断用户是否仍在收听 */
+    private final Map<String, Long> listeners = new ConcurrentHashMap<>();
+    
+    /** 预取结果（按访问顺序淘汰），键由章节和声音模型组成 */
+    private final Map<String, Future<PrefetchResult>> prefetched = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /** 本节点正在进行的预取数量 */
+    private final AtomicInteger nodeInFlight = new AtomicInteger();
+    
+    /**
+     * 记录用户请求了新的章节
+     * 
+     * 如果用户更换了声音模型，之前的预取结果不再有用，立即取消
+     * 
+     * @param userId 用户ID
+     * @param voiceModelId 本次请求使用的声音模型ID
+     */
+    public void onChapterRequested(Long userId, String voiceModelId) {
+        PrefetchSession session = sessions.get(userId);
+        if (session != null && !session.voiceModelId.equals(voiceModelId)) {
+            cancel(userId);
+        }
+    }
+    
+    /**
+     * 章节合成完成后安排后续章节的预取
+     * 
+     * 预取只是优化，失败时不影响已完成的任务
+     * 
+     * @param task 已完成的合成任务
+     */
+    public void schedulePrefetch(SynthesisTask task) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            doSchedulePrefetch(task);
+        } catch (RuntimeException e) {
+            log.warn("安排预取失败: userId={}, chapterId={}", task.getUserId(), task.getChapterId(), e);
+        }
+    }
+    
+    /**
+     * 查找后续章节并在额度允许时提交预取
+     * 
+     * @param task 已完成的合成任务
+     */
+    private void doSchedulePrefetch(SynthesisTask task) {
+        List<SynthesisTask> history = synthesisTaskRepository.findTop10ByUserIdOrderByCreatedAtDesc(task.getUserId());
+        int lookahead = lookahead(history, task.getVoiceModelId());
+        List<ChapterSummary> nextChapters = chapterRepository.findSummaryByChapterIdGreaterThanOrderByChapterIdAsc(
+                task.getChapterId(), PageRequest.of(0, lookahead));
+        
+        PrefetchSession session = sessions.compute(task.getUserId(), (userId, existing) ->
+                existing != null && existing.voiceModelId.equals(task.getVoiceModelId())
+                        ? existing : new PrefetchSession(task.getVoiceModelId()));
+        
+        for (ChapterSummary chapter : nextChapters) {
+            if (alreadySynthesized(history, chapter.getChapterId(), task.getVoiceModelId())) {
+                continue;
+            }
+            String key = cacheKey(chapter.getChapterId(), task.getVoiceModelId());
+            synchronized (prefetched) {
+                if (prefetched.containsKey(key)) {
+                    continue;
+                }
+            }
+            if (!reserveBudget(session)) {
+                break;
+            }
+            submit(task.getUserId(), session, key, chapter.getChapterId());
+        }
+    }
+    
+    /**
+     * 取出预取结果
+     * 
+     * 只复用已经完成的预取：仍在排队或合成中的预取直接取消，由调用方立即正常合成，
+     * 避免前台任务等待低优先级执行器上其他用户的预取。预取失败或被取消时同样返回null。
+     * 请求文本与预取合成的文本指纹不一致，或章节在预取开始后被修改（更新时间不同）时不复用
+     * 
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @param text 要合成的文本内容，为null时表示合成数据库中的章节正文
+     * @return 预取得到的音频URL，没有可用结果时返回null
+     * @throws InterruptedException 读取预取结果时线程被中断
+     */
+    public String takePrefetched(Long chapterId, String voiceModelId, String text) throws InterruptedException {
+        Future<PrefetchResult> future;
+        synchronized (prefetched) {
+            future = prefetched.remove(cacheKey(chapterId, voiceModelId));
+        }
+        if (future == null) {
+            return null;
+        }
+        if (!future.isDone()) {
+            future.cancel(true);
+            return null;
+        }
+        
+        PrefetchResult result;
+        try {
+            result = future.get();
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        }
+        
+        if (text != null) {
+            return result.fingerprint == TextChunker.fingerprint(text) ? result.audioUrl : null;
+        }
+        // 章节正文的变化通过更新时间判断，无需再次读取整章正文
+        ChapterSummary chapter = chapterRepository.findSummaryByChapterId(chapterId);
+        return chapter != null && Objects.equals(chapter.getUpdatedAt(), result.updatedAt) ? result.audioUrl : null;
+    }
+    
+    /**
+     * 取消用户的所有预取
+     * 
+     * 用于用户停止收听或更换声音模型的情况
+     * 
+     * @param userId 用户ID
+     */
+    public void cancel(Long userId) {
+        PrefetchSession session = sessions.remove(userId);
+        if (session == null) {
+            return;
+        }
+        session.inFlight.forEach((key, future) -> {
+            future.cancel(true);
+            synchronized (prefetched) {
+                prefetched.remove(key, future);
+            }
+        });
+    }
+    
+    /**
+     * 记录用户订阅了进度推送，视为开始收听
+     * 
+     * @param event STOMP订阅事件
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(PROGRESS_DESTINATION_PREFIX)) {
+            return;
+        }
+        try {
+            Long userId = Long.valueOf(destination.substring(PROGRESS_DESTINATION_PREFIX.length()));
+            listeners.put(accessor.getSessionId(), userId);
+        } catch (NumberFormatException ignored) {
+            // 非用户进度主题，忽略
+        }
+    }
+    
+    /**
+     * WebSocket断开时，如果用户已没有其他连接，视为停止收听并取消预取
+     * 
+     * @param event 会话断开事件
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Long userId = listeners.remove(event.getSessionId());
+        if (userId != null && !listeners.containsValue(userId)) {
+            cancel(userId);
+        }
+    }
+    
+    /**
+     * 根据合成历史决定预取深度
+     * 
+     * 用户连续按顺序收听的章节越多，越值得向后多预取
+     * 
+     * @param history 最近的合成任务，按创建时间倒序
+     * @param voiceModelId 当前声音模型ID
+     * @return 预取章节数，至少为1
+     */
+    private int lookahead(List<SynthesisTask> history, String voiceModelId) {
+        int streak = 0;
+        for (int i = 0; i + 1 < history.size(); i++) {
+            SynthesisTask newer = history.get(i);
+            SynthesisTask older = history.get(i + 1);
+            if (!voiceModelId.equals(newer.getVoiceModelId())
+                    || !voiceModelId.equals(older.getVoiceModelId())
+                    || newer.getChapterId() <= older.getChapterId()) {
+                break;
+            }
+            streak++;
+        }
+        return Math.max(1, Math.min(maxLookahead, 1 + streak));
+    }
+    
+    /**
+     * 判断章节是否已经用相同的声音模型合成过
+     * 
+     * @param history 最近的合成任务
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @return 已有完成的合成结果时返回true
+     */
+    private boolean alreadySynthesized(List<SynthesisTask> history, Long chapterId, String voiceModelId) {
+        return history.stream().anyMatch(t -> chapterId.equals(t.getChapterId())
+                && voiceModelId.equals(t.getVoiceModelId())
+                && "COMPLETED".equals(t.getStatus()));
+    }
+    
+    /**
+     * 占用用户和节点的预取额度
+     * 
+     * @param session 用户的预取会话
+     * @return 额度充足时返回true
+     */
+    private boolean reserveBudget(PrefetchSession session) {
+        if (session.count.incrementAndGet() > maxPerUser) {
+            session.count.decrementAndGet();
+            return false;
+        }
+        if (nodeInFlight.incrementAndGet() > maxPerNode) {
+            nodeInFlight.decrementAndGet();
+            session.count.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * 提交预取任务到低优先级执行器
+     * 
+     * @param userId 用户ID
+     * @param session 用户的预取会话
+     * @param key 预取结果的缓存键
+     * @param chapterId 章节ID
+     */
+    private void submit(Long userId, PrefetchSession session, String key, Long chapterId) {
+        // 无论正常完成还是排队时被取消，都在done()中归还额度
+        FutureTask<PrefetchResult> future = new FutureTask<>(() -> synthesizeChapter(chapterId, session.voiceModelId)) {
+            @Override
+            protected void done() {
+                session.inFlight.remove(key);
+                session.count.decrementAndGet();
+                nodeInFlight.decrementAndGet();
+            }
+        };
+        
+        session.inFlight.put(key, future);
+        synchronized (prefetched) {
+            prefetched.put(key, future);
+            if (prefetched.size() > maxCached) {
+                // 被淘汰的预取不会再被取出，仍在进行的需要取消以归还额度
+                Iterator<Future<PrefetchResult>> eldest = prefetched.values().iterator();
+                eldest.next().cancel(true);
+                eldest.remove();
+            }
+        }
+        
+        try {
+            prefetchExecutor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+            synchronized (prefetched) {
+                prefetched.remove(key, future);
+            }
+            return;
+        }
+        
+        // 提交期间用户可能已取消，确保新任务不会遗留
+        if (sessions.get(userId) != session) {
+            future.cancel(true);
+        }
+    }
+    
+    /**
+     * 从数据库分段读取章节正文并合成
+     * 
+     * 更新时间在读取正文之前查询，合成期间章节被修改时取出的更新时间不同，结果不会被复用
+     * 
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @return 合成结果、所合成文本的指纹和章节的更新时间
+     * @throws IOException 读取章节正文失败
+     */
+    private PrefetchResult synthesizeChapter(Long chapterId, String voiceModelId) throws IOException {
+        ChapterSummary chapter = chapterRepository.findSummaryByChapterId(chapterId);
+        if (chapter == null) {
+            throw new IllegalArgumentException("章节不存在: " + chapterId);
+        }
+        try (Reader reader = chapterTextRepository.openReader(chapterId)) {
+            TextChunker chunker = ttsService.chunker(reader);
+            String audioUrl = ttsService.synthesizeChunked(chunker, voiceModelId, consumed -> { });
+            return new PrefetchResult(audioUrl, chunker.fingerprint(), chapter.getUpdatedAt());
+        }
+    }
+    
+    /**
+     * 生成预取结果的缓存键
+     * 
+     * 文本是否一致在取出时通过指纹判断
+     * 
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @return 缓存键
+     */
+    private static String cacheKey(Long chapterId, String voiceModelId) {
+        return chapterId + ":" + voiceModelId;
+    }
+    
+    /**
+     * 预取结果
+     * 记录音频URL、合成时读到的文本指纹和章节的更新时间
+     */
+    private static class PrefetchResult {
+        /** 合成音频的URL地址 */
+        private final String audioUrl;
+        /** 所合成文本的指纹，用于与请求文本比较 */
+        private final long fingerprint;
+        /** 开始读取正文时章节的更新时间，用于判断章节正文是否被修改 */
+        private final LocalDateTime updatedAt;
+        
+        PrefetchResult(String audioUrl, long fingerprint, LocalDateTime updatedAt) {
+            this.audioUrl = audioUrl;
+            this.fingerprint = fingerprint;
+            this.updatedAt = updatedAt;
+        }
+    }
+    
+    /**
+     * 用户的预取会话
+     * 记录当前声音模型和进行中的预取任务
+     */
+    private static class PrefetchSession {
+        /** 本会话使用的声音模型ID */
+        private final String voiceModelId;
+        /** 进行中的预取任务，键为缓存键 */
+        private final Map<String, Future<PrefetchResult>> inFlight = new ConcurrentHashMap<>();
+        /** 已占用的用户预取额度 */
+        private final AtomicInteger count = new AtomicInteger();
+        
+        PrefetchSession(String voiceModelId) {
+            this.voiceModelId = voiceModelId;
+        }
+    }
+}
\ No newline at end of file
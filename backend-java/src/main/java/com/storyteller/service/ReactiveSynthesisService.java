@@ -0,0 +1,342 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.entity.reactive.SynthesisTaskRecord;
+import com.storyteller.repository.reactive.ReactiveChapterTextRepository;
+import com.storyteller.repository.reactive.ReactiveSynthesisTaskRepository;
+import com.storyteller.service.WebSocketService.CompletionMessage;
+import com.storyteller.service.WebSocketService.ErrorMessage;
+import com.storyteller.service.WebSocketService.ProgressMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 响应式语音合成服务
+ * 响应式配置下SynthesisService的非阻塞版本
+ * 
+ * 功能：
+ * - 创建合成任务并在后台非阻塞地处理，等待TTS期间不占用线程
+ * - 以事件流的形式推送任务进度，代替WebSocket
+ * - 取消排队中或进行中的合成任务
+ * 
+ * 与SynthesisService相同，从runningTasks中移除任务的一方负责写入最终状态，
+ * 并且无论最终状态是否写入成功，都由这一方推送最终消息并结束进度事件流
+ */
+@Service
+@Profile("reactive")
+public class ReactiveSynthesisService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ReactiveSynthesisService.class);
+    
+    /** 取消时遇到并发更新的最大重试次数 */
+    private static final int MAX_CANCEL_RETRIES = 2;
+    
+    @Autowired
+    private ReactiveSynthesisTaskRepository synthesisTaskRepository;
+    
+    @Autowired
+    private ReactiveChapterTextRepository chapterTextRepository;
+    
+    @Autowired
+    private ReactiveTTSClient ttsClient;
+    
+    /** 模拟的合成处理耗时（毫秒），MVP版本使用 */
+    @Value("${storyteller.synthesis.simulated-delay-ms:2000}")
+    private long simulatedDelayMs;
+    
+    /** 进行中的任务，键为任务ID，值为处理流程的订阅 */
+    private final Map<String, Disposable> runningTasks = new ConcurrentHashMap<>();
+    
+    /** 进行中任务的进度事件，新的订阅者先收到最近一条 */
+    private final Map<String, Sinks.Many<ProgressMessage>> progressSinks = new ConcurrentHashMap<>();
+    
+    /**
+     * 创建语音合成任务
+     * 
+     * @param userId 用户ID
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @param text 要合成的文本内容，为空时合成数据库中的章节正文
+     * @return 合成任务ID
+     */
+    public Mono<String> createSynthesisTask(Long userId, Long chapterId, String voiceModelId, String text) {
+        String requestText = text == null || text.isEmpty() ? null : text;
+        
+        SynthesisTaskRecord task = new SynthesisTaskRecord();
+        task.setTaskId(SynthesisTask.generateTaskId());
+        task.setUserId(userId);
+        task.setChapterId(chapterId);
+        task.setVoiceModelId(voiceModelId);
+        task.setStatus("PENDING");
+        task.setCreatedAt(LocalDateTime.now());
+        
+        return synthesisTaskRepository.save(task).map(saved -> {
+            start(saved, requestText);
+            return saved.getTaskId();
+        });
+    }
+    
+    /**
+     * 登记并开始处理任务
+     * 
+     * @param task 已保存的合成任务
+     * @param text 要合成的文本，为null时合成数据库中的章节正文
+     */
+    private void start(SynthesisTaskRecord task, String text) {
+        // 先登记再订阅，保证处理流程结束时一定能找到自己的登记
+        Disposable.Swap subscription = Disposables.swap();
+        progressSinks.put(task.getTaskId(), Sinks.many().replay().latest());
+        runningTasks.put(task.getTaskId(), subscription);
+        subscription.update(process(task, text).subscribe());
+    }
+    
+    /**
+     * 处理语音合成
+     * 
+     * 每次保存后继续使用仓库返回的实体，版本号与数据库保持一致
+     * 
+     * @param task 合成任务
+     * @param text 要合成的文本，为null时从数据库按窗口读取章节正文
+     * @return 处理完成信号
+     */
+    private Mono<Void> process(SynthesisTaskRecord task, String text) {
+        String taskId = task.getTaskId();
+        // 是否已从runningTasks中移除登记，取得写入最终状态的权利
+        boolean[] owned = {false};
+        // 最终消息，取得权利后确定，流程结束时推送
+        ProgressMessage[] outcome = {null};
+        
+        task.setStatus("PROCESSING");
+        return synthesisTaskRepository.save(task)
+                .flatMap(processing -> {
+                    emit(taskId, new ProgressMessage(taskId, 25, "PROCESSING"));
+                    // 模拟合成处理（MVP版本）
+                    return Mono.delay(Duration.ofMillis(simulatedDelayMs))
+                            .doOnNext(ignored -> emit(taskId, new ProgressMessage(taskId, 75, "PROCESSING")))
+                            .then(synthesizeText(processing, text))
+                            .flatMap(audioUrl -> {
+                                // 任务已被取消时由取消请求记录最终状态
+                                if (!claim(taskId, owned)) {
+                                    return Mono.empty();
+                                }
+                                processing.setStatus("COMPLETED");
+                                processing.setAudioUrl(audioUrl);
+                                processing.setCompletedAt(LocalDateTime.now());
+                                return synthesisTaskRepository.save(processing).doOnNext(saved -> outcome[0] =
+                                        new CompletionMessage(taskId, 100, "COMPLETED", saved.getAudioUrl()));
+                            })
+                            // 写入失败状态时以最近一次保存成功的实体为基础
+                            .onErrorResume(e -> fail(processing, e, owned, outcome));
+                })
+                .onErrorResume(e -> fail(task, e, owned, outcome))
+                .onErrorResume(e -> {
+                    log.warn("保存合成任务最终状态失败: {}", taskId, e);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    if (owned[0] && outcome[0] != null) {
+                        finish(taskId, outcome[0]);
+                    }
+                })
+                .then();
+    }
+    
+    /**
+     * 记录任务失败
+     * 
+     * @param task 最近一次保存成功的任务实体
+     * @param error 处理失败的原因
+     * @param owned 是否已取得写入最终状态的权利
+     * @param outcome 最终消息
+     * @return 保存完成信号，任务已被取消时为空，已记录过失败时返回原错误
+     */
+    private Mono<SynthesisTaskRecord> fail(SynthesisTaskRecord task, Throwable error, boolean[] owned,
+            ProgressMessage[] outcome) {
+        if (!claim(task.getTaskId(), owned)) {
+            return Mono.empty();
+        }
+        // 已经记录过失败（保存失败状态本身出错）时不再重复保存
+        if (outcome[0] != null) {
+            return Mono.error(error);
+        }
+        outcome[0] = new ErrorMessage(task.getTaskId(), 0, "FAILED", error.getMessage());
+        task.setStatus("FAILED");
+        task.setErrorMessage(error.getMessage());
+        task.setCompletedAt(LocalDateTime.now());
+        return synthesisTaskRepository.save(task);
+    }
+    
+    /**
+     * 取得写入任务最终状态的权利
+     * 
+     * @param taskId 任务ID
+     * @param owned 是否已取得权利，成功时置为true
+     * @return 已经或本次取得权利时返回true，任务已被取消时返回false
+     */
+    private boolean claim(String taskId, boolean[] owned) {
+        if (!owned[0]) {
+            owned[0] = runningTasks.remove(taskId) != null;
+        }
+        return owned[0];
+    }
+    
+    /**
+     * 分段合成文本，并按已处理的字符数推送75%到95%之间的进度
+     * 
+     * @param task 合成任务
+     * @param text 要合成的文本，为null时从数据库按窗口读取章节正文
+     * @return 合成音频的URL地址
+     */
+    private Mono<String> synthesizeText(SynthesisTaskRecord task, String text) {
+        Mono<Long> total = text != null
+                ? Mono.just((long) text.length())
+                : chapterTextRepository.textLength(task.getChapterId())
+                        .switchIfEmpty(Mono.error(new IllegalArgumentException("章节不存在: " + task.getChapterId())));
+        Flux<String> source = text != null ? Flux.just(text) : chapterTextRepository.readWindows(task.getChapterId());
+        
+        return total.flatMap(length -> {
+            int[] lastProgress = {75};
+            return ttsClient.synthesizeChunked(source, task.getVoiceModelId(), consumed -> {
+                int progress = 75 + (int) (20 * Math.min(consumed, length) / Math.max(length, 1));
+                if (progress > lastProgress[0]) {
+                    lastProgress[0] = progress;
+                    emit(task.getTaskId(), new ProgressMessage(task.getTaskId(), progress, "PROCESSING"));
+                }
+            });
+        });
+    }
+    
+    /**
+     * 取消合成任务
+     * 
+     * 取消处理流程的订阅，正在等待的TTS调用和数据库查询随之取消
+     * 
+     * @param taskId 任务ID
+     * @return 取消后的任务信息，任务不存在时为空
+     */
+    public Mono<SynthesisTaskRecord> cancelTask(String taskId) {
+        Disposable subscription = runningTasks.remove(taskId);
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        
+        Mono<SynthesisTaskRecord> cancelled = synthesisTaskRepository.findByTaskId(taskId)
+                .flatMap(task -> {
+                    // 没有登记但仍处于未完成状态的任务（例如服务重启遗留）同样标记为取消
+                    if (subscription == null && !isActive(task)) {
+                        return Mono.just(task);
+                    }
+                    task.setStatus("CANCELLED");
+                    task.setCompletedAt(LocalDateTime.now());
+                    return synthesisTaskRepository.save(task);
+                })
+                // 处理流程在取消前刚写入了新状态（版本号已变化），重新读取后再取消
+                .retryWhen(Retry.max(MAX_CANCEL_RETRIES).filter(e -> e instanceof OptimisticLockingFailureException));
+        if (subscription == null) {
+            return cancelled;
+        }
+        // 取得了写入最终状态的权利，保存成功、失败或请求被取消时都要结束进度事件流
+        return cancelled.doFinally(signal -> finish(taskId, new ProgressMessage(taskId, 0, "CANCELLED")));
+    }
+    
+    /**
+     * 获取任务状态
+     * 
+     * @param taskId 任务ID
+     * @return 合成任务信息，任务不存在时为空
+     */
+    public Mono<SynthesisTaskRecord> getTaskStatus(String taskId) {
+        return synthesisTaskRepository.findByTaskId(taskId);
+    }
+    
+    /**
+     * 订阅任务进度
+     * 
+     * 进行中的任务先收到最近一条进度，随后持续推送直到任务结束；
+     * 已结束的任务只返回一条反映最终状态的消息
+     * 
+     * @param taskId 任务ID
+     * @return 进度事件流，任务不存在时为空
+     */
+    public Flux<ProgressMessage> streamProgress(String taskId) {
+        Sinks.Many<ProgressMessage> sink = progressSinks.get(taskId);
+        if (sink != null) {
+            return sink.asFlux();
+        }
+        return synthesisTaskRepository.findByTaskId(taskId).map(this::toMessage).flux();
+    }
+    
+    /**
+     * 把任务当前状态转换为进度消息
+     * 
+     * @param task 合成任务
+     * @return 进度消息
+     */
+    private ProgressMessage toMessage(SynthesisTaskRecord task) {
+        switch (task.getStatus()) {
+            case "COMPLETED":
+                return new CompletionMessage(task.getTaskId(), 100, "COMPLETED", task.getAudioUrl());
+            case "FAILED":
+                return new ErrorMessage(task.getTaskId(), 0, "FAILED", task.getErrorMessage());
+            case "PROCESSING":
+                return new ProgressMessage(task.getTaskId(), 25, "PROCESSING");
+            default:
+                return new ProgressMessage(task.getTaskId(), 0, task.getStatus());
+        }
+    }
+    
+    /**
+     * 推送进度消息
+     * 
+     * 处理流程和取消请求可能同时推送，并发冲突时重试
+     * 
+     * @param taskId 任务ID
+     * @param message 进度消息
+     */
+    private void emit(String taskId, ProgressMessage message) {
+        Sinks.Many<ProgressMessage> sink = progressSinks.get(taskId);
+        if (sink != null) {
+            sink.emitNext(message, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+    
+    /**
+     * 推送最终状态并结束进度事件流
+     * 
+     * @param taskId 任务ID
+     * @param message 最终状态消息
+     */
+    private void finish(String taskId, ProgressMessage message) {
+        Sinks.Many<ProgressMessage> sink = progressSinks.remove(taskId);
+        if (sink != null) {
+            sink.emitNext(message, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+            sink.emitComplete((signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        }
+    }
+    
+    /**
+     * 判断任务是否仍未结束
+     * 
+     * @param task 合成任务
+     * @return 状态为待处理或处理中时返回true
+     */
+    private boolean isActive(SynthesisTaskRecord task) {
+        return "PENDING".equals(task.getStatus()) || "PROCESSING".equals(task.getStatus());
+    }
+}
\ No newline at end of file
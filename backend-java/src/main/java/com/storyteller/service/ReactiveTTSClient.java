@@ -0,0 +1,141 @@
+package com.storyteller.service;
+
+import com.storyteller.audio.TrainingAudio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 响应式TTS客户端
+ * 响应式配置下TTSService的非阻塞版本
+ * 
+ * 功能：
+ * - 非阻塞地训练声音模型和合成语音
+ * - 将文本流按句分段后依次合成并拼接
+ * - 集成外部TTS服务API（当前为模拟实现）
+ * 
+ * 注意：当前为MVP版本，使用定时器模拟TTS服务的响应时间，等待期间不占用线程。
+ * 生产环境中将通过WebClient调用真实的TTS服务。
+ */
+@Service
+@Profile("reactive")
+public class ReactiveTTSClient {
+    
+    @Autowired
+    private TextNormalizationService textNormalizationService;
+    
+    /** 分段合成时每段的最大字符数 */
+    @Value("${storyteller.synthesis.chunk-chars:2000}")
+    private int chunkChars;
+    
+    /** 模拟的每段合成耗时（毫秒），MVP版本使用，与TTSService共用配置 */
+    @Value("${storyteller.synthesis.simulated-segment-ms:2000}")
+    private long simulatedSegmentMs;
+    
+    /** 模拟的声音模型训练耗时（毫秒），MVP版本使用，与TTSService共用配置 */
+    @Value("${storyteller.training.simulated-training-ms:1000}")
+    private long simulatedTrainingMs;
+    
+    /**
+     * 训练声音模型
+     * 
+     * @param userId 用户ID
+     * @param dialect 方言类型（如"cantonese"）
+     * @param audio 预处理后的训练音频
+     * @return 训练完成的声音模型ID
+     */
+    public Mono<String> trainVoiceModel(Long userId, String dialect, TrainingAudio audio) {
+        // 对于MVP版本，我们模拟TTS服务集成
+        return Mono.delay(Duration.ofMillis(simulatedTrainingMs))
+                .map(ignored -> "cantonese_" + userId + "_" + System.currentTimeMillis());
+    }
+    
+    /**
+     * 合成语音
+     * 
+     * 文本先经过规范化，再交给TTS服务合成
+     * 
+     * @param text 要合成的文本内容
+     * @param voiceModelId 用于合成的声音模型ID
+     * @return 合成音频的URL地址
+     */
+    public Mono<String> synthesizeSpeech(String text, String voiceModelId) {
+        // 在生产环境中，这里用WebClient把规范化后的文本发送给TTS服务；
+        // 模拟的音频地址带上规范化文本的哈希，便于核对各段实际送出的内容
+        return Mono.fromCallable(() -> textNormalizationService.normalize(text))
+                .flatMap(normalizedText -> Mono.delay(Duration.ofMillis(simulatedSegmentMs))
+                        .map(ignored -> "https://example.com/audio/" + System.currentTimeMillis()
+                                + "_" + Integer.toHexString(normalizedText.hashCode()) + ".mp3"));
+    }
+    
+    /**
+     * 分段合成语音
+     * 
+     * 各段依次合成，取消订阅后不再合成剩余的段
+     * 
+     * @param text 文本流，可以是任意切分的片段
+     * @param voiceModelId 用于合成的声音模型ID
+     * @param progress 每合成完一段后回调已处理的字符数
+     * @return 合成音频的URL地址
+     */
+    public Mono<String> synthesizeChunked(Flux<String> text, String voiceModelId, LongConsumer progress) {
+        return Flux.defer(() -> {
+            AtomicLong consumed = new AtomicLong();
+            return chunks(text).concatMap(chunk -> {
+                if (chunk.isBlank()) {
+                    progress.accept(consumed.addAndGet(chunk.length()));
+                    return Mono.empty();
+                }
+                return synthesizeSpeech(chunk, voiceModelId)
+                        .doOnNext(url -> progress.accept(consumed.addAndGet(chunk.length())));
+            });
+        }).collectList().flatMap(segments -> {
+            if (segments.isEmpty()) {
+                return Mono.error(new IllegalArgumentException("没有可合成的文本"));
+            }
+            return Mono.just(segments.size() == 1 ? segments.get(0) : mergeSegments(segments));
+        });
+    }
+    
+    /**
+     * 拼接分段合成的音频
+     * 
+     * @param segmentUrls 各段音频的URL地址，按文本顺序排列
+     * @return 拼接后音频的URL地址
+     */
+    public String mergeSegments(List<String> segmentUrls) {
+        // 对于MVP版本，返回模拟的拼接结果
+        return "https://example.com/audio/" + System.currentTimeMillis() + "_" + segmentUrls.size() + ".mp3";
+    }
+    
+    /**
+     * 把任意切分的文本流重新切分为不超过chunkChars的段，断点规则与TextChunker相同
+     * 
+     * @param text 文本流
+     * @return 分段后的文本流
+     */
+    private Flux<String> chunks(Flux<String> text) {
+        return Flux.defer(() -> {
+            StringBuilder pending = new StringBuilder();
+            return text.concatMapIterable(part -> {
+                pending.append(part);
+                List<String> ready = new ArrayList<>();
+                while (pending.length() > chunkChars) {
+                    int cut = TextChunker.breakPoint(pending, 0, chunkChars);
+                    ready.add(pending.substring(0, cut));
+                    pending.delete(0, cut);
+                }
+                return ready;
+            }).concatWith(Mono.fromSupplier(pending::toString).filter(rest -> !rest.isEmpty()));
+        });
+    }
+}
\ No newline at end of file
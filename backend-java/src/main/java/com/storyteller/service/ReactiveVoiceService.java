@@ -0,0 +1,88 @@
+package com.storyteller.service;
+
+import com.storyteller.audio.TrainingAudioPreprocessor;
+import com.storyteller.entity.reactive.VoiceModelRecord;
+import com.storyteller.repository.reactive.ReactiveVoiceModelRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+
+/**
+ * 响应式声音服务
+ * 响应式配置下VoiceService的非阻塞版本
+ * 
+ * 功能：
+ * - 验证上传的音频文件，预处理为去除静音的语句后再训练
+ * - 调用响应式TTS客户端训练声音模型
+ * - 管理用户的声音模型
+ */
+@Service
+@Profile("reactive")
+public class ReactiveVoiceService {
+    
+    @Autowired
+    private ReactiveVoiceModelRepository voiceModelRepository;
+    
+    @Autowired
+    private ReactiveTTSClient ttsClient;
+    
+    @Autowired
+    private TrainingAudioPreprocessor trainingAudioPreprocessor;
+    
+    /**
+     * 训练声音模型
+     * 
+     * @param userId 用户ID
+     * @param dialect 方言类型（如"cantonese"）
+     * @param audioFile 上传的音频文件
+     * @return 训练完成的声音模型ID；文件不是音频、为空或质量不合格时以IllegalArgumentException结束
+     */
+    public Mono<String> trainVoiceModel(Long userId, String dialect, FilePart audioFile) {
+        MediaType contentType = audioFile.headers().getContentType();
+        if (contentType == null || !"audio".equals(contentType.getType())) {
+            return Mono.error(new IllegalArgumentException("文件必须是音频文件"));
+        }
+        
+        return DataBufferUtils.join(audioFile.content())
+                .map(buffer -> {
+                    byte[] audio = new byte[buffer.readableByteCount()];
+                    buffer.read(audio);
+                    DataBufferUtils.release(buffer);
+                    return audio;
+                })
+                .filter(audio -> audio.length > 0)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("音频文件为空")))
+                // 解码和分析是CPU密集的阻塞操作，不在事件循环线程上执行
+                .flatMap(audio -> Mono.fromCallable(() -> trainingAudioPreprocessor.preprocess(new ByteArrayInputStream(audio), audio.length))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(trainingAudio -> ttsClient.trainVoiceModel(userId, dialect, trainingAudio))
+                .flatMap(trainedModelId -> {
+                    VoiceModelRecord voiceModel = new VoiceModelRecord();
+                    voiceModel.setUserId(userId);
+                    voiceModel.setModelId(trainedModelId);
+                    voiceModel.setDialect(dialect);
+                    voiceModel.setTrainedAt(LocalDateTime.now());
+                    voiceModel.setStatus("active");  // 设置模型状态为活跃
+                    return voiceModelRepository.save(voiceModel).thenReturn(trainedModelId);
+                });
+    }
+    
+    /**
+     * 获取用户的声音模型列表
+     * 
+     * @param userId 用户ID
+     * @return 用户的声音模型列表
+     */
+    public Flux<VoiceModelRecord> getUserVoiceModels(Long userId) {
+        return voiceModelRepository.findByUserId(userId);
+    }
+}
\ No newline at end of file
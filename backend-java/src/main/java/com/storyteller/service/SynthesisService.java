@@ -1,12 +1,35 @@
 package com.storyteller.service;
 
 import com.storyteller.entity.SynthesisTask;
+import com.storyteller.profiling.ModelLoadEvent;
+import com.storyteller.profiling.QueueWaitEvent;
+import com.storyteller.profiling.SynthesisTaskEvent;
+import com.storyteller.profiling.TaskSaveEvent;
+import com.storyteller.profiling.TtsEvent;
+import com.storyteller.profiling.WebSocketSendEvent;
+import com.storyteller.quota.FairShareTask;
+import com.storyteller.quota.QuotaService;
+import com.storyteller.repository.ChapterTextRepository;
 import com.storyteller.repository.SynthesisTaskRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.time.LocalDateTime;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * 语音合成服务
@@ -14,22 +37,65 @@ import java.util.concurrent.CompletableFuture;
  * 
  * 功能：
  * - 创建和管理语音合成任务
- * - 异步处理合成过程
+ * - 异步处理合成过程，从数据库分段读取章节正文进行合成，排队任务按用户等级权重公平调度
+ * - 相同声音模型的任务优先交给已加载该模型的线程，统计模型加载和命中情况
  * - 通过WebSocket发送实时进度更新
  * - 处理合成成功和失败的情况
+ * - 复用预取的合成结果并安排后续章节的预取
+ * - 取消排队中或进行中的合成任务
+ * - 维护任务状态缓存，支持长轮询等待状态变化
+ * - 为排队、保存、模型加载、TTS和WebSocket推送各阶段记录JFR事件
  */
 @Service
+@Profile("!reactive")
 public class SynthesisService {
     
+    /** 取消时遇到并发更新的最大重试次数 */
+    private static final int MAX_CANCEL_ATTEMPTS = 3;
+    
+    /** 取消请求等待处理线程保存最终状态的最长时间（秒） */
+    private static final long SETTLE_TIMEOUT_SECONDS = 10;
+    
     @Autowired
     private SynthesisTaskRepository synthesisTaskRepository;
     
+    @Autowired
+    private ChapterTextRepository chapterTextRepository;
+    
     @Autowired
     private TTSService ttsService;
     
     @Autowired
     private WebSocketService webSocketService;
     
+    @Autowired
+    private PrefetchService prefetchService;
+    
+    @Autowired
+    private TaskStatusCache taskStatusCache;
+    
+    @Autowired
+    private QuotaService quotaService;
+    
+    @Autowired
+    private VoiceModelPool voiceModelPool;
+    
+    @Autowired
+    @Qualifier("synthesisExecutor")
+    private ThreadPoolExecutor synthesisExecutor;
+    
+    /** 模拟的合成处理耗时（毫秒），MVP版本使用 */
+    @Value("${storyteller.synthesis.simulated-delay-ms:2000}")
+    private long simulatedDelayMs;
+    
+    /**
+     * 排队中或进行中的任务，键为任务ID
+     * 
+     * 处理线程和取消请求通过TaskHandle.claim争夺写入最终状态的权利，
+     * 登记保留到最终状态保存之后，保证完成和取消不会互相覆盖
+     */
+    private final Map<String, TaskHandle> runningTasks = new ConcurrentHashMap<>();
+    
     /**
      * 创建语音合成任务
      * 
@@ -38,16 +104,30 @@ public class SynthesisService {
      * @param userId 用户ID
      * @param chapterId 章节ID
      * @param voiceModelId 声音模型ID
-     * @param text 要合成的文本内容
+     * @param text 要合成的文本内容，为空时合成数据库中的章节正文
      * @return 合成任务ID
      */
     public String createSynthesisTask(Long userId, Long chapterId, String voiceModelId, String text) {
+        String requestText = text == null || text.isEmpty() ? null : text;
+        
         // 创建新的合成任务
         SynthesisTask task = createNewTask(userId, chapterId, voiceModelId);
-        SynthesisTask savedTask = synthesisTaskRepository.save(task);
+        SynthesisTask savedTask = save(task);
+        
+        // 更换声音模型时取消之前的预取
+        prefetchService.onChapterRequested(userId, voiceModelId);
+        
+        // 先登记再提交，保证处理线程结束时一定能找到自己的登记
+        int weight = quotaService.weight(userId);
+        QueueWaitEvent queued = new QueueWaitEvent(weight);
+        TaskHandle handle = new TaskHandle();
+        handle.future = new FairShareTask<>(userId != null ? userId : 0L, weight,
+                voiceModelId, () -> processSynthesis(handle, savedTask, requestText, queued), null);
+        queued.begin();
+        runningTasks.put(savedTask.getTaskId(), handle);
         
         // 异步处理合成任务
-        CompletableFuture.runAsync(() -> processSynthesis(savedTask, text));
+        synthesisExecutor.execute(handle.future);
         
         return savedTask.getTaskId();
     }
@@ -75,32 +155,189 @@ public class SynthesisService {
     /**
      * 处理语音合成
      * 
-     * 异步执行语音合成过程，包括进度更新和结果处理
+     * 异步执行语音合成过程，包括进度更新和结果处理。
+     * 每个阶段之间检查中断标志，任务被取消后尽快退出；
+     * 写入完成或失败状态前先取得最终状态的写入权，取消请求已取得时放弃结果
      * 
+     * @param handle 任务的登记
      * @param task 合成任务
-     * @param text 要合成的文本
+     * @param text 要合成的文本，为null时合成数据库中的章节正文
+     * @param queued 提交时开始的排队等待事件
      */
-    private void processSynthesis(SynthesisTask task, String text) {
+    private void processSynthesis(TaskHandle handle, SynthesisTask task, String text, QueueWaitEvent queued) {
+        queued.finish(task);
+        SynthesisTaskEvent taskEvent = new SynthesisTaskEvent();
+        taskEvent.begin();
         try {
             // 更新任务状态为处理中
-            updateTaskStatus(task, "PROCESSING");
-            webSocketService.sendProgress(task.getUserId(), task.getTaskId(), 25);
+            checkCancelled();
+            task = updateTaskStatus(task, "PROCESSING");
+            sendProgress(task, 25);
             
             // 模拟合成处理（MVP版本）
-            simulateSynthesisProcessing();
-            webSocketService.sendProgress(task.getUserId(), task.getTaskId(), 75);
+            simulateSynthesisProcessing(task);
+            checkCancelled();
+            sendProgress(task, 75);
             
-            // 调用TTS服务进行语音合成
-            String audioUrl = ttsService.synthesizeSpeech(text, task.getVoiceModelId());
-            completeTask(task, audioUrl);
+            // 优先使用预取的结果，没有时调用TTS服务分段合成
+            String audioUrl = prefetchService.takePrefetched(task.getChapterId(), task.getVoiceModelId(), text);
+            taskEvent.setPrefetched(audioUrl != null);
+            if (audioUrl == null) {
+                audioUrl = synthesizeText(task, text);
+            }
+            checkCancelled();
+            
+            // 任务已被取消时由取消请求记录最终状态
+            if (!handle.claim(TaskHandle.COMPLETING)) {
+                taskEvent.setOutcome("CANCELLED");
+                return;
+            }
+            task = completeTask(task, audioUrl);
+            settle(task.getTaskId(), handle);
+            taskEvent.setOutcome("COMPLETED");
             
             // 发送完成通知
-            webSocketService.sendProgress(task.getUserId(), task.getTaskId(), 100);
-            webSocketService.sendCompletion(task.getUserId(), task.getTaskId(), audioUrl);
+            sendProgress(task, 100);
+            sendCompletion(task, audioUrl);
             
+            // 用户收听本章期间预先合成后续章节
+            prefetchService.schedulePrefetch(task);
+        
+        } catch (InterruptedException | CancellationException e) {
+            // 任务被取消，最终状态由cancelTask写入
+            taskEvent.setOutcome("CANCELLED");
         } catch (Exception e) {
-            handleTaskFailure(task, e);
+            if (handle.claim(TaskHandle.COMPLETING)) {
+                handleTaskFailure(task, e);
+                taskEvent.setOutcome("FAILED");
+            } else if (handle.state.get() == TaskHandle.CANCELLING) {
+                // 取消请求已取得写入权，处理线程的并发保存失败属于预期情况
+                taskEvent.setOutcome("CANCELLED");
+            }
+        } finally {
+            // 保存失败状态时出错也要移除登记，避免取消请求一直等待
+            if (handle.state.get() == TaskHandle.COMPLETING) {
+                settle(task.getTaskId(), handle);
+            }
+            taskEvent.finish(task);
+        }
+    }
+    
+    /**
+     * 分段合成文本，并按已处理的字符数推送75%到95%之间的进度
+     * 
+     * @param task 合成任务
+     * @param text 要合成的文本，为null时从数据库流式读取章节正文
+     * @return 合成音频的URL地址
+     * @throws IOException 读取章节正文失败
+     */
+    private String synthesizeText(SynthesisTask task, String text) throws IOException {
+        if (task.getVoiceModelId() != null) {
+            ModelLoadEvent modelEvent = new ModelLoadEvent();
+            modelEvent.begin();
+            modelEvent.setLoaded(voiceModelPool.ensureLoaded(task.getVoiceModelId()));
+            modelEvent.finish(task);
+        }
+        long total = text != null ? text.length() : chapterTextRepository.textLength(task.getChapterId());
+        if (total < 0) {
+            throw new IllegalArgumentException("章节不存在: " + task.getChapterId());
         }
+        
+        TtsEvent ttsEvent = new TtsEvent("synthesize");
+        ttsEvent.setCharacters(total);
+        ttsEvent.begin();
+        Reader reader = text != null ? new StringReader(text) : chapterTextRepository.openReader(task.getChapterId());
+        try (reader) {
+            int[] lastProgress = {75};
+            return ttsService.synthesizeChunked(ttsService.chunker(reader), task.getVoiceModelId(), consumed -> {
+                int progress = 75 + (int) (20 * Math.min(consumed, total) / Math.max(total, 1));
+                if (progress > lastProgress[0]) {
+                    lastProgress[0] = progress;
+                    sendProgress(task, progress);
+                }
+            });
+        } finally {
+            ttsEvent.finish(task);
+        }
+    }
+    
+    /**
+     * 检查当前任务是否已被取消
+     * 
+     * @throws CancellationException 处理线程已被中断
+     */
+    private void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("合成任务已取消");
+        }
+    }
+    
+    /**
+     * 保存任务并更新状态缓存
+     * 
+     * 任务带有版本号，保存后必须使用返回的对象继续操作
+     * 
+     * @param task 合成任务
+     * @return 保存后的任务
+     */
+    private SynthesisTask save(SynthesisTask task) {
+        TaskSaveEvent event = new TaskSaveEvent(task.getStatus());
+        event.begin();
+        SynthesisTask saved = synthesisTaskRepository.save(task);
+        event.finish(saved);
+        taskStatusCache.update(saved);
+        return saved;
+    }
+    
+    /**
+     * 推送进度更新
+     * 
+     * @param task 合成任务
+     * @param progress 进度百分比（0-100）
+     */
+    private void sendProgress(SynthesisTask task, int progress) {
+        WebSocketSendEvent event = new WebSocketSendEvent("PROGRESS", progress);
+        event.begin();
+        webSocketService.sendProgress(task.getUserId(), task.getTaskId(), progress);
+        event.finish(task);
+    }
+    
+    /**
+     * 推送完成通知
+     * 
+     * @param task 合成任务
+     * @param audioUrl 合成音频的URL
+     */
+    private void sendCompletion(SynthesisTask task, String audioUrl) {
+        WebSocketSendEvent event = new WebSocketSendEvent("COMPLETED", 100);
+        event.begin();
+        webSocketService.sendCompletion(task.getUserId(), task.getTaskId(), audioUrl);
+        event.finish(task);
+    }
+    
+    /**
+     * 推送失败信息
+     * 
+     * @param task 合成任务
+     * @param errorMessage 错误信息
+     */
+    private void sendError(SynthesisTask task, String errorMessage) {
+        WebSocketSendEvent event = new WebSocketSendEvent("FAILED", 0);
+        event.begin();
+        webSocketService.sendError(task.getUserId(), task.getTaskId(), errorMessage);
+        event.finish(task);
+    }
+    
+    /**
+     * 推送取消通知
+     * 
+     * @param task 合成任务
+     */
+    private void sendCancellation(SynthesisTask task) {
+        WebSocketSendEvent event = new WebSocketSendEvent("CANCELLED", 0);
+        event.begin();
+        webSocketService.sendCancellation(task.getUserId(), task.getTaskId());
+        event.finish(task);
     }
     
     /**
@@ -108,10 +345,11 @@ public class SynthesisService {
      * 
      * @param task 合成任务
      * @param status 新状态
+     * @return 保存后的任务
      */
-    private void updateTaskStatus(SynthesisTask task, String status) {
+    private SynthesisTask updateTaskStatus(SynthesisTask task, String status) {
         task.setStatus(status);
-        synthesisTaskRepository.save(task);
+        return save(task);
     }
     
     /**
@@ -119,10 +357,17 @@ public class SynthesisService {
      * 
      * 在生产环境中，这里将调用实际的语音合成API
      * 
+     * @param task 合成任务
      * @throws InterruptedException 线程中断异常
      */
-    private void simulateSynthesisProcessing() throws InterruptedException {
-        Thread.sleep(2000);  // 模拟2秒处理时间
+    private void simulateSynthesisProcessing(SynthesisTask task) throws InterruptedException {
+        TtsEvent event = new TtsEvent("processing");
+        event.begin();
+        try {
+            Thread.sleep(simulatedDelayMs);  // 模拟处理时间，默认2秒
+        } finally {
+            event.finish(task);
+        }
     }
     
     /**
@@ -132,12 +377,13 @@ public class SynthesisService {
      * 
      * @param task 合成任务
      * @param audioUrl 合成音频的URL
+     * @return 保存后的任务
      */
-    private void completeTask(SynthesisTask task, String audioUrl) {
+    private SynthesisTask completeTask(SynthesisTask task, String audioUrl) {
         task.setStatus("COMPLETED");
         task.setAudioUrl(audioUrl);
         task.setCompletedAt(LocalDateTime.now());
-        synthesisTaskRepository.save(task);
+        return save(task);
     }
     
     /**
@@ -152,17 +398,164 @@ public class SynthesisService {
         task.setStatus("FAILED");
         task.setErrorMessage(e.getMessage());
         task.setCompletedAt(LocalDateTime.now());
-        synthesisTaskRepository.save(task);
-        webSocketService.sendError(task.getUserId(), task.getTaskId(), e.getMessage());
+        save(task);
+        sendError(task, e.getMessage());
+    }
+    
+    /**
+     * 取消合成任务
+     * 
+     * 排队中的任务直接从执行器队列中移除，进行中的任务通过中断
+     * 停止正在进行的TTS调用。已结束的任务保持原状态不变；
+     * 处理线程已开始写入完成或失败状态时，等待其保存后返回该状态
+     * 
+     * @param taskId 任务ID
+     * @return 取消后的任务信息，任务不存在时返回null
+     */
+    public SynthesisTask cancelTask(String taskId) {
+        TaskHandle handle = runningTasks.get(taskId);
+        if (handle != null && !handle.claim(TaskHandle.CANCELLING)) {
+            handle.awaitSettled();
+            return synthesisTaskRepository.findByTaskId(taskId);
+        }
+        try {
+            if (handle != null) {
+                handle.future.cancel(true);
+                // 释放已取消任务在执行器队列中占用的位置
+                synthesisExecutor.purge();
+            }
+            return markCancelled(taskId, handle != null);
+        } finally {
+            if (handle != null) {
+                settle(taskId, handle);
+            }
+        }
+    }
+    
+    /**
+     * 把任务标记为取消
+     * 
+     * @param taskId 任务ID
+     * @param claimed 是否已取得本进程中任务最终状态的写入权
+     * @return 取消后的任务信息，任务不存在时返回null
+     */
+    private SynthesisTask markCancelled(String taskId, boolean claimed) {
+        for (int attempt = 1; ; attempt++) {
+            SynthesisTask task = synthesisTaskRepository.findByTaskId(taskId);
+            if (task == null) {
+                return null;
+            }
+            
+            // 没有登记但仍处于未完成状态的任务（例如服务重启遗留）同样标记为取消
+            if (!claimed && !isActive(task)) {
+                return task;
+            }
+            task.setStatus("CANCELLED");
+            task.setCompletedAt(LocalDateTime.now());
+            try {
+                SynthesisTask saved = save(task);
+                sendCancellation(saved);
+                return saved;
+            } catch (OptimisticLockingFailureException e) {
+                // 处理线程在中断前刚写入了新状态，重新读取后再取消
+                if (attempt >= MAX_CANCEL_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 最终状态已保存，移除任务的登记并唤醒等待的取消请求
+     * 
+     * @param taskId 任务ID
+     * @param handle 任务的登记
+     */
+    private void settle(String taskId, TaskHandle handle) {
+        runningTasks.remove(taskId, handle);
+        handle.settled.countDown();
+    }
+    
+    /**
+     * 判断任务是否仍未结束
+     * 
+     * @param task 合成任务
+     * @return 状态为待处理或处理中时返回true
+     */
+    private boolean isActive(SynthesisTask task) {
+        return "PENDING".equals(task.getStatus()) || "PROCESSING".equals(task.getStatus());
     }
     
     /**
      * 获取任务状态
      * 
+     * 优先从状态缓存读取，返回的对象不得修改
+     * 
      * @param taskId 任务ID
      * @return 合成任务信息
      */
     public SynthesisTask getTaskStatus(String taskId) {
-        return synthesisTaskRepository.findByTaskId(taskId);
+        return taskStatusCache.get(taskId);
+    }
+    
+    /**
+     * 等待任务状态变化
+     * 
+     * @param taskId 任务ID
+     * @param knownVersion 调用方已知的版本号
+     * @param listener 任务保存了新版本时回调
+     * @return 用于取消等待的操作；已经存在更新的版本时返回null，调用方应直接重新查询
+     */
+    public Runnable awaitStatusChange(String taskId, long knownVersion, Consumer<SynthesisTask> listener) {
+        return taskStatusCache.awaitChange(taskId, knownVersion, listener);
+    }
+    
+    /**
+     * 获取声音模型预热和亲和调度的统计信息
+     * 
+     * @return 统计信息
+     */
+    public VoiceModelPool.Stats getAffinityStats() {
+        return voiceModelPool.stats();
+    }
+    
+    /**
+     * 任务的登记
+     * 处理线程和取消请求通过CAS争夺最终状态的写入权，先取得的一方写入，另一方放弃
+     */
+    private static final class TaskHandle {
+        /** 排队中或进行中 */
+        static final int ACTIVE = 0;
+        /** 处理线程正在写入完成或失败状态 */
+        static final int COMPLETING = 1;
+        /** 取消请求正在写入取消状态 */
+        static final int CANCELLING = 2;
+        
+        private final AtomicInteger state = new AtomicInteger(ACTIVE);
+        /** 最终状态保存后计数归零 */
+        private final CountDownLatch settled = new CountDownLatch(1);
+        /** 提交到执行器的任务，登记前写入 */
+        private FairShareTask<Void> future;
+        
+        /**
+         * 取得最终状态的写入权
+         * 
+         * @param owner COMPLETING或CANCELLING
+         * @return 取得成功，或此前已由同一方取得且最终状态尚未保存时返回true
+         */
+        boolean claim(int owner) {
+            return (state.compareAndSet(ACTIVE, owner) || state.get() == owner) && settled.getCount() > 0;
+        }
+        
+        /**
+         * 等待另一方保存最终状态，超时或被中断时直接返回
+         */
+        void awaitSettled() {
+            try {
+                settled.await(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
\ No newline at end of file
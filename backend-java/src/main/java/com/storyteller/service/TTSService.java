@@ -1,15 +1,33 @@
 package com.storyteller.service;
 
+import com.storyteller.audio.AudioAssemblyService;
+import com.storyteller.audio.TrainingAudio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongConsumer;
+
 /**
  * TTS服务（文本转语音）
  * 处理语音模型训练和语音合成的业务逻辑
  * 
  * 功能：
  * - 训练个性化的粤语声音模型
- * - 将文本合成为语音
+ * - 将文本规范化后合成为语音
+ * - 加载和卸载声音模型，合成前模型须已加载到当前工作线程
+ * - 将长文本分段合成后拼接为一个音频，本地音频段交给AudioAssemblyService拼接编码
  * - 集成外部TTS服务API（当前为模拟实现）
  * 
  * 注意：当前为MVP版本，使用模拟实现。
@@ -18,6 +36,28 @@ import org.springframework.web.multipart.MultipartFile;
 @Service
 public class TTSService {
     
+    @Autowired
+    private TextNormalizationService textNormalizationService;
+    
+    @Autowired
+    private AudioAssemblyService audioAssemblyService;
+    
+    /** 分段合成时每段的最大字符数 */
+    @Value("${storyteller.synthesis.chunk-chars:2000}")
+    private int chunkChars;
+    
+    /** 模拟的声音模型加载耗时（毫秒），只在压测时设置，默认不模拟 */
+    @Value("${storyteller.synthesis.simulated-model-load-ms:0}")
+    private long simulatedModelLoadMs;
+    
+    /** 模拟的每段合成耗时（毫秒），MVP版本使用 */
+    @Value("${storyteller.synthesis.simulated-segment-ms:2000}")
+    private long simulatedSegmentMs;
+    
+    /** 模拟的声音模型训练耗时（毫秒），MVP版本使用 */
+    @Value("${storyteller.training.simulated-training-ms:1000}")
+    private long simulatedTrainingMs;
+    
     /**
      * 训练声音模型
      * 
@@ -36,21 +76,79 @@ public class TTSService {
         
         try {
             // 模拟API处理时间
-            Thread.sleep(1000);
+            Thread.sleep(simulatedTrainingMs);
             
             // 返回模拟的模型ID
             return "cantonese_" + userId + "_" + System.currentTimeMillis();
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("训练被中断", e);
+        }
+    }
+    
+    /**
+     * 训练声音模型
+     * 
+     * 使用预处理后的训练音频，只上传各语句的音频，不上传原始文件。
+     * 在生产环境中，这将逐个上传语句后调用训练接口。
+     * 
+     * @param userId 用户ID
+     * @param dialect 方言类型（如"cantonese"）
+     * @param audio 预处理后的训练音频
+     * @return 训练完成的声音模型ID
+     * @throws RuntimeException 训练过程被中断
+     */
+    public String trainVoiceModel(Long userId, String dialect, TrainingAudio audio) {
+        // 对于MVP版本，我们模拟TTS服务集成
+        try {
+            // 模拟API处理时间
+            Thread.sleep(simulatedTrainingMs);
             
+            // 返回模拟的模型ID
+            return "cantonese_" + userId + "_" + System.currentTimeMillis();
+        
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("训练被中断", e);
         }
     }
     
+    /**
+     * 加载声音模型
+     * 
+     * 模拟把声音模型加载到当前工作线程使用的推理实例，加载代价远高于单次合成的调度开销。
+     * 在生产环境中，这将加载模型权重并预热推理引擎。
+     * 
+     * @param voiceModelId 声音模型ID
+     * @throws CancellationException 加载过程中线程被中断
+     */
+    public void loadVoiceModel(String voiceModelId) {
+        try {
+            // 模拟加载时间
+            Thread.sleep(simulatedModelLoadMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("加载声音模型时被中断");
+        }
+    }
+    
+    /**
+     * 卸载声音模型
+     * 
+     * 释放模型占用的内存。MVP版本没有实际占用，不做任何处理
+     * 
+     * @param voiceModelId 声音模型ID
+     */
+    public void unloadVoiceModel(String voiceModelId) {
+        // 对于MVP版本，模拟加载的模型不占用资源
+    }
+    
     /**
      * 合成语音
      * 
      * 模拟将文本合成为语音的过程。
+     * 文本先经过规范化（数字读法、标点、简繁等），相同内容得到相同的合成输入。
      * 在生产环境中，这将调用真实的TTS服务API。
      * 
      * @param text 要合成的文本内容
@@ -60,18 +158,83 @@ public class TTSService {
      */
     public String synthesizeSpeech(String text, String voiceModelId) {
         // 对于MVP版本，我们模拟语音合成过程
-        // 在生产环境中，这将调用实际的TTS服务
+        // 在生产环境中，这将调用实际的TTS服务，请求体使用规范化后的文本
+        String normalizedText = textNormalizationService.normalize(text);
         
         try {
             // 模拟处理时间
-            Thread.sleep(2000);
-            
-            // 返回模拟的音频URL
-            return "https://example.com/audio/" + System.currentTimeMillis() + ".mp3";
+            Thread.sleep(simulatedSegmentMs);
             
+            // 返回模拟的音频URL，带上规范化文本的哈希，便于核对各段实际送出的内容
+            return "https://example.com/audio/" + System.currentTimeMillis()
+                    + "_" + Integer.toHexString(normalizedText.hashCode()) + ".mp3";
+        
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("合成被中断", e);
         }
     }
+    
+    /**
+     * 创建按合成段长分段的文本分段器
+     * 
+     * @param text 文本来源
+     * @return 文本分段器
+     */
+    public TextChunker chunker(Reader text) {
+        return new TextChunker(text, chunkChars);
+    }
+    
+    /**
+     * 分段合成语音
+     * 
+     * 逐段读取文本并合成，每段之间检查中断标志，
+     * 任务被取消后不再合成剩余的段
+     * 
+     * @param chunker 文本分段器
+     * @param voiceModelId 用于合成的声音模型ID
+     * @param progress 每合成完一段后回调已处理的字符数
+     * @return 合成音频的URL地址
+     * @throws IOException 读取文本失败
+     * @throws CancellationException 合成过程中线程被中断
+     */
+    public String synthesizeChunked(TextChunker chunker, String voiceModelId, LongConsumer progress) throws IOException {
+        List<String> segments = new ArrayList<>();
+        String chunk;
+        while ((chunk = chunker.next()) != null) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("合成已取消");
+            }
+            if (!chunk.isBlank()) {
+                segments.add(synthesizeSpeech(chunk, voiceModelId));
+            }
+            progress.accept(chunker.consumed());
+        }
+        
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("没有可合成的文本");
+        }
+        return segments.size() == 1 ? segments.get(0) : mergeSegments(segments);
+    }
+    
+    /**
+     * 拼接分段合成的音频
+     * 
+     * 各段都是本地WAV文件（file:地址）时在本地拼接、归一化并编码为所有输出变体，
+     * 返回主变体的地址；否则模拟将多段音频按顺序拼接为一个文件。
+     * 
+     * @param segmentUrls 各段音频的URL地址，按文本顺序排列
+     * @return 拼接后音频的URL地址
+     * @throws IOException 读取音频段或写入输出失败
+     */
+    public String mergeSegments(List<String> segmentUrls) throws IOException {
+        if (segmentUrls.stream().allMatch(url -> url.startsWith("file:"))) {
+            List<Path> segments = segmentUrls.stream().map(url -> Paths.get(URI.create(url))).toList();
+            Map<String, Path> outputs = audioAssemblyService.assemble("merged_" + UUID.randomUUID(), segments);
+            return outputs.values().iterator().next().toUri().toString();
+        }
+        
+        // 对于MVP版本，返回模拟的拼接结果
+        return "https://example.com/audio/" + System.currentTimeMillis() + "_" + segmentUrls.size() + ".mp3";
+    }
 }
\ No newline at end of file
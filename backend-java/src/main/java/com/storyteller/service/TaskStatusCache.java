@@ -0,0 +1,215 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 任务状态缓存
+ * 在内存中保存合成任务的最新状态，轮询查询大多不必访问数据库
+ * 
+ * 功能：
+ * - 任务每次保存后由SynthesisService写入最新版本
+ * - 未命中或条目超过有效期时从数据库加载，按最近访问顺序淘汰
+ * - 登记等待状态变化的长轮询请求，新版本写入或从数据库读到新版本时通知
+ * 
+ * 本进程保存的状态立即可见；其他节点或响应式配置的进程共用数据库时，
+ * 它们写入的状态要到条目超过有效期后的下一次查询才会读到，最多滞后一个有效期，
+ * 等待中的长轮询也要到此时（最晚到等待超时）才会返回。
+ * 缓存中的对象是保存时的副本，调用方不得修改
+ */
+@Component
+@Profile("!reactive")
+public class TaskStatusCache {
+    
+    @Autowired
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    /** 缓存的任务数上限 */
+    @Value("${storyteller.status-cache.max-entries:10000}")
+    private int maxEntries;
+    
+    /** 条目的有效期（毫秒），超过后命中时从数据库重新读取，0表示每次都读取 */
+    @Value("${storyteller.status-cache.ttl-ms:1000}")
+    private long ttlMs = 1000;
+    
+    /** 任务ID到最新状态的映射（按访问顺序淘汰） */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /** 任务ID到等待状态变化的监听器 */
+    private final Map<String, List<Waiter>> waiters = new HashMap<>();
+    
+    /**
+     * 查询任务的最新状态
+     * 
+     * @param taskId 任务ID
+     * @return 合成任务信息，任务不存在时返回null
+     */
+    public SynthesisTask get(String taskId) {
+        synchronized (this) {
+            Entry cached = entries.get(taskId);
+            if (cached != null && System.nanoTime() - cached.validatedAt < TimeUnit.MILLISECONDS.toNanos(ttlMs)) {
+                return cached.task;
+            }
+        }
+        
+        SynthesisTask loaded = synthesisTaskRepository.findByTaskId(taskId);
+        if (loaded == null) {
+            synchronized (this) {
+                entries.remove(taskId);
+            }
+            return null;
+        }
+        return store(loaded);
+    }
+    
+    /**
+     * 写入任务保存后的最新状态，并通知等待该任务的长轮询请求
+     * 
+     * @param task 刚保存的合成任务
+     */
+    public void update(SynthesisTask task) {
+        store(copyOf(task));
+    }
+    
+    /**
+     * 写入缓存，并通知等待版本低于缓存中最新版本的长轮询请求
+     * 
+     * @param task 合成任务
+     * @return 缓存中的最新状态
+     */
+    private SynthesisTask store(SynthesisTask task) {
+        SynthesisTask latest;
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            latest = putIfNewer(task);
+            List<Waiter> pending = waiters.get(task.getTaskId());
+            if (pending != null) {
+                pending.removeIf(waiter -> {
+                    if (waiter.knownVersion < latest.getVersion()) {
+                        ready.add(waiter);
+                        return true;
+                    }
+                    return false;
+                });
+                if (pending.isEmpty()) {
+                    waiters.remove(task.getTaskId());
+                }
+            }
+        }
+        // 在锁外回调，监听器可能会写出HTTP响应
+        ready.forEach(waiter -> waiter.listener.accept(latest));
+        return latest;
+    }
+    
+    /**
+     * 等待任务版本超过已知版本
+     * 
+     * @param taskId 任务ID
+     * @param knownVersion 调用方已知的版本号
+     * @param listener 出现新版本时回调，参数为最新状态
+     * @return 用于取消等待的操作；缓存中的版本已经超过已知版本时不登记，返回null
+     */
+    public Runnable awaitChange(String taskId, long knownVersion, Consumer<SynthesisTask> listener) {
+        Waiter waiter = new Waiter(knownVersion, listener);
+        synchronized (this) {
+            Entry cached = entries.get(taskId);
+            if (cached != null && cached.task.getVersion() > knownVersion) {
+                return null;
+            }
+            waiters.computeIfAbsent(taskId, id -> new ArrayList<>()).add(waiter);
+        }
+        return () -> {
+            synchronized (this) {
+                List<Waiter> pending = waiters.get(taskId);
+                if (pending != null && pending.remove(waiter) && pending.isEmpty()) {
+                    waiters.remove(taskId);
+                }
+            }
+        };
+    }
+    
+    /**
+     * 写入缓存，已有更新的版本时保留已有的
+     * 
+     * 两种情况都重新开始条目的有效期。
+     * 调用方需持有本对象的锁
+     * 
+     * @param task 合成任务
+     * @return 缓存中的最新状态
+     */
+    private SynthesisTask putIfNewer(SynthesisTask task) {
+        Entry cached = entries.get(task.getTaskId());
+        if (cached != null && cached.task.getVersion() >= task.getVersion()) {
+            cached.validatedAt = System.nanoTime();
+            return cached.task;
+        }
+        entries.put(task.getTaskId(), new Entry(task));
+        if (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+        return task;
+    }
+    
+    /**
+     * 复制任务，缓存不与调用方共享可变对象
+     * 
+     * @param task 合成任务
+     * @return 副本
+     */
+    private static SynthesisTask copyOf(SynthesisTask task) {
+        SynthesisTask copy = new SynthesisTask();
+        copy.setId(task.getId());
+        copy.setTaskId(task.getTaskId());
+        copy.setUserId(task.getUserId());
+        copy.setChapterId(task.getChapterId());
+        copy.setVoiceModelId(task.getVoiceModelId());
+        copy.setStatus(task.getStatus());
+        copy.setAudioUrl(task.getAudioUrl());
+        copy.setErrorMessage(task.getErrorMessage());
+        copy.setCreatedAt(task.getCreatedAt());
+        copy.setCompletedAt(task.getCompletedAt());
+        copy.setVersion(task.getVersion());
+        return copy;
+    }
+    
+    /**
+     * 缓存条目
+     */
+    private static class Entry {
+        /** 任务状态 */
+        private final SynthesisTask task;
+        /** 最近一次与数据库或本进程的保存结果核对的时间（System.nanoTime） */
+        private long validatedAt = System.nanoTime();
+        
+        Entry(SynthesisTask task) {
+            this.task = task;
+        }
+    }
+    
+    /**
+     * 等待中的长轮询请求
+     */
+    private static class Waiter {
+        /** 请求方已知的版本号 */
+        private final long knownVersion;
+        /** 出现新版本时的回调 */
+        private final Consumer<SynthesisTask> listener;
+        
+        Waiter(long knownVersion, Consumer<SynthesisTask> listener) {
+            this.knownVersion = knownVersion;
+            this.listener = listener;
+        }
+    }
+}
\ No newline at end of file
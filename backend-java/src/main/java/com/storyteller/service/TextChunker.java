@@ -0,0 +1,198 @@
+package com.storyteller.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * 文本分段器
+ * 从Reader中逐段读取文本，供TTS服务分段合成
+ * 
+ * 功能：
+ * - 每段不超过指定字符数，尽量在句末标点处断开
+ * - 找不到句末时退而在逗号等停顿处断开，仍找不到时按长度硬切
+ * - 只缓冲一段文本，整章正文不会同时出现在内存中
+ * - 读取的同时计算文本指纹（长度和String.hashCode），用于判断两次读取的内容是否一致
+ */
+public class TextChunker {
+    
+    private final Reader reader;
+    
+    private final int maxChars;
+    
+    /** 读取缓冲区，[start, end)为尚未分段的文本 */
+    private final char[] buffer;
+    
+    /** 缓冲区的CharSequence视图，供breakPoint使用 */
+    private final CharBuffer bufferView;
+    
+    private int start;
+    
+    private int end;
+    
+    private boolean eof;
+    
+    /** 已分段输出的字符数 */
+    private long consumed;
+    
+    /** 已输出文本的哈希，与String.hashCode算法相同 */
+    private int hash;
+    
+    /**
+     * 创建分段器
+     * 
+     * @param reader 文本来源
+     * @param maxChars 每段最大字符数
+     */
+    public TextChunker(Reader reader, int maxChars) {
+        if (maxChars < 2) {
+            throw new IllegalArgumentException("每段至少2个字符: " + maxChars);
+        }
+        this.reader = reader;
+        this.maxChars = maxChars;
+        this.buffer = new char[maxChars];
+        this.bufferView = CharBuffer.wrap(buffer);
+    }
+    
+    /**
+     * 读取下一段文本
+     * 
+     * @return 下一段文本，读完时返回null
+     * @throws IOException 读取失败
+     */
+    public String next() throws IOException {
+        fill();
+        if (start == end) {
+            return null;
+        }
+        
+        int cut = end;
+        // 缓冲区已满说明后面还有文本，需要找一个合适的断点
+        if (!eof) {
+            cut = breakPoint(bufferView, start, end);
+        }
+        
+        for (int i = start; i < cut; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        consumed += cut - start;
+        String chunk = new String(buffer, start, cut - start);
+        start = cut;
+        return chunk;
+    }
+    
+    /**
+     * 已分段输出的字符数
+     * 
+     * @return 字符数
+     */
+    public long consumed() {
+        return consumed;
+    }
+    
+    /**
+     * 已输出文本的指纹
+     * 
+     * 全部读完后与fingerprint(CharSequence)对同一文本的结果相同
+     * 
+     * @return 高32位为长度，低32位为哈希
+     */
+    public long fingerprint() {
+        return (consumed << 32) | (hash & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * 计算文本指纹
+     * 
+     * @param text 文本
+     * @return 高32位为长度，低32位为String.hashCode
+     */
+    public static long fingerprint(CharSequence text) {
+        int h = 0;
+        for (int i = 0; i < text.length(); i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return ((long) text.length() << 32) | (h & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * 读完整个Reader并计算文本指纹
+     * 
+     * @param reader 文本来源
+     * @return 文本指纹
+     * @throws IOException 读取失败
+     */
+    public static long fingerprint(Reader reader) throws IOException {
+        TextChunker chunker = new TextChunker(reader, 4096);
+        while (chunker.next() != null) {
+            // 只需要指纹
+        }
+        return chunker.fingerprint();
+    }
+    
+    /**
+     * 把未分段的文本移到缓冲区开头，再读满缓冲区
+     * 
+     * @throws IOException 读取失败
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (!eof && end < buffer.length) {
+            int n = reader.read(buffer, end, buffer.length - end);
+            if (n < 0) {
+                eof = true;
+            } else {
+                end += n;
+            }
+        }
+    }
+    
+    /**
+     * 在[from, to)中寻找断点
+     * 
+     * 调用方保证to之后还有文本，且to - from至少为2
+     * 
+     * @param text 文本
+     * @param from 起始位置
+     * @param to 结束位置
+     * @return 本段的结束位置（不含）
+     */
+    static int breakPoint(CharSequence text, int from, int to) {
+        // 句末标点之后，连同紧跟的右引号、右括号一起断开
+        for (int i = to - 1; i > from; i--) {
+            if (isSentenceEnd(text.charAt(i))) {
+                int cut = i + 1;
+                while (cut < to && isCloser(text.charAt(cut))) {
+                    cut++;
+                }
+                if (cut < to) {
+                    return cut;
+                }
+            }
+        }
+        for (int i = to - 1; i > from; i--) {
+            if (isPause(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        // 硬切时不拆开代理对
+        return Character.isHighSurrogate(text.charAt(to - 1)) ? to - 1 : to;
+    }
+    
+    private static boolean isSentenceEnd(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '!' || c == '?'
+                || c == '；' || c == ';' || c == '…' || c == '\n';
+    }
+    
+    private static boolean isPause(char c) {
+        return c == '，' || c == '、' || c == '：' || c == ',' || c == ':' || c == ' ' || c == '　';
+    }
+    
+    private static boolean isCloser(char c) {
+        return c == '」' || c == '』' || c == '”' || c == '’' || c == '"' || c == '）' || c == ')';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,614 @@
+package com.storyteller.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文本规范化服务
+ * 在文本送入TTS之前进行粤语朗读预处理
+ * 
+ * 功能：
+ * - 全角字母数字折叠为半角，全角空格折叠为普通空格
+ * - 数字展开为粤语读法（整数、小数、百分比、年份、时间）
+ * - 标点规范化为中文全角标点，合并重复标点；只转换句末的英文句点，
+ *   英文缩写、域名和文件名中的句点保持不变
+ * - 常用简体字转换为繁体字
+ * - 合并多余空白，去除中文字符之间的空格
+ * - 缓存常见短句的规范化结果
+ * 
+ * 实现上逐字符扫描CharSequence，不使用正则表达式，
+ * 整段文本只分配一个输出缓冲区
+ */
+@Service
+public class TextNormalizationService {
+    
+    /** 参与缓存的短句最大长度，长句重复出现的概率很低 */
+    private static final int MEMO_MAX_SENTENCE_LENGTH = 32;
+    
+    /** 数字读法 */
+    private static final String DIGITS = "零一二三四五六七八九";
+    
+    /** 四位组内的单位 */
+    private static final String UNITS = "千百十";
+    
+    /** 四位组内各位的权值 */
+    private static final int[] PLACES = {1000, 100, 10, 1};
+    
+    /** 按位读出的数字最大长度，超过时视为编号逐位朗读 */
+    private static final int MAX_READABLE_DIGITS = 12;
+    
+    /** 后跟句点时不视为句末的英文缩写（小写） */
+    private static final Set<String> ABBREVIATIONS = Set.of(
+            "mr", "mrs", "ms", "dr", "prof", "st", "jr", "sr", "vs", "etc", "e.g", "i.e", "no", "vol");
+    
+    /**
+     * 常用简繁对照（简体在前，繁体在后），只收录一对一的字。
+     * 历（歷/曆）、尽（盡/儘）、当（當/噹）、坛（壇/罈）、苏（蘇/甦）、夸（誇/夸）等
+     * 要看词语才能确定繁体的字不收录，保持原样
+     */
+    private static final String VARIANT_PAIRS =
+            "这這个個们們来來说說时時为為会會国國对對过過还還没沒见見问問门門开開关關长長东東车車马馬鸟鳥鱼魚"
+            + "龙龍书書话話语語请請让讓认認识識读讀写寫听聽买買卖賣钱錢银銀铁鐵爱愛难難欢歡乐樂头頭脸臉实實现現"
+            + "应應该該样樣点點战戰争爭军軍兴興变變从從众眾两兩万萬与與丰豐临臨义義乌烏乡鄉乱亂亲親亿億仅僅仓倉"
+            + "仪儀优優伤傷传傳体體侠俠儿兒党黨兰蘭养養兽獸内內册冊农農冯馮决決况況净淨凉涼减減凤鳳击擊刘劉则則"
+            + "刚剛创創删刪别別剑劍剧劇劝勸办辦务務动動励勵劳勞势勢区區医醫华華协協单單卢盧卫衛却卻厂廠厅廳"
+            + "压壓厌厭县縣参參双雙叙敘号號叹嘆吓嚇吗嗎吴吳员員启啟呜嗚响響哑啞围圍园園图圖圆圓圣聖场場坏壞块塊"
+            + "坚堅声聲处處备備夺奪奋奮妇婦妈媽娱娛婴嬰学學宁寧宝寶宠寵审審宫宮宽寬宾賓寻尋导導寿壽将將"
+            + "尔爾尘塵层層岁歲岛島师師帅帥帐帳带帶帮幫广廣庄莊庆慶库庫废廢异異弃棄张張弯彎弹彈强強归歸"
+            + "录錄彻徹径徑忆憶忧憂怀懷态態怜憐总總恋戀恶惡悬懸惊驚惧懼惨慘愿願戏戲户戶执執扩擴扫掃扬揚护護报報"
+            + "担擔拟擬拥擁择擇挡擋挤擠挥揮捞撈损損换換摄攝摆擺摇搖敌敵数數断斷无無旧舊显顯晓曉晕暈暂暫术術机機"
+            + "杀殺杂雜权權条條杨楊极極构構枪槍标標树樹桥橋档檔梦夢检檢欧歐毕畢气氣汉漢汤湯沟溝灭滅灯燈灵靈灾災"
+            + "炉爐炼煉烂爛热熱爷爺牵牽犹猶狮獅独獨狱獄猎獵猪豬献獻环環电電画畫畅暢疗療疯瘋痒癢盖蓋盘盤睁睜矿礦"
+            + "码碼砖磚础礎确確礼禮祸禍离離积積称稱稳穩穷窮窃竊竞競笔筆笼籠简簡类類粮糧紧緊纪紀约約级級纸紙线線"
+            + "练練组組细細终終经經结結给給绝絕统統继繼续續绿綠网網罗羅罚罰职職联聯肃肅肠腸肤膚胜勝脑腦脚腳艰艱"
+            + "节節荣榮药藥莲蓮营營萨薩虑慮虚虛虫蟲蛮蠻补補装裝观觀规規视視览覽觉覺触觸计計讨討训訓记記讲講"
+            + "许許论論设設访訪证證评評诉訴词詞译譯试試诗詩诚誠详詳误誤诸諸课課谁誰调調谈談谢謝谣謠贝貝负負财財"
+            + "责責败敗货貨质質贵貴贺賀资資赏賞赛賽赵趙赶趕跃躍践踐踪蹤轨軌转轉轮輪软軟轻輕载載较較辆輛辈輩边邊"
+            + "达達迁遷迈邁运運进進远遠违違连連迟遲选選递遞遗遺邓鄧邮郵邻鄰郑鄭酱醬释釋针針钢鋼钥鑰铃鈴锁鎖错錯"
+            + "锅鍋键鍵镇鎮镜鏡闪閃闭閉闯闖闲閒间間闷悶闹鬧闻聞阁閣阳陽阴陰阵陣阶階际際陆陸陈陳险險随隨隐隱雾霧"
+            + "静靜韩韓页頁顶頂项項顺順顾顧顿頓预預领領频頻题題颜顏风風飞飛饭飯饮飲饱飽饿餓馆館驱驅驶駛驻駐验驗"
+            + "骂罵骑騎骗騙鲁魯鸡雞鸣鳴鸭鴨麦麥黄黃齐齊齿齒龟龜";
+    
+    /** 以字符编码为下标的简繁对照表，0表示无需转换 */
+    private static final char[] VARIANTS = buildVariantTable();
+    
+    /** 缓存的短句条目上限 */
+    @Value("${storyteller.text.memo-size:4096}")
+    private int memoSize = 4096;
+    
+    /** 短句规范化结果缓存 */
+    private final Map<String, String> memo = new ConcurrentHashMap<>();
+    
+    /**
+     * 规范化文本
+     * 
+     * 按句切分后逐句处理，短句优先从缓存中获取结果
+     * 
+     * @param text 原始文本
+     * @return 规范化后的文本，输入为null时返回null
+     */
+    public String normalize(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        StringBuilder out = new StringBuilder(length + 16);
+        int start = 0;
+        while (start < length) {
+            int end = sentenceEnd(text, start, length);
+            appendSentence(text, start, end, out);
+            start = end;
+        }
+        return out.toString();
+    }
+    
+    /**
+     * 规范化一个句子并追加到输出
+     * 
+     * @param text 原始文本
+     * @param start 句子起始位置
+     * @param end 句子结束位置（不含）
+     * @param out 输出缓冲区
+     */
+    private void appendSentence(CharSequence text, int start, int end, StringBuilder out) {
+        if (end - start > MEMO_MAX_SENTENCE_LENGTH || memoSize <= 0) {
+            normalizeSentence(text, start, end, out);
+            return;
+        }
+        
+        String key = text.subSequence(start, end).toString();
+        String normalized = memo.get(key);
+        if (normalized == null) {
+            StringBuilder sentence = new StringBuilder(end - start + 8);
+            normalizeSentence(key, 0, key.length(), sentence);
+            normalized = sentence.toString();
+            // 超出上限时整体清空，避免维护淘汰顺序的开销
+            if (memo.size() >= memoSize) {
+                memo.clear();
+            }
+            memo.put(key, normalized);
+        }
+        
+        if (!normalized.isEmpty()) {
+            if (needsSpace(out, normalized.charAt(0))) {
+                out.append(' ');
+            }
+            out.append(normalized);
+        }
+    }
+    
+    /**
+     * 逐字符规范化一个句子
+     * 
+     * @param s 原始文本
+     * @param start 起始位置
+     * @param end 结束位置（不含）
+     * @param out 输出缓冲区
+     */
+    private static void normalizeSentence(CharSequence s, int start, int end, StringBuilder out) {
+        // 句子之间的分隔按空白处理，由needsSpace决定是否保留
+        boolean pendingSpace = out.length() > 0;
+        int i = start;
+        while (i < end) {
+            char c = fold(s.charAt(i));
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            if (pendingSpace) {
+                if (needsSpace(out, c)) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+            }
+            
+            if (c >= '0' && c <= '9') {
+                i = appendNumber(s, i, end, out);
+            } else if (c == '.' || c == '…') {
+                i = appendDots(s, i, end, out);
+            } else if (c == '—') {
+                while (i < end && s.charAt(i) == '—') {
+                    i++;
+                }
+                out.append("——");
+            } else {
+                char mapped = canonical(c);
+                if (!isCollapsible(mapped) || out.length() == 0 || out.charAt(out.length() - 1) != mapped) {
+                    out.append(mapped);
+                }
+                i++;
+            }
+        }
+    }
+    
+    /**
+     * 展开数字为粤语读法
+     * 
+     * 支持千分位、小数、百分比、四位年份和时:分格式；
+     * 以0开头或过长的数字按编号逐位朗读
+     * 
+     * @param s 原始文本
+     * @param i 数字起始位置
+     * @param end 句子结束位置（不含）
+     * @param out 输出缓冲区
+     * @return 数字之后的位置
+     */
+    private static int appendNumber(CharSequence s, int i, int end, StringBuilder out) {
+        int intStart = i;
+        long value = 0;
+        int digitCount = 0;
+        while (i < end) {
+            char c = fold(s.charAt(i));
+            if (c >= '0' && c <= '9') {
+                if (digitCount < MAX_READABLE_DIGITS) {
+                    value = value * 10 + (c - '0');
+                }
+                digitCount++;
+                i++;
+            } else if (c == ',' && isThousandsGroup(s, i + 1, end)) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        int intEnd = i;
+        
+        int fracStart = -1;
+        if (i + 1 < end && fold(s.charAt(i)) == '.' && isDigit(s, i + 1)) {
+            fracStart = ++i;
+            while (i < end && isDigit(s, i)) {
+                i++;
+            }
+        }
+        int fracEnd = i;
+        char next = i < end ? fold(s.charAt(i)) : 0;
+        
+        if (next == '%') {
+            out.append("百分之");
+            appendValue(s, intStart, intEnd, value, digitCount, out);
+            appendFraction(s, fracStart, fracEnd, out);
+            return i + 1;
+        }
+        if (fracStart < 0 && digitCount == 4 && next == '年') {
+            appendDigits(s, intStart, intEnd, out);
+            return i;
+        }
+        if (fracStart < 0 && next == ':' && digitCount <= 2
+                && i + 2 < end && isDigit(s, i + 1) && isDigit(s, i + 2) && !isDigit(s, i + 3)) {
+            int minutes = (fold(s.charAt(i + 1)) - '0') * 10 + (fold(s.charAt(i + 2)) - '0');
+            appendInteger(value, out);
+            out.append('點');
+            if (minutes > 0) {
+                if (minutes < 10) {
+                    out.append('零');
+                }
+                appendInteger(minutes, out);
+                out.append('分');
+            }
+            return i + 3;
+        }
+        
+        appendValue(s, intStart, intEnd, value, digitCount, out);
+        appendFraction(s, fracStart, fracEnd, out);
+        return i;
+    }
+    
+    /**
+     * 追加整数部分的读法
+     * 
+     * @param s 原始文本
+     * @param intStart 整数部分起始位置
+     * @param intEnd 整数部分结束位置（不含）
+     * @param value 整数值
+     * @param digitCount 整数位数
+     * @param out 输出缓冲区
+     */
+    private static void appendValue(CharSequence s, int intStart, int intEnd, long value, int digitCount,
+                                    StringBuilder out) {
+        boolean leadingZero = digitCount > 1 && fold(s.charAt(intStart)) == '0';
+        if (leadingZero || digitCount > MAX_READABLE_DIGITS) {
+            appendDigits(s, intStart, intEnd, out);
+        } else {
+            appendInteger(value, out);
+        }
+    }
+    
+    /**
+     * 追加小数部分的读法（“點”加逐位数字）
+     * 
+     * @param s 原始文本
+     * @param fracStart 小数部分起始位置，没有小数时为-1
+     * @param fracEnd 小数部分结束位置（不含）
+     * @param out 输出缓冲区
+     */
+    private static void appendFraction(CharSequence s, int fracStart, int fracEnd, StringBuilder out) {
+        if (fracStart >= 0) {
+            out.append('點');
+            appendDigits(s, fracStart, fracEnd, out);
+        }
+    }
+    
+    /**
+     * 按万、亿分组读出整数
+     * 
+     * @param value 整数值，小于一万亿
+     * @param out 输出缓冲区
+     */
+    static void appendInteger(long value, StringBuilder out) {
+        if (value == 0) {
+            out.append('零');
+            return;
+        }
+        boolean started = false;
+        boolean zeroPending = false;
+        for (int g = 0; g < 3; g++) {
+            int group = (int) (g == 0 ? value / 100_000_000L : g == 1 ? value / 10_000 % 10_000 : value % 10_000);
+            if (group == 0) {
+                zeroPending = started;
+                continue;
+            }
+            if (started && (zeroPending || group < 1000)) {
+                out.append('零');
+            }
+            zeroPending = false;
+            if (group == 2 && g < 2) {
+                out.append('兩');
+            } else {
+                appendGroup(group, !started, out);
+            }
+            if (g == 0) {
+                out.append('億');
+            } else if (g == 1) {
+                out.append('萬');
+            }
+            started = true;
+        }
+    }
+    
+    /**
+     * 读出0到9999之间的四位组
+     * 
+     * 粤语习惯：千位和百位的2读作“兩”，开头的10到19省略“一”
+     * 
+     * @param group 四位组的值
+     * @param leading 是否为整个数字的最高组
+     * @param out 输出缓冲区
+     */
+    private static void appendGroup(int group, boolean leading, StringBuilder out) {
+        boolean started = false;
+        boolean zero = false;
+        for (int p = 0; p < PLACES.length; p++) {
+            int d = group / PLACES[p] % 10;
+            if (d == 0) {
+                zero = started;
+                continue;
+            }
+            if (zero) {
+                out.append('零');
+                zero = false;
+            }
+            if (!(p == 2 && d == 1 && leading && !started)) {
+                out.append(d == 2 && p < 2 ? '兩' : DIGITS.charAt(d));
+            }
+            if (p < UNITS.length()) {
+                out.append(UNITS.charAt(p));
+            }
+            started = true;
+        }
+    }
+    
+    /**
+     * 逐位读出数字，跳过千分位逗号
+     * 
+     * @param s 原始文本
+     * @param start 起始位置
+     * @param end 结束位置（不含）
+     * @param out 输出缓冲区
+     */
+    private static void appendDigits(CharSequence s, int start, int end, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = fold(s.charAt(i));
+            if (c >= '0' && c <= '9') {
+                out.append(DIGITS.charAt(c - '0'));
+            }
+        }
+    }
+    
+    /**
+     * 规范化句点和省略号
+     * 
+     * 连续句点或省略号统一为“……”；单个句点只在句末（后跟空白、中文字符、右引号或右括号，
+     * 或位于句子末尾）且不在英文缩写之后时转为“。”，其余（如域名、文件名）原样保留
+     * 
+     * @param s 原始文本
+     * @param i 起始位置
+     * @param end 句子结束位置（不含）
+     * @param out 输出缓冲区
+     * @return 句点之后的位置
+     */
+    private static int appendDots(CharSequence s, int i, int end, StringBuilder out) {
+        int dots = 0;
+        boolean ellipsis = false;
+        while (i < end) {
+            char c = fold(s.charAt(i));
+            if (c == '.') {
+                dots++;
+            } else if (c == '…') {
+                ellipsis = true;
+            } else {
+                break;
+            }
+            i++;
+        }
+        if (ellipsis || dots > 1) {
+            out.append("……");
+        } else if (!isSentenceFinal(s, i, end) || followsAbbreviation(s, i - 1)) {
+            out.append('.');
+        } else if (out.length() == 0 || out.charAt(out.length() - 1) != '。') {
+            out.append('。');
+        }
+        return i;
+    }
+    
+    /**
+     * 判断单个句点是否位于句末
+     * 
+     * @param s 原始文本
+     * @param next 句点之后的位置
+     * @param end 句子结束位置（不含）
+     * @return 句点之后是句子末尾、空白、中文字符、右引号或右括号时返回true
+     */
+    private static boolean isSentenceFinal(CharSequence s, int next, int end) {
+        if (next >= end) {
+            return true;
+        }
+        char c = fold(s.charAt(next));
+        return Character.isWhitespace(c) || Character.isSpaceChar(c) || isWide(c) || isClosing(c);
+    }
+    
+    /**
+     * 判断句点是否紧跟在英文缩写之后
+     * 
+     * @param s 原始文本
+     * @param dot 句点的位置
+     * @return 句点之前的英文单词是常见缩写时返回true
+     */
+    private static boolean followsAbbreviation(CharSequence s, int dot) {
+        int start = dot;
+        while (start > 0 && isAsciiLetterOrDot(fold(s.charAt(start - 1)))) {
+            start--;
+        }
+        if (start == dot || start > 0 && Character.isLetterOrDigit(s.charAt(start - 1)) && !isWide(s.charAt(start - 1))) {
+            return false;
+        }
+        StringBuilder word = new StringBuilder(dot - start);
+        for (int k = start; k < dot; k++) {
+            word.append(Character.toLowerCase(fold(s.charAt(k))));
+        }
+        return ABBREVIATIONS.contains(word.toString());
+    }
+    
+    private static boolean isAsciiLetterOrDot(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '.';
+    }
+    
+    /**
+     * 查找句子结束位置
+     * 
+     * 句子包含结尾的终止标点以及紧随其后的右引号和右括号
+     * 
+     * @param s 原始文本
+     * @param start 起始位置
+     * @param length 文本长度
+     * @return 句子结束位置（不含）
+     */
+    private static int sentenceEnd(CharSequence s, int start, int length) {
+        int i = start;
+        while (i < length && !isTerminator(s.charAt(i))) {
+            i++;
+        }
+        while (i < length && (isTerminator(s.charAt(i)) || isClosing(s.charAt(i)))) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * 检索用的字符折叠
+     * 
+     * 全角折叠为半角、简体转为繁体并转为小写，
+     * 使索引和查询在字形差异下仍能匹配
+     * 
+     * @param c 原始字符
+     * @return 折叠后的字符
+     */
+    static char foldForSearch(char c) {
+        char folded = fold(c);
+        char variant = VARIANTS[folded];
+        return variant != 0 ? variant : Character.toLowerCase(folded);
+    }
+    
+    /**
+     * 全角字母数字和标点折叠为半角
+     * 
+     * @param c 原始字符
+     * @return 折叠后的字符
+     */
+    private static char fold(char c) {
+        if (c >= '\uFF01' && c <= '\uFF5E') {
+            return (char) (c - 0xFEE0);
+        }
+        if (c == '\u3000') {
+            return ' ';
+        }
+        return c;
+    }
+    
+    /**
+     * 标点统一为中文全角形式，并进行简繁转换
+     * 
+     * @param c 折叠后的字符
+     * @return 规范字符
+     */
+    private static char canonical(char c) {
+        switch (c) {
+            case ',':
+                return '，';
+            case '!':
+                return '！';
+            case '?':
+                return '？';
+            case ';':
+                return '；';
+            case ':':
+                return '：';
+            case '(':
+                return '（';
+            case ')':
+                return '）';
+            default:
+                char variant = VARIANTS[c];
+                return variant != 0 ? variant : c;
+        }
+    }
+    
+    /**
+     * 判断是否在两个字符之间保留空格
+     * 
+     * 只有两侧都是半角字符（如英文单词）时才需要空格
+     * 
+     * @param out 输出缓冲区
+     * @param next 下一个要输出的字符
+     * @return 需要空格时返回true
+     */
+    private static boolean needsSpace(StringBuilder out, char next) {
+        return out.length() > 0 && !isWide(out.charAt(out.length() - 1)) && !isWide(next);
+    }
+    
+    /**
+     * 判断是否为中日韩文字或全角标点
+     * 
+     * @param c 字符
+     * @return 宽字符时返回true
+     */
+    private static boolean isWide(char c) {
+        return c >= '\u2E80' || c == '…' || c == '—';
+    }
+    
+    /**
+     * 判断重复出现时是否合并
+     * 
+     * @param c 规范字符
+     * @return 可合并的标点返回true
+     */
+    private static boolean isCollapsible(char c) {
+        return c == '，' || c == '。' || c == '！' || c == '？' || c == '；' || c == '：' || c == '、';
+    }
+    
+    private static boolean isTerminator(char c) {
+        return c == '。' || c == '！' || c == '？' || c == '!' || c == '?' || c == '\n';
+    }
+    
+    private static boolean isClosing(char c) {
+        return c == '」' || c == '』' || c == '”' || c == '’' || c == '）' || c == ')';
+    }
+    
+    private static boolean isDigit(CharSequence s, int i) {
+        if (i >= s.length()) {
+            return false;
+        }
+        char c = fold(s.charAt(i));
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * 判断逗号之后是否为三位一组的千分位数字
+     * 
+     * @param s 原始文本
+     * @param i 逗号之后的位置
+     * @param end 句子结束位置（不含）
+     * @return 是千分位时返回true
+     */
+    private static boolean isThousandsGroup(CharSequence s, int i, int end) {
+        return i + 3 <= end && isDigit(s, i) && isDigit(s, i + 1) && isDigit(s, i + 2)
+                && (i + 3 == end || !isDigit(s, i + 3));
+    }
+    
+    /**
+     * 构建简繁对照表
+     * 
+     * @return 以字符编码为下标的对照表
+     */
+    private static char[] buildVariantTable() {
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for (int i = 0; i + 1 < VARIANT_PAIRS.length(); i += 2) {
+            table[VARIANT_PAIRS.charAt(i)] = VARIANT_PAIRS.charAt(i + 1);
+        }
+        return table;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+package com.storyteller.service;
+
+import com.storyteller.quota.AffinityPolicy;
+import com.storyteller.quota.FairShareTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 声音模型预热池
+ * 记录每个合成线程已加载的声音模型，作为合成队列的亲和策略
+ * 
+ * 功能：
+ * - 合成前确保声音模型已加载到当前线程，未加载时通过TTSService加载
+ * - 每个线程最多保留固定数量的模型，超出时卸载最久未使用的模型
+ * - 合成队列据此把任务优先交给已加载对应模型的线程
+ * - 统计模型加载次数、命中率和按亲和选出的任务数
+ */
+@Component
+@Profile("!reactive")
+public class VoiceModelPool implements AffinityPolicy {
+    
+    private static final Logger log = LoggerFactory.getLogger(VoiceModelPool.class);
+    
+    @Autowired
+    private TTSService ttsService;
+    
+    /** 每个合成线程最多保留的模型数 */
+    @Value("${storyteller.affinity.models-per-worker:2}")
+    private int modelsPerWorker;
+    
+    /** 合成线程到已加载模型的映射 */
+    private final Map<Thread, WarmModels> workers = new ConcurrentHashMap<>();
+    
+    private final LongAdder loads = new LongAdder();
+    
+    private final LongAdder hits = new LongAdder();
+    
+    private final LongAdder evictions = new LongAdder();
+    
+    private final LongAdder dispatches = new LongAdder();
+    
+    private final LongAdder affinityDispatches = new LongAdder();
+    
+    /**
+     * 确保声音模型已加载到当前线程
+     * 
+     * 在合成线程上调用，模型已加载时只更新使用顺序
+     * 
+     * @param voiceModelId 声音模型ID
+     * @return 本次实际加载了模型时返回true，模型已加载时返回false
+     * @throws java.util.concurrent.CancellationException 加载过程中线程被中断
+     */
+    public boolean ensureLoaded(String voiceModelId) {
+        WarmModels models = workers.computeIfAbsent(Thread.currentThread(), thread -> new WarmModels());
+        synchronized (models) {
+            if (models.get(voiceModelId) != null) {
+                hits.increment();
+                return false;
+            }
+        }
+        
+        // 加载耗时较长，不持有锁，期间队列按加载前的状态选择任务
+        ttsService.loadVoiceModel(voiceModelId);
+        loads.increment();
+        
+        String evicted = null;
+        synchronized (models) {
+            models.put(voiceModelId, Boolean.TRUE);
+            if (models.size() > Math.max(1, modelsPerWorker)) {
+                Iterator<String> eldest = models.keySet().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            }
+        }
+        if (evicted != null) {
+            ttsService.unloadVoiceModel(evicted);
+            evictions.increment();
+            log.debug("线程{}卸载声音模型{}，加载{}", Thread.currentThread().getName(), evicted, voiceModelId);
+        }
+        return true;
+    }
+    
+    @Override
+    public Collection<String> preferredKeys() {
+        WarmModels models = workers.get(Thread.currentThread());
+        if (models == null) {
+            return Collections.emptyList();
+        }
+        synchronized (models) {
+            // 最近使用的模型排在前面
+            List<String> keys = new ArrayList<>(models.keySet());
+            Collections.reverse(keys);
+            return keys;
+        }
+    }
+    
+    @Override
+    public boolean prefers(Thread worker, String key) {
+        WarmModels models = workers.get(worker);
+        if (models == null) {
+            return false;
+        }
+        synchronized (models) {
+            return models.containsKey(key);
+        }
+    }
+    
+    @Override
+    public void onDispatch(FairShareTask<?> task, boolean affinityHit) {
+        dispatches.increment();
+        if (affinityHit) {
+            affinityDispatches.increment();
+        }
+    }
+    
+    /**
+     * 获取预热池的统计信息
+     * 
+     * 同时清理已结束线程的记录
+     * 
+     * @return 统计信息
+     */
+    public Stats stats() {
+        workers.keySet().removeIf(thread -> !thread.isAlive());
+        Map<String, List<String>> warm = new TreeMap<>();
+        workers.forEach((thread, models) -> {
+            synchronized (models) {
+                warm.put(thread.getName(), new ArrayList<>(models.keySet()));
+            }
+        });
+        return new Stats(loads.sum(), hits.sum(), evictions.sum(), dispatches.sum(), affinityDispatches.sum(), warm);
+    }
+    
+    /**
+     * 一个线程已加载的模型（按访问顺序，最久未使用的在前）
+     */
+    private static class WarmModels extends LinkedHashMap<String, Boolean> {
+        
+        WarmModels() {
+            super(8, 0.75f, true);
+        }
+    }
+    
+    /**
+     * 预热池统计信息
+     */
+    public static class Stats {
+        
+        /** 模型加载次数 */
+        private final long modelLoads;
+        
+        /** 合成时模型已加载的次数 */
+        private final long modelHits;
+        
+        /** 模型卸载次数 */
+        private final long evictions;
+        
+        /** 出队的任务数 */
+        private final long dispatches;
+        
+        /** 按亲和键选出的任务数 */
+        private final long affinityDispatches;
+        
+        /** 线程名到已加载模型的映射，最久未使用的在前 */
+        private final Map<String, List<String>> warmModels;
+        
+        Stats(long modelLoads, long modelHits, long evictions, long dispatches, long affinityDispatches,
+                Map<String, List<String>> warmModels) {
+            this.modelLoads = modelLoads;
+            this.modelHits = modelHits;
+            this.evictions = evictions;
+            this.dispatches = dispatches;
+            this.affinityDispatches = affinityDispatches;
+            this.warmModels = warmModels;
+        }
+        
+        public long getModelLoads() { return modelLoads; }
+        
+        public long getModelHits() { return modelHits; }
+        
+        public long getEvictions() { return evictions; }
+        
+        public long getDispatches() { return dispatches; }
+        
+        public long getAffinityDispatches() { return affinityDispatches; }
+        
+        public Map<String, List<String>> getWarmModels() { return warmModels; }
+        
+        /**
+         * 亲和命中率，即合成时模型已加载的比例
+         * 
+         * @return 0到1之间的比例，尚无合成时为0
+         */
+        public double getHitRate() {
+            long total = modelHits + modelLoads;
+            return total == 0 ? 0 : (double) modelHits / total;
+        }
+    }
+}
\ No newline at end of file
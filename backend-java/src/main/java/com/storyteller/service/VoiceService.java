@@ -1,5 +1,7 @@
 package com.storyteller.service;
 
+import com.storyteller.audio.TrainingAudio;
+import com.storyteller.audio.TrainingAudioPreprocessor;
 import com.storyteller.entity.VoiceModel;
 import com.storyteller.repository.VoiceModelRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -16,7 +19,7 @@ import java.util.UUID;
  * 处理声音模型训练和管理的核心业务逻辑
  * 
  * 功能：
- * - 验证音频文件
+ * - 验证音频文件，预处理为去除静音的语句后再训练，质量不合格时拒绝
  * - 调用TTS服务训练声音模型
  * - 管理用户的声音模型
  */
@@ -29,17 +32,20 @@ public class VoiceService {
     @Autowired
     private TTSService ttsService;
     
+    @Autowired
+    private TrainingAudioPreprocessor trainingAudioPreprocessor;
+    
     /**
      * 训练声音模型
      * 
-     * 验证音频文件并调用TTS服务训练个性化的粤语声音模型
+     * 验证音频文件，解码、去除静音并切分语句后调用TTS服务训练个性化的粤语声音模型
      * 
      * @param userId 用户ID
      * @param dialect 方言类型（如"cantonese"）
      * @param audioFile 音频文件
      * @return 训练完成的声音模型ID
      * @throws IOException 音频文件处理错误
-     * @throws IllegalArgumentException 音频文件验证失败
+     * @throws IllegalArgumentException 音频文件验证失败或音频质量不合格
      */
     public String trainVoiceModel(Long userId, String dialect, MultipartFile audioFile) throws IOException {
         // 验证音频文件
@@ -55,8 +61,14 @@ public class VoiceService {
         // 在生产环境中，这将调用实际的TTS服务
         String modelId = "cantonese_" + userId + "_" + System.currentTimeMillis();
         
+        // 只把有效语音发送给训练服务，质量不合格的录音在这里被拒绝
+        TrainingAudio trainingAudio;
+        try (InputStream input = audioFile.getInputStream()) {
+            trainingAudio = trainingAudioPreprocessor.preprocess(input, audioFile.getSize());
+        }
+        
         // 模拟调用TTS服务API
-        String trainedModelId = ttsService.trainVoiceModel(userId, dialect, audioFile);
+        String trainedModelId = ttsService.trainVoiceModel(userId, dialect, trainingAudio);
         
         // 将声音模型保存到数据库
         VoiceModel voiceModel = new VoiceModel();
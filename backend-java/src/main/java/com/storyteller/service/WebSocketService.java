@@ -1,6 +1,7 @@
 package com.storyteller.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -12,9 +13,11 @@ import org.springframework.stereotype.Service;
  * - 发送合成进度更新
  * - 发送任务完成通知
  * - 发送错误信息
+ * - 发送任务取消通知
  * - 支持按用户ID进行消息推送
  */
 @Service
+@Profile("!reactive")
 public class WebSocketService {
     
     @Autowired
@@ -65,6 +68,20 @@ public class WebSocketService {
         messagingTemplate.convertAndSend(destination, message);
     }
     
+    /**
+     * 发送取消通知
+     * 
+     * 向指定用户发送合成任务已被取消的消息
+     * 
+     * @param userId 用户ID
+     * @param taskId 任务ID
+     */
+    public void sendCancellation(Long userId, String taskId) {
+        String destination = "/topic/progress/" + userId;
+        ProgressMessage message = new ProgressMessage(taskId, 0, "CANCELLED");
+        messagingTemplate.convertAndSend(destination, message);
+    }
+    
     // 消息类定义
     /**
      * 进度消息类
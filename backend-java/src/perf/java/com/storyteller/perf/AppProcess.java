@@ -0,0 +1,215 @@
+package com.storyteller.perf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 被测应用进程
+ * 用桌面版分发或可执行jar启动一个独立的后端进程，供各性能工具测量
+ * 
+ * 功能：
+ * - 在空闲端口上启动应用，输出写入临时日志文件
+ * - 等待探测请求成功，返回从启动进程开始的耗时
+ * - 读取进程的常驻内存（RSS）
+ * - 关闭时终止进程，正常结束时删除日志
+ */
+final class AppProcess implements AutoCloseable {
+    
+    /** 与application.yml中的server.servlet.context-path一致 */
+    private static final String CONTEXT_PATH = "/api";
+    
+    private final Process process;
+    
+    private final int port;
+    
+    private final long startNanos;
+    
+    private final File log;
+    
+    private final String name;
+    
+    private boolean failed;
+    
+    private AppProcess(String name, Process process, int port, long startNanos, File log) {
+        this.name = name;
+        this.process = process;
+        this.port = port;
+        this.startNanos = startNanos;
+        this.log = log;
+    }
+    
+    /**
+     * 启动应用
+     * 
+     * @param name 名称，用于日志文件名和错误信息
+     * @param java java可执行文件
+     * @param dir 桌面版分发目录
+     * @param jvmArgs JVM参数，位于desktop.args之前
+     * @param appArgs 应用参数
+     * @return 已启动的进程
+     */
+    static AppProcess start(String name, String java, File dir, List<String> jvmArgs, List<String> appArgs)
+            throws IOException {
+        if (!new File(dir, "desktop.args").isFile()) {
+            throw new IllegalArgumentException("找不到桌面版分发，请先运行 ./gradlew desktopDist: " + dir);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmArgs);
+        command.add("@desktop.args");
+        return launch(name, command, appArgs, dir);
+    }
+    
+    /**
+     * 用可执行jar启动应用
+     * 
+     * 不使用桌面版的JVM内存参数，由调用方通过jvmArgs指定
+     * 
+     * @param name 名称，用于日志文件名和错误信息
+     * @param java java可执行文件
+     * @param jar bootJar生成的可执行jar
+     * @param jvmArgs JVM参数
+     * @param appArgs 应用参数
+     * @return 已启动的进程
+     */
+    static AppProcess startJar(String name, String java, File jar, List<String> jvmArgs, List<String> appArgs)
+            throws IOException {
+        if (!jar.isFile()) {
+            throw new IllegalArgumentException("找不到应用jar，请先运行 ./gradlew bootJar: " + jar);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.getAbsolutePath());
+        return launch(name, command, appArgs, jar.getParentFile());
+    }
+    
+    /**
+     * 在空闲端口上启动进程
+     * 
+     * @param name 名称
+     * @param command 启动命令，不含应用参数
+     * @param appArgs 应用参数，位于端口参数之后
+     * @param dir 工作目录
+     * @return 已启动的进程
+     */
+    private static AppProcess launch(String name, List<String> command, List<String> appArgs, File dir)
+            throws IOException {
+        int port = freePort();
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        
+        File log = File.createTempFile("perf-" + name.replaceAll("[^A-Za-z0-9]", "-") + "-", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(dir)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        return new AppProcess(name, process, port, start, log);
+    }
+    
+    /**
+     * 等待探测请求返回200
+     * 
+     * @param client HTTP客户端
+     * @param path 探测的请求路径，相对于baseUrl()
+     * @param timeout 最长等待时间
+     * @return 从启动进程到请求成功返回的毫秒数
+     * @throws IllegalStateException 进程退出或等待超时
+     */
+    long awaitReady(HttpClient client, String path, Duration timeout) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl() + path))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        long deadline = startNanos + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                failed = true;
+                throw new IllegalStateException("应用启动失败（" + name + "），日志见 " + log);
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return (System.nanoTime() - startNanos) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // 端口尚未监听
+            }
+            Thread.sleep(10);
+        }
+        failed = true;
+        throw new IllegalStateException("等待应用就绪超时（" + name + "），日志见 " + log);
+    }
+    
+    /**
+     * 应用接口的根地址，包含server.servlet.context-path
+     * 
+     * @return 根地址
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + port + CONTEXT_PATH;
+    }
+    
+    /**
+     * 读取进程的常驻内存
+     * 
+     * Linux上读取/proc，其他系统调用ps
+     * 
+     * @return 常驻内存（KB），无法读取时返回-1
+     */
+    long rssKb() {
+        Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        try {
+            if (Files.isReadable(status)) {
+                for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            }
+            Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(process.pid())).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(ps.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                return line == null ? -1 : Long.parseLong(line.trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+        if (!failed) {
+            log.delete();
+        }
+    }
+    
+    /**
+     * 获取一个空闲端口
+     * 
+     * @return 端口号
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,628 @@
+package com.storyteller.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.storyteller.perf.SloReport.Metric;
+import com.storyteller.perf.SloReport.Objective;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 端到端负载测试
+ * 模拟大量用户走完整个流程：订阅进度、训练声音、逐章请求合成并等待完成通知
+ * 
+ * 功能：
+ * - 启动使用模拟TTS的本地实例，或对已运行的实例（--url）施加负载
+ * - 可测试servlet或响应式（--stack reactive）配置，进度可通过STOMP、SSE或轮询任务状态获取（--progress）
+ * - 用户在爬坡时间内陆续开始，同时进行的用户数受并发数限制；每个用户按顺序合成若干章节，章节之间有收听间隔
+ * - 章节长度服从对数正态分布（中位数约3000字，800到12000字之间），分段数与真实章节相近
+ * - 记录训练、受理、首个进度和完成的延迟，以及按分类统计的错误
+ * - 输出HDR直方图日志和SLO报告，可与上一个版本的报告比较
+ * 
+ * 用户按闭环方式发送请求，系统变慢时请求速率随之下降，报告中的延迟不含请求被推迟发送的时间。
+ * 任务超时时查询任务状态，已完成的记为progress-lost（完成通知丢失），否则记为timeout。
+ * STOMP在用户开始时订阅，一直保持到用户结束；SSE在受理后为每个任务订阅，任务结束后关闭；
+ * 轮询模式的首个进度和完成时间精确到轮询间隔。
+ * 
+ * 比较两种配置时，先以servlet配置运行一次，再以响应式配置运行并用--baseline指定前一次的报告目录，
+ * 两次使用相同的PostgreSQL（--postgres-url）和相同的用户数、并发数。
+ * STOMP和SSE模式下并发数约等于同时打开的进度连接数，5000并发需要客户端和服务端的文件描述符上限都高于5000。
+ * 由Gradle的loadTest任务运行，参数见main中的选项
+ */
+public class LoadGenerator {
+    
+    /** 实例的最长启动时间 */
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    
+    /** 单个HTTP请求的最长等待时间 */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    
+    /** 就绪探测使用的路径，响应式配置没有模型亲和统计接口 */
+    private static final String READY_PATH = "/synthesis/affinity";
+    
+    private static final String REACTIVE_READY_PATH = "/voice/models/0";
+    
+    /** 章节长度的对数正态分布参数：中位数和对数标准差 */
+    private static final double MEDIAN_CHAPTER_CHARS = 3000;
+    
+    private static final double CHAPTER_CHARS_SIGMA = 0.5;
+    
+    private static final int MIN_CHAPTER_CHARS = 800;
+    
+    private static final int MAX_CHAPTER_CHARS = 12000;
+    
+    /** 生成章节正文使用的粤语文本 */
+    private static final String PASSAGE = "话说个日天色阴阴沉沉，阿明行到街口，见到间茶楼啱啱开门。"
+            + "佢谂住入去饮返杯茶先，点知一入门口就撞见咗旧时嘅同学。"
+            + "两个人坐低倾咗成个钟，由读书嗰阵讲到而家份工，越讲越开心。"
+            + "临走嗰阵，同学话下个礼拜约埋其他人出嚟食饭，阿明梗系一口答应。"
+            + "行返屋企嘅路上，佢心谂，原来有啲缘分真系讲唔埋。";
+    
+    /** 训练录音的采样率和时长 */
+    private static final int TRAINING_SAMPLE_RATE = 16000;
+    
+    private static final int TRAINING_SECONDS = 12;
+    
+    private final HttpClient client;
+    
+    private final ObjectMapper mapper = new ObjectMapper();
+    
+    private final String baseUrl;
+    
+    private final SloReport report;
+    
+    private final int chaptersPerUser;
+    
+    private final long thinkMillis;
+    
+    private final Duration taskTimeout;
+    
+    private final ProgressMode progressMode;
+    
+    private final long pollMillis;
+    
+    private final byte[] trainingAudio = trainingRecording(new Random(42));
+    
+    /** 进行中的任务，进度消息可能早于受理响应到达，两边都用computeIfAbsent登记 */
+    private final Map<String, TaskTrace> traces = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取任务进度的方式
+     */
+    private enum ProgressMode {
+        /** 订阅WebSocket上的STOMP主题，只有servlet配置支持 */
+        STOMP,
+        /** 订阅任务的SSE事件流，只有响应式配置支持 */
+        SSE,
+        /** 定时查询任务状态，两种配置都支持 */
+        POLL
+    }
+    
+    private LoadGenerator(HttpClient client, String baseUrl, SloReport report, int chaptersPerUser, long thinkMillis,
+            Duration taskTimeout, ProgressMode progressMode, long pollMillis) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.report = report;
+        this.chaptersPerUser = chaptersPerUser;
+        this.thinkMillis = thinkMillis;
+        this.taskTimeout = taskTimeout;
+        this.progressMode = progressMode;
+        this.pollMillis = pollMillis;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = StartupBenchmark.parseOptions(args);
+        String java = options.getOrDefault("java", "java");
+        String url = options.get("url");
+        if (url == null && !options.containsKey("jar")) {
+            throw new IllegalArgumentException("请用--jar指定应用jar，或用--url指定已运行的实例");
+        }
+        boolean reactive = "reactive".equals(options.getOrDefault("stack", "servlet"));
+        if (!reactive && !"servlet".equals(options.getOrDefault("stack", "servlet"))) {
+            throw new IllegalArgumentException("--stack只能是servlet或reactive");
+        }
+        ProgressMode progressMode = ProgressMode.valueOf(
+                options.getOrDefault("progress", reactive ? "sse" : "stomp").toUpperCase());
+        if (progressMode == (reactive ? ProgressMode.STOMP : ProgressMode.SSE)) {
+            throw new IllegalArgumentException((reactive ? "响应式" : "servlet") + "配置不支持" + progressMode + "进度");
+        }
+        long pollMillis = Long.parseLong(options.getOrDefault("poll-ms", "500"));
+        if (reactive && url == null && !options.containsKey("postgres-url")) {
+            throw new IllegalArgumentException("响应式配置需要PostgreSQL，请用--postgres-url指定，或用--url指定已运行的实例");
+        }
+        int users = Integer.parseInt(options.getOrDefault("users", "2000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "500"));
+        int chapters = Integer.parseInt(options.getOrDefault("chapters", "3"));
+        long thinkMillis = Long.parseLong(options.getOrDefault("think-ms", "1000"));
+        long rampMillis = Long.parseLong(options.getOrDefault("ramp-seconds", "30")) * 1000;
+        long firstUserId = Long.parseLong(options.getOrDefault("first-user-id", "900000000"));
+        Duration taskTimeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("task-timeout-seconds", "300")));
+        String label = options.getOrDefault("label", "current");
+        File out = new File(options.getOrDefault("out", "build/reports/load/" + label));
+        File baseline = options.containsKey("baseline") ? new File(options.get("baseline")) : null;
+        boolean failOnSlo = Boolean.parseBoolean(options.getOrDefault("fail-on-slo", "false"));
+        List<Objective> objectives = List.of(
+                new Objective(Metric.INTAKE, 99, Double.parseDouble(options.getOrDefault("slo-intake-p99-ms", "250"))),
+                new Objective(Metric.FIRST_PROGRESS, 99,
+                        Double.parseDouble(options.getOrDefault("slo-first-progress-p99-ms", "1000"))),
+                new Objective(Metric.COMPLETION, 99,
+                        Double.parseDouble(options.getOrDefault("slo-completion-p99-ms", "10000"))));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("slo-error-rate", "0.01"));
+        if (users <= 0 || concurrency <= 0 || chapters <= 0) {
+            throw new IllegalArgumentException("用户数、并发数和章节数必须大于0");
+        }
+        
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        
+        AppProcess app = null;
+        Path dataDir = null;
+        String description;
+        boolean passed;
+        try {
+            String baseUrl;
+            if (url != null) {
+                baseUrl = url.replaceAll("/+$", "");
+                description = "目标实例 " + baseUrl;
+            } else {
+                if (!options.containsKey("postgres-url")) {
+                    dataDir = Files.createTempDirectory("storyteller-load");
+                }
+                List<String> appArgs = instanceArgs(options, reactive, dataDir);
+                app = AppProcess.startJar("load", java, new File(options.get("jar")), List.of("-Xmx" + options.getOrDefault("heap", "1g")),
+                        appArgs);
+                long millis = app.awaitReady(client, reactive ? REACTIVE_READY_PATH : READY_PATH, START_TIMEOUT);
+                baseUrl = app.baseUrl();
+                description = "本地实例（" + (dataDir != null ? "嵌入式数据库" : "PostgreSQL") + "，模拟TTS），启动 "
+                        + millis + " ms，参数 " + String.join(" ", appArgs);
+            }
+            description += String.format("%n%s配置，进度 %s，用户 %d，并发 %d，每用户 %d 章，收听间隔 %d ms，爬坡 %d s",
+                    reactive ? "响应式" : "servlet", progressMode.name().toLowerCase(), users, concurrency, chapters,
+                    thinkMillis, rampMillis / 1000);
+            
+            SloReport report = new SloReport(out);
+            LoadGenerator generator = new LoadGenerator(client, baseUrl, report, chapters, thinkMillis, taskTimeout,
+                    progressMode, pollMillis);
+            generator.run(users, concurrency, rampMillis, firstUserId);
+            passed = report.finish(label, description, objectives, maxErrorRate, baseline);
+            System.out.println("\n报告已写入 " + out);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (dataDir != null) {
+                deleteRecursively(dataDir);
+            }
+        }
+        if (!passed && failOnSlo) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * 本地实例的应用参数
+     * 
+     * 嵌入式配置按单用户桌面缩小了线程池和连接池，这里恢复到服务端的规模；
+     * 模拟的合成和加载耗时缩短到可以在几分钟内完成数千个任务。
+     * 指定--postgres-url时使用PostgreSQL，响应式配置的R2DBC连接同一个数据库
+     * 
+     * @param options 命令行选项
+     * @param reactive 是否使用响应式配置
+     * @param dataDir 嵌入式数据库目录，使用PostgreSQL时为null
+     * @return 应用参数
+     */
+    private static List<String> instanceArgs(Map<String, String> options, boolean reactive, Path dataDir) {
+        Map<String, String> args = new LinkedHashMap<>();
+        if (dataDir != null) {
+            args.put("spring.profiles.active", "embedded");
+            args.put("storyteller.embedded.data-dir", dataDir.toString());
+        } else {
+            String postgresUrl = options.get("postgres-url");
+            String user = options.getOrDefault("postgres-user", "postgres");
+            String password = options.getOrDefault("postgres-password", "postgres");
+            if (reactive) {
+                args.put("spring.profiles.active", "reactive");
+                args.put("spring.r2dbc.url", "r2dbc:" + postgresUrl.substring("jdbc:".length()));
+                args.put("spring.r2dbc.username", user);
+                args.put("spring.r2dbc.password", password);
+                args.put("spring.r2dbc.pool.max-size", "16");
+            }
+            args.put("spring.datasource.url", postgresUrl);
+            args.put("spring.datasource.username", user);
+            args.put("spring.datasource.password", password);
+        }
+        args.put("spring.datasource.hikari.maximum-pool-size", "16");
+        args.put("server.tomcat.threads.max", "200");
+        args.put("storyteller.synthesis.threads", options.getOrDefault("synthesis-threads", "32"));
+        args.put("storyteller.status-cache.max-entries", "10000");
+        args.put("storyteller.prefetch.enabled", "false");
+        args.put("storyteller.synthesis.simulated-delay-ms", options.getOrDefault("delay-ms", "200"));
+        args.put("storyteller.synthesis.simulated-segment-ms", options.getOrDefault("segment-ms", "100"));
+        args.put("storyteller.synthesis.simulated-model-load-ms", options.getOrDefault("model-load-ms", "200"));
+        args.put("storyteller.training.simulated-training-ms", options.getOrDefault("training-ms", "200"));
+        args.put("spring.jpa.show-sql", "false");
+        args.put("logging.level.com.storyteller", "WARN");
+        args.put("logging.level.org.springframework.web", "WARN");
+        args.put("logging.level.org.hibernate.SQL", "WARN");
+        args.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        List<String> list = new ArrayList<>();
+        args.forEach((name, value) -> list.add("--" + name + "=" + value));
+        return list;
+    }
+    
+    /**
+     * 运行所有用户并等待结束
+     * 
+     * @param users 用户数
+     * @param concurrency 同时进行的用户数
+     * @param rampMillis 爬坡时间，第i个用户在 i * rampMillis / users 之后开始
+     * @param firstUserId 第一个用户的ID
+     */
+    private void run(int users, int concurrency, long rampMillis, long firstUserId) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            long userId = firstUserId + i;
+            long startAt = start + TimeUnit.MILLISECONDS.toNanos(rampMillis * i / users);
+            pool.execute(() -> {
+                try {
+                    long delay = startAt - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                    runUser(userId, new Random(userId));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        pool.shutdown();
+        while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.out.printf("进行中的任务 %d%n", traces.size());
+        }
+    }
+    
+    /**
+     * 一个用户的完整流程
+     * 
+     * @param userId 用户ID
+     * @param random 该用户的随机数生成器
+     */
+    private void runUser(long userId, Random random) throws InterruptedException {
+        StompProgressClient progress = null;
+        if (progressMode == ProgressMode.STOMP) {
+            report.operation();
+            report.request();
+            try {
+                progress = StompProgressClient.connect(client, baseUrl, userId, mapper, this::onProgress,
+                        Duration.ofSeconds(30));
+            } catch (IOException e) {
+                report.error("subscribe-failed");
+                return;
+            }
+            report.connectionOpened();
+        }
+        try {
+            // 订阅在服务端异步登记，训练请求的耗时保证第一个合成任务开始前订阅已生效
+            String voiceModelId = train(userId);
+            if (voiceModelId == null) {
+                return;
+            }
+            for (int chapter = 0; chapter < chaptersPerUser; chapter++) {
+                if (chapter > 0) {
+                    Thread.sleep(thinkMillis);
+                }
+                synthesize(userId, userId * 100 + chapter, voiceModelId, chapterText(random));
+            }
+        } finally {
+            if (progress != null) {
+                progress.close();
+                report.connectionClosed();
+            }
+        }
+    }
+    
+    /**
+     * 训练声音
+     * 
+     * @param userId 用户ID
+     * @return 声音模型ID，失败时返回null
+     */
+    private String train(long userId) throws InterruptedException {
+        report.operation();
+        String boundary = "----storyteller" + Long.toHexString(userId);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(trainingAudio.length + 512);
+        body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"userId\"\r\n\r\n"
+                + userId + "\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"dialect\"\r\n\r\ncantonese\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"audio\"; filename=\"sample.wav\"\r\n"
+                + "Content-Type: audio/wav\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(trainingAudio);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/voice/train"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        report.request();
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                report.error(response.statusCode() == 429 ? "training-rejected" : "training-failed");
+                return null;
+            }
+            report.record(Metric.TRAINING, System.nanoTime() - sent);
+            return response.body().trim();
+        } catch (IOException e) {
+            report.error("training-failed");
+            return null;
+        }
+    }
+    
+    /**
+     * 请求合成一个章节并等待任务结束
+     * 
+     * @param userId 用户ID
+     * @param chapterId 章节ID
+     * @param voiceModelId 声音模型ID
+     * @param text 章节正文
+     */
+    private void synthesize(long userId, long chapterId, String voiceModelId, String text) throws InterruptedException {
+        report.operation();
+        String json;
+        try {
+            json = mapper.writeValueAsString(Map.of("userId", userId, "chapterId", chapterId,
+                    "voiceModelId", voiceModelId, "text", text));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/synthesis/request"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        
+        report.request();
+        long sent = System.nanoTime();
+        String taskId;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                report.error(response.statusCode() == 429 ? "intake-rejected" : "intake-failed");
+                return;
+            }
+            report.record(Metric.INTAKE, System.nanoTime() - sent);
+            taskId = response.body().trim();
+        } catch (IOException e) {
+            report.error("intake-failed");
+            return;
+        }
+        
+        if (progressMode == ProgressMode.POLL) {
+            poll(taskId, sent);
+        } else {
+            awaitNotification(taskId, sent);
+        }
+    }
+    
+    /**
+     * 等待任务的完成通知，SSE模式下先订阅任务的事件流
+     * 
+     * @param taskId 任务ID
+     * @param sent 合成请求的发送时间
+     */
+    private void awaitNotification(String taskId, long sent) throws InterruptedException {
+        TaskTrace trace = traces.computeIfAbsent(taskId, id -> new TaskTrace());
+        SseProgressClient events = null;
+        try {
+            if (progressMode == ProgressMode.SSE) {
+                report.operation();
+                report.request();
+                try {
+                    events = SseProgressClient.subscribe(client, baseUrl, taskId, mapper, this::onProgress,
+                            Duration.ofSeconds(30));
+                } catch (IOException e) {
+                    report.error("subscribe-failed");
+                    return;
+                }
+                report.connectionOpened();
+            }
+            String status = trace.done.get(taskTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (trace.firstProgressNanos != 0) {
+                report.record(Metric.FIRST_PROGRESS, trace.firstProgressNanos - sent);
+            }
+            if ("COMPLETED".equals(status)) {
+                report.record(Metric.COMPLETION, trace.doneNanos - sent);
+            } else {
+                report.error("task-" + status.toLowerCase());
+            }
+        } catch (TimeoutException e) {
+            report.error("COMPLETED".equals(taskStatus(taskId)) ? "progress-lost" : "timeout");
+        } catch (ExecutionException e) {
+            report.error("task-failed");
+        } finally {
+            traces.remove(taskId);
+            if (events != null) {
+                events.close();
+                report.connectionClosed();
+            }
+        }
+    }
+    
+    /**
+     * 定时查询任务状态直到任务结束
+     * 
+     * @param taskId 任务ID
+     * @param sent 合成请求的发送时间
+     */
+    private void poll(String taskId, long sent) throws InterruptedException {
+        long deadline = sent + taskTimeout.toNanos();
+        boolean processing = false;
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(pollMillis);
+            String status = taskStatus(taskId);
+            long now = System.nanoTime();
+            if (status == null) {
+                // 查询失败时继续轮询，直到超时
+                continue;
+            }
+            switch (status) {
+                case "PROCESSING" -> {
+                    if (!processing) {
+                        processing = true;
+                        report.record(Metric.FIRST_PROGRESS, now - sent);
+                    }
+                }
+                case "COMPLETED" -> {
+                    report.record(Metric.COMPLETION, now - sent);
+                    return;
+                }
+                case "FAILED", "CANCELLED" -> {
+                    report.error("task-" + status.toLowerCase());
+                    return;
+                }
+                default -> {
+                }
+            }
+        }
+        report.error("timeout");
+    }
+    
+    /**
+     * 处理进度消息，在WebSocket或HTTP客户端的接收线程上执行
+     * 
+     * @param message 进度消息
+     */
+    private void onProgress(ProgressMessage message) {
+        long now = System.nanoTime();
+        TaskTrace trace = traces.computeIfAbsent(message.taskId(), id -> new TaskTrace());
+        switch (message.status()) {
+            case "PROCESSING" -> {
+                if (trace.firstProgressNanos == 0) {
+                    trace.firstProgressNanos = now;
+                }
+            }
+            case "COMPLETED", "FAILED", "CANCELLED" -> {
+                trace.doneNanos = now;
+                trace.done.complete(message.status());
+            }
+            default -> {
+            }
+        }
+    }
+    
+    /**
+     * 查询任务状态，用于轮询，以及区分任务超时和完成通知丢失
+     * 
+     * @param taskId 任务ID
+     * @return 任务状态，查询失败时返回null
+     */
+    private String taskStatus(String taskId) throws InterruptedException {
+        report.request();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/synthesis/task/" + taskId))
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? mapper.readTree(response.body()).path("status").asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 生成一章正文，长度服从对数正态分布
+     * 
+     * @param random 随机数生成器
+     * @return 章节正文
+     */
+    private static String chapterText(Random random) {
+        double length = MEDIAN_CHAPTER_CHARS * Math.exp(CHAPTER_CHARS_SIGMA * random.nextGaussian());
+        int chars = (int) Math.max(MIN_CHAPTER_CHARS, Math.min(MAX_CHAPTER_CHARS, length));
+        StringBuilder text = new StringBuilder(chars);
+        int offset = random.nextInt(PASSAGE.length());
+        while (text.length() < chars) {
+            int end = Math.min(PASSAGE.length(), offset + chars - text.length());
+            text.append(PASSAGE, offset, end);
+            offset = 0;
+        }
+        return text.toString();
+    }
+    
+    /**
+     * 生成训练录音：16kHz单声道，每3秒中说话2秒、停顿1秒，带轻微底噪
+     * 
+     * @param random 随机数生成器
+     * @return WAV文件内容
+     */
+    private static byte[] trainingRecording(Random random) {
+        int frames = TRAINING_SAMPLE_RATE * TRAINING_SECONDS;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + frames * 2)
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) 1).putShort((short) 1)
+                .putInt(TRAINING_SAMPLE_RATE).putInt(TRAINING_SAMPLE_RATE * 2)
+                .putShort((short) 2).putShort((short) 16)
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(frames * 2);
+        double phase = 0;
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / TRAINING_SAMPLE_RATE;
+            phase += 2 * Math.PI * (140 + 20 * Math.sin(2 * Math.PI * 0.3 * t)) / TRAINING_SAMPLE_RATE;
+            double voice = t % 3.0 < 2.0
+                    ? 6000 * (0.6 + 0.4 * Math.sin(2 * Math.PI * 4 * t)) * (Math.sin(phase) + 0.5 * Math.sin(2 * phase))
+                    : 0;
+            buffer.putShort((short) (voice + 30 * random.nextGaussian()));
+        }
+        return buffer.array();
+    }
+    
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * 一个合成任务的进度时间点
+     */
+    private static final class TaskTrace {
+        
+        /** 第一条处理中进度的到达时间，尚未收到时为0 */
+        volatile long firstProgressNanos;
+        
+        /** 结束通知的到达时间 */
+        volatile long doneNanos;
+        
+        /** 结束时完成为任务的最终状态 */
+        final CompletableFuture<String> done = new CompletableFuture<>();
+    }
+}
\ No newline at end of file
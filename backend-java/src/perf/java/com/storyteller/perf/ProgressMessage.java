@@ -0,0 +1,12 @@
+package com.storyteller.perf;
+
+/**
+ * 进度消息
+ * STOMP推送和SSE事件流的消息正文相同，负载测试只用到其中三个字段
+ * 
+ * @param taskId 任务ID
+ * @param progress 进度百分比
+ * @param status PROCESSING、COMPLETED、FAILED或CANCELLED
+ */
+record ProgressMessage(String taskId, int progress, String status) {
+}
\ No newline at end of file
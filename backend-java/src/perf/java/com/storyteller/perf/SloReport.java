@@ -0,0 +1,424 @@
+package com.storyteller.perf;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 负载测试的延迟记录和SLO报告
+ * 用HDR直方图记录各项延迟，输出报告并与基线报告比较
+ * 
+ * 功能：
+ * - 各项延迟以微秒记录到HdrHistogram的Recorder，记录不加锁
+ * - 每秒把各项的区间直方图写入latency.hlog（HdrHistogram日志格式，按项目名打标签）
+ * - 统计HTTP请求数和同时打开的进度连接数，结束时输出每秒请求数和连接数峰值
+ * - 结束时输出各项的百分位数、错误分类和错误率，检查SLO目标
+ * - 每项另写一份.hgrm百分位分布（毫秒），可用HdrHistogram的绘图页面比较
+ * - 读取基线目录的latency.hlog和summary.properties，输出百分位数、吞吐量和错误率的变化
+ */
+final class SloReport {
+    
+    /** 直方图日志文件名 */
+    static final String LOG_FILE = "latency.hlog";
+    
+    /** 汇总文件名 */
+    static final String SUMMARY_FILE = "summary.properties";
+    
+    /** 报告中列出的百分位数 */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    
+    /**
+     * 延迟项目
+     */
+    enum Metric {
+        /** 训练请求从发送到返回模型ID */
+        TRAINING("training"),
+        /** 合成请求从发送到返回任务ID */
+        INTAKE("intake"),
+        /** 合成请求从发送到收到第一条处理中的进度 */
+        FIRST_PROGRESS("first-progress"),
+        /** 合成请求从发送到收到完成通知 */
+        COMPLETION("completion");
+        
+        final String tag;
+        
+        Metric(String tag) {
+            this.tag = tag;
+        }
+        
+        static Metric ofTag(String tag) {
+            for (Metric metric : values()) {
+                if (metric.tag.equals(tag)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * SLO目标：某项延迟的百分位数不超过上限
+     * 
+     * @param metric 延迟项目
+     * @param percentile 百分位数
+     * @param maxMillis 上限（毫秒）
+     */
+    record Objective(Metric metric, double percentile, double maxMillis) {
+    }
+    
+    private final Map<Metric, Recorder> recorders = new EnumMap<>(Metric.class);
+    
+    private final Map<Metric, Histogram> totals = new EnumMap<>(Metric.class);
+    
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    
+    private final LongAdder operations = new LongAdder();
+    
+    private final LongAdder requests = new LongAdder();
+    
+    /** 当前打开的进度连接数（STOMP会话或SSE事件流） */
+    private final AtomicInteger connections = new AtomicInteger();
+    
+    private final AtomicInteger maxConnections = new AtomicInteger();
+    
+    private final HistogramLogWriter logWriter;
+    
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slo-report-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final File dir;
+    
+    private final long startMillis = System.currentTimeMillis();
+    
+    /**
+     * 创建报告并开始每秒写入区间直方图
+     * 
+     * @param dir 输出目录，不存在时创建
+     */
+    SloReport(File dir) throws FileNotFoundException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("无法创建报告目录: " + dir);
+        }
+        for (Metric metric : Metric.values()) {
+            recorders.put(metric, new Recorder(3));
+            totals.put(metric, new Histogram(3));
+        }
+        logWriter = new HistogramLogWriter(new File(dir, LOG_FILE));
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(startMillis);
+        logWriter.setBaseTime(startMillis);
+        logWriter.outputLegend();
+        flusher.scheduleAtFixedRate(this::flush, 1, 1, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * 记录一次延迟
+     * 
+     * @param metric 延迟项目
+     * @param nanos 延迟（纳秒）
+     */
+    void record(Metric metric, long nanos) {
+        recorders.get(metric).recordValue(Math.max(0, nanos / 1000));
+    }
+    
+    /**
+     * 记录一次操作（训练、订阅或合成），作为错误率的分母
+     */
+    void operation() {
+        operations.increment();
+    }
+    
+    /**
+     * 记录一次HTTP请求或进度连接的建立，作为吞吐量的分子
+     */
+    void request() {
+        requests.increment();
+    }
+    
+    /**
+     * 记录打开一个进度连接
+     */
+    void connectionOpened() {
+        maxConnections.accumulateAndGet(connections.incrementAndGet(), Math::max);
+    }
+    
+    /**
+     * 记录关闭一个进度连接
+     */
+    void connectionClosed() {
+        connections.decrementAndGet();
+    }
+    
+    /**
+     * 记录一次错误
+     * 
+     * @param kind 错误分类
+     */
+    void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+    
+    /**
+     * 结束记录，输出报告并检查SLO
+     * 
+     * @param label 报告标签，通常为版本号
+     * @param description 负载说明，写在报告开头
+     * @param objectives SLO目标
+     * @param maxErrorRate 允许的最大错误率
+     * @param baseline 基线报告目录，为null时不比较
+     * @return 所有SLO都满足时返回true
+     */
+    boolean finish(String label, String description, List<Objective> objectives, double maxErrorRate, File baseline)
+            throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logWriter.close();
+        
+        long totalErrors = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        long totalOperations = operations.sum();
+        double errorRate = totalOperations == 0 ? 0 : (double) totalErrors / totalOperations;
+        double seconds = Math.max(1, System.currentTimeMillis() - startMillis) / 1000.0;
+        Throughput throughput = new Throughput(requests.sum() / seconds,
+                totals.get(Metric.COMPLETION).getTotalCount() / seconds, maxConnections.get());
+        
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(text, true, StandardCharsets.UTF_8)) {
+            out.printf("负载测试报告 %s%n%s%n耗时 %.1f 秒%n%n", label, description, seconds);
+            out.printf("请求 %d 次，%.1f 次/秒；完成任务 %.1f 个/秒；进度连接峰值 %d%n%n", requests.sum(),
+                    throughput.requestsPerSecond(), throughput.tasksPerSecond(), throughput.maxConnections());
+            out.printf("%-16s %8s %10s %10s %10s %10s %10s%n",
+                    "metric", "count", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+            for (Metric metric : Metric.values()) {
+                Histogram histogram = totals.get(metric);
+                out.printf("%-16s %8d", metric.tag, histogram.getTotalCount());
+                for (double percentile : PERCENTILES) {
+                    out.printf(" %10.1f", millis(histogram, percentile));
+                }
+                out.printf(" %10.1f%n", histogram.getMaxValue() / 1000.0);
+            }
+            
+            out.printf("%n操作 %d 次，错误 %d 次，错误率 %.3f%%%n", totalOperations, totalErrors, errorRate * 100);
+            new TreeMap<>(errors).forEach((kind, count) -> out.printf("  %-20s %d%n", kind, count.sum()));
+            
+            boolean passed = true;
+            out.printf("%nSLO%n");
+            for (Objective objective : objectives) {
+                Histogram histogram = totals.get(objective.metric());
+                double actual = millis(histogram, objective.percentile());
+                boolean ok = histogram.getTotalCount() > 0 && actual <= objective.maxMillis();
+                passed &= ok;
+                out.printf("  %-16s p%-5s <= %8.1f ms  实际 %8.1f ms  %s%n", objective.metric().tag,
+                        format(objective.percentile()), objective.maxMillis(), actual, ok ? "PASS" : "FAIL");
+            }
+            boolean errorsOk = errorRate <= maxErrorRate;
+            passed &= errorsOk;
+            out.printf("  %-16s       <= %7.3f %%   实际 %7.3f %%   %s%n", "error-rate",
+                    maxErrorRate * 100, errorRate * 100, errorsOk ? "PASS" : "FAIL");
+            
+            if (baseline != null) {
+                out.println();
+                compare(out, baseline, errorRate, throughput);
+            }
+            out.flush();
+            
+            String report = text.toString(StandardCharsets.UTF_8);
+            System.out.print(report);
+            Files.writeString(new File(dir, "report.txt").toPath(), report, StandardCharsets.UTF_8);
+            writeSummary(label, totalOperations, errorRate, throughput);
+            writeDistributions();
+            return passed;
+        }
+    }
+    
+    /**
+     * 把各项的区间直方图写入日志并累加到总计
+     */
+    private synchronized void flush() {
+        for (Metric metric : Metric.values()) {
+            Histogram interval = recorders.get(metric).getIntervalHistogram();
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            interval.setTag(metric.tag);
+            logWriter.outputIntervalHistogram(interval);
+            totals.get(metric).add(interval);
+        }
+    }
+    
+    /**
+     * 写入汇总，供脚本读取和下次比较错误率
+     * 
+     * @param label 报告标签
+     * @param totalOperations 操作次数
+     * @param errorRate 错误率
+     * @param throughput 吞吐量
+     */
+    private void writeSummary(String label, long totalOperations, double errorRate, Throughput throughput)
+            throws IOException {
+        Properties summary = new Properties();
+        summary.setProperty("label", label);
+        summary.setProperty("operations", String.valueOf(totalOperations));
+        summary.setProperty("error-rate", String.valueOf(errorRate));
+        summary.setProperty("requests", String.valueOf(requests.sum()));
+        summary.setProperty("requests-per-second", String.valueOf(throughput.requestsPerSecond()));
+        summary.setProperty("tasks-per-second", String.valueOf(throughput.tasksPerSecond()));
+        summary.setProperty("max-connections", String.valueOf(throughput.maxConnections()));
+        errors.forEach((kind, count) -> summary.setProperty("errors." + kind, String.valueOf(count.sum())));
+        for (Metric metric : Metric.values()) {
+            Histogram histogram = totals.get(metric);
+            summary.setProperty(metric.tag + ".count", String.valueOf(histogram.getTotalCount()));
+            for (double percentile : PERCENTILES) {
+                summary.setProperty(metric.tag + ".p" + format(percentile) + "-ms",
+                        String.valueOf(millis(histogram, percentile)));
+            }
+            summary.setProperty(metric.tag + ".max-ms", String.valueOf(histogram.getMaxValue() / 1000.0));
+        }
+        try (Writer writer = Files.newBufferedWriter(new File(dir, SUMMARY_FILE).toPath(), StandardCharsets.UTF_8)) {
+            summary.store(writer, "storyteller load test");
+        }
+    }
+    
+    /**
+     * 每项写一份百分位分布，数值单位为毫秒
+     */
+    private void writeDistributions() throws IOException {
+        for (Metric metric : Metric.values()) {
+            Histogram histogram = totals.get(metric);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            try (PrintStream out = new PrintStream(new File(dir, metric.tag + ".hgrm"), StandardCharsets.UTF_8)) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+    
+    /**
+     * 与基线报告比较
+     * 
+     * @param out 输出
+     * @param baseline 基线报告目录
+     * @param errorRate 本次的错误率
+     * @param throughput 本次的吞吐量
+     */
+    private void compare(PrintStream out, File baseline, double errorRate, Throughput throughput) throws IOException {
+        Map<Metric, Histogram> base = readLog(new File(baseline, LOG_FILE));
+        out.printf("与基线比较（%s）%n", baseline);
+        out.printf("%-16s %-6s %12s %12s %9s%n", "metric", "", "baseline(ms)", "current(ms)", "change");
+        for (Metric metric : Metric.values()) {
+            Histogram before = base.get(metric);
+            Histogram after = totals.get(metric);
+            if (before == null || before.getTotalCount() == 0 || after.getTotalCount() == 0) {
+                continue;
+            }
+            List<double[]> rows = new ArrayList<>();
+            rows.add(new double[]{50, millis(before, 50), millis(after, 50)});
+            rows.add(new double[]{99, millis(before, 99), millis(after, 99)});
+            rows.add(new double[]{100, before.getMaxValue() / 1000.0, after.getMaxValue() / 1000.0});
+            for (double[] row : rows) {
+                String name = row[0] == 100 ? "max" : "p" + format(row[0]);
+                out.printf("%-16s %-6s %12.1f %12.1f %8s%n", metric.tag, name, row[1], row[2], change(row[1], row[2]));
+            }
+        }
+        
+        File summaryFile = new File(baseline, SUMMARY_FILE);
+        if (summaryFile.isFile()) {
+            Properties summary = new Properties();
+            try (Reader reader = Files.newBufferedReader(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+                summary.load(reader);
+            }
+            double before = Double.parseDouble(summary.getProperty("error-rate", "0"));
+            out.printf("%-16s %-6s %11.3f%% %11.3f%%%n", "error-rate", "", before * 100, errorRate * 100);
+            // 旧版本的汇总没有吞吐量
+            if (summary.containsKey("requests-per-second")) {
+                double rpsBefore = Double.parseDouble(summary.getProperty("requests-per-second"));
+                double tpsBefore = Double.parseDouble(summary.getProperty("tasks-per-second"));
+                long connectionsBefore = Long.parseLong(summary.getProperty("max-connections"));
+                out.printf("%-16s %-6s %12.1f %12.1f %8s%n", "requests/s", "", rpsBefore,
+                        throughput.requestsPerSecond(), change(rpsBefore, throughput.requestsPerSecond()));
+                out.printf("%-16s %-6s %12.1f %12.1f %8s%n", "tasks/s", "", tpsBefore,
+                        throughput.tasksPerSecond(), change(tpsBefore, throughput.tasksPerSecond()));
+                out.printf("%-16s %-6s %12d %12d%n", "connections", "max", connectionsBefore,
+                        throughput.maxConnections());
+            }
+        }
+    }
+    
+    /**
+     * 读取直方图日志，按标签累加各区间
+     * 
+     * @param file 日志文件
+     * @return 各项的累计直方图
+     */
+    private static Map<Metric, Histogram> readLog(File file) throws FileNotFoundException {
+        Map<Metric, Histogram> histograms = new EnumMap<>(Metric.class);
+        HistogramLogReader reader = new HistogramLogReader(file);
+        try {
+            EncodableHistogram interval;
+            while ((interval = reader.nextIntervalHistogram()) != null) {
+                Metric metric = Metric.ofTag(interval.getTag());
+                if (metric != null && interval instanceof Histogram histogram) {
+                    histograms.computeIfAbsent(metric, m -> new Histogram(3)).add(histogram);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return histograms;
+    }
+    
+    /**
+     * 吞吐量
+     * 
+     * @param requestsPerSecond 整个测试期间平均每秒的请求数
+     * @param tasksPerSecond 整个测试期间平均每秒完成的合成任务数
+     * @param maxConnections 同时打开的进度连接数峰值
+     */
+    private record Throughput(double requestsPerSecond, double tasksPerSecond, int maxConnections) {
+    }
+    
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+    
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+    
+    private static String change(double before, double after) {
+        return before == 0 ? "-" : String.format("%+.1f%%", (after - before) / before * 100);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.storyteller.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * SSE进度订阅客户端
+ * 订阅响应式配置下一个合成任务的进度事件流
+ * 
+ * 功能：
+ * - 请求/synthesis/task/{taskId}/events，响应头到达后即返回，事件流在HTTP客户端的线程上异步接收
+ * - 按空行拆分事件，解析data字段的JSON
+ * - 把每条进度消息交给回调，回调在HTTP客户端的线程上执行，不应阻塞
+ * 
+ * 服务端为每个任务保留最新的一条进度，订阅晚于任务开始时先收到这一条；任务结束后服务端关闭事件流
+ */
+final class SseProgressClient implements Flow.Subscriber<String> {
+    
+    private final ObjectMapper mapper;
+    
+    private final Consumer<ProgressMessage> onMessage;
+    
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    
+    /** 当前事件已收到的data行 */
+    private final StringBuilder data = new StringBuilder();
+    
+    private volatile Flow.Subscription subscription;
+    
+    private volatile boolean closed;
+    
+    private SseProgressClient(ObjectMapper mapper, Consumer<ProgressMessage> onMessage) {
+        this.mapper = mapper;
+        this.onMessage = onMessage;
+    }
+    
+    /**
+     * 订阅任务的进度事件流
+     * 
+     * @param client HTTP客户端
+     * @param baseUrl 应用根地址（http://host:port/api）
+     * @param taskId 任务ID
+     * @param mapper JSON解析器
+     * @param onMessage 收到进度消息时的回调
+     * @param timeout 等待响应头的最长时间
+     * @return 已订阅的客户端
+     * @throws IOException 连接失败、超时或响应状态不是200
+     */
+    static SseProgressClient subscribe(HttpClient client, String baseUrl, String taskId, ObjectMapper mapper,
+            Consumer<ProgressMessage> onMessage, Duration timeout) throws IOException, InterruptedException {
+        SseProgressClient listener = new SseProgressClient(mapper, onMessage);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/synthesis/task/" + taskId + "/events"))
+                .timeout(timeout)
+                .header("Accept", "text/event-stream")
+                .build();
+        CompletableFuture<HttpResponse<Void>> response = client.sendAsync(request, info -> {
+            if (info.statusCode() != 200) {
+                listener.connected.completeExceptionally(new IOException("HTTP " + info.statusCode()));
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            listener.connected.complete(null);
+            return HttpResponse.BodySubscribers.fromLineSubscriber(listener);
+        });
+        response.whenComplete((ignored, e) -> {
+            if (e != null) {
+                listener.connected.completeExceptionally(e);
+            }
+        });
+        try {
+            listener.connected.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return listener;
+        } catch (InterruptedException e) {
+            listener.close();
+            response.cancel(true);
+            throw e;
+        } catch (Exception e) {
+            listener.close();
+            response.cancel(true);
+            throw new IOException("订阅进度失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 关闭事件流
+     */
+    void close() {
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+    
+    @Override
+    public void onNext(String line) {
+        if (line.isEmpty()) {
+            dispatch();
+        } else if (line.startsWith("data:")) {
+            if (!data.isEmpty()) {
+                data.append('\n');
+            }
+            data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+        }
+        // event、id字段和注释行不影响统计
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        data.setLength(0);
+    }
+    
+    @Override
+    public void onComplete() {
+        dispatch();
+    }
+    
+    /**
+     * 解析已收到的data行并交给回调
+     */
+    private void dispatch() {
+        if (data.isEmpty()) {
+            return;
+        }
+        try {
+            JsonNode json = mapper.readTree(data.toString());
+            onMessage.accept(new ProgressMessage(json.path("taskId").asText(),
+                    json.path("progress").asInt(), json.path("status").asText()));
+        } catch (IOException e) {
+            // 无法解析的消息不影响其他任务的统计
+        } finally {
+            data.setLength(0);
+        }
+    }
+}
\ No newline at end of file
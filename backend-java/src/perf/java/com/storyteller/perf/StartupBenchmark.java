@@ -0,0 +1,145 @@
+package com.storyteller.perf;
+
+import java.io.File;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 冷启动基准测试
+ * 以不同的启动方式反复启动桌面版分发，测量从启动进程到第一个请求成功返回的时间
+ * 
+ * 功能：
+ * - 比较立即初始化、延迟初始化、AppCDS和AOT的组合
+ * - 每种方式先启动一次预热文件系统缓存，不计入结果
+ * - 输出每种方式的最短、中位和最长时间
+ * 
+ * 使用临时目录中的嵌入式数据库：先启动一次建表并记录表结构版本，之后各次启动跳过表结构更新。
+ * 由Gradle的startupBenchmark任务运行，参数：
+ * --java 启动应用使用的java，--dir 桌面版分发目录，--runs 每种方式的测量次数，--path 探测的请求路径
+ */
+public class StartupBenchmark {
+    
+    /** 单次启动的最长等待时间 */
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    
+    /**
+     * 启动方式
+     * 
+     * @param name 名称
+     * @param jvmArgs JVM参数
+     * @param appArgs 应用参数
+     */
+    record Variant(String name, List<String> jvmArgs, List<String> appArgs) {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String java = options.getOrDefault("java", "java");
+        File dir = new File(options.getOrDefault("dir", "build/desktop"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        String path = options.getOrDefault("path", "/synthesis/affinity");
+        boolean cds = new File(dir, "storyteller.jsa").isFile();
+        
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant("eager", List.of(),
+                List.of("--spring.main.lazy-initialization=false", "--spring.data.jpa.repositories.bootstrap-mode=default")));
+        variants.add(new Variant("lazy", List.of(), List.of()));
+        if (cds) {
+            variants.add(new Variant("lazy+cds", List.of("-XX:SharedArchiveFile=storyteller.jsa"), List.of()));
+            variants.add(new Variant("lazy+cds+aot",
+                    List.of("-XX:SharedArchiveFile=storyteller.jsa", "-Dspring.aot.enabled=true"), List.of()));
+        } else {
+            System.out.println("没有CDS归档，跳过CDS相关的启动方式（运行 ./gradlew desktopCds 生成）");
+        }
+        
+        Path dataDir = Files.createTempDirectory("storyteller-startup");
+        Path marker = dataDir.resolve("schema-version");
+        List<String> profileArgs = List.of("--spring.profiles.active=desktop",
+                "--storyteller.embedded.data-dir=" + dataDir,
+                "--storyteller.desktop.schema-marker=" + marker);
+        
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        prepareSchema(java, dir, profileArgs, path, marker, client);
+        
+        System.out.printf("%-16s %10s %10s %10s%n", "variant", "min(ms)", "median(ms)", "max(ms)");
+        for (Variant variant : variants) {
+            startOnce(java, dir, variant, profileArgs, path, client);
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = startOnce(java, dir, variant, profileArgs, path, client);
+            }
+            Arrays.sort(millis);
+            System.out.printf("%-16s %10d %10d %10d%n", variant.name(), millis[0], millis[runs / 2], millis[runs - 1]);
+        }
+    }
+    
+    /**
+     * 启动一次应用建表，等待记录表结构版本后退出
+     * 
+     * 标记在应用就绪事件中写入，可能晚于第一个请求成功
+     * 
+     * @param java java可执行文件
+     * @param dir 桌面版分发目录
+     * @param profileArgs 应用参数
+     * @param path 探测的请求路径
+     * @param marker 表结构版本标记文件
+     * @param client HTTP客户端
+     */
+    private static void prepareSchema(String java, File dir, List<String> profileArgs, String path, Path marker,
+            HttpClient client) throws Exception {
+        try (AppProcess app = AppProcess.start("schema", java, dir, List.of(), profileArgs)) {
+            app.awaitReady(client, path, START_TIMEOUT);
+            long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+            while (!Files.exists(marker) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+        if (!Files.exists(marker)) {
+            System.out.println("没有记录表结构版本（缺少构建信息？），各次启动都会更新表结构");
+        }
+    }
+    
+    /**
+     * 启动一次应用并等待第一个请求成功
+     * 
+     * @param java java可执行文件
+     * @param dir 桌面版分发目录
+     * @param variant 启动方式
+     * @param profileArgs 所有启动方式共用的应用参数
+     * @param path 探测的请求路径
+     * @param client HTTP客户端
+     * @return 从启动进程到请求成功返回的毫秒数
+     */
+    private static long startOnce(String java, File dir, Variant variant, List<String> profileArgs, String path,
+            HttpClient client) throws Exception {
+        List<String> appArgs = new ArrayList<>(profileArgs);
+        appArgs.addAll(variant.appArgs());
+        try (AppProcess app = AppProcess.start(variant.name(), java, dir, variant.jvmArgs(), appArgs)) {
+            return app.awaitReady(client, path, START_TIMEOUT);
+        }
+    }
+    
+    /**
+     * 解析--name value形式的参数
+     * 
+     * @param args 命令行参数
+     * @return 参数名到值的映射
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+package com.storyteller.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * STOMP进度订阅客户端
+ * 通过原始WebSocket连接进度推送端点，订阅一个用户的进度主题
+ * 
+ * 功能：
+ * - 发送CONNECT并等待CONNECTED，之后订阅/topic/progress/{userId}
+ * - 按帧结束符拆分收到的文本，解析MESSAGE帧的JSON正文
+ * - 把每条进度消息交给回调，回调在WebSocket的接收线程上执行，不应阻塞
+ * 
+ * 端点启用了SockJS，原始WebSocket连接使用其/websocket地址。
+ * 只实现进度订阅用到的STOMP子集，不发送心跳
+ */
+final class StompProgressClient implements WebSocket.Listener {
+    
+    /** SockJS端点的原始WebSocket地址，相对于应用根地址 */
+    private static final String ENDPOINT = "/ws/progress/websocket";
+    
+    /** STOMP帧结束符 */
+    private static final char FRAME_END = '\0';
+    
+    private final ObjectMapper mapper;
+    
+    private final Consumer<ProgressMessage> onMessage;
+    
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    
+    /** 跨WebSocket消息的未完成帧 */
+    private final StringBuilder partial = new StringBuilder();
+    
+    private WebSocket webSocket;
+    
+    private StompProgressClient(ObjectMapper mapper, Consumer<ProgressMessage> onMessage) {
+        this.mapper = mapper;
+        this.onMessage = onMessage;
+    }
+    
+    /**
+     * 连接并订阅用户的进度主题
+     * 
+     * SUBSCRIBE发出后即返回，服务端登记订阅是异步的，调用方应在之后稍晚再发起合成请求
+     * 
+     * @param client HTTP客户端
+     * @param baseUrl 应用根地址（http://host:port/api）
+     * @param userId 用户ID
+     * @param mapper JSON解析器
+     * @param onMessage 收到进度消息时的回调
+     * @param timeout 连接和等待CONNECTED的最长时间
+     * @return 已订阅的客户端
+     * @throws IOException 连接失败、超时或服务端返回ERROR帧
+     */
+    static StompProgressClient connect(HttpClient client, String baseUrl, long userId, ObjectMapper mapper,
+            Consumer<ProgressMessage> onMessage, Duration timeout) throws IOException, InterruptedException {
+        StompProgressClient listener = new StompProgressClient(mapper, onMessage);
+        URI uri = URI.create(baseUrl.replaceFirst("^http", "ws") + ENDPOINT);
+        try {
+            listener.webSocket = client.newWebSocketBuilder()
+                    .connectTimeout(timeout)
+                    .buildAsync(uri, listener)
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            listener.send("CONNECT", "accept-version:1.2", "host:" + uri.getHost(), "heart-beat:0,0");
+            listener.connected.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            listener.send("SUBSCRIBE", "id:progress", "destination:/topic/progress/" + userId);
+            return listener;
+        } catch (InterruptedException e) {
+            listener.close();
+            throw e;
+        } catch (Exception e) {
+            listener.close();
+            throw new IOException("订阅进度失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 关闭连接，不等待服务端确认
+     */
+    void close() {
+        if (webSocket == null) {
+            return;
+        }
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "")
+                .orTimeout(5, TimeUnit.SECONDS)
+                .whenComplete((ws, e) -> webSocket.abort());
+    }
+    
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+    }
+    
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        int end;
+        while ((end = partial.indexOf(String.valueOf(FRAME_END))) >= 0) {
+            String frame = partial.substring(0, end);
+            partial.delete(0, end + 1);
+            handleFrame(frame);
+        }
+        webSocket.request(1);
+        return null;
+    }
+    
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        connected.completeExceptionally(new IOException("连接已关闭: " + statusCode + " " + reason));
+        return null;
+    }
+    
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        connected.completeExceptionally(error);
+    }
+    
+    /**
+     * 处理一个完整的STOMP帧
+     * 
+     * @param frame 帧内容，不含结束符
+     */
+    private void handleFrame(String frame) {
+        // 帧之间可能有换行（心跳或帧尾的EOL）
+        int start = 0;
+        while (start < frame.length() && (frame.charAt(start) == '\n' || frame.charAt(start) == '\r')) {
+            start++;
+        }
+        if (start == frame.length()) {
+            return;
+        }
+        int commandEnd = frame.indexOf('\n', start);
+        String command = (commandEnd < 0 ? frame.substring(start) : frame.substring(start, commandEnd)).trim();
+        int bodyStart = frame.indexOf("\n\n", start);
+        String body = bodyStart < 0 ? "" : frame.substring(bodyStart + 2);
+        
+        switch (command) {
+            case "CONNECTED" -> connected.complete(null);
+            case "ERROR" -> connected.completeExceptionally(new IOException("STOMP错误: " + frame.substring(start)));
+            case "MESSAGE" -> {
+                try {
+                    JsonNode json = mapper.readTree(body);
+                    onMessage.accept(new ProgressMessage(json.path("taskId").asText(),
+                            json.path("progress").asInt(), json.path("status").asText()));
+                } catch (IOException e) {
+                    // 无法解析的消息不影响其他任务的统计
+                }
+            }
+            default -> {
+            }
+        }
+    }
+    
+    /**
+     * 发送一个没有正文的STOMP帧
+     * 
+     * @param command 命令
+     * @param headers 头部，name:value形式
+     */
+    private void send(String command, String... headers) {
+        StringBuilder frame = new StringBuilder(command).append('\n');
+        for (String header : headers) {
+            frame.append(header).append('\n');
+        }
+        frame.append('\n').append(FRAME_END);
+        webSocket.sendText(frame, true).join();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,344 @@
+package com.storyteller.perf;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 存储配置基准测试
+ * 分别以嵌入式存储（H2文件数据库）和PostgreSQL启动后端，比较内存占用和请求延迟
+ * 
+ * 功能：
+ * - 首次启动建表后写入一批测试章节，再次启动时测量启动时间
+ * - 分别在空闲和负载后读取进程的常驻内存（RSS）
+ * - 并发发送创建合成任务、查询任务状态、分页列出章节和查询声音模型的混合请求，按请求类型统计延迟
+ * 
+ * 两种存储都使用各自配置文件中的连接池和线程数设置，比较的是实际发布的配置。
+ * 测试数据使用单独的章节ID和用户ID范围，结束后删除；PostgreSQL建议使用单独的测试库。
+ * 由Gradle的storageBenchmark任务运行，参数：
+ * --java、--dir、--requests 测量的请求数、--concurrency 并发数、
+ * --postgres-url、--postgres-user、--postgres-password
+ */
+public class StorageBenchmark {
+    
+    /** 单次启动的最长等待时间 */
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    
+    /** 测试章节ID的起点，避开已有数据 */
+    private static final long CHAPTER_BASE = 900_000_000L;
+    
+    /** 测试用户ID的起点 */
+    private static final long USER_BASE = 900_000_000L;
+    
+    /** 测试章节数 */
+    private static final int CHAPTERS = 500;
+    
+    /** 每个测试章节的正文长度 */
+    private static final int CHAPTER_CHARS = 3000;
+    
+    /** 就绪探测使用的路径 */
+    private static final String READY_PATH = "/synthesis/affinity";
+    
+    /** 所有存储共用的应用参数：关闭配额和预取，去掉模拟耗时，减少日志 */
+    private static final List<String> COMMON_ARGS = List.of(
+            "--storyteller.quota.enabled=false",
+            "--storyteller.prefetch.enabled=false",
+            "--storyteller.synthesis.simulated-delay-ms=0",
+            "--storyteller.synthesis.simulated-model-load-ms=0",
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN",
+            "--logging.level.com.storyteller=WARN",
+            "--logging.level.org.springframework.web=WARN",
+            "--logging.level.org.hibernate.SQL=WARN",
+            "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+    
+    /** 请求类型 */
+    enum Operation {
+        CREATE_TASK, TASK_STATUS, LIST_CHAPTERS, VOICE_MODELS
+    }
+    
+    /**
+     * 被比较的存储
+     * 
+     * @param name 名称
+     * @param appArgs 选择该存储的应用参数
+     * @param jdbcUrl 写入测试数据使用的JDBC地址
+     * @param user 数据库用户
+     * @param password 数据库密码
+     */
+    record Storage(String name, List<String> appArgs, String jdbcUrl, String user, String password) {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = StartupBenchmark.parseOptions(args);
+        String java = options.getOrDefault("java", "java");
+        File dir = new File(options.getOrDefault("dir", "build/desktop"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "4"));
+        String postgresUrl = options.getOrDefault("postgres-url", "jdbc:postgresql://localhost:5432/storyteller");
+        
+        List<Storage> storages = new ArrayList<>();
+        Path dataDir = Files.createTempDirectory("storyteller-embedded");
+        storages.add(new Storage("embedded",
+                List.of("--spring.profiles.active=embedded", "--storyteller.embedded.data-dir=" + dataDir),
+                "jdbc:h2:file:" + dataDir + "/storyteller", "sa", ""));
+        if (reachable(URI.create(postgresUrl.substring("jdbc:".length())))) {
+            storages.add(new Storage("postgres", List.of("--spring.datasource.url=" + postgresUrl),
+                    postgresUrl, options.getOrDefault("postgres-user", "postgres"),
+                    options.getOrDefault("postgres-password", "postgres")));
+        } else {
+            System.out.println("PostgreSQL不可达，只测试嵌入式存储: " + postgresUrl);
+        }
+        
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        List<String> report = new ArrayList<>();
+        for (Storage storage : storages) {
+            report.addAll(run(storage, java, dir, requests, concurrency, client));
+        }
+        report.forEach(System.out::println);
+    }
+    
+    /**
+     * 测试一种存储
+     * 
+     * @param storage 存储
+     * @param java java可执行文件
+     * @param dir 桌面版分发目录
+     * @param requests 测量的请求数
+     * @param concurrency 并发数
+     * @param client HTTP客户端
+     * @return 报告行
+     */
+    private static List<String> run(Storage storage, String java, File dir, int requests, int concurrency,
+            HttpClient client) throws Exception {
+        List<String> appArgs = new ArrayList<>(COMMON_ARGS);
+        appArgs.addAll(storage.appArgs());
+        
+        // 首次启动由Hibernate建表，关闭后写入测试章节
+        try (AppProcess app = AppProcess.start(storage.name() + "-schema", java, dir, List.of(), appArgs)) {
+            app.awaitReady(client, READY_PATH, START_TIMEOUT);
+        }
+        seed(storage);
+        
+        List<String> report = new ArrayList<>();
+        try (AppProcess app = AppProcess.start(storage.name(), java, dir, List.of(), appArgs)) {
+            long startupMillis = app.awaitReady(client, READY_PATH, START_TIMEOUT);
+            Thread.sleep(2000);
+            long idleRss = app.rssKb();
+            
+            // 预热五分之一的请求数，不计入结果
+            load(app, client, Math.max(1, requests / 5), concurrency);
+            Map<Operation, List<Long>> latencies = load(app, client, requests, concurrency);
+            long loadedRss = app.rssKb();
+            
+            report.add(String.format("%s: 启动 %d ms，空闲RSS %s，负载后RSS %s",
+                    storage.name(), startupMillis, megabytes(idleRss), megabytes(loadedRss)));
+            report.add(String.format("  %-14s %7s %9s %9s %9s %9s", "operation", "count", "p50(ms)", "p90(ms)",
+                    "p99(ms)", "max(ms)"));
+            latencies.forEach((operation, values) -> report.add(format(operation, values)));
+        } finally {
+            cleanup(storage);
+        }
+        return report;
+    }
+    
+    /**
+     * 并发发送混合请求
+     * 
+     * 创建合成任务、查询任务状态和列出章节各占30%，查询声音模型占10%
+     * 
+     * @param app 被测应用
+     * @param client HTTP客户端
+     * @param requests 请求数
+     * @param concurrency 并发数
+     * @return 每种请求类型的延迟（纳秒）
+     */
+    private static Map<Operation, List<Long>> load(AppProcess app, HttpClient client, int requests, int concurrency)
+            throws Exception {
+        Map<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, Collections.synchronizedList(new ArrayList<>()));
+        }
+        List<String> taskIds = new CopyOnWriteArrayList<>();
+        Map<Operation, AtomicInteger> errors = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(requests);
+        
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                futures.add(workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (remaining.getAndDecrement() > 0) {
+                        int roll = random.nextInt(10);
+                        Operation operation = roll < 3 || taskIds.isEmpty() ? Operation.CREATE_TASK
+                                : roll < 6 ? Operation.TASK_STATUS
+                                : roll < 9 ? Operation.LIST_CHAPTERS
+                                : Operation.VOICE_MODELS;
+                        HttpRequest request = request(app, operation, random, taskIds);
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        long elapsed = System.nanoTime() - start;
+                        if (response.statusCode() != 200) {
+                            errors.computeIfAbsent(operation, o -> new AtomicInteger()).incrementAndGet();
+                            continue;
+                        }
+                        latencies.get(operation).add(elapsed);
+                        if (operation == Operation.CREATE_TASK) {
+                            taskIds.add(response.body());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        errors.forEach((operation, count) -> System.out.println(operation + " 失败 " + count.get() + " 次"));
+        return latencies;
+    }
+    
+    /**
+     * 构造一个请求
+     * 
+     * @param app 被测应用
+     * @param operation 请求类型
+     * @param random 随机数生成器
+     * @param taskIds 已创建的任务ID
+     * @return 请求
+     */
+    private static HttpRequest request(AppProcess app, Operation operation, Random random, List<String> taskIds) {
+        long userId = USER_BASE + random.nextInt(50);
+        String path = switch (operation) {
+            case CREATE_TASK -> "/synthesis/request";
+            case TASK_STATUS -> "/synthesis/task/" + taskIds.get(random.nextInt(taskIds.size()));
+            case LIST_CHAPTERS -> "/chapters?page=" + random.nextInt(CHAPTERS / 20) + "&size=20";
+            case VOICE_MODELS -> "/voice/models/" + userId;
+        };
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(app.baseUrl() + path))
+                .timeout(Duration.ofSeconds(30));
+        if (operation == Operation.CREATE_TASK) {
+            String body = String.format("{\"userId\":%d,\"chapterId\":%d,\"voiceModelId\":\"bench-%d\",\"text\":\"%s\"}",
+                    userId, CHAPTER_BASE + random.nextInt(CHAPTERS), random.nextInt(4), "且听下回分解。");
+            builder.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 写入测试章节
+     * 
+     * @param storage 存储
+     */
+    private static void seed(Storage storage) throws SQLException {
+        Random random = new Random(42);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (Connection connection = DriverManager.getConnection(storage.jdbcUrl(), storage.user(), storage.password())) {
+            deleteTestData(connection);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into chapters (chapter_id, title, text, created_at, updated_at) values (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < CHAPTERS; i++) {
+                    insert.setLong(1, CHAPTER_BASE + i);
+                    insert.setString(2, "第" + (i + 1) + "回");
+                    insert.setString(3, randomText(random));
+                    insert.setTimestamp(4, now);
+                    insert.setTimestamp(5, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+    
+    /**
+     * 删除测试数据
+     * 
+     * @param storage 存储
+     */
+    private static void cleanup(Storage storage) {
+        try (Connection connection = DriverManager.getConnection(storage.jdbcUrl(), storage.user(), storage.password())) {
+            deleteTestData(connection);
+        } catch (SQLException e) {
+            System.out.println("清理测试数据失败（" + storage.name() + "）: " + e.getMessage());
+        }
+    }
+    
+    private static void deleteTestData(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("delete from chapters where chapter_id >= " + CHAPTER_BASE);
+            statement.executeUpdate("delete from synthesis_tasks where user_id >= " + USER_BASE);
+        }
+    }
+    
+    private static String randomText(Random random) {
+        char[] chars = new char[CHAPTER_CHARS];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('一' + random.nextInt(2500));
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * 判断数据库端口是否可以连接
+     * 
+     * @param uri 去掉jdbc:前缀的数据库地址
+     * @return 可以连接时返回true
+     */
+    private static boolean reachable(URI uri) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 5432), 1000);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    private static String format(Operation operation, List<Long> values) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        if (sorted.length == 0) {
+            return String.format("  %-14s %7d", operation, 0);
+        }
+        return String.format("  %-14s %7d %9.2f %9.2f %9.2f %9.2f", operation, sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted[sorted.length - 1] / 1e6);
+    }
+    
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+    
+    private static String megabytes(long kb) {
+        return kb < 0 ? "n/a" : String.format("%.1f MB", kb / 1024.0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.storyteller.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WAV编码器测试
+ */
+class WavEncoderTest {
+    
+    private Path file;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("wav-encoder-test", ".wav");
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Test
+    void samePcmRateRoundTripsExactly() throws IOException {
+        short[] samples = new short[3001];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 37 - 20000);
+        }
+        
+        encode(WavEncoder.forVariant("pcm-22050"), new PcmFormat(22050, 1), samples);
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavFile wav = WavFile.read(channel);
+            assertEquals(new PcmFormat(22050, 1), wav.getFormat());
+            assertEquals(44, wav.getDataOffset());
+            assertEquals(samples.length * 2L, wav.getDataLength());
+            assertArrayEquals(samples, readSamples(channel, wav));
+        }
+    }
+    
+    @Test
+    void downsampledPcmKeepsChannelsInterleaved() throws IOException {
+        // 左声道恒为1000，右声道恒为-1000
+        short[] samples = new short[2 * 16000];
+        for (int i = 0; i < samples.length; i += 2) {
+            samples[i] = 1000;
+            samples[i + 1] = -1000;
+        }
+        
+        encode(new WavEncoder(WavEncoder.Codec.PCM, 8000), new PcmFormat(16000, 2), samples);
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavFile wav = WavFile.read(channel);
+            assertEquals(new PcmFormat(8000, 2), wav.getFormat());
+            short[] output = readSamples(channel, wav);
+            assertTrue(Math.abs(output.length - 16000) <= 4, "samples=" + output.length);
+            // 平滑滤波稳定后输出等于输入的直流分量
+            for (int i = output.length / 2; i < output.length; i += 2) {
+                assertEquals(1000, output[i]);
+                assertEquals(-1000, output[i + 1]);
+            }
+        }
+    }
+    
+    @Test
+    void mulawOutputHasMatchingHeader() throws IOException {
+        short[] samples = new short[16000];
+        encode(WavEncoder.forVariant("mulaw-8000"), new PcmFormat(16000, 1), samples);
+        
+        ByteBuffer header = ByteBuffer.allocate(58).order(ByteOrder.LITTLE_ENDIAN);
+        long dataBytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+            dataBytes = channel.size() - 58;
+        }
+        assertTrue(Math.abs(dataBytes - 8000) <= 2, "dataBytes=" + dataBytes);
+        assertEquals(WavFile.header(WavFile.FORMAT_MULAW, 8000, 1, 8, dataBytes), header.flip());
+    }
+    
+    @Test
+    void mulawMatchesReferenceCodes() {
+        assertEquals((byte) 0xFF, WavEncoder.toMulaw(0));
+        assertEquals((byte) 0x80, WavEncoder.toMulaw(Short.MAX_VALUE));
+        assertEquals((byte) 0x00, WavEncoder.toMulaw(Short.MIN_VALUE));
+        assertEquals((byte) 0x7F, WavEncoder.toMulaw(-1));
+    }
+    
+    @Test
+    void mulawRoundTripStaysWithinQuantizationStep() {
+        for (int pcm = Short.MIN_VALUE; pcm <= Short.MAX_VALUE; pcm++) {
+            int decoded = fromMulaw(WavEncoder.toMulaw(pcm));
+            int magnitude = Math.min(Math.abs(pcm), 32635);
+            // 每段的量化步长为段内幅度的1/16左右
+            assertTrue(Math.abs(decoded - Integer.signum(pcm) * magnitude) <= (magnitude + 0x84) / 16,
+                    "pcm=" + pcm + ", decoded=" + decoded);
+        }
+    }
+    
+    @Test
+    void variantNamesRoundTrip() {
+        assertEquals("pcm-16000", WavEncoder.forVariant("pcm-16000").name());
+        assertEquals("mulaw-8000", WavEncoder.forVariant("mulaw-8000").name());
+        assertEquals("wav", WavEncoder.forVariant("mulaw-8000").extension());
+        assertNull(WavEncoder.forVariant("flac-16000"));
+        assertNull(WavEncoder.forVariant("pcm-high"));
+        assertNull(WavEncoder.forVariant("pcm"));
+        assertThrows(IllegalArgumentException.class, () -> WavEncoder.forVariant("pcm-0"));
+    }
+    
+    /**
+     * 分两次把样本交给编码器，写入测试文件
+     */
+    private void encode(AudioEncoder encoder, PcmFormat input, short[] samples) throws IOException {
+        ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(samples);
+        int half = samples.length / 2 / input.getChannels() * input.frameBytes();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            AudioEncoder.Session session = encoder.open(input, channel);
+            session.encode(pcm.duplicate().order(ByteOrder.LITTLE_ENDIAN).limit(half));
+            session.encode(pcm.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(half));
+            session.finish();
+        }
+    }
+    
+    private static short[] readSamples(FileChannel channel, WavFile wav) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) wav.getDataLength()).order(ByteOrder.LITTLE_ENDIAN);
+        while (data.hasRemaining()) {
+            channel.read(data, wav.getDataOffset() + data.position());
+        }
+        short[] samples = new short[data.capacity() / 2];
+        data.flip().asShortBuffer().get(samples);
+        return samples;
+    }
+    
+    /**
+     * G.711 μ律解码
+     */
+    private static int fromMulaw(byte code) {
+        int u = ~code & 0xFF;
+        int exponent = (u >> 4) & 0x07;
+        int magnitude = (((u & 0x0F) << 3) + 0x84 << exponent) - 0x84;
+        return (u & 0x80) != 0 ? -magnitude : magnitude;
+    }
+}
\ No newline at end of file
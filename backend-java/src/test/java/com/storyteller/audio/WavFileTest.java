@@ -0,0 +1,125 @@
+package com.storyteller.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * WAV文件头测试
+ */
+class WavFileTest {
+    
+    private Path file;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("wav-file-test", ".wav");
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Test
+    void readsGeneratedPcmHeader() throws IOException {
+        write(WavFile.header(WavFile.FORMAT_PCM, 44100, 2, 16, 400), ByteBuffer.allocate(400));
+        
+        WavFile wav = read();
+        assertEquals(new PcmFormat(44100, 2), wav.getFormat());
+        assertEquals(44, wav.getDataOffset());
+        assertEquals(400, wav.getDataLength());
+    }
+    
+    @Test
+    void pcmHeaderFieldsMatchFormat() {
+        ByteBuffer header = WavFile.header(WavFile.FORMAT_PCM, 16000, 1, 16, 3200).order(ByteOrder.LITTLE_ENDIAN);
+        
+        assertEquals(44, header.remaining());
+        assertEquals(36 + 3200, header.getInt(4));
+        assertEquals(16, header.getInt(16));
+        assertEquals(32000, header.getInt(28));
+        assertEquals(2, header.getShort(32));
+        assertEquals(3200, header.getInt(40));
+    }
+    
+    @Test
+    void mulawHeaderHasFactChunk() {
+        ByteBuffer header = WavFile.header(WavFile.FORMAT_MULAW, 8000, 1, 8, 800).order(ByteOrder.LITTLE_ENDIAN);
+        
+        assertEquals(58, header.remaining());
+        assertEquals(50 + 800, header.getInt(4));
+        assertEquals(18, header.getInt(16));
+        assertEquals(WavFile.FORMAT_MULAW, header.getShort(20));
+        assertEquals(8000, header.getInt(28));
+        assertEquals(8, header.getShort(34));
+        // fact区块记录每声道的样本数
+        assertEquals(800, header.getInt(46));
+        assertEquals(800, header.getInt(54));
+    }
+    
+    @Test
+    void missingDataLengthFallsBackToFileSize() throws IOException {
+        write(WavFile.header(WavFile.FORMAT_PCM, 16000, 1, 16, 0), ByteBuffer.allocate(100));
+        assertEquals(100, read().getDataLength());
+        
+        write(WavFile.header(WavFile.FORMAT_PCM, 16000, 1, 16, 1_000_000), ByteBuffer.allocate(100));
+        assertEquals(100, read().getDataLength());
+    }
+    
+    @Test
+    void skipsUnknownChunksWithPadding() throws IOException {
+        ByteBuffer pcm = WavFile.header(WavFile.FORMAT_PCM, 22050, 1, 16, 0);
+        ByteBuffer fmt = pcm.duplicate().position(12).limit(36);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 24 + 12 + 8 + 6).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(pcm.duplicate().limit(12)).put(fmt);
+        // 长度为奇数的LIST区块后有一个填充字节
+        buffer.put("LIST".getBytes()).putInt(3).put(new byte[4]);
+        buffer.put("data".getBytes()).putInt(6).put(new byte[6]);
+        write(buffer.flip());
+        
+        WavFile wav = read();
+        assertEquals(new PcmFormat(22050, 1), wav.getFormat());
+        assertEquals(56, wav.getDataOffset());
+        assertEquals(6, wav.getDataLength());
+    }
+    
+    @Test
+    void rejectsUnsupportedFiles() throws IOException {
+        write(WavFile.header(WavFile.FORMAT_MULAW, 8000, 1, 8, 10), ByteBuffer.allocate(10));
+        assertThrows(IOException.class, this::read);
+        
+        write(ByteBuffer.wrap("RIFF\0\0\0\0AVI LIST".getBytes()));
+        assertThrows(IOException.class, this::read);
+        
+        write(WavFile.header(WavFile.FORMAT_PCM, 16000, 1, 16, 0).limit(36));
+        assertThrows(IOException.class, this::read);
+    }
+    
+    private void write(ByteBuffer... buffers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+    
+    private WavFile read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return WavFile.read(channel);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.storyteller.controller;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.SynthesisTaskRepository;
+import com.storyteller.service.SynthesisService;
+import com.storyteller.service.TaskStatusCache;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 合成控制器长轮询测试
+ * 覆盖状态变化时唤醒、等待超时返回304，以及已有新版本时立即返回
+ */
+class SynthesisControllerTest {
+    
+    private final TaskStatusCache cache = new TaskStatusCache();
+    
+    private final SynthesisTaskRepository repository = mock(SynthesisTaskRepository.class);
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "synthesisTaskRepository", repository);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        SynthesisService synthesisService = mock(SynthesisService.class);
+        when(synthesisService.getTaskStatus(anyString())).thenAnswer(invocation -> cache.get(invocation.getArgument(0)));
+        when(synthesisService.awaitStatusChange(anyString(), anyLong(), any())).thenAnswer(invocation -> cache.awaitChange(
+                invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        
+        SynthesisController controller = new SynthesisController();
+        ReflectionTestUtils.setField(controller, "synthesisService", synthesisService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        cache.update(task("PROCESSING", 1));
+    }
+    
+    @Test
+    void waitIsWokenByStatusChange() throws Exception {
+        MvcResult pending = mockMvc.perform(get("/synthesis/task/t1").param("wait", "30").header("If-None-Match", "\"1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        cache.update(task("COMPLETED", 2));
+        
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+    
+    @Test
+    void waitTimesOutWithNotModified() throws Exception {
+        MvcResult pending = mockMvc.perform(get("/synthesis/task/t1").param("wait", "1").header("If-None-Match", "\"1\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        MockAsyncContext asyncContext = (MockAsyncContext) pending.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isNotModified());
+    }
+    
+    @Test
+    void staleEtagReturnsImmediately() throws Exception {
+        cache.update(task("PROCESSING", 2));
+        
+        MvcResult result = mockMvc.perform(get("/synthesis/task/t1").param("wait", "30").header("If-None-Match", "\"1\""))
+                .andReturn();
+        
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""));
+    }
+    
+    private static SynthesisTask task(String status, long version) {
+        SynthesisTask task = new SynthesisTask();
+        task.setTaskId("t1");
+        task.setStatus(status);
+        task.setVersion(version);
+        return task;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package com.storyteller.quota;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 加权公平调度队列测试
+ */
+class FairShareQueueTest {
+    
+    @Test
+    void newUserIsInterleavedWithBacklog() {
+        FairShareQueue queue = new FairShareQueue();
+        for (int i = 0; i < 4; i++) {
+            queue.offer(task(1, 1));
+        }
+        queue.offer(task(2, 1));
+        queue.offer(task(2, 1));
+        
+        assertEquals(List.of(1L, 2L, 1L, 2L, 1L, 1L), drainUsers(queue));
+    }
+    
+    @Test
+    void startTagsAdvanceByInverseWeight() {
+        FairShareQueue queue = new FairShareQueue();
+        FairShareTask<?> first = task(1, 2);
+        FairShareTask<?> second = task(1, 2);
+        queue.offer(first);
+        queue.offer(second);
+        
+        assertEquals(0.0, first.getStartTag(), 1e-9);
+        assertEquals(0.5, first.getFinishTag(), 1e-9);
+        assertEquals(0.5, second.getStartTag(), 1e-9);
+    }
+    
+    @Test
+    void heavierUserGetsProportionalShare() {
+        FairShareQueue queue = new FairShareQueue();
+        for (int i = 0; i < 6; i++) {
+            queue.offer(task(1, 2));
+        }
+        for (int i = 0; i < 3; i++) {
+            queue.offer(task(2, 1));
+        }
+        
+        assertEquals(List.of(1L, 2L, 1L, 1L, 2L, 1L, 1L, 2L, 1L), drainUsers(queue));
+    }
+    
+    @Test
+    void lateUserStartsAtCurrentVirtualTime() {
+        FairShareQueue queue = new FairShareQueue();
+        for (int i = 0; i < 4; i++) {
+            queue.offer(task(1, 1));
+        }
+        queue.poll();
+        queue.poll();
+        queue.poll();
+        
+        // 空闲期间不积累额度，从当前虚拟时间2开始，排在用户1开始时间为3的任务之前
+        FairShareTask<?> late = task(2, 1);
+        queue.offer(late);
+        assertEquals(2.0, late.getStartTag(), 1e-9);
+        assertSame(late, queue.poll());
+    }
+    
+    @Test
+    void cancelledTasksRefundVirtualTime() {
+        FairShareQueue queue = new FairShareQueue();
+        queue.offer(task(1, 1));
+        FairShareTask<?> cancelled1 = task(1, 1);
+        FairShareTask<?> cancelled2 = task(1, 1);
+        queue.offer(cancelled1);
+        queue.offer(cancelled2);
+        
+        cancelled2.cancel(false);
+        cancelled1.cancel(false);
+        queue.remove(cancelled1);
+        queue.remove(cancelled2);
+        
+        FairShareTask<?> next = task(1, 1);
+        queue.offer(next);
+        assertEquals(1.0, next.getStartTag(), 1e-9);
+    }
+    
+    @Test
+    void startedTaskIsNotRefunded() {
+        FairShareQueue queue = new FairShareQueue();
+        FairShareTask<?> running = task(1, 1);
+        queue.offer(running);
+        queue.poll();
+        running.run();
+        running.cancel(false);
+        
+        FairShareTask<?> next = task(1, 1);
+        queue.offer(next);
+        assertEquals(1.0, next.getStartTag(), 1e-9);
+    }
+    
+    @Test
+    void affinitySkipIsBoundedByMaxSkip() {
+        RecordingAffinity affinity = new RecordingAffinity("b");
+        FairShareQueue queue = new FairShareQueue(affinity, 1);
+        queue.offer(task(1, 1, "a"));
+        queue.offer(task(1, 1, "a"));
+        queue.offer(task(1, 1, "b"));
+        queue.offer(task(1, 1, "b"));
+        
+        // 开始时间依次为0、1、2、3，亲和任务最多越过队首1个单位
+        List<String> keys = new ArrayList<>();
+        for (FairShareTask<?> task = (FairShareTask<?>) queue.poll(); task != null; task = (FairShareTask<?>) queue.poll()) {
+            keys.add(task.getAffinityKey());
+        }
+        assertEquals(List.of("a", "b", "a", "b"), keys);
+        // 最后一个b任务既是队首也在偏好分组中，同样计为亲和命中
+        assertEquals(List.of(false, true, false, true), affinity.hits);
+    }
+    
+    @Test
+    void affinitySkipDoesNotAdvanceVirtualTime() {
+        FairShareQueue queue = new FairShareQueue(new RecordingAffinity("b"), 1);
+        queue.offer(task(1, 1, "a"));
+        queue.offer(task(1, 1, "a"));
+        queue.offer(task(1, 1, "b"));
+        queue.poll();
+        
+        // 越过队首取出开始时间为2的任务后，虚拟时间仍为队首的开始时间1
+        assertEquals("b", ((FairShareTask<?>) queue.poll()).getAffinityKey());
+        FairShareTask<?> late = task(2, 1);
+        queue.offer(late);
+        assertEquals(1.0, late.getStartTag(), 1e-9);
+    }
+    
+    @Test
+    void pollTimesOutWhenEmpty() throws InterruptedException {
+        FairShareQueue queue = new FairShareQueue();
+        
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void offerWakesWaitingWorker() throws InterruptedException {
+        FairShareQueue queue = new FairShareQueue();
+        List<Runnable> taken = new ArrayList<>();
+        Thread worker = new Thread(() -> {
+            try {
+                taken.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+        Thread.sleep(50);
+        
+        FairShareTask<?> task = task(1, 1);
+        queue.offer(task);
+        worker.join(5000);
+        assertEquals(List.of(task), taken);
+        assertTrue(queue.isEmpty());
+    }
+    
+    @Test
+    void rejectsPlainRunnable() {
+        FairShareQueue queue = new FairShareQueue();
+        
+        assertThrows(IllegalArgumentException.class, () -> queue.offer(() -> { }));
+    }
+    
+    private static FairShareTask<Void> task(long userId, int weight) {
+        return task(userId, weight, null);
+    }
+    
+    private static FairShareTask<Void> task(long userId, int weight, String affinityKey) {
+        return new FairShareTask<>(userId, weight, affinityKey, () -> { }, null);
+    }
+    
+    private static List<Long> drainUsers(FairShareQueue queue) {
+        List<Long> users = new ArrayList<>();
+        for (Runnable task = queue.poll(); task != null; task = queue.poll()) {
+            users.add(((FairShareTask<?>) task).getUserId());
+        }
+        return users;
+    }
+    
+    /**
+     * 固定亲和键的策略，记录每次出队是否按亲和选出
+     */
+    private static class RecordingAffinity implements AffinityPolicy {
+        
+        private final String key;
+        
+        private final List<Boolean> hits = new ArrayList<>();
+        
+        RecordingAffinity(String key) {
+            this.key = key;
+        }
+        
+        @Override
+        public Collection<String> preferredKeys() {
+            return List.of(key);
+        }
+        
+        @Override
+        public boolean prefers(Thread worker, String key) {
+            return this.key.equals(key);
+        }
+        
+        @Override
+        public void onDispatch(FairShareTask<?> task, boolean affinityHit) {
+            hits.add(affinityHit);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.storyteller.quota;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 配额服务测试
+ */
+class QuotaServiceTest {
+    
+    private QuotaProperties properties;
+    
+    private QuotaService quotaService;
+    
+    @BeforeEach
+    void setUp() {
+        properties = new QuotaProperties();
+        properties.getTiers().put("free", tier(60, 1));
+        properties.getTiers().put("slow", tier(7, 1));
+        properties.getUsers().put(2L, "slow");
+        
+        quotaService = new QuotaService();
+        ReflectionTestUtils.setField(quotaService, "properties", properties);
+        ReflectionTestUtils.invokeMethod(quotaService, "init");
+    }
+    
+    @Test
+    void retryAfterOfWholeSecondIsNotRoundedUp() {
+        quotaService.checkSynthesis(1L);
+        
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotaService.checkSynthesis(1L));
+        assertEquals(1, e.getRetryAfterSeconds());
+    }
+    
+    @Test
+    void retryAfterIsRoundedUpToSeconds() {
+        // 每分钟7个，补充一个需要8.57秒
+        quotaService.checkSynthesis(2L);
+        
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotaService.checkSynthesis(2L));
+        assertEquals(9, e.getRetryAfterSeconds());
+        assertEquals("合成请求过于频繁，请9秒后重试", e.getMessage());
+    }
+    
+    @Test
+    void trainingQuotaIsSeparateFromSynthesis() {
+        quotaService.checkSynthesis(1L);
+        
+        assertDoesNotThrow(() -> quotaService.checkTraining(1L));
+    }
+    
+    @Test
+    void undefinedTierFallsBackToBuiltInQuota() {
+        properties.getUsers().put(3L, "missing");
+        
+        // 内置等级允许连续10次合成
+        for (int i = 0; i < 10; i++) {
+            quotaService.checkSynthesis(3L);
+        }
+        assertThrows(QuotaExceededException.class, () -> quotaService.checkSynthesis(3L));
+    }
+    
+    @Test
+    void disabledQuotaAndAnonymousRequestsAreNotChecked() {
+        quotaService.checkSynthesis(null);
+        quotaService.checkSynthesis(null);
+        
+        properties.setEnabled(false);
+        quotaService.checkSynthesis(1L);
+        assertDoesNotThrow(() -> quotaService.checkSynthesis(1L));
+    }
+    
+    private static QuotaProperties.Tier tier(double synthesisPerMinute, int synthesisBurst) {
+        QuotaProperties.Tier tier = new QuotaProperties.Tier();
+        tier.setSynthesisPerMinute(synthesisPerMinute);
+        tier.setSynthesisBurst(synthesisBurst);
+        return tier;
+    }
+}
\ No newline at end of file
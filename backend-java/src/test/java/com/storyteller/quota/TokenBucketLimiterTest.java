@@ -0,0 +1,167 @@
+package com.storyteller.quota;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶限流器测试
+ */
+class TokenBucketLimiterTest {
+    
+    /** 每秒补充的令牌极少，测试期间可视为不补充 */
+    private static final double NO_REFILL = 0.001;
+    
+    @Test
+    void newBucketAllowsBurstUpToCapacity() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire(1, 5, NO_REFILL));
+        }
+        assertTrue(limiter.tryAcquire(1, 5, NO_REFILL) > 0);
+    }
+    
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        assertEquals(0, limiter.tryAcquire(1, 1, NO_REFILL));
+        assertTrue(limiter.tryAcquire(1, 1, NO_REFILL) > 0);
+        assertEquals(0, limiter.tryAcquire(2, 1, NO_REFILL));
+        assertEquals(2, limiter.size());
+    }
+    
+    @Test
+    void waitIsRoundedUpToWholeMilliseconds() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        // 每秒0.006个令牌，补满一个需要166666.7毫秒，167毫秒内不会补充任何单位
+        assertEquals(0, limiter.tryAcquire(1, 1, 0.006));
+        assertEquals(166_667, limiter.tryAcquire(1, 1, 0.006));
+    }
+    
+    @Test
+    void bucketRefillsAfterSuggestedWait() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        assertEquals(0, limiter.tryAcquire(1, 1, 20));
+        long wait = limiter.tryAcquire(1, 1, 20);
+        assertTrue(wait >= 1 && wait <= 50, "wait=" + wait);
+        
+        Thread.sleep(wait + 5);
+        assertEquals(0, limiter.tryAcquire(1, 1, 20));
+    }
+    
+    @Test
+    void refillIsCappedAtCapacity() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        assertEquals(0, limiter.tryAcquire(1, 2, 10));
+        assertEquals(0, limiter.tryAcquire(1, 2, 10));
+        
+        // 空闲足够补充五个令牌，但桶中最多保留两个
+        Thread.sleep(500);
+        assertEquals(0, limiter.tryAcquire(1, 2, 10));
+        assertEquals(0, limiter.tryAcquire(1, 2, 10));
+        assertTrue(limiter.tryAcquire(1, 2, 10) > 0);
+    }
+    
+    @Test
+    void evictIdleRemovesOnlyIdleEntries() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1000);
+        for (long key = 1; key <= 50; key++) {
+            limiter.tryAcquire(key, 1, NO_REFILL);
+        }
+        assertEquals(0, limiter.evictIdle(60_000));
+        
+        Thread.sleep(100);
+        for (long key = 51; key <= 100; key++) {
+            limiter.tryAcquire(key, 1, NO_REFILL);
+        }
+        
+        assertEquals(50, limiter.evictIdle(50));
+        assertEquals(50, limiter.size());
+        // 被清理的键重新获得满桶，保留的键仍是空桶
+        assertEquals(0, limiter.tryAcquire(1, 1, NO_REFILL));
+        assertTrue(limiter.tryAcquire(100, 1, NO_REFILL) > 0);
+    }
+    
+    @Test
+    void evictIdleSkipsStripesWithFewIdleEntries() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1000);
+        for (long key = 1; key <= 10; key++) {
+            limiter.tryAcquire(key, 1, NO_REFILL);
+        }
+        Thread.sleep(100);
+        for (long key = 11; key <= 100; key++) {
+            limiter.tryAcquire(key, 1, NO_REFILL);
+        }
+        
+        assertEquals(0, limiter.evictIdle(50));
+        assertEquals(100, limiter.size());
+    }
+    
+    @Test
+    void keysBeyondLimitAreAllowedUntracked() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 64);
+        
+        int untracked = 0;
+        for (long key = 1; key <= 200; key++) {
+            assertEquals(0, limiter.tryAcquire(key, 1, NO_REFILL));
+            if (limiter.tryAcquire(key, 1, NO_REFILL) == 0) {
+                untracked++;
+            }
+        }
+        assertEquals(64, limiter.size());
+        assertEquals(136, untracked);
+    }
+    
+    @Test
+    void concurrentAcquiresNeverExceedCapacity() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire(7, 1000, NO_REFILL) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1000, granted.get());
+    }
+    
+    @Test
+    void rejectsInvalidArguments() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(4, 1000);
+        
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(Long.MIN_VALUE, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(1, TokenBucketLimiter.MAX_CAPACITY + 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(1, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(1, 1, Double.NaN));
+    }
+}
\ No newline at end of file
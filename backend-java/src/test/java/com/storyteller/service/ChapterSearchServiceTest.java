@@ -0,0 +1,199 @@
+package com.storyteller.service;
+
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.repository.ChapterTextRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 章节全文检索测试
+ * 覆盖切分规则、不依赖数据库的索引和查询，以及后台重建的就绪状态和章节数上限
+ */
+class ChapterSearchServiceTest {
+    
+    private final ChapterSearchService service = new ChapterSearchService();
+    
+    @Test
+    void tokenizeIndexesBigramsAndEveryCharacter() {
+        List<String> tokens = tokens("飛龍在", true);
+        
+        assertEquals(List.of("飛", "飛龍", "龍", "龍在", "在"), tokens);
+    }
+    
+    @Test
+    void tokenizeQueryUsesBigramsForRuns() {
+        assertEquals(List.of("飛龍", "龍在"), tokens("飛龍在", false));
+    }
+    
+    @Test
+    void tokenizeQueryUsesUnigramForSingleCharacter() {
+        assertEquals(List.of("龍"), tokens("龍", false));
+        assertEquals(List.of("龍", "word:abc"), tokens("龍 abc", false));
+    }
+    
+    @Test
+    void tokenizeFoldsWidthCaseAndVariants() {
+        assertEquals(List.of("飛龍", "word:abc12"), tokens("飞龙 ＡＢＣ１２", false));
+    }
+    
+    @Test
+    void tokenizeSplitsRunsAtNonCjkCharacters() {
+        assertEquals(List.of("天", "word:a", "地"), tokens("天a地", false));
+    }
+    
+    @Test
+    void singleCharacterQueryMatchesInsideLongerRun() {
+        service.index(1L, 10L, "第一章", "飛龍在天");
+        service.index(2L, 20L, "第二章", "龍");
+        service.index(3L, 30L, "第三章", "在天");
+        
+        assertArrayEquals(new long[]{10, 20}, service.searchChapterIds("龍", 0, 10).getChapterIds());
+        assertArrayEquals(new long[]{10, 20}, service.searchChapterIds("龙", 0, 10).getChapterIds());
+    }
+    
+    @Test
+    void multiCharacterQueryIntersectsBigrams() {
+        service.index(1L, 10L, "第一章", "飛龍在天");
+        service.index(2L, 20L, "第二章", "龍在水中，天上飛");
+        
+        assertArrayEquals(new long[]{10}, service.searchChapterIds("飛龍", 0, 10).getChapterIds());
+        assertArrayEquals(new long[]{10, 20}, service.searchChapterIds("龍在", 0, 10).getChapterIds());
+        assertArrayEquals(new long[]{20}, service.searchChapterIds("龍在 水中", 0, 10).getChapterIds());
+        assertEquals(0, service.searchChapterIds("飛天", 0, 10).getTotal());
+    }
+    
+    @Test
+    void searchMatchesTitlesAndWords() {
+        service.index(1L, 10L, "第一章 Dragon", "正文");
+        
+        assertArrayEquals(new long[]{10}, service.searchChapterIds("dragon", 0, 10).getChapterIds());
+        assertArrayEquals(new long[]{10}, service.searchChapterIds("一章", 0, 10).getChapterIds());
+    }
+    
+    @Test
+    void reindexReplacesOldContentAndRemoveDropsChapter() {
+        service.index(1L, 10L, "第一章", "飛龍在天");
+        service.index(1L, 10L, "第一章", "潛龍勿用");
+        
+        assertEquals(0, service.searchChapterIds("在天", 0, 10).getTotal());
+        assertArrayEquals(new long[]{10}, service.searchChapterIds("潛龍", 0, 10).getChapterIds());
+        
+        service.remove(1L);
+        assertEquals(0, service.searchChapterIds("龍", 0, 10).getTotal());
+    }
+    
+    @Test
+    void searchPagesByChapterId() {
+        for (long i = 5; i >= 1; i--) {
+            service.index(i, i * 10, "章節" + i, "龍");
+        }
+        
+        ChapterSearchService.SearchHits hits = service.searchChapterIds("龍", 1, 2);
+        assertEquals(5, hits.getTotal());
+        assertArrayEquals(new long[]{20, 30}, hits.getChapterIds());
+    }
+    
+    @Test
+    void searchFallsBackToTitleMatchUntilRebuilt() {
+        ChapterRepository chapterRepository = mock(ChapterRepository.class);
+        ChapterTextRepository chapterTextRepository = mock(ChapterTextRepository.class);
+        ReflectionTestUtils.setField(service, "chapterRepository", chapterRepository);
+        ReflectionTestUtils.setField(service, "chapterTextRepository", chapterTextRepository);
+        PageRequest pageable = PageRequest.of(0, 10);
+        Page<ChapterSummary> byTitle = Page.empty(pageable);
+        when(chapterRepository.findSummaryByTitleContaining("龍", pageable)).thenReturn(byTitle);
+        
+        assertFalse(service.isReady());
+        assertSame(byTitle, service.search(" 龍 ", pageable));
+        
+        service.rebuild();
+        assertTrue(service.isReady());
+        service.search("龍", pageable);
+        verify(chapterRepository).findSummaryByTitleContaining("龍", pageable);
+    }
+    
+    @Test
+    void rebuildKeepsChaptersUpdatedDuringScan() {
+        ChapterRepository chapterRepository = mock(ChapterRepository.class);
+        ChapterTextRepository chapterTextRepository = mock(ChapterTextRepository.class);
+        ReflectionTestUtils.setField(service, "chapterRepository", chapterRepository);
+        ReflectionTestUtils.setField(service, "chapterTextRepository", chapterTextRepository);
+        doAnswer(invocation -> {
+            ChapterTextRepository.ChapterTextHandler handler = invocation.getArgument(0);
+            // 扫描开始后章节1被修改、章节2被删除，游标随后读到两者的旧内容
+            service.index(1L, 10L, "第一章", "潛龍勿用");
+            service.remove(2L);
+            handler.handle(1L, 10L, "第一章", "飛龍在天");
+            handler.handle(2L, 20L, "第二章", "見龍在田");
+            handler.handle(3L, 30L, "第三章", "亢龍有悔");
+            return null;
+        }).when(chapterTextRepository).forEachChapter(any());
+        
+        service.rebuild();
+        
+        assertTrue(service.isReady());
+        assertArrayEquals(new long[]{10}, service.searchChapterIds("潛龍", 0, 10).getChapterIds());
+        assertEquals(0, service.searchChapterIds("飛龍", 0, 10).getTotal());
+        assertEquals(0, service.searchChapterIds("見龍", 0, 10).getTotal());
+        assertArrayEquals(new long[]{30}, service.searchChapterIds("亢龍", 0, 10).getChapterIds());
+    }
+    
+    @Test
+    void exceedingMaxChaptersAbandonsIndex() {
+        ChapterRepository chapterRepository = mock(ChapterRepository.class);
+        ChapterTextRepository chapterTextRepository = mock(ChapterTextRepository.class);
+        ReflectionTestUtils.setField(service, "chapterRepository", chapterRepository);
+        ReflectionTestUtils.setField(service, "chapterTextRepository", chapterTextRepository);
+        ReflectionTestUtils.setField(service, "maxChapters", 2);
+        
+        service.index(1L, 10L, "第一章", "龍");
+        service.index(2L, 20L, "第二章", "龍");
+        service.index(3L, 30L, "第三章", "龍");
+        assertEquals(0, service.searchChapterIds("龍", 0, 10).getTotal());
+        
+        when(chapterRepository.count()).thenReturn(3L);
+        service.rebuild();
+        assertFalse(service.isReady());
+        verify(chapterTextRepository, never()).forEachChapter(any());
+    }
+    
+    /**
+     * 把切分结果转换为可读的字符串，单字和二元组还原为文字，单词加word:前缀
+     */
+    private static List<String> tokens(String text, boolean indexing) {
+        List<String> tokens = new ArrayList<>();
+        ChapterSearchService.tokenize(text, indexing, new ChapterSearchService.TokenSink() {
+            @Override
+            public void gram(int key) {
+                char first = (char) (key >>> 16);
+                char second = (char) key;
+                tokens.add(key == ChapterSearchService.unigram(first) ? String.valueOf(first)
+                        : String.valueOf(first) + second);
+            }
+            
+            @Override
+            public void word(String word) {
+                tokens.add("word:" + word);
+            }
+        });
+        return tokens;
+    }
+}
\ No newline at end of file
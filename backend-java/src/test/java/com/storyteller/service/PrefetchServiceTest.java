@@ -0,0 +1,221 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.ChapterRepository;
+import com.storyteller.repository.ChapterSummary;
+import com.storyteller.repository.ChapterTextRepository;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 预取服务测试
+ */
+class PrefetchServiceTest {
+    
+    private static final String CHAPTER_TEXT = "第二回。话说天下大势，分久必合，合久必分。";
+    
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+    
+    private ChapterRepository chapterRepository;
+    
+    private TTSService ttsService;
+    
+    private ExecutorService prefetchExecutor;
+    
+    private PrefetchService prefetchService;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        chapterRepository = mock(ChapterRepository.class);
+        ChapterTextRepository chapterTextRepository = mock(ChapterTextRepository.class);
+        SynthesisTaskRepository synthesisTaskRepository = mock(SynthesisTaskRepository.class);
+        ttsService = mock(TTSService.class);
+        prefetchExecutor = Executors.newFixedThreadPool(2);
+        
+        when(synthesisTaskRepository.findTop10ByUserIdOrderByCreatedAtDesc(anyLong())).thenReturn(List.of());
+        when(chapterRepository.findSummaryByChapterIdGreaterThanOrderByChapterIdAsc(anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> List.of(summary((Long) invocation.getArgument(0) + 1, UPDATED_AT)));
+        when(chapterRepository.findSummaryByChapterId(anyLong()))
+                .thenAnswer(invocation -> summary(invocation.getArgument(0), UPDATED_AT));
+        when(chapterTextRepository.openReader(anyLong())).thenAnswer(invocation -> new StringReader(CHAPTER_TEXT));
+        when(ttsService.chunker(any(Reader.class))).thenAnswer(invocation -> new TextChunker(invocation.getArgument(0), 8));
+        when(ttsService.synthesizeChunked(any(TextChunker.class), anyString(), any())).thenAnswer(invocation -> {
+            TextChunker chunker = invocation.getArgument(0);
+            while (chunker.next() != null) {
+                // 读完全文以得到指纹
+            }
+            return "prefetched.wav";
+        });
+        
+        prefetchService = new PrefetchService();
+        ReflectionTestUtils.setField(prefetchService, "chapterRepository", chapterRepository);
+        ReflectionTestUtils.setField(prefetchService, "chapterTextRepository", chapterTextRepository);
+        ReflectionTestUtils.setField(prefetchService, "synthesisTaskRepository", synthesisTaskRepository);
+        ReflectionTestUtils.setField(prefetchService, "ttsService", ttsService);
+        ReflectionTestUtils.setField(prefetchService, "prefetchExecutor", prefetchExecutor);
+        ReflectionTestUtils.setField(prefetchService, "enabled", true);
+        ReflectionTestUtils.setField(prefetchService, "maxLookahead", 1);
+        ReflectionTestUtils.setField(prefetchService, "maxPerUser", 2);
+        ReflectionTestUtils.setField(prefetchService, "maxPerNode", 8);
+        ReflectionTestUtils.setField(prefetchService, "maxCached", 256);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        prefetchExecutor.shutdownNow();
+    }
+    
+    @Test
+    void completedPrefetchIsReusedOnce() throws Exception {
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        awaitIdle();
+        
+        assertEquals("prefetched.wav", prefetchService.takePrefetched(2L, "voice-1", null));
+        assertNull(prefetchService.takePrefetched(2L, "voice-1", null));
+    }
+    
+    @Test
+    void missForOtherChapterOrVoice() throws Exception {
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        awaitIdle();
+        
+        assertNull(prefetchService.takePrefetched(3L, "voice-1", null));
+        assertNull(prefetchService.takePrefetched(2L, "voice-2", null));
+    }
+    
+    @Test
+    void requestTextMustMatchFingerprint() throws Exception {
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        awaitIdle();
+        assertNull(prefetchService.takePrefetched(2L, "voice-1", "另一段文本"));
+        
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        awaitIdle();
+        assertEquals("prefetched.wav", prefetchService.takePrefetched(2L, "voice-1", CHAPTER_TEXT));
+    }
+    
+    @Test
+    void chapterModifiedAfterPrefetchIsNotReused() throws Exception {
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        awaitIdle();
+        
+        when(chapterRepository.findSummaryByChapterId(2L)).thenReturn(summary(2L, UPDATED_AT.plusMinutes(1)));
+        assertNull(prefetchService.takePrefetched(2L, "voice-1", null));
+    }
+    
+    @Test
+    void unfinishedPrefetchIsCancelledInsteadOfAwaited() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        blockSynthesis(started, interrupted);
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        String audioUrl = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> prefetchService.takePrefetched(2L, "voice-1", null));
+        assertNull(audioUrl);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void evictedPrefetchIsCancelled() throws Exception {
+        ReflectionTestUtils.setField(prefetchService, "maxCached", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        blockSynthesis(started, interrupted);
+        prefetchService.schedulePrefetch(completed(1L, 1L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        // 另一个用户的预取挤出第一个结果
+        prefetchService.schedulePrefetch(completed(2L, 5L));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * 使预取合成一直阻塞到线程被中断
+     */
+    private void blockSynthesis(CountDownLatch started, CountDownLatch interrupted) throws Exception {
+        when(ttsService.synthesizeChunked(any(TextChunker.class), anyString(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late.wav";
+        });
+    }
+    
+    /**
+     * 等待已提交的预取全部完成
+     */
+    private void awaitIdle() throws InterruptedException {
+        prefetchExecutor.submit(() -> { });
+        prefetchExecutor.shutdown();
+        assertTrue(prefetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        prefetchExecutor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(prefetchService, "prefetchExecutor", prefetchExecutor);
+    }
+    
+    private static SynthesisTask completed(Long userId, Long chapterId) {
+        SynthesisTask task = new SynthesisTask();
+        task.setUserId(userId);
+        task.setChapterId(chapterId);
+        task.setVoiceModelId("voice-1");
+        task.setStatus("COMPLETED");
+        return task;
+    }
+    
+    private static ChapterSummary summary(Long chapterId, LocalDateTime updatedAt) {
+        return new ChapterSummary() {
+            @Override
+            public Long getId() {
+                return chapterId;
+            }
+            
+            @Override
+            public Long getChapterId() {
+                return chapterId;
+            }
+            
+            @Override
+            public String getTitle() {
+                return "第" + chapterId + "回";
+            }
+            
+            @Override
+            public String getAudioUrl() {
+                return null;
+            }
+            
+            @Override
+            public LocalDateTime getUpdatedAt() {
+                return updatedAt;
+            }
+        };
+    }
+}
\ No newline at end of file
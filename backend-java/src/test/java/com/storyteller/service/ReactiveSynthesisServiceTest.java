@@ -0,0 +1,111 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.reactive.SynthesisTaskRecord;
+import com.storyteller.repository.reactive.ReactiveSynthesisTaskRepository;
+import com.storyteller.service.WebSocketService.ProgressMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 响应式合成服务测试
+ * 覆盖最终状态写入失败时进度事件流仍然结束
+ */
+class ReactiveSynthesisServiceTest {
+    
+    private final ReactiveSynthesisService service = new ReactiveSynthesisService();
+    
+    private final ReactiveSynthesisTaskRepository repository = mock(ReactiveSynthesisTaskRepository.class);
+    
+    private final ReactiveTTSClient ttsClient = mock(ReactiveTTSClient.class);
+    
+    /** 合成结果，由测试决定何时完成 */
+    private final Sinks.One<String> synthesis = Sinks.one();
+    
+    /** 保存时返回错误的状态 */
+    private Set<String> failingStatuses = Set.of();
+    
+    private SynthesisTaskRecord stored;
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "synthesisTaskRepository", repository);
+        ReflectionTestUtils.setField(service, "ttsClient", ttsClient);
+        ReflectionTestUtils.setField(service, "simulatedDelayMs", 0L);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SynthesisTaskRecord task = invocation.getArgument(0);
+            if (failingStatuses.contains(task.getStatus())) {
+                return Mono.error(new DataAccessResourceFailureException("数据库不可用"));
+            }
+            stored = task;
+            return Mono.just(task);
+        });
+        when(repository.findByTaskId(anyString())).thenAnswer(invocation -> Mono.justOrEmpty(stored));
+        when(ttsClient.synthesizeChunked(any(), eq("voice-1"), any())).thenReturn(synthesis.asMono());
+    }
+    
+    @Test
+    void completionEndsStream() throws Exception {
+        String taskId = service.createSynthesisTask(1L, 2L, "voice-1", "你好").block();
+        CompletableFuture<List<ProgressMessage>> messages = service.streamProgress(taskId).collectList().toFuture();
+        
+        synthesis.tryEmitValue("/audio/1.wav");
+        
+        assertEquals("COMPLETED", last(messages).getStatus());
+        assertEquals("COMPLETED", stored.getStatus());
+    }
+    
+    @Test
+    void failedCompletionSaveStillEndsStream() throws Exception {
+        failingStatuses = Set.of("COMPLETED");
+        String taskId = service.createSynthesisTask(1L, 2L, "voice-1", "你好").block();
+        CompletableFuture<List<ProgressMessage>> messages = service.streamProgress(taskId).collectList().toFuture();
+        
+        synthesis.tryEmitValue("/audio/1.wav");
+        
+        assertEquals("FAILED", last(messages).getStatus());
+        assertEquals("FAILED", stored.getStatus());
+    }
+    
+    @Test
+    void unsavableFailureStillEndsStream() throws Exception {
+        failingStatuses = Set.of("COMPLETED", "FAILED");
+        String taskId = service.createSynthesisTask(1L, 2L, "voice-1", "你好").block();
+        CompletableFuture<List<ProgressMessage>> messages = service.streamProgress(taskId).collectList().toFuture();
+        
+        synthesis.tryEmitValue("/audio/1.wav");
+        
+        assertEquals("FAILED", last(messages).getStatus());
+    }
+    
+    @Test
+    void failedCancelSaveStillEndsStream() throws Exception {
+        failingStatuses = Set.of("CANCELLED");
+        String taskId = service.createSynthesisTask(1L, 2L, "voice-1", "你好").block();
+        CompletableFuture<List<ProgressMessage>> messages = service.streamProgress(taskId).collectList().toFuture();
+        
+        service.cancelTask(taskId).onErrorResume(e -> Mono.empty()).block();
+        
+        assertEquals("CANCELLED", last(messages).getStatus());
+    }
+    
+    private static ProgressMessage last(CompletableFuture<List<ProgressMessage>> messages) throws Exception {
+        List<ProgressMessage> received = messages.get(5, TimeUnit.SECONDS);
+        return received.get(received.size() - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.quota.QuotaService;
+import com.storyteller.repository.ChapterTextRepository;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 语音合成服务测试
+ * 重点验证取消请求与处理线程在各阶段交错时只有一方写入最终状态
+ */
+class SynthesisServiceTest {
+    
+    /** 模拟数据库中的任务记录，保存时按版本号做乐观锁检查 */
+    private final Map<String, SynthesisTask> rows = new ConcurrentHashMap<>();
+    
+    /** 依次保存过的任务状态 */
+    private final List<String> savedStatuses = Collections.synchronizedList(new ArrayList<>());
+    
+    /** 保存该状态时阻塞，直到completingReleased计数归零 */
+    private volatile String blockedStatus;
+    
+    private final CountDownLatch completingSaved = new CountDownLatch(1);
+    
+    private final CountDownLatch completingReleased = new CountDownLatch(1);
+    
+    private SynthesisTaskRepository synthesisTaskRepository;
+    
+    private PrefetchService prefetchService;
+    
+    private WebSocketService webSocketService;
+    
+    private ThreadPoolExecutor synthesisExecutor;
+    
+    private SynthesisService synthesisService;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        synthesisTaskRepository = mock(SynthesisTaskRepository.class);
+        when(synthesisTaskRepository.save(any(SynthesisTask.class))).thenAnswer(invocation -> save(invocation.getArgument(0)));
+        when(synthesisTaskRepository.findByTaskId(anyString())).thenAnswer(invocation -> {
+            SynthesisTask row = rows.get(invocation.<String>getArgument(0));
+            return row != null ? copyOf(row) : null;
+        });
+        
+        prefetchService = mock(PrefetchService.class);
+        when(prefetchService.takePrefetched(anyLong(), anyString(), any())).thenReturn("prefetched.wav");
+        webSocketService = mock(WebSocketService.class);
+        QuotaService quotaService = mock(QuotaService.class);
+        when(quotaService.weight(any())).thenReturn(1);
+        
+        TaskStatusCache taskStatusCache = new TaskStatusCache();
+        ReflectionTestUtils.setField(taskStatusCache, "synthesisTaskRepository", synthesisTaskRepository);
+        ReflectionTestUtils.setField(taskStatusCache, "maxEntries", 100);
+        
+        synthesisExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        
+        synthesisService = new SynthesisService();
+        ReflectionTestUtils.setField(synthesisService, "synthesisTaskRepository", synthesisTaskRepository);
+        ReflectionTestUtils.setField(synthesisService, "chapterTextRepository", mock(ChapterTextRepository.class));
+        ReflectionTestUtils.setField(synthesisService, "ttsService", mock(TTSService.class));
+        ReflectionTestUtils.setField(synthesisService, "webSocketService", webSocketService);
+        ReflectionTestUtils.setField(synthesisService, "prefetchService", prefetchService);
+        ReflectionTestUtils.setField(synthesisService, "taskStatusCache", taskStatusCache);
+        ReflectionTestUtils.setField(synthesisService, "quotaService", quotaService);
+        ReflectionTestUtils.setField(synthesisService, "voiceModelPool", mock(VoiceModelPool.class));
+        ReflectionTestUtils.setField(synthesisService, "synthesisExecutor", synthesisExecutor);
+        ReflectionTestUtils.setField(synthesisService, "simulatedDelayMs", 0L);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        completingReleased.countDown();
+        synthesisExecutor.shutdownNow();
+    }
+    
+    @Test
+    void completesWithoutCancellation() throws Exception {
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        awaitIdle();
+        
+        assertEquals(List.of("PENDING", "PROCESSING", "COMPLETED"), savedStatuses);
+        assertEquals("prefetched.wav", synthesisService.getTaskStatus(taskId).getAudioUrl());
+        verify(webSocketService).sendCompletion(1L, taskId, "prefetched.wav");
+    }
+    
+    @Test
+    void cancelWhileQueuedNeverRuns() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        synthesisExecutor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        
+        assertEquals("CANCELLED", synthesisService.cancelTask(taskId).getStatus());
+        blocker.countDown();
+        awaitIdle();
+        
+        assertEquals(List.of("PENDING", "CANCELLED"), savedStatuses);
+        verify(prefetchService, never()).takePrefetched(anyLong(), anyString(), any());
+        verify(webSocketService).sendCancellation(1L, taskId);
+    }
+    
+    @Test
+    void cancelWhileRunningInterruptsWorker() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        when(prefetchService.takePrefetched(anyLong(), anyString(), any())).thenAnswer(invocation -> {
+            running.countDown();
+            Thread.sleep(60_000);
+            return "late.wav";
+        });
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        
+        assertEquals("CANCELLED", synthesisService.cancelTask(taskId).getStatus());
+        awaitIdle();
+        
+        assertEquals(List.of("PENDING", "PROCESSING", "CANCELLED"), savedStatuses);
+        assertEquals("CANCELLED", synthesisService.getTaskStatus(taskId).getStatus());
+        verify(webSocketService, never()).sendCompletion(anyLong(), anyString(), anyString());
+    }
+    
+    @Test
+    void cancelWhileCompletingWaitsAndLoses() throws Exception {
+        blockedStatus = "COMPLETED";
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        assertTrue(completingSaved.await(5, TimeUnit.SECONDS));
+        
+        // 处理线程已取得写入权、正在保存完成状态时到达的取消请求
+        CompletableFuture<SynthesisTask> cancelled = CompletableFuture.supplyAsync(() -> synthesisService.cancelTask(taskId));
+        Thread.sleep(100);
+        assertFalse(cancelled.isDone());
+        
+        completingReleased.countDown();
+        SynthesisTask result = cancelled.get(5, TimeUnit.SECONDS);
+        awaitIdle();
+        
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals("prefetched.wav", result.getAudioUrl());
+        assertEquals(List.of("PENDING", "PROCESSING", "COMPLETED"), savedStatuses);
+        verify(webSocketService).sendCompletion(1L, taskId, "prefetched.wav");
+        verify(webSocketService, never()).sendCancellation(anyLong(), anyString());
+    }
+    
+    @Test
+    void cancelAfterCompletionKeepsStatus() throws Exception {
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        awaitIdle();
+        
+        assertEquals("COMPLETED", synthesisService.cancelTask(taskId).getStatus());
+        assertEquals(List.of("PENDING", "PROCESSING", "COMPLETED"), savedStatuses);
+    }
+    
+    @Test
+    void cancelMarksLeftoverTaskWithoutRegistration() throws Exception {
+        SynthesisTask leftover = new SynthesisTask();
+        leftover.setUserId(1L);
+        leftover.setChapterId(1L);
+        leftover.setVoiceModelId("voice-1");
+        leftover.setStatus("PROCESSING");
+        String taskId = save(leftover).getTaskId();
+        
+        assertEquals("CANCELLED", synthesisService.cancelTask(taskId).getStatus());
+        assertNull(synthesisService.cancelTask("task_missing"));
+    }
+    
+    @Test
+    void failureIsRecordedWhenNotCancelled() throws Exception {
+        when(prefetchService.takePrefetched(anyLong(), anyString(), any())).thenThrow(new IllegalStateException("合成失败"));
+        String taskId = synthesisService.createSynthesisTask(1L, 1L, "voice-1", "你好");
+        awaitIdle();
+        
+        assertEquals("FAILED", synthesisService.getTaskStatus(taskId).getStatus());
+        verify(webSocketService, timeout(1000)).sendError(eq(1L), eq(taskId), anyString());
+    }
+    
+    /**
+     * 等待执行器中已提交的任务全部结束
+     */
+    private void awaitIdle() throws InterruptedException {
+        synthesisExecutor.shutdown();
+        assertTrue(synthesisExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * 模拟JPA保存：新记录生成任务ID，已有记录检查并递增版本号，返回新的对象
+     */
+    private SynthesisTask save(SynthesisTask task) throws InterruptedException {
+        if (task.getStatus().equals(blockedStatus)) {
+            completingSaved.countDown();
+            completingReleased.await();
+        }
+        synchronized (rows) {
+            SynthesisTask row = task.getTaskId() != null ? rows.get(task.getTaskId()) : null;
+            SynthesisTask saved = copyOf(task);
+            if (row == null) {
+                saved.setTaskId(task.getTaskId() != null ? task.getTaskId() : SynthesisTask.generateTaskId());
+                saved.setVersion(0L);
+            } else if (!row.getVersion().equals(task.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(SynthesisTask.class, task.getTaskId());
+            } else {
+                saved.setVersion(row.getVersion() + 1);
+            }
+            rows.put(saved.getTaskId(), saved);
+            savedStatuses.add(saved.getStatus());
+            return copyOf(saved);
+        }
+    }
+    
+    private static SynthesisTask copyOf(SynthesisTask task) {
+        SynthesisTask copy = new SynthesisTask();
+        copy.setTaskId(task.getTaskId());
+        copy.setUserId(task.getUserId());
+        copy.setChapterId(task.getChapterId());
+        copy.setVoiceModelId(task.getVoiceModelId());
+        copy.setStatus(task.getStatus());
+        copy.setAudioUrl(task.getAudioUrl());
+        copy.setErrorMessage(task.getErrorMessage());
+        copy.setCreatedAt(task.getCreatedAt());
+        copy.setCompletedAt(task.getCompletedAt());
+        copy.setVersion(task.getVersion());
+        return copy;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.storyteller.service;
+
+import com.storyteller.entity.SynthesisTask;
+import com.storyteller.repository.SynthesisTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 任务状态缓存测试
+ * 覆盖有效期内外的读取、长轮询的唤醒和取消
+ */
+class TaskStatusCacheTest {
+    
+    private final TaskStatusCache cache = new TaskStatusCache();
+    
+    private final SynthesisTaskRepository repository = mock(SynthesisTaskRepository.class);
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "synthesisTaskRepository", repository);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+    }
+    
+    @Test
+    void hitWithinTtlSkipsDatabase() {
+        when(repository.findByTaskId("t1")).thenReturn(task("PROCESSING", 1));
+        
+        assertEquals(1L, cache.get("t1").getVersion());
+        assertEquals(1L, cache.get("t1").getVersion());
+        verify(repository, times(1)).findByTaskId("t1");
+    }
+    
+    @Test
+    void localUpdateIsVisibleImmediately() {
+        when(repository.findByTaskId("t1")).thenReturn(task("PROCESSING", 1));
+        cache.get("t1");
+        
+        cache.update(task("COMPLETED", 2));
+        
+        assertEquals("COMPLETED", cache.get("t1").getStatus());
+        verify(repository, times(1)).findByTaskId("t1");
+    }
+    
+    @Test
+    void expiredEntryPicksUpChangeFromOtherNode() {
+        ReflectionTestUtils.setField(cache, "ttlMs", 0L);
+        when(repository.findByTaskId("t1")).thenReturn(task("PROCESSING", 1));
+        cache.get("t1");
+        List<SynthesisTask> woken = new ArrayList<>();
+        assertNotNull(cache.awaitChange("t1", 1, woken::add));
+        
+        // 其他节点取消了任务
+        when(repository.findByTaskId("t1")).thenReturn(task("CANCELLED", 2));
+        
+        assertEquals("CANCELLED", cache.get("t1").getStatus());
+        assertEquals(1, woken.size());
+        assertEquals(2L, woken.get(0).getVersion());
+    }
+    
+    @Test
+    void expiredEntryForDeletedTaskIsDropped() {
+        ReflectionTestUtils.setField(cache, "ttlMs", 0L);
+        when(repository.findByTaskId("t1")).thenReturn(task("PROCESSING", 1));
+        cache.get("t1");
+        
+        when(repository.findByTaskId("t1")).thenReturn(null);
+        
+        assertNull(cache.get("t1"));
+    }
+    
+    @Test
+    void updateWakesOnlyWaitersWithOlderVersion() {
+        cache.update(task("PROCESSING", 1));
+        List<SynthesisTask> woken = new ArrayList<>();
+        cache.awaitChange("t1", 1, woken::add);
+        
+        cache.update(task("PROCESSING", 1));
+        assertTrue(woken.isEmpty());
+        
+        cache.update(task("COMPLETED", 2));
+        assertEquals(1, woken.size());
+        assertEquals("COMPLETED", woken.get(0).getStatus());
+        
+        // 已唤醒的等待不再收到后续版本
+        cache.update(task("COMPLETED", 3));
+        assertEquals(1, woken.size());
+    }
+    
+    @Test
+    void awaitReturnsNullWhenNewerVersionIsCached() {
+        cache.update(task("COMPLETED", 2));
+        
+        assertNull(cache.awaitChange("t1", 1, task -> { }));
+    }
+    
+    @Test
+    void cancelledWaitIsNotNotified() {
+        cache.update(task("PROCESSING", 1));
+        List<SynthesisTask> woken = new ArrayList<>();
+        Runnable cancelWait = cache.awaitChange("t1", 1, woken::add);
+        
+        cancelWait.run();
+        cache.update(task("COMPLETED", 2));
+        
+        assertTrue(woken.isEmpty());
+    }
+    
+    private static SynthesisTask task(String status, long version) {
+        SynthesisTask task = new SynthesisTask();
+        task.setTaskId("t1");
+        task.setStatus(status);
+        task.setVersion(version);
+        return task;
+    }
+}
\ No newline at end of file
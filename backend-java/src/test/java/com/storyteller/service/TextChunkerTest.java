@@ -0,0 +1,126 @@
+package com.storyteller.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文本分段器测试
+ */
+class TextChunkerTest {
+    
+    @Test
+    void returnsShortTextWhole() throws IOException {
+        assertEquals(List.of("很短的一句。"), chunks("很短的一句。", 16));
+        assertEquals(List.of(), chunks("", 16));
+    }
+    
+    @Test
+    void breaksAfterSentenceEnd() throws IOException {
+        assertEquals(List.of("第一句。", "第二句很長很長"), chunks("第一句。第二句很長很長", 8));
+    }
+    
+    @Test
+    void keepsClosingQuoteWithSentence() throws IOException {
+        assertEquals(List.of("他說：「走吧。」", "然後呢"), chunks("他說：「走吧。」然後呢", 10));
+    }
+    
+    @Test
+    void fallsBackToPauseThenHardCut() throws IOException {
+        assertEquals(List.of("一二三，", "四五六七八九", "十"), chunks("一二三，四五六七八九十", 6));
+    }
+    
+    @Test
+    void hardCutDoesNotSplitSurrogatePair() throws IOException {
+        assertEquals(List.of("一二三", "𠀀四"), chunks("一二三𠀀四", 4));
+    }
+    
+    @Test
+    void chunksReassembleToOriginalWithSmallReads() throws IOException {
+        int[] alphabet = "天地玄黃宇宙洪荒。，！」𠀀 ab".codePoints().toArray();
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 5000) {
+            text.appendCodePoint(alphabet[random.nextInt(alphabet.length)]);
+        }
+        
+        TextChunker chunker = new TextChunker(new TrickleReader(text.toString(), 3), 64);
+        StringBuilder joined = new StringBuilder();
+        String chunk;
+        while ((chunk = chunker.next()) != null) {
+            assertTrue(chunk.length() <= 64, "段落超长: " + chunk.length());
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)), "代理对被拆开");
+            joined.append(chunk);
+            assertEquals(joined.length(), chunker.consumed());
+        }
+        assertEquals(text.toString(), joined.toString());
+        assertEquals(TextChunker.fingerprint(text), chunker.fingerprint());
+    }
+    
+    @Test
+    void fingerprintMatchesStringHashCode() throws IOException {
+        String text = "粵語講故事，一段一段咁讀。";
+        long fingerprint = TextChunker.fingerprint(new StringReader(text));
+        
+        assertEquals(text.length(), fingerprint >>> 32);
+        assertEquals(text.hashCode(), (int) fingerprint);
+        assertEquals(TextChunker.fingerprint(text), fingerprint);
+    }
+    
+    @Test
+    void rejectsTooSmallChunks() {
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(new StringReader("x"), 1));
+    }
+    
+    private static List<String> chunks(String text, int maxChars) throws IOException {
+        TextChunker chunker = new TextChunker(new StringReader(text), maxChars);
+        List<String> chunks = new ArrayList<>();
+        String chunk;
+        while ((chunk = chunker.next()) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+    
+    /**
+     * 每次最多返回几个字符的Reader，模拟按窗口分段查询
+     */
+    private static class TrickleReader extends Reader {
+        
+        private final String text;
+        
+        private final int step;
+        
+        private int position;
+        
+        TrickleReader(String text, int step) {
+            this.text = text;
+            this.step = step;
+        }
+        
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, step), text.length() - position);
+            text.getChars(position, position + n, cbuf, off);
+            position += n;
+            return n;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.storyteller.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 文本规范化测试
+ */
+class TextNormalizationServiceTest {
+    
+    private final TextNormalizationService service = new TextNormalizationService();
+    
+    @Test
+    void returnsNullForNull() {
+        assertNull(service.normalize(null));
+    }
+    
+    @Test
+    void expandsIntegersWithCantoneseReadings() {
+        assertEquals("我有二十五個", service.normalize("我有25個"));
+        assertEquals("十二隻", service.normalize("12隻"));
+        assertEquals("兩千人", service.normalize("2000人"));
+        assertEquals("一萬零五", service.normalize("10005"));
+        assertEquals("一百二十三萬四千五百六十七", service.normalize("1,234,567"));
+    }
+    
+    @Test
+    void expandsDecimalsPercentagesYearsAndTimes() {
+        assertEquals("三點一四米", service.normalize("3.14米"));
+        assertEquals("百分之五十", service.normalize("50%"));
+        assertEquals("二零二四年", service.normalize("2024年"));
+        assertEquals("八點零五分", service.normalize("8:05"));
+        assertEquals("八點", service.normalize("8:00"));
+    }
+    
+    @Test
+    void readsCodesDigitByDigit() {
+        assertEquals("零零七", service.normalize("007"));
+        assertEquals("一二三四五六七八九零一二三", service.normalize("1234567890123"));
+    }
+    
+    @Test
+    void foldsFullWidthCharacters() {
+        assertEquals("ABC一百二十三", service.normalize("ＡＢＣ１２３"));
+        assertEquals("第一章開始", service.normalize("第1章　开始"));
+    }
+    
+    @Test
+    void normalizesAndCollapsesPunctuation() {
+        assertEquals("你好，世界！", service.normalize("你好,世界!!"));
+        assertEquals("等等……", service.normalize("等等..."));
+        assertEquals("好……", service.normalize("好…"));
+        assertEquals("Hello，world！", service.normalize("Hello, world!"));
+    }
+    
+    @Test
+    void convertsOnlySentenceFinalPeriods() {
+        assertEquals("走吧。", service.normalize("走吧."));
+        assertEquals("走吧。好", service.normalize("走吧.好"));
+        assertEquals("He left。She stayed。", service.normalize("He left. She stayed."));
+        assertEquals("“走吧。”", service.normalize("“走吧.”"));
+    }
+    
+    @Test
+    void keepsPeriodsInAbbreviationsDomainsAndFileNames() {
+        assertEquals("Mr. Smith來了。", service.normalize("Mr. Smith来了."));
+        assertEquals("見Dr. Wong", service.normalize("见Dr. Wong"));
+        assertEquals("e.g. this", service.normalize("e.g. this"));
+        assertEquals("訪問www.example.com。", service.normalize("访问www.example.com."));
+        assertEquals("打開readme.txt文件", service.normalize("打开readme.txt文件"));
+    }
+    
+    @Test
+    void keepsSpacesOnlyBetweenHalfWidthWords() {
+        assertEquals("你好", service.normalize("你 好"));
+        assertEquals("hello world", service.normalize("hello   world"));
+    }
+    
+    @Test
+    void convertsOneToOneSimplifiedCharacters() {
+        assertEquals("這個國家", service.normalize("这个国家"));
+        assertEquals("他說：“走吧。”", service.normalize("他说：“走吧。”"));
+    }
+    
+    @Test
+    void leavesAmbiguousSimplifiedCharactersUnchanged() {
+        // 历可以是歷或曆，尽可以是盡或儘，当可以是當或噹
+        assertEquals("历史当然尽力", service.normalize("历史当然尽力"));
+        assertEquals("日历", service.normalize("日历"));
+    }
+    
+    @Test
+    void cachedSentencesNormalizeTheSame() {
+        String text = "第1章。你好,世界!第1章。";
+        String first = service.normalize(text);
+        
+        assertEquals("第一章。你好，世界！第一章。", first);
+        assertEquals(first, service.normalize(text));
+    }
+    
+    @Test
+    void foldForSearchMatchesVariantsAndCase() {
+        assertEquals('龍', TextNormalizationService.foldForSearch('龙'));
+        assertEquals('a', TextNormalizationService.foldForSearch('Ａ'));
+        assertEquals('历', TextNormalizationService.foldForSearch('历'));
+    }
+}
\ No newline at end of file
@@ -3,8 +3,8 @@ use serde::{Deserialize, Serialize};
 use std::path::Path;
 use reqwest::multipart;
 
-/// Java后端API配置
-const JAVA_API_BASE_URL: &str = "http://localhost:8080/api";
+/// Java后端API配置（桌面配置下后端只监听127.0.0.1，不用localhost以免解析到IPv6的::1）
+const JAVA_API_BASE_URL: &str = "http://127.0.0.1:8080/api";
 
 /// 语音合成请求结构体
 #[derive(Serialize, Deserialize)]